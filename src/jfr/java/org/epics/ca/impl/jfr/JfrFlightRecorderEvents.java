@@ -0,0 +1,355 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.jfr;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import net.jcip.annotations.ThreadSafe;
+import org.epics.ca.Status;
+
+import java.net.InetSocketAddress;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * The events of the CA library, emitted to the Java Flight Recorder.
+ *
+ * This class is only built where the JDK provides the jdk.jfr API, and only loaded
+ * by {@link FlightRecorderEvents} where the running JVM does. Each event is created,
+ * and its duration measured, only when its type is enabled in a recording; its
+ * attributes are only set when it is committed.
+ *
+ * Whether a type is enabled is asked of a probe instance of the type which is never
+ * committed, so that the check allocates nothing on the paths of the library which
+ * are otherwise free of allocation, such as the delivery of monitor notifications.
+ */
+@ThreadSafe
+final class JfrFlightRecorderEvents extends FlightRecorderEvents
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final ConnectEvent CONNECT_PROBE = new ConnectEvent();
+   private static final SearchEvent SEARCH_PROBE = new SearchEvent();
+   private static final GetEvent GET_PROBE = new GetEvent();
+   private static final PutEvent PUT_PROBE = new PutEvent();
+   private static final MonitorDeliveryEvent MONITOR_DELIVERY_PROBE = new MonitorDeliveryEvent();
+   private static final FlowControlEvent FLOW_CONTROL_PROBE = new FlowControlEvent();
+   private static final BufferResizeEvent BUFFER_RESIZE_PROBE = new BufferResizeEvent();
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   JfrFlightRecorderEvents()
+   {
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   @Override
+   public boolean isAvailable()
+   {
+      return FlightRecorder.isAvailable();
+   }
+
+   @Override
+   public Object beginConnect()
+   {
+      return begin( CONNECT_PROBE, ConnectEvent::new );
+   }
+
+   @Override
+   public void endConnect( Object event, String channelName, InetSocketAddress server )
+   {
+      final ConnectEvent connectEvent = end( (ConnectEvent) event );
+      if ( connectEvent != null )
+      {
+         connectEvent.channel = channelName;
+         connectEvent.server = toString( server );
+         connectEvent.commit();
+      }
+   }
+
+   @Override
+   public Object beginSearch()
+   {
+      return begin( SEARCH_PROBE, SearchEvent::new );
+   }
+
+   @Override
+   public void endSearch( Object event, String channelName, int requests )
+   {
+      final SearchEvent searchEvent = end( (SearchEvent) event );
+      if ( searchEvent != null )
+      {
+         searchEvent.channel = channelName;
+         searchEvent.requests = requests;
+         searchEvent.commit();
+      }
+   }
+
+   @Override
+   public Object beginGet()
+   {
+      return begin( GET_PROBE, GetEvent::new );
+   }
+
+   @Override
+   public void endGet( Object event, String channelName, int elementCount, Status status )
+   {
+      final GetEvent getEvent = end( (GetEvent) event );
+      if ( getEvent != null )
+      {
+         getEvent.channel = channelName;
+         getEvent.elementCount = elementCount;
+         getEvent.status = String.valueOf( status );
+         getEvent.commit();
+      }
+   }
+
+   @Override
+   public Object beginPut()
+   {
+      return begin( PUT_PROBE, PutEvent::new );
+   }
+
+   @Override
+   public void endPut( Object event, String channelName, int elementCount, Status status )
+   {
+      final PutEvent putEvent = end( (PutEvent) event );
+      if ( putEvent != null )
+      {
+         putEvent.channel = channelName;
+         putEvent.elementCount = elementCount;
+         putEvent.status = String.valueOf( status );
+         putEvent.commit();
+      }
+   }
+
+   @Override
+   public <T> Consumer<? super T> monitorDeliveryConsumer( Consumer<? super T> consumer, String channelName, String notifier )
+   {
+      return value -> {
+         final MonitorDeliveryEvent event = begin( MONITOR_DELIVERY_PROBE, MonitorDeliveryEvent::new );
+         try
+         {
+            consumer.accept( value );
+         }
+         finally
+         {
+            if ( end( event ) != null )
+            {
+               event.channel = channelName;
+               event.notifier = notifier;
+               event.commit();
+            }
+         }
+      };
+   }
+
+   @Override
+   public void flowControl( InetSocketAddress server, boolean enabled )
+   {
+      if ( !FLOW_CONTROL_PROBE.isEnabled() )
+      {
+         return;
+      }
+      final FlowControlEvent event = new FlowControlEvent();
+      if ( event.shouldCommit() )
+      {
+         event.server = toString( server );
+         event.enabled = enabled;
+         event.commit();
+      }
+   }
+
+   @Override
+   public void bufferResize( InetSocketAddress server, String buffer, int oldCapacity, int newCapacity )
+   {
+      if ( !BUFFER_RESIZE_PROBE.isEnabled() )
+      {
+         return;
+      }
+      final BufferResizeEvent event = new BufferResizeEvent();
+      if ( event.shouldCommit() )
+      {
+         event.server = toString( server );
+         event.buffer = buffer;
+         event.oldCapacity = oldCapacity;
+         event.newCapacity = newCapacity;
+         event.commit();
+      }
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+/*- Private methods ----------------------------------------------------------*/
+
+   /**
+    * Begins an event, provided that its type is enabled.
+    *
+    * @param probe the probe instance of the type of the event.
+    * @param factory the constructor of the event.
+    * @return the event, or null.
+    */
+   private static <E extends Event> E begin( E probe, Supplier<E> factory )
+   {
+      if ( !probe.isEnabled() )
+      {
+         return null;
+      }
+      final E event = factory.get();
+      event.begin();
+      return event;
+   }
+
+   /**
+    * Ends an event.
+    *
+    * @param event the event, or null.
+    * @return the event if it should be committed, otherwise null.
+    */
+   private static <E extends Event> E end( E event )
+   {
+      if ( event == null )
+      {
+         return null;
+      }
+      event.end();
+      return event.shouldCommit() ? event : null;
+   }
+
+   private static String toString( InetSocketAddress address )
+   {
+      return address == null ? null : address.getAddress().getHostAddress() + ":" + address.getPort();
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+   @Name( "org.epics.ca.Connect" )
+   @Label( "CA Channel Connect" )
+   @Description( "The connection of a channel, from the start of its search to its creation on the server." )
+   @Category( { "EPICS", "Channel Access" } )
+   @StackTrace( false )
+   static final class ConnectEvent extends Event
+   {
+      @Label( "Channel" )
+      String channel;
+
+      @Label( "Server" )
+      String server;
+   }
+
+   @Name( "org.epics.ca.Search" )
+   @Label( "CA Channel Search" )
+   @Description( "The search for a channel, from its registration with the search manager to the response of a server." )
+   @Category( { "EPICS", "Channel Access" } )
+   @StackTrace( false )
+   static final class SearchEvent extends Event
+   {
+      @Label( "Channel" )
+      String channel;
+
+      @Label( "Search Requests" )
+      @Description( "The number of search requests sent for the channel." )
+      int requests;
+   }
+
+   @Name( "org.epics.ca.Get" )
+   @Label( "CA Get" )
+   @Description( "A get request, from its sending to its completion." )
+   @Category( { "EPICS", "Channel Access" } )
+   static final class GetEvent extends Event
+   {
+      @Label( "Channel" )
+      String channel;
+
+      @Label( "Element Count" )
+      int elementCount;
+
+      @Label( "Status" )
+      String status;
+   }
+
+   @Name( "org.epics.ca.Put" )
+   @Label( "CA Put" )
+   @Description( "A put request, from its sending to its completion." )
+   @Category( { "EPICS", "Channel Access" } )
+   static final class PutEvent extends Event
+   {
+      @Label( "Channel" )
+      String channel;
+
+      @Label( "Element Count" )
+      int elementCount;
+
+      @Label( "Status" )
+      String status;
+   }
+
+   @Name( "org.epics.ca.MonitorDelivery" )
+   @Label( "CA Monitor Delivery" )
+   @Description( "The delivery of a monitor notification to its consumer, covering the time the consumer takes to process it." )
+   @Category( { "EPICS", "Channel Access" } )
+   @Threshold( "1 ms" )
+   @StackTrace( false )
+   static final class MonitorDeliveryEvent extends Event
+   {
+      @Label( "Channel" )
+      String channel;
+
+      @Label( "Notifier" )
+      @Description( "The notification service which delivered the notification." )
+      String notifier;
+   }
+
+   @Name( "org.epics.ca.FlowControl" )
+   @Label( "CA Flow Control" )
+   @Description( "A change of the flow control state of a circuit." )
+   @Category( { "EPICS", "Channel Access" } )
+   @StackTrace( false )
+   static final class FlowControlEvent extends Event
+   {
+      @Label( "Server" )
+      String server;
+
+      @Label( "Enabled" )
+      @Description( "Whether flow control was enabled, suspending the monitor updates of the circuit." )
+      boolean enabled;
+   }
+
+   @Name( "org.epics.ca.BufferResize" )
+   @Label( "CA Buffer Resize" )
+   @Description( "The resizing of a buffer of a circuit for a message which did not fit." )
+   @Category( { "EPICS", "Channel Access" } )
+   @StackTrace( false )
+   static final class BufferResizeEvent extends Event
+   {
+      @Label( "Server" )
+      String server;
+
+      @Label( "Buffer" )
+      String buffer;
+
+      @Label( "Old Capacity" )
+      @DataAmount
+      int oldCapacity;
+
+      @Label( "New Capacity" )
+      @DataAmount
+      int newCapacity;
+   }
+
+}
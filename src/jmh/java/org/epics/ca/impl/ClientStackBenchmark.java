@@ -0,0 +1,115 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.epics.ca.Channel;
+import org.epics.ca.Constants;
+import org.epics.ca.Monitor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Measures the round trip cost of the client stack, from the Channel API down to
+ * the framing of the messages and back up through the response handlers, with
+ * the server simulated in memory so that no socket, kernel or network time is
+ * included.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class ClientStackBenchmark
+{
+
+/*- Public attributes --------------------------------------------------------*/
+
+   @Param( { "1", "1024", "65536" } )
+   public int elementCount;
+
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final String PV_NAME = "bench:waveform";
+
+   private ContextImpl context;
+   private InMemoryCaServer server;
+   private Channel<double[]> channel;
+   private Monitor<double[]> monitor;
+   private final AtomicLong latestMonitorValue = new AtomicLong( -1 );
+   private double[] value;
+   private long nextValue = 1;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+
+   @Setup
+   public void setup() throws Exception
+   {
+      final Properties properties = new Properties();
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_ADDR_LIST.toString(), "127.0.0.1" );
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_AUTO_ADDR_LIST.toString(), "NO" );
+      context = new ContextImpl( new ProtocolConfiguration( properties ) );
+
+      value = new double[ elementCount ];
+      server = new InMemoryCaServer( context );
+      server.addProcessVariable( PV_NAME, value );
+
+      channel = context.createChannel( PV_NAME, double[].class, Constants.CHANNEL_PRIORITY_DEFAULT );
+      final CompletableFuture<Channel<double[]>> connected = channel.connectAsync();
+      server.connect( channel );
+      connected.get( 5, TimeUnit.SECONDS );
+
+      monitor = channel.addValueMonitor( values -> latestMonitorValue.accumulateAndGet( (long) values[ 0 ], Math::max ) );
+   }
+
+   @TearDown
+   public void tearDown()
+   {
+      monitor.close();
+      channel.close();
+      server.close();
+      context.close();
+   }
+
+   @Benchmark
+   public double[] get()
+   {
+      return channel.get();
+   }
+
+   @Benchmark
+   public Object putAsync() throws Exception
+   {
+      value[ 0 ] = nextValue++;
+      return channel.putAsync( value ).get();
+   }
+
+   @Benchmark
+   public long monitorUpdate()
+   {
+      final long expected = nextValue++;
+      value[ 0 ] = expected;
+      server.post( PV_NAME, value );
+      while ( latestMonitorValue.get() < expected )
+      {
+         Thread.yield();
+      }
+      return expected;
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
@@ -0,0 +1,71 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Measures the cost of parsing the standard and extended CA message headers.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class HeaderBenchmark
+{
+
+/*- Public attributes --------------------------------------------------------*/
+
+   @Param( { "false", "true" } )
+   public boolean extended;
+
+   @Param( { "true", "false" } )
+   public boolean direct;
+
+/*- Private attributes -------------------------------------------------------*/
+
+   private final Header header = new Header();
+   private ByteBuffer headerBuffer;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+
+   @Setup
+   public void setup()
+   {
+      headerBuffer = direct ? ByteBuffer.allocateDirect( 24 ) : ByteBuffer.allocate( 24 );
+      headerBuffer.putShort( (short) 1 );
+      headerBuffer.putShort( extended ? (short) 0xFFFF : (short) 8 );
+      headerBuffer.putShort( (short) 6 );
+      headerBuffer.putShort( extended ? (short) 0 : (short) 1 );
+      headerBuffer.putInt( 1 );
+      headerBuffer.putInt( 2 );
+      headerBuffer.putInt( 800_000 );
+      headerBuffer.putInt( 100_000 );
+      headerBuffer.flip();
+   }
+
+   @Benchmark
+   public int read()
+   {
+      headerBuffer.rewind();
+      header.read( headerBuffer );
+      return header.payloadSize;
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
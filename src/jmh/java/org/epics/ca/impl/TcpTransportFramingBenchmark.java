@@ -0,0 +1,279 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.epics.ca.Constants;
+import org.epics.ca.impl.metrics.MetricsRegistry;
+import org.epics.ca.impl.reactor.Reactor;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Measures the cost of splitting the byte stream received on a CA circuit into
+ * messages, as performed by TcpTransport#processRead and TcpTransport#processReadBuffer.
+ *
+ * Each operation delivers a batch of monitor update messages to the transport
+ * through an in-memory socket channel which hands out at most readChunkSize bytes
+ * per read, so that messages straddle read boundaries in the same way as on the
+ * network. The response handler does nothing but count the messages, so the
+ * result isolates the framing from the decoding of the payload.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class TcpTransportFramingBenchmark
+{
+
+/*- Public attributes --------------------------------------------------------*/
+
+   @Param( { "1", "16", "256" } )
+   public int messagesPerBatch;
+
+   @Param( { "8", "1024", "131072" } )
+   public int payloadSize;
+
+   @Param( { "1460", "65536" } )
+   public int readChunkSize;
+
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final short CA_PROTO_EVENT_ADD = 1;
+   private static final short DBR_DOUBLE = 6;
+
+   private InMemorySocketChannel channel;
+   private TcpTransport transport;
+   private long messagesHandled;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+
+   @Setup
+   public void setup()
+   {
+      channel = new InMemorySocketChannel( createBatch( messagesPerBatch, payloadSize ), readChunkSize );
+
+      // The mocks are only consulted when the transport is created and closed.
+      final ContextImpl context = Mockito.mock( ContextImpl.class );
+      Mockito.when( context.getTransportRegistry() ).thenReturn( Mockito.mock( TransportRegistry.class ) );
+      Mockito.when( context.getMetricsRegistry() ).thenReturn( new MetricsRegistry() );
+      Mockito.when( context.getReactor() ).thenReturn( Mockito.mock( Reactor.class ) );
+
+      final ResponseHandlers.ResponseHandler handler = ( responseFrom, transport, header, payloadBuffer ) -> messagesHandled++;
+      transport = new TcpTransport( context, Mockito.mock( TransportClient.class ), handler, channel, (short) 13, 0 );
+   }
+
+   @TearDown
+   public void tearDown()
+   {
+      transport.close( true );
+   }
+
+   @Benchmark
+   public long processRead()
+   {
+      transport.processRead();
+      return messagesHandled;
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+/*- Private methods ----------------------------------------------------------*/
+
+   private static ByteBuffer createBatch( int messagesPerBatch, int payloadSize )
+   {
+      final boolean extended = payloadSize >= 0xFFFF;
+      final int headerSize = extended ? Constants.CA_EXTENDED_MESSAGE_HEADER_SIZE : Constants.CA_MESSAGE_HEADER_SIZE;
+      final ByteBuffer batch = ByteBuffer.allocateDirect( messagesPerBatch * ( headerSize + payloadSize ) );
+      for ( int i = 0; i < messagesPerBatch; i++ )
+      {
+         batch.putShort( CA_PROTO_EVENT_ADD );
+         batch.putShort( extended ? (short) 0xFFFF : (short) payloadSize );
+         batch.putShort( DBR_DOUBLE );
+         batch.putShort( extended ? 0 : (short) ( payloadSize / 8 ) );
+         batch.putInt( 1 );
+         batch.putInt( i );
+         if ( extended )
+         {
+            batch.putInt( payloadSize );
+            batch.putInt( payloadSize / 8 );
+         }
+         batch.position( batch.position() + payloadSize );
+      }
+      batch.flip();
+      return batch;
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+   /**
+    * A socket channel which, each time it is drained, replays the same batch of bytes
+    * in chunks of limited size and then reports that no more data is available.
+    * Anything written to it is discarded.
+    */
+   private static final class InMemorySocketChannel extends SocketChannel
+   {
+      private final ByteBuffer batch;
+      private final int chunkSize;
+      private final Socket socket;
+
+      private InMemorySocketChannel( ByteBuffer batch, int chunkSize )
+      {
+         super( SelectorProvider.provider() );
+         this.batch = batch;
+         this.chunkSize = chunkSize;
+         this.socket = new Socket()
+         {
+            private final SocketAddress remoteAddress = new InetSocketAddress( InetAddress.getLoopbackAddress(), 5064 );
+
+            @Override
+            public SocketAddress getRemoteSocketAddress()
+            {
+               return remoteAddress;
+            }
+         };
+      }
+
+      @Override
+      public int read( ByteBuffer dst )
+      {
+         if ( ! batch.hasRemaining() )
+         {
+            batch.rewind();
+            return 0;
+         }
+
+         final int bytes = Math.min( chunkSize, Math.min( dst.remaining(), batch.remaining() ) );
+         final int limit = batch.limit();
+         batch.limit( batch.position() + bytes );
+         dst.put( batch );
+         batch.limit( limit );
+         return bytes;
+      }
+
+      @Override
+      public long read( ByteBuffer[] dsts, int offset, int length )
+      {
+         throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public int write( ByteBuffer src )
+      {
+         final int bytes = src.remaining();
+         src.position( src.limit() );
+         return bytes;
+      }
+
+      @Override
+      public long write( ByteBuffer[] srcs, int offset, int length )
+      {
+         throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public Socket socket()
+      {
+         return socket;
+      }
+
+      @Override
+      public SocketChannel bind( SocketAddress local )
+      {
+         return this;
+      }
+
+      @Override
+      public <T> SocketChannel setOption( SocketOption<T> name, T value )
+      {
+         return this;
+      }
+
+      @Override
+      public <T> T getOption( SocketOption<T> name )
+      {
+         return null;
+      }
+
+      @Override
+      public Set<SocketOption<?>> supportedOptions()
+      {
+         return Collections.emptySet();
+      }
+
+      @Override
+      public SocketChannel shutdownInput()
+      {
+         return this;
+      }
+
+      @Override
+      public SocketChannel shutdownOutput()
+      {
+         return this;
+      }
+
+      @Override
+      public boolean isConnected()
+      {
+         return true;
+      }
+
+      @Override
+      public boolean isConnectionPending()
+      {
+         return false;
+      }
+
+      @Override
+      public boolean connect( SocketAddress remote )
+      {
+         return true;
+      }
+
+      @Override
+      public boolean finishConnect()
+      {
+         return true;
+      }
+
+      @Override
+      public SocketAddress getRemoteAddress()
+      {
+         return socket.getRemoteSocketAddress();
+      }
+
+      @Override
+      public SocketAddress getLocalAddress()
+      {
+         return null;
+      }
+
+      @Override
+      protected void implCloseSelectableChannel() {}
+
+      @Override
+      protected void implConfigureBlocking( boolean block ) throws IOException {}
+   }
+
+}
@@ -0,0 +1,197 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.epics.ca.data.Timestamped;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Measures the cost of converting values between their Java and their CA wire
+ * representations.
+ *
+ * The scalar type supports are used when the element count is 1 and the array
+ * type supports otherwise. The deserialize benchmarks reuse the previously
+ * deserialized object in the same way as the monitor and get paths.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class TypeSupportsBenchmark
+{
+
+/*- Public attributes --------------------------------------------------------*/
+
+   @Param( { "Double", "Float", "Integer", "Short", "Byte", "String" } )
+   public String type;
+
+   @Param( { "1", "16", "1024", "65536" } )
+   public int elementCount;
+
+/*- Private attributes -------------------------------------------------------*/
+
+   /**
+    * The maximum size of the alarm and timestamp fields, including the padding
+    * which precedes the value, of the DBR_TIME types.
+    */
+   private static final int MAX_TIME_PREFIX_SIZE = 16;
+
+   private TypeSupports.TypeSupport<Object> valueTypeSupport;
+   private TypeSupports.TypeSupport<Timestamped<Object>> timestampedTypeSupport;
+   private Object value;
+   private Object deserializedValue;
+   private Timestamped<Object> deserializedTimestampedValue;
+   private ByteBuffer serializeBuffer;
+   private ByteBuffer valueBuffer;
+   private ByteBuffer timestampedBuffer;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+
+   @Setup
+   @SuppressWarnings( "unchecked" )
+   public void setup()
+   {
+      final Class<?> typeClass = getTypeClass( type, elementCount );
+      valueTypeSupport = (TypeSupports.TypeSupport<Object>) TypeSupports.getTypeSupportForType( typeClass );
+      timestampedTypeSupport = (TypeSupports.TypeSupport<Timestamped<Object>>) TypeSupports.getTypeSupportForMetatypeAndType( Timestamped.class, typeClass );
+      value = createValue( type, elementCount );
+
+      final int valueSize = valueTypeSupport.serializeSize( value, elementCount );
+      serializeBuffer = ByteBuffer.allocateDirect( valueSize );
+
+      valueBuffer = ByteBuffer.allocateDirect( valueSize );
+      valueTypeSupport.serialize( valueBuffer, value, elementCount );
+      valueBuffer.flip();
+
+      // The alarm and timestamp fields are left zero. The value is written
+      // directly after them which is correct for the types which need no
+      // padding and is immaterial for the cost of decoding the others.
+      timestampedBuffer = ByteBuffer.allocateDirect( MAX_TIME_PREFIX_SIZE + valueSize );
+      timestampedBuffer.position( 12 );
+      valueTypeSupport.serialize( timestampedBuffer, value, elementCount );
+      timestampedBuffer.clear();
+
+      deserializedValue = valueTypeSupport.newInstance();
+      deserializedTimestampedValue = timestampedTypeSupport.newInstance();
+   }
+
+   @Benchmark
+   public ByteBuffer serialize()
+   {
+      serializeBuffer.clear();
+      valueTypeSupport.serialize( serializeBuffer, value, elementCount );
+      return serializeBuffer;
+   }
+
+   @Benchmark
+   public Object deserialize()
+   {
+      valueBuffer.rewind();
+      deserializedValue = valueTypeSupport.deserialize( valueBuffer, deserializedValue, elementCount );
+      return deserializedValue;
+   }
+
+   @Benchmark
+   public Object deserializeTimestamped()
+   {
+      timestampedBuffer.rewind();
+      deserializedTimestampedValue = timestampedTypeSupport.deserialize( timestampedBuffer, deserializedTimestampedValue, elementCount );
+      return deserializedTimestampedValue;
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+/*- Private methods ----------------------------------------------------------*/
+
+   private static Class<?> getTypeClass( String type, int elementCount )
+   {
+      final boolean scalar = ( elementCount == 1 );
+      switch ( type )
+      {
+         case "Double":
+            return scalar ? Double.class : double[].class;
+         case "Float":
+            return scalar ? Float.class : float[].class;
+         case "Integer":
+            return scalar ? Integer.class : int[].class;
+         case "Short":
+            return scalar ? Short.class : short[].class;
+         case "Byte":
+            return scalar ? Byte.class : byte[].class;
+         case "String":
+            return scalar ? String.class : String[].class;
+         default:
+            throw new IllegalArgumentException( "unsupported type: '" + type + "'" );
+      }
+   }
+
+   private static Object createValue( String type, int elementCount )
+   {
+      final boolean scalar = ( elementCount == 1 );
+      switch ( type )
+      {
+         case "Double":
+         {
+            final double[] array = new double[ elementCount ];
+            Arrays.setAll( array, i -> i * 1.5 );
+            return scalar ? (Object) array[ 0 ] : array;
+         }
+         case "Float":
+         {
+            final float[] array = new float[ elementCount ];
+            for ( int i = 0; i < elementCount; i++ )
+            {
+               array[ i ] = i * 1.5f;
+            }
+            return scalar ? (Object) array[ 0 ] : array;
+         }
+         case "Integer":
+         {
+            final int[] array = new int[ elementCount ];
+            Arrays.setAll( array, i -> i );
+            return scalar ? (Object) array[ 0 ] : array;
+         }
+         case "Short":
+         {
+            final short[] array = new short[ elementCount ];
+            for ( int i = 0; i < elementCount; i++ )
+            {
+               array[ i ] = (short) i;
+            }
+            return scalar ? (Object) array[ 0 ] : array;
+         }
+         case "Byte":
+         {
+            final byte[] array = new byte[ elementCount ];
+            for ( int i = 0; i < elementCount; i++ )
+            {
+               array[ i ] = (byte) i;
+            }
+            return scalar ? (Object) array[ 0 ] : array;
+         }
+         case "String":
+         {
+            final String[] array = new String[ elementCount ];
+            Arrays.setAll( array, i -> "value-" + i );
+            return scalar ? (Object) array[ 0 ] : array;
+         }
+         default:
+            throw new IllegalArgumentException( "unsupported type: '" + type + "'" );
+      }
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
@@ -0,0 +1,149 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.monitor;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Measures the cost of publishing monitor values through each of the monitor
+ * notification engines and of delivering them to the consumers.
+ *
+ * Each operation publishes a burst of BURST_SIZE values to every consumer, round
+ * robin, and then waits until every consumer has received the last value of the
+ * burst. The buffered engines are configured with a small buffer so that values
+ * may be dropped where the consumers fall behind; the result therefore reflects
+ * the throughput of the publishing path rather than the number of notifications.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class MonitorNotificationServiceBenchmark
+{
+
+/*- Public attributes --------------------------------------------------------*/
+
+   /**
+    * The number of values published to each consumer in each operation.
+    */
+   public static final int BURST_SIZE = 100;
+
+   @Param( { "BlockingQueueSingleWorkerMonitorNotificationServiceImpl",
+             "BlockingQueueMultipleWorkerMonitorNotificationServiceImpl",
+             "StripedExecutorServiceMonitorNotificationServiceImpl",
+             "FairShareMonitorNotificationServiceImpl",
+             "InlineMonitorNotificationServiceImpl" } )
+   public String serviceImpl;
+
+   @Param( { "1", "10", "100" } )
+   public int numberOfConsumers;
+
+   @Param( { "4" } )
+   public int numberOfThreads;
+
+   @Param( { "16" } )
+   public int bufferSize;
+
+/*- Private attributes -------------------------------------------------------*/
+
+   private MonitorNotificationServiceFactory factory;
+   private final List<LatestValueConsumer> consumers = new ArrayList<>();
+   private final List<MonitorNotificationService<Long>> services = new ArrayList<>();
+   private long nextValue;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+
+   @Setup
+   public void setup()
+   {
+      final String configuration;
+      switch ( MonitorNotificationServiceFactoryCreator.ServiceImpl.valueOf( serviceImpl ) )
+      {
+         case StripedExecutorServiceMonitorNotificationServiceImpl:
+            configuration = serviceImpl + "," + numberOfThreads;
+            break;
+
+         case InlineMonitorNotificationServiceImpl:
+            configuration = serviceImpl;
+            break;
+
+         default:
+            configuration = serviceImpl + "," + numberOfThreads + "," + bufferSize;
+            break;
+      }
+
+      factory = MonitorNotificationServiceFactoryCreator.create( configuration );
+      for ( int i = 0; i < numberOfConsumers; i++ )
+      {
+         final LatestValueConsumer consumer = new LatestValueConsumer();
+         consumers.add( consumer );
+         services.add( factory.getServiceForConsumer( consumer ) );
+      }
+   }
+
+   @TearDown
+   public void tearDown()
+   {
+      factory.close();
+      consumers.clear();
+      services.clear();
+   }
+
+   @Benchmark
+   public long publishBurst()
+   {
+      for ( int i = 0; i < BURST_SIZE; i++ )
+      {
+         final Long value = nextValue++;
+         for ( MonitorNotificationService<Long> service : services )
+         {
+            service.publish( value );
+         }
+      }
+
+      final long lastValue = nextValue - 1;
+      for ( LatestValueConsumer consumer : consumers )
+      {
+         while ( consumer.latestValue.get() < lastValue )
+         {
+            Thread.yield();
+         }
+      }
+      return lastValue;
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+   /**
+    * Remembers the highest value received. The engines which use several threads
+    * per consumer do not guarantee to deliver the values in order.
+    */
+   private static final class LatestValueConsumer implements Consumer<Long>
+   {
+      private final AtomicLong latestValue = new AtomicLong( -1 );
+
+      @Override
+      public void accept( Long value )
+      {
+         latestValue.accumulateAndGet( value, Math::max );
+      }
+   }
+
+}
@@ -1,7 +1,9 @@
 package org.epics.ca;
 
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -53,6 +55,18 @@ public interface Channel<T> extends AutoCloseable
 
    CompletableFuture<Status> putAsync( T value );
 
+   // the request completes exceptionally with Status.TIMEOUT if the server has
+   // not responded within the timeout; zero means that it never expires
+   default CompletableFuture<T> getAsync( long timeout, TimeUnit unit )
+   {
+      return RequestTimeouts.orTimeout( getAsync(), timeout, unit, "No response to the get request within the timeout." );
+   }
+
+   default CompletableFuture<Status> putAsync( T value, long timeout, TimeUnit unit )
+   {
+      return RequestTimeouts.orTimeout( putAsync( value ), timeout, unit, "No response to the put request within the timeout." );
+   }
+
    // NOTE: "public <MT extends Metadata<T>> MT get(Class<MT> clazz)" would
    // be a better definition, however it raises unchecked warnings in the code
    // and requires explicit casts for monitor APIs
@@ -78,6 +92,14 @@ public interface Channel<T> extends AutoCloseable
    // Value-only monitor. User-specified notification mask.
    Monitor<T> addValueMonitor( Consumer<? super T> handler, int mask );
 
+   // Value-only monitor. User-specified notification mask and notification QoS hints.
+   // The default implementation ignores the hints.
+   default Monitor<T> addValueMonitor( Consumer<? super T> handler, int mask, MonitorQos qos )
+   {
+      Objects.requireNonNull( qos, "The QoS hints cannot be null." );
+      return addValueMonitor( handler, mask );
+   }
+
    // Metadata monitor.  Default, value-change, notification mask.
    @SuppressWarnings( "rawtypes" )
    default  <MT extends Metadata<T>> Monitor<MT> addMonitor( Class<? extends Metadata> clazz, Consumer<MT> handler )
@@ -89,6 +111,15 @@ public interface Channel<T> extends AutoCloseable
    @SuppressWarnings( "rawtypes" )
    <MT extends Metadata<T>> Monitor<MT> addMonitor( Class<? extends Metadata> clazz, Consumer<MT> handler, int mask );
 
+   // Metadata monitor.  User-specified notification mask and notification QoS hints.
+   // The default implementation ignores the hints.
+   @SuppressWarnings( "rawtypes" )
+   default <MT extends Metadata<T>> Monitor<MT> addMonitor( Class<? extends Metadata> clazz, Consumer<MT> handler, int mask, MonitorQos qos )
+   {
+      Objects.requireNonNull( qos, "The QoS hints cannot be null." );
+      return addMonitor( clazz, handler, mask );
+   }
+
    //
    // misc
    //
@@ -4,6 +4,7 @@ package org.epics.ca;
 
 /*- Imported packages --------------------------------------------------------*/
 
+import java.util.Collection;
 import java.util.Properties;
 
 import org.apache.commons.lang3.Validate;
@@ -111,6 +112,20 @@ public class Context implements AutoCloseable
       return delegate.createChannel( channelName, channelType, priority);
    }
 
+   /**
+    * Closes the specified channels together, which is much faster than closing
+    * them one by one when there are many.
+    *
+    * @param channels the channels, which must have been created by this context.
+    *
+    * @throws NullPointerException if the channels argument was null.
+    * @throws IllegalArgumentException if one of the channels was not created by this context.
+    */
+   public void closeChannels( Collection<? extends Channel<?>> channels )
+   {
+      delegate.closeChannels( channels );
+   }
+
    /**
     * Closes the context, disposing of all underlying resources.
     */
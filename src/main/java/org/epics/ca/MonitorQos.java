@@ -0,0 +1,129 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.Immutable;
+import org.apache.commons.lang3.Validate;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Provides hints to the monitor notification engine on how the CPU bandwidth
+ * available for delivering notifications should be shared between a monitor's
+ * Consumer and the Consumers of all other monitors.
+ *
+ * The hints are advisory. Notification engines that do not support scheduling
+ * of individual Consumers will silently ignore them.
+ */
+@Immutable
+public class MonitorQos
+{
+
+/*- Public attributes --------------------------------------------------------*/
+
+   /**
+    * The priority class of a Consumer. Consumers in a higher class are always
+    * served before Consumers in a lower class; Consumers within the same class
+    * share the notification threads according to their weights.
+    */
+   public enum PriorityClass
+   {
+      HIGH,
+      NORMAL,
+      LOW
+   }
+
+   /**
+    * The minimum weight that may be assigned to a Consumer.
+    */
+   public static final int WEIGHT_MIN = 1;
+
+   /**
+    * The maximum weight that may be assigned to a Consumer.
+    */
+   public static final int WEIGHT_MAX = 100;
+
+   /**
+    * The weight that will be assigned when not otherwise specified.
+    */
+   public static final int WEIGHT_DEFAULT = WEIGHT_MIN;
+
+   /**
+    * The hints that apply when the library user has not provided any.
+    */
+   public static final MonitorQos DEFAULT = new MonitorQos( PriorityClass.NORMAL, WEIGHT_DEFAULT );
+
+/*- Private attributes -------------------------------------------------------*/
+
+   private final PriorityClass priorityClass;
+   private final int weight;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Creates a new instance with the specified priority class and the default weight.
+    *
+    * @param priorityClass the priority class.
+    * @throws NullPointerException if the priority class was null.
+    */
+   public MonitorQos( PriorityClass priorityClass )
+   {
+      this( priorityClass, WEIGHT_DEFAULT );
+   }
+
+   /**
+    * Creates a new instance with the specified priority class and weight.
+    *
+    * @param priorityClass the priority class.
+    * @param weight the relative share of the notification CPU bandwidth that the
+    *    Consumer should receive when competing with other Consumers of the same class.
+    *
+    * @throws NullPointerException if the priority class was null.
+    * @throws IllegalArgumentException if the weight was outside the allowed range.
+    */
+   public MonitorQos( PriorityClass priorityClass, int weight )
+   {
+      this.priorityClass = Validate.notNull( priorityClass );
+      Validate.inclusiveBetween( WEIGHT_MIN, WEIGHT_MAX, weight, "weight out of bounds" );
+      this.weight = weight;
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * Returns the priority class.
+    *
+    * @return the result.
+    */
+   public PriorityClass getPriorityClass()
+   {
+      return priorityClass;
+   }
+
+   /**
+    * Returns the weight.
+    *
+    * @return the result.
+    */
+   public int getWeight()
+   {
+      return weight;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "MonitorQos{" +
+            "priorityClass=" + priorityClass +
+            ", weight=" + weight +
+            '}';
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
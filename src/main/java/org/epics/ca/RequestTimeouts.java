@@ -0,0 +1,85 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.lang3.Validate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Completes the futures of requests exceptionally with {@link Status#TIMEOUT}
+ * when they have not completed within a timeout, for the default timeout
+ * methods of {@link Channel}.
+ *
+ * The timer thread is a daemon, created when the first timeout is set.
+ */
+@ThreadSafe
+final class RequestTimeouts
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   private RequestTimeouts()
+   {
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   /**
+    * Completes the specified future exceptionally with a {@link CompletionException}
+    * of status {@link Status#TIMEOUT} if it has not completed within the timeout.
+    *
+    * @param future the future of the request.
+    * @param timeout the timeout; zero means that the future never times out.
+    * @param unit the unit of the timeout.
+    * @param message the message of the exception.
+    * @param <V> the type of the result of the request.
+    * @return the future.
+    */
+   static <V> CompletableFuture<V> orTimeout( CompletableFuture<V> future, long timeout, TimeUnit unit, String message )
+   {
+      Validate.isTrue( timeout >= 0, "timeout must not be negative" );
+      Validate.notNull( unit );
+      if ( timeout == 0 || future.isDone() )
+      {
+         return future;
+      }
+
+      final ScheduledFuture<?> expiry = Timer.INSTANCE.schedule( () -> future.completeExceptionally( new CompletionException( Status.TIMEOUT, message ) ), timeout, unit );
+      future.whenComplete( ( result, throwable ) -> expiry.cancel( false ) );
+      return future;
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+   private static final class Timer
+   {
+      private static final ScheduledThreadPoolExecutor INSTANCE = create();
+
+      private static ScheduledThreadPoolExecutor create()
+      {
+         final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor( 1, runnable -> {
+            final Thread thread = new Thread( runnable, "epics-ca-request-timeout" );
+            thread.setDaemon( true );
+            return thread;
+         } );
+         executor.setRemoveOnCancelPolicy( true );
+         return executor;
+      }
+   }
+
+}
@@ -65,6 +65,8 @@ public enum Status
    CONNSEQTMO (59, Severity.WARNING, "Virtual circuit connection sequence aborted"),
    UNRESPTMO (60, Severity.WARNING, "Virtual circuit connection unresponsive");
 
+   private static final Status[] statusLUT = values();
+
    private final int value;
    private final Severity severity;
    private final String message;
@@ -136,8 +138,6 @@ public enum Status
 
    public static Status forValue( int value )
    {
-      Status[] statusLUT = values ();
-
       if ( value < 0 || value >= statusLUT.length )
          throw new IndexOutOfBoundsException ("invalid status code " + value);
 
@@ -29,10 +29,10 @@ public class BeaconHandler
     */
    private final ContextImpl context;
 
-   /*
+   /**
     * Remote address for this handler.
     */
-   //private final InetSocketAddress responseFrom;
+   private final InetSocketAddress responseFrom;
 
    /**
     * Average period.
@@ -69,7 +69,7 @@ public class BeaconHandler
    public BeaconHandler( ContextImpl context, InetSocketAddress responseFrom )
    {
       this.context = context;
-      //this.responseFrom = responseFrom;
+      this.responseFrom = responseFrom;
    }
 
 
@@ -111,7 +111,7 @@ public class BeaconHandler
       if ( lastBeaconTimeStamp == Long.MIN_VALUE )
       {
          // new server up...
-         context.beaconAnomalyNotify();
+         context.beaconAnomalyNotify( responseFrom );
 
          if ( remoteTransportRevision >= 10 )
          {
@@ -170,7 +170,7 @@ public class BeaconHandler
          {
             if ( currentPeriod >= (averagePeriod * 3.25) )
             {
-               context.beaconAnomalyNotify ();
+               context.beaconAnomalyNotify( responseFrom );
 
                // trigger network change on any 3 contiguous missing beacons
                networkChange = true;
@@ -183,7 +183,7 @@ public class BeaconHandler
             else
             {
                // something might be wrong...
-               context.beaconAnomalyNotify();
+               context.beaconAnomalyNotify( responseFrom );
             }
          }
          // is this a server seen because of reboot
@@ -191,7 +191,7 @@ public class BeaconHandler
          else if ( currentPeriod <= (averagePeriod * 0.8) )
          {
             // server restarted...
-            context.beaconAnomalyNotify();
+            context.beaconAnomalyNotify( responseFrom );
 
             networkChange = true;
          }
@@ -4,28 +4,35 @@ package org.epics.ca.impl;
 
 /*- Imported packages --------------------------------------------------------*/
 
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.Immutable;
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.Validate;
 import org.epics.ca.*;
 import org.epics.ca.data.Metadata;
 import org.epics.ca.impl.TypeSupports.TypeSupport;
+import org.epics.ca.impl.jfr.FlightRecorderEvents;
+import org.epics.ca.impl.metrics.TrafficCounters;
 import org.epics.ca.impl.monitor.MonitorNotificationService;
 import org.epics.ca.impl.monitor.MonitorNotificationServiceFactory;
 import org.epics.ca.impl.requests.MonitorRequest;
 import org.epics.ca.impl.requests.ReadNotifyRequest;
 import org.epics.ca.impl.requests.WriteNotifyRequest;
-import org.epics.ca.util.IntHashMap;
+import org.epics.ca.util.ConcurrentIntHashMap;
 import org.epics.ca.util.logging.LibraryLogManager;
 
 import java.lang.reflect.Array;
+import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -33,6 +40,13 @@ import java.util.logging.Logger;
 /*- Interface Declaration ----------------------------------------------------*/
 /*- Class Declaration --------------------------------------------------------*/
 
+/**
+ * A client of a single process variable. A client may have hundreds of thousands
+ * of channels, most of which are only ever connected and monitored, so the state
+ * of a channel is kept in plain volatile fields updated through field updaters
+ * and the structures which are only needed by some channels (listeners, their
+ * event sources, pending requests and properties) are created on first use.
+ */
 public class ChannelImpl<T> implements Channel<T>, TransportClient
 {
 
@@ -40,7 +54,43 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
 /*- Protected attributes -----------------------------------------------------*/
 /*- Private attributes -------------------------------------------------------*/
 
-   private final Map<AccessRightsListener, BiConsumer<Channel<T>, AccessRights>> accessRightsListeners = new HashMap<>();
+   private static final int INVALID_SID = 0xFFFFFFFF;
+
+   private static final Listener[] NO_LISTENERS = new Listener[ 0 ];
+
+   @SuppressWarnings( "rawtypes" )
+   private static final AtomicReferenceFieldUpdater<ChannelImpl, State> STATE_UPDATER =
+         AtomicReferenceFieldUpdater.newUpdater( ChannelImpl.class, State.class, "state" );
+
+   @SuppressWarnings( "rawtypes" )
+   private static final AtomicReferenceFieldUpdater<ChannelImpl, Listener[]> CONNECTION_LISTENERS_UPDATER =
+         AtomicReferenceFieldUpdater.newUpdater( ChannelImpl.class, Listener[].class, "connectionListeners" );
+
+   @SuppressWarnings( "rawtypes" )
+   private static final AtomicReferenceFieldUpdater<ChannelImpl, Listener[]> ACCESS_RIGHTS_LISTENERS_UPDATER =
+         AtomicReferenceFieldUpdater.newUpdater( ChannelImpl.class, Listener[].class, "accessRightsListeners" );
+
+   @SuppressWarnings( "rawtypes" )
+   private static final AtomicReferenceFieldUpdater<ChannelImpl, StatefullEventSource> CONNECTION_STATE_EVENT_SOURCE_UPDATER =
+         AtomicReferenceFieldUpdater.newUpdater( ChannelImpl.class, StatefullEventSource.class, "connectionStateEventSource" );
+
+   @SuppressWarnings( "rawtypes" )
+   private static final AtomicReferenceFieldUpdater<ChannelImpl, StatefullEventSource> ACCESS_RIGHTS_EVENT_SOURCE_UPDATER =
+         AtomicReferenceFieldUpdater.newUpdater( ChannelImpl.class, StatefullEventSource.class, "accessRightsEventSource" );
+
+   @SuppressWarnings( "rawtypes" )
+   private static final AtomicReferenceFieldUpdater<ChannelImpl, ConcurrentIntHashMap> RESPONSE_REQUESTS_UPDATER =
+         AtomicReferenceFieldUpdater.newUpdater( ChannelImpl.class, ConcurrentIntHashMap.class, "responseRequests" );
+
+   @SuppressWarnings( "rawtypes" )
+   private static final AtomicReferenceFieldUpdater<ChannelImpl, CompletableFuture> CONNECT_FUTURE_UPDATER =
+         AtomicReferenceFieldUpdater.newUpdater( ChannelImpl.class, CompletableFuture.class, "connectFuture" );
+
+   @SuppressWarnings( "rawtypes" )
+   private static final AtomicIntegerFieldUpdater<ChannelImpl> CONNECT_ISSUED_UPDATER =
+         AtomicIntegerFieldUpdater.newUpdater( ChannelImpl.class, "connectIssued" );
+
+   private static final Logger logger = LibraryLogManager.getLogger( ChannelImpl.class );
 
    private final ContextImpl context;
    private final String name;
@@ -49,37 +99,43 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
 
    private final int cid;
 
-   private final int INVALID_SID = 0xFFFFFFFF;
-   private int sid = INVALID_SID;
-
-   private TcpTransport tcpTransport;
+   private final TypeSupport<T> typeSupport;
 
-   private final Map<String, Object> properties = new HashMap<> ();
+   // null unless PV traffic accounting is enabled
+   private final TrafficCounters trafficCounters;
 
-   private final AtomicReference<ConnectionState> connectionState = new AtomicReference<>( ConnectionState.NEVER_CONNECTED );
-   private final AtomicReference<AccessRights> accessRights = new AtomicReference<>( AccessRights.NO_RIGHTS );
-   private final AtomicReference<Object> timerIdRef = new AtomicReference<>();
+   // the connection state, access rights, transport and server-side attributes, published together
+   private volatile State state = State.INITIAL;
 
-   private final AccessRightsStatefullEventSource accessRightsEventSource = new AccessRightsStatefullEventSource ();
+   // copy-on-write, so that the events are dispatched without locking
+   private volatile Listener[] connectionListeners = NO_LISTENERS;
+   private volatile Listener[] accessRightsListeners = NO_LISTENERS;
 
-   private final IntHashMap<ResponseRequest> responseRequests = new IntHashMap<> ();
+   // created with the first listener of their kind, there are no events to dispatch until then
+   private volatile StatefullEventSource connectionStateEventSource;
+   private volatile StatefullEventSource accessRightsEventSource;
 
-   private final TypeSupport<T> typeSupport;
+   // created with the first request
+   private volatile ConcurrentIntHashMap<ResponseRequest> responseRequests;
 
-   private final AtomicBoolean connectIssued = new AtomicBoolean (false);
-   private final AtomicReference<CompletableFuture<Channel<T>>> connectFuture = new AtomicReference<> ();
+   private volatile Object timerId;
 
-   private final ConnectionStateStatefullEventSource connectionStateEventSource = new ConnectionStateStatefullEventSource();
-   private final Map<ConnectionListener, BiConsumer<Channel<T>, Boolean>> connectionListeners =  new HashMap<>();
+   private volatile int connectIssued;
+   private volatile CompletableFuture<Channel<T>> connectFuture;
 
-   private boolean allowCreation = false;
+   // the type of the values read from the channel, known once connected
+   private volatile Class<?> nativeType;
 
-   private volatile int nativeElementCount = 0;
+   // created when first asked for
+   @GuardedBy( "this" )
+   private Map<String, Object> properties;
 
-   // on every connection loss the value gets incremented
-   private final AtomicInteger connectionLossId = new AtomicInteger ();
+   @GuardedBy( "this" )
+   private boolean allowCreation = false;
 
-   private static final Logger logger = LibraryLogManager.getLogger( ChannelImpl.class );
+   // the flight recorder event of the connection in progress, if it is recorded
+   @GuardedBy( "this" )
+   private Object connectEvent;
 
 
 /*- Main ---------------------------------------------------------------------*/
@@ -99,6 +155,8 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
          throw new RuntimeException( "Unsupported channel data type " + channelType );
       }
 
+      this.trafficCounters = context.isPvTrafficEnabled() ? new TrafficCounters( name ) : null;
+
       this.cid = context.generateCID ();
 
       // register before issuing search request
@@ -117,32 +175,53 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
    @Override
    public void close()
    {
-      if ( connectionState.getAndSet( ConnectionState.CLOSED ) == ConnectionState.CLOSED )
+      close( true );
+   }
+
+   /**
+    * Closes the channel.
+    *
+    * @param clearOnServer whether to ask the server to destroy the channel. A channel
+    *    whose circuit is about to be closed need not, since the server destroys all the
+    *    channels of a circuit when it closes.
+    */
+   void close( boolean clearOnServer )
+   {
+      if ( updateState( s -> s.withConnectionState( ConnectionState.CLOSED ) ).connectionState == ConnectionState.CLOSED )
       {
          return;
       }
 
-      // stop searching...
-      context.getChannelSearchManager().unregisterChannel( this );
+      // stop searching; under the lock so that a search initiated concurrently,
+      // as by the reconnector, either registers first or finds the channel closed
+      synchronized ( this )
+      {
+         context.getChannelSearchManager().unregisterChannel( this );
+      }
+      context.unparkChannel( this );
 
       // destroy IOs
       disconnectPendingIO( true );
 
       // release transport
-      if ( tcpTransport != null )
+      final State released = updateState( s -> s.withTransport( null ) );
+      final CircuitTransport transport = released.transport;
+      if ( transport != null )
       {
-         try
+         if ( clearOnServer )
          {
-            Messages.clearChannelMessage( tcpTransport, cid, sid );
-            tcpTransport.flush();
-         }
-         catch ( Throwable th )
-         {
-            // noop
+            try
+            {
+               Messages.clearChannelMessage( transport, cid, released.sid );
+               FlushBatch.flush( transport );
+            }
+            catch ( Throwable th )
+            {
+               // noop
+            }
          }
 
-         tcpTransport.release( this );
-         tcpTransport = null;
+         transport.release( this );
       }
    }
 
@@ -155,25 +234,25 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
    @Override
    public ConnectionState getConnectionState()
    {
-      return connectionState.get();
+      return state.connectionState;
    }
 
    @Override
    public AccessRights getAccessRights()
    {
-      return accessRights.get();
+      return state.accessRights;
    }
 
    @Override
    public CompletableFuture<Channel<T>> connectAsync()
    {
-      if ( !connectIssued.getAndSet (true) )
+      if ( CONNECT_ISSUED_UPDATER.compareAndSet( this, 0, 1 ) )
       {
          // BUG FIX: it is important that the future is defined
          // before initiating the search. This avoids a race condition
          // which occurs when the JVM is under load.
          final CompletableFuture<Channel<T>> future = new CompletableFuture<>();
-         connectFuture.set( future );
+         connectFuture = future;
 
          initiateSearch();
 
@@ -199,24 +278,26 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
    @Override
    public Listener addConnectionListener( BiConsumer<Channel<T>, Boolean> handler )
    {
-
-      final ConnectionListener cl = new ConnectionListener();
-      synchronized ( connectionListeners )
+      if ( connectionStateEventSource == null )
       {
-         connectionListeners.put (cl, handler);
+         CONNECTION_STATE_EVENT_SOURCE_UPDATER.compareAndSet( this, null, new ConnectionStateStatefullEventSource() );
       }
 
+      final ConnectionListener cl = new ConnectionListener( handler );
+      CONNECTION_LISTENERS_UPDATER.getAndUpdate( this, listeners -> ArrayUtils.add( listeners, cl ) );
       return cl;
    }
 
    @Override
    public Listener addAccessRightListener( BiConsumer<Channel<T>, AccessRights> handler )
    {
-      final AccessRightsListener arl = new AccessRightsListener();
-      synchronized ( accessRightsListeners )
+      if ( accessRightsEventSource == null )
       {
-         accessRightsListeners.put( arl, handler);
+         ACCESS_RIGHTS_EVENT_SOURCE_UPDATER.compareAndSet( this, null, new AccessRightsStatefullEventSource() );
       }
+
+      final AccessRightsListener arl = new AccessRightsListener( handler );
+      ACCESS_RIGHTS_LISTENERS_UPDATER.getAndUpdate( this, listeners -> ArrayUtils.add( listeners, arl ) );
       return arl;
    }
 
@@ -254,13 +335,10 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
    @Override
    public void putNoWait( T value )
    {
-      final TcpTransport tcpTransport = getTcpTransportIfConnected();
+      final State current = getStateIfConnected();
 
       // check write access
-      final AccessRights currentRights = getAccessRights();
-      final boolean haveWriteRights = ( currentRights == AccessRights.WRITE ) || (currentRights == AccessRights.READ_WRITE );
-
-      Validate.validState( haveWriteRights, "No write rights." );
+      Validate.validState( current.hasWriteRights(), "No write rights." );
 
       int count = typeSupport.getForcedElementCount();
       if ( count == 0 )
@@ -268,34 +346,42 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
          count = Array.getLength( value );
       }
 
-      Messages.writeMessage( tcpTransport, sid, cid, typeSupport, value, count );
-      tcpTransport.flush();
+      Messages.writeMessage( current.transport, current.sid, cid, typeSupport, value, count );
+      current.transport.flush();
    }
 
    @Override
    public CompletableFuture<T> getAsync()
    {
-      final TcpTransport tcpTransport = getTcpTransportIfConnected();
+      return getAsync( context.getRequestTimeoutMillis(), TimeUnit.MILLISECONDS );
+   }
 
-      // check read access
-      final AccessRights currentRights = getAccessRights();
-      final boolean haveReadRights = ( currentRights == AccessRights.READ ) || (currentRights == AccessRights.READ_WRITE );
+   @Override
+   public CompletableFuture<T> getAsync( long timeout, TimeUnit unit )
+   {
+      Validate.isTrue( timeout >= 0, "timeout must not be negative" );
+      final State current = getStateIfConnected();
 
-      Validate.validState( haveReadRights, "No read rights." );
+      // check read access
+      Validate.validState( current.hasReadRights(), "No read rights." );
 
-      return new ReadNotifyRequest<>(this, tcpTransport, sid, typeSupport );
+      return new ReadNotifyRequest<>(this, current.transport, current.sid, typeSupport, timeout, unit );
    }
 
    @Override
    public CompletableFuture<Status> putAsync( T value )
    {
-      final TcpTransport tcpTransport = getTcpTransportIfConnected();
+      return putAsync( value, context.getRequestTimeoutMillis(), TimeUnit.MILLISECONDS );
+   }
 
-      // check write access
-      final AccessRights currentRights = getAccessRights();
-      final boolean haveWriteRights = ( currentRights == AccessRights.WRITE ) || (currentRights == AccessRights.READ_WRITE );
+   @Override
+   public CompletableFuture<Status> putAsync( T value, long timeout, TimeUnit unit )
+   {
+      Validate.isTrue( timeout >= 0, "timeout must not be negative" );
+      final State current = getStateIfConnected();
 
-      Validate.validState( haveWriteRights, "No write rights." );
+      // check write access
+      Validate.validState( current.hasWriteRights(), "No write rights." );
 
       int count = typeSupport.getForcedElementCount ();
       if ( count == 0 )
@@ -303,7 +389,7 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
          count = Array.getLength( value );
       }
 
-      return new WriteNotifyRequest<>(this, tcpTransport, sid, typeSupport, value, count);
+      return new WriteNotifyRequest<>(this, current.transport, current.sid, typeSupport, value, count, timeout, unit );
    }
 
    @SuppressWarnings( "unchecked" )
@@ -324,53 +410,70 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
    @Override
    public <MT extends Metadata<T>> CompletableFuture<MT> getAsync( Class<? extends Metadata> clazz )
    {
-      final TcpTransport tcpTransport = getTcpTransportIfConnected();
+      final State current = getStateIfConnected();
       final TypeSupport<MT> metaTypeSupport = (TypeSupport<MT>) getTypeSupport (clazz, channelType);
 
       // check read access
-      final AccessRights currentRights = getAccessRights();
-      final boolean haveReadRights = ( currentRights == AccessRights.READ ) || (currentRights == AccessRights.READ_WRITE );
-
-      Validate.validState( haveReadRights, "No read rights." );
+      Validate.validState( current.hasReadRights(), "No read rights." );
 
-      return new ReadNotifyRequest<>(this, tcpTransport, sid, metaTypeSupport );
+      return new ReadNotifyRequest<>(this, current.transport, current.sid, metaTypeSupport, context.getRequestTimeoutMillis(), TimeUnit.MILLISECONDS );
    }
 
 
    @Override
    public Monitor<T> addValueMonitor( Consumer<? super T> handler, int mask )
+   {
+      return addValueMonitor( handler, mask, MonitorQos.DEFAULT );
+   }
+
+   @Override
+   public Monitor<T> addValueMonitor( Consumer<? super T> handler, int mask, MonitorQos qos )
    {
       Validate.isTrue( mask != 0, "The mask cannot be zero." );
+      Validate.notNull( qos, "The QoS hints cannot be null." );
 
-      final TcpTransport tcpTransport = getTcpTransportIfConnected();
+      final CircuitTransport transport = getStateIfConnected().transport;
 
       final MonitorNotificationServiceFactory serviceFactory = context.getMonitorNotificationServiceFactory();
-      final MonitorNotificationService<T> notifier = serviceFactory.getServiceForConsumer( handler );
+      final MonitorNotificationService<T> notifier = serviceFactory.getServiceForConsumer( monitorDeliveryConsumer( handler, serviceFactory ), qos );
 
-      return new MonitorRequest<>(this, tcpTransport, typeSupport, mask, notifier, handler );
+      return new MonitorRequest<>(this, transport, typeSupport, mask, notifier, handler );
    }
 
    @SuppressWarnings( "rawtypes" )
    @Override
    public <MT extends Metadata<T>> Monitor<MT> addMonitor( Class<? extends Metadata> clazz, Consumer<MT> handler, int mask )
+   {
+      return addMonitor( clazz, handler, mask, MonitorQos.DEFAULT );
+   }
+
+   @SuppressWarnings( "rawtypes" )
+   @Override
+   public <MT extends Metadata<T>> Monitor<MT> addMonitor( Class<? extends Metadata> clazz, Consumer<MT> handler, int mask, MonitorQos qos )
    {
       Validate.isTrue( mask != 0, "The mask cannot be zero." );
+      Validate.notNull( qos, "The QoS hints cannot be null." );
 
-      final TcpTransport tcpTransport = getTcpTransportIfConnected();
+      final CircuitTransport transport = getStateIfConnected().transport;
 
       @SuppressWarnings( "unchecked" )
       final TypeSupport<MT> metaTypeSupport = (TypeSupport<MT>) getTypeSupport(clazz, channelType );
       final MonitorNotificationServiceFactory serviceFactory = context.getMonitorNotificationServiceFactory();
-      final MonitorNotificationService<MT> notifier  = serviceFactory.getServiceForConsumer(handler );
+      final MonitorNotificationService<MT> notifier  = serviceFactory.getServiceForConsumer( monitorDeliveryConsumer( handler, serviceFactory ), qos );
 
-      return new MonitorRequest<>(this, tcpTransport, metaTypeSupport, mask, notifier, handler );
+      return new MonitorRequest<>(this, transport, metaTypeSupport, mask, notifier, handler );
    }
 
    @Override
-   public Map<String, Object> getProperties()
+   public synchronized Map<String, Object> getProperties()
    {
       // NOTE: could use Collections.unmodifiableMap(m) here, but leave it writable
       // in case some code needs to tag channels
+      if ( properties == null )
+      {
+         properties = new HashMap<>();
+         updateProperties();
+      }
       return properties;
    }
 
@@ -390,14 +493,30 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
       return Messages.generateSearchRequestMessage( transport, buffer, name, cid );
    }
 
-   public synchronized TcpTransport getTcpTransport()
+   public CircuitTransport getTransport()
+   {
+      return state.transport;
+   }
+
+   ContextImpl getContext()
    {
-      return tcpTransport;
+      return context;
+   }
+
+   /**
+    * Returns the updates, bytes and overruns received by this channel, through its
+    * gets and all of its subscriptions.
+    *
+    * @return the counters, or null when PV traffic accounting is disabled.
+    */
+   public TrafficCounters getTrafficCounters()
+   {
+      return trafficCounters;
    }
 
    public int getNativeElementCount()
    {
-      return nativeElementCount;
+      return state.nativeElementCount;
    }
 
    /**
@@ -405,12 +524,14 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
     *
     * @param responseRequest response request to register.
     */
+   @SuppressWarnings( "unchecked" )
    public void registerResponseRequest( ResponseRequest responseRequest )
    {
-      synchronized ( responseRequests )
+      if ( responseRequests == null )
       {
-         responseRequests.put( responseRequest.getIOID (), responseRequest );
+         RESPONSE_REQUESTS_UPDATER.compareAndSet( this, null, new ConcurrentIntHashMap<ResponseRequest>() );
       }
+      responseRequests.put( responseRequest.getIOID(), responseRequest );
    }
 
    /**
@@ -420,9 +541,10 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
     */
    public void unregisterResponseRequest( ResponseRequest responseRequest )
    {
-      synchronized ( responseRequests )
+      final ConcurrentIntHashMap<ResponseRequest> requests = responseRequests;
+      if ( requests != null )
       {
-         responseRequests.remove (responseRequest.getIOID ());
+         requests.remove( responseRequest.getIOID() );
       }
    }
 
@@ -433,26 +555,26 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
 
    public int getSID()
    {
-      return sid;
+      return state.sid;
    }
 
    public void setAccessRights( AccessRights rights )
    {
-      final AccessRights previousRights = accessRights.getAndSet( rights );
+      final AccessRights previousRights = updateState( s -> s.withAccessRights( rights ) ).accessRights;
       if ( previousRights != rights )
       {
-         context.enqueueStatefullEvent( accessRightsEventSource );
+         enqueueStatefullEvent( accessRightsEventSource );
       }
    }
 
    public void setTimerId( Object timerId )
    {
-      timerIdRef.set (timerId);
+      this.timerId = timerId;
    }
 
    public Object getTimerId()
    {
-      return timerIdRef.get ();
+      return timerId;
    }
 
    /**
@@ -466,7 +588,7 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
     * @param typeCode the CA DBR typecode.
     * @param elementCount the number of elements to be associated  with each CA get/put/monitor operation.
     */
-   public void createChannel( TcpTransport transport, int sid, short typeCode, int elementCount )
+   public void createChannel( CircuitTransport transport, int sid, short typeCode, int elementCount )
    {
       synchronized ( this )
       {
@@ -478,30 +600,28 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
          allowCreation = false;
 
          // check existing transport
-         if ( this.tcpTransport != null && this.tcpTransport != transport )
+         final CircuitTransport previousTransport = state.transport;
+         if ( previousTransport != null && previousTransport != transport )
          {
             disconnectPendingIO(false );
-            this.tcpTransport.release(this );
+            previousTransport.release(this );
          }
-         else if ( this.tcpTransport == transport )
+         else if ( previousTransport == transport )
          {
             // request to sent create request to same transport, ignore
             // this happens when server is slower (processing search requests) than client generating it
             return;
          }
 
-         this.tcpTransport = transport;
+         updateState( s -> s.withTransport( transport ) );
 
          // revision < v4.4 supply this info already now
          if ( transport.getMinorRevision () < 4 )
          {
-            this.sid = sid;
-            this.nativeElementCount = elementCount;
-            properties.put( Constants.ChannelProperties.nativeTypeCode.name (), typeCode );
-            properties.put( Constants.ChannelProperties.nativeElementCount.name (), elementCount );
+            updateState( s -> s.withServerAttributes( sid, typeCode, elementCount ) );
          }
 
-         properties.put (Constants.ChannelProperties.remoteAddress.name (), transport.getRemoteAddress ());
+         updateProperties();
 
          // do not submit CreateChannelRequest here, connection loss while submitting and lock
          // on this channel instance may cause deadlock
@@ -510,8 +630,8 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
       try
       {
          Messages.createChannelMessage( transport, name, cid );
-         // flush immediately
-         transport.flush();
+         // flush immediately, unless the channels of a circuit are being reconnected together
+         FlushBatch.flush( transport );
       }
       catch ( Throwable th )
       {
@@ -521,27 +641,35 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
 
    public synchronized void disconnect( boolean reconnect )
    {
-      if ( connectionState.get () != ConnectionState.CONNECTED && tcpTransport == null )
+      final State current = state;
+      if ( current.connectionState != ConnectionState.CONNECTED && current.transport == null )
       {
          return;
       }
 
       setConnectionState( ConnectionState.DISCONNECTED );
 
-      connectionLossId.incrementAndGet ();
-
       disconnectPendingIO (false);
 
       // release transport
-      if ( tcpTransport != null )
+      final CircuitTransport transport = updateState( s -> s.withTransport( null ) ).transport;
+      if ( transport != null )
       {
-         tcpTransport.release( this );
-         tcpTransport = null;
+         transport.release( this );
       }
 
       if ( reconnect )
       {
-         initiateSearch();
+         // the lost circuit is reopened to its server if possible, without searching
+         if ( transport != null && context.parkChannel( this, transport ) )
+         {
+            allowCreation = true;
+            beginConnectEvent();
+         }
+         else
+         {
+            initiateSearch();
+         }
       }
    }
 
@@ -552,8 +680,20 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
       return priority;
    }
 
-   void createChannelFailed()
+   Class<T> getChannelType()
+   {
+      return channelType;
+   }
+
+   synchronized void createChannelFailed()
    {
+      // the server may no longer host the channel, release its circuit...
+      final CircuitTransport transport = updateState( s -> s.withTransport( null ) ).transport;
+      if ( transport != null )
+      {
+         transport.release( this );
+      }
+
       // ... and search again
       initiateSearch();
    }
@@ -576,24 +716,23 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
    synchronized void connectionCompleted( int sid, short typeCode, int elementCount ) throws IllegalStateException
    {
       // do this silently
-      if ( connectionState.get () == ConnectionState.CLOSED )
+      final State current = state;
+      if ( current.connectionState == ConnectionState.CLOSED )
       {
          return;
       }
+      final CircuitTransport transport = current.transport;
 
       // revision < v4.1 do not have access rights, grant all
-      if ( tcpTransport.getMinorRevision () < 1 )
+      if ( transport.getMinorRevision () < 1 )
       {
          setAccessRights( AccessRights.READ_WRITE );
       }
 
       // revision > v4.4 supply this info
-      if ( tcpTransport.getMinorRevision () >= 4 )
+      if ( transport.getMinorRevision () >= 4 )
       {
-         this.sid = sid;
-         this.nativeElementCount = elementCount;
-         properties.put( Constants.ChannelProperties.nativeTypeCode.name(), typeCode );
-         properties.put( Constants.ChannelProperties.nativeElementCount.name(), elementCount );
+         updateState( s -> s.withServerAttributes( sid, typeCode, elementCount ) );
       }
 
       // dynamic (generic channel) support
@@ -616,21 +755,31 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
          ((DynamicTypeSupport) typeSupport).setDelegate( nativeTypeSupport );
       }
 
-      properties.put (Constants.ChannelProperties.nativeType.name(), typeSupport.newInstance().getClass() );
+      nativeType = typeSupport.newInstance().getClass();
+      updateProperties();
 
       // user might create monitors in listeners, so this has to be done before this can happen
       // however, it would not be nice if events would come before connection event is fired
       // but this cannot happen since transport (TCP) is serving in this thread
-      resubscribeSubscriptions( tcpTransport);
+      resubscribeSubscriptions( transport);
+
+      FlightRecorderEvents.INSTANCE.endConnect( connectEvent, name, transport.getRemoteAddress() );
+      connectEvent = null;
       setConnectionState( ConnectionState.CONNECTED );
    }
 
    /**
-    * Initiate search (connect) procedure.
+    * Initiate search (connect) procedure, unless the channel has been closed.
     */
    synchronized void initiateSearch()
    {
+      if ( state.connectionState == ConnectionState.CLOSED )
+      {
+         return;
+      }
+
       allowCreation = true;
+      beginConnectEvent();
       context.getChannelSearchManager ().registerChannel (this);
    }
 
@@ -642,40 +791,83 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
 
 /*- Private methods ----------------------------------------------------------*/
 
-   private int getConnectionLossId()
+   /**
+    * Begins the flight recorder event of the connection, unless a connection is
+    * already in progress, as when a channel whose creation failed searches again.
+    */
+   private synchronized void beginConnectEvent()
+   {
+      if ( connectEvent == null )
+      {
+         connectEvent = FlightRecorderEvents.INSTANCE.beginConnect();
+      }
+   }
+
+   private <V> Consumer<? super V> monitorDeliveryConsumer( Consumer<? super V> handler, MonitorNotificationServiceFactory serviceFactory )
    {
-      return connectionLossId.get ();
+      return FlightRecorderEvents.INSTANCE.monitorDeliveryConsumer( handler, name, serviceFactory.getClass().getSimpleName() );
    }
 
-   private void setConnectionState( ConnectionState state )
+   private void setConnectionState( ConnectionState connectionState )
    {
-      final ConnectionState previousCS = connectionState.getAndSet( state );
-      if ( previousCS != state )
+      final ConnectionState previousCS = updateState( s -> s.withConnectionState( connectionState ) ).connectionState;
+      if ( previousCS != connectionState )
       {
-         CompletableFuture<Channel<T>> cf = connectFuture.getAndSet (null );
+         @SuppressWarnings( "unchecked" )
+         final CompletableFuture<Channel<T>> cf = CONNECT_FUTURE_UPDATER.getAndSet( this, null );
          if ( cf != null )
          {
             cf.complete(this);
          }
-         context.enqueueStatefullEvent( connectionStateEventSource );
+         enqueueStatefullEvent( connectionStateEventSource );
+      }
+   }
+
+   private void enqueueStatefullEvent( StatefullEventSource eventSource )
+   {
+      // there is no event source, and nothing to dispatch, until a listener is added
+      if ( eventSource != null )
+      {
+         context.enqueueStatefullEvent( eventSource );
+      }
+   }
+
+   /**
+    * Copies the attributes of the channel to its properties, if they have been asked for.
+    */
+   @GuardedBy( "this" )
+   private void updateProperties()
+   {
+      if ( properties == null )
+      {
+         return;
+      }
+
+      final State current = state;
+      if ( current.nativeTypeCode != State.INITIAL.nativeTypeCode )
+      {
+         properties.put( Constants.ChannelProperties.nativeTypeCode.name(), current.nativeTypeCode );
+         properties.put( Constants.ChannelProperties.nativeElementCount.name(), current.nativeElementCount );
+      }
+      if ( current.remoteAddress != null )
+      {
+         properties.put( Constants.ChannelProperties.remoteAddress.name(), current.remoteAddress );
+      }
+      if ( nativeType != null )
+      {
+         properties.put( Constants.ChannelProperties.nativeType.name(), nativeType );
       }
    }
 
    private void resubscribeSubscriptions( Transport transport )
    {
-      ResponseRequest[] requests;
-      synchronized ( responseRequests )
+      final ConcurrentIntHashMap<ResponseRequest> requests = responseRequests;
+      if ( requests == null || requests.isEmpty() )
       {
-         int count = responseRequests.size ();
-         if ( count == 0 )
-         {
-            return;
-         }
-         requests = new ResponseRequest[ count ];
-         requests = responseRequests.toArray (requests);
+         return;
       }
 
-      for ( ResponseRequest request : requests )
+      for ( ResponseRequest request : requests.values() )
       {
          try
          {
@@ -689,26 +881,45 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
             logger.log( Level.WARNING, "Unexpected exception caught during resubscription notification.", th );
          }
       }
+      FlushBatch.flush( transport );
    }
 
    /**
-    * Checks the current state of the TCP connection, returning the relevant
-    * transport object when connected, or throwing an IllegalStateException
-    * when not.
+    * Checks the current state of the TCP connection, returning the state of the
+    * channel when connected, or throwing an IllegalStateException when not.
+    * This is the fast path of every get, put and monitor: it reads a single
+    * volatile reference and takes no locks.
     *
-    * @return the transport object.
+    * @return the state, whose transport is not null.
     * @throws IllegalStateException if the TCP transport object is not connected.
     */
-   private TcpTransport getTcpTransportIfConnected()
+   private State getStateIfConnected()
    {
-      final TcpTransport transport = getTcpTransport();
+      final State current = state;
 
-      final boolean isConnected = ( connectionState.get() == ConnectionState.CONNECTED ) && ( transport != null );
+      final boolean isConnected = ( current.connectionState == ConnectionState.CONNECTED ) && ( current.transport != null );
       Validate.validState( isConnected, "Channel not connected" );
 
-      return transport;
+      return current;
    }
-   
+
+   /**
+    * Atomically replaces the state of the channel by the result of the update.
+    *
+    * @param update the function computing the new state from the current state.
+    * @return the state which was replaced.
+    */
+   private State updateState( UnaryOperator<State> update )
+   {
+      return STATE_UPDATER.getAndUpdate( this, update );
+   }
+
+   private static Listener[] removeListener( Listener[] listeners, Listener listener )
+   {
+      final Listener[] remaining = ArrayUtils.removeElement( listeners, listener );
+      return ( remaining.length == 0 ) ? NO_LISTENERS : remaining;
+   }
+
    private TypeSupport<?> getTypeSupport( Class<?> metaTypeClass, Class<?> typeClass )
    {
       TypeSupport<?> metaTypeSupport = TypeSupports.getTypeSupportForMetatypeAndType( metaTypeClass, typeClass );
@@ -717,7 +928,6 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
          // dynamic (generic channel) support
          if ( typeSupport instanceof ChannelImpl.DynamicTypeSupport )
          {
-            final Class<?> nativeType = (Class<?>) properties.get( Constants.ChannelProperties.nativeType.name() );
             metaTypeSupport = TypeSupports.getTypeSupportForMetatypeAndType( metaTypeClass, nativeType );
          }
 
@@ -732,16 +942,15 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
 
    private void disconnectPendingIO( boolean destroy )
    {
-      final Status status = destroy ? Status.CHANDESTROY : Status.DISCONN;
-
-      ResponseRequest[] requests;
-      synchronized ( responseRequests )
+      final ConcurrentIntHashMap<ResponseRequest> requests = responseRequests;
+      if ( requests == null )
       {
-         requests = new ResponseRequest[ responseRequests.size () ];
-         requests = responseRequests.toArray (requests);
+         return;
       }
 
-      for ( ResponseRequest request : requests )
+      final Status status = destroy ? Status.CHANDESTROY : Status.DISCONN;
+
+      for ( ResponseRequest request : requests.values() )
       {
          try
          {
@@ -757,11 +966,81 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
 
 /*- Nested classes -----------------------------------------------------------*/
 
+   /**
+    * A snapshot of the state of the channel. The lifecycle methods, which run on
+    * the I/O threads, publish a new snapshot whenever the state changes, so that
+    * the application threads see a consistent connection state, access rights,
+    * transport and server ID without locking. The address of the server is kept
+    * when the transport is released so that it can still be reported.
+    */
+   @Immutable
+   private static final class State
+   {
+      static final State INITIAL = new State( ConnectionState.NEVER_CONNECTED, AccessRights.NO_RIGHTS, null, null, INVALID_SID, (short) -1, 0 );
+
+      final ConnectionState connectionState;
+      final AccessRights accessRights;
+      final CircuitTransport transport;
+      final InetSocketAddress remoteAddress;
+      final int sid;
+      final short nativeTypeCode;
+      final int nativeElementCount;
+
+      State( ConnectionState connectionState, AccessRights accessRights, CircuitTransport transport, InetSocketAddress remoteAddress, int sid, short nativeTypeCode, int nativeElementCount )
+      {
+         this.connectionState = connectionState;
+         this.accessRights = accessRights;
+         this.transport = transport;
+         this.remoteAddress = remoteAddress;
+         this.sid = sid;
+         this.nativeTypeCode = nativeTypeCode;
+         this.nativeElementCount = nativeElementCount;
+      }
+
+      State withConnectionState( ConnectionState connectionState )
+      {
+         return new State( connectionState, accessRights, transport, remoteAddress, sid, nativeTypeCode, nativeElementCount );
+      }
+
+      State withAccessRights( AccessRights accessRights )
+      {
+         return new State( connectionState, accessRights, transport, remoteAddress, sid, nativeTypeCode, nativeElementCount );
+      }
+
+      State withTransport( CircuitTransport transport )
+      {
+         final InetSocketAddress address = ( transport != null ) ? transport.getRemoteAddress() : remoteAddress;
+         return new State( connectionState, accessRights, transport, address, sid, nativeTypeCode, nativeElementCount );
+      }
+
+      State withServerAttributes( int sid, short nativeTypeCode, int nativeElementCount )
+      {
+         return new State( connectionState, accessRights, transport, remoteAddress, sid, nativeTypeCode, nativeElementCount );
+      }
+
+      boolean hasReadRights()
+      {
+         return ( accessRights == AccessRights.READ ) || ( accessRights == AccessRights.READ_WRITE );
+      }
+
+      boolean hasWriteRights()
+      {
+         return ( accessRights == AccessRights.WRITE ) || ( accessRights == AccessRights.READ_WRITE );
+      }
+   }
+
    /**
     * AccessRightsStatefullEventSource
     */
    class AccessRightsStatefullEventSource extends StatefullEventSource
    {
+      @Override
+      public Object getStripe()
+      {
+         // the connection and access rights events of a channel are dispatched in order
+         return ChannelImpl.this;
+      }
+
       @SuppressWarnings( "unchecked" )
       @Override
       public void dispatch()
@@ -769,20 +1048,12 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
 
          final AccessRights acr = getAccessRights ();
 
-         // copy listeners
-         final BiConsumer<Channel<T>, AccessRights>[] listeners;
-         synchronized ( accessRightsListeners )
-         {
-            listeners = (BiConsumer<Channel<T>, AccessRights>[]) new BiConsumer[ accessRightsListeners.size () ];
-            accessRightsListeners.values ().toArray (listeners);
-         }
-
          // dispatch
-         for ( BiConsumer<Channel<T>, AccessRights> listener : listeners )
+         for ( Listener listener : accessRightsListeners )
          {
             try
             {
-               listener.accept(ChannelImpl.this, acr);
+               ((AccessRightsListener) listener).handler.accept(ChannelImpl.this, acr);
             }
             catch ( Throwable th )
             {
@@ -797,13 +1068,17 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
     */
    class AccessRightsListener implements Listener
    {
+      private final BiConsumer<Channel<T>, AccessRights> handler;
+
+      AccessRightsListener( BiConsumer<Channel<T>, AccessRights> handler )
+      {
+         this.handler = handler;
+      }
+
       @Override
       public void close()
       {
-         synchronized ( accessRightsListeners )
-         {
-            accessRightsListeners.remove (this);
-         }
+         ACCESS_RIGHTS_LISTENERS_UPDATER.getAndUpdate( ChannelImpl.this, listeners -> removeListener( listeners, this ) );
       }
    }
 
@@ -812,13 +1087,17 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
     */
    class ConnectionListener implements Listener
    {
+      private final BiConsumer<Channel<T>, Boolean> handler;
+
+      ConnectionListener( BiConsumer<Channel<T>, Boolean> handler )
+      {
+         this.handler = handler;
+      }
+
       @Override
       public void close()
       {
-         synchronized ( connectionListeners )
-         {
-            connectionListeners.remove( this );
-         }
+         CONNECTION_LISTENERS_UPDATER.getAndUpdate( ChannelImpl.this, listeners -> removeListener( listeners, this ) );
       }
    }
 
@@ -827,26 +1106,25 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
     */
    class ConnectionStateStatefullEventSource extends StatefullEventSource
    {
+      @Override
+      public Object getStripe()
+      {
+         // the connection and access rights events of a channel are dispatched in order
+         return ChannelImpl.this;
+      }
+
       @SuppressWarnings( "unchecked" )
       @Override
       public void dispatch()
       {
          final boolean connected = (getConnectionState () == ConnectionState.CONNECTED);
 
-         // copy listeners
-         final BiConsumer<Channel<T>, Boolean>[] listeners;
-         synchronized ( connectionListeners )
-         {
-            listeners = (BiConsumer<Channel<T>, Boolean>[]) new BiConsumer[ connectionListeners.size () ];
-            connectionListeners.values ().toArray (listeners);
-         }
-
          // dispatch
-         for ( BiConsumer<Channel<T>, Boolean> listener : listeners )
+         for ( Listener listener : connectionListeners )
          {
             try
             {
-               listener.accept(ChannelImpl.this, connected);
+               ((ConnectionListener) listener).handler.accept(ChannelImpl.this, connected);
             }
             catch ( Throwable th )
             {
@@ -863,47 +1141,47 @@ public class ChannelImpl<T> implements Channel<T>, TransportClient
    private class DynamicTypeSupport implements TypeSupports.TypeSupport<T>
    {
       @SuppressWarnings( "rawtypes" )
-      private final AtomicReference<TypeSupport> delegate = new AtomicReference<>();
+      private volatile TypeSupport delegate;
 
       public void setDelegate( @SuppressWarnings( "rawtypes" ) TypeSupport typeSupport )
       {
-         delegate.set( typeSupport );
+         delegate = typeSupport;
       }
 
       @Override
       public T newInstance()
       {
-         return (T) delegate.get().newInstance ();
+         return (T) delegate.newInstance ();
       }
 
       @Override
       public int getDataType()
       {
-         return delegate.get().getDataType ();
+         return delegate.getDataType ();
       }
 
       @Override
       public T deserialize( ByteBuffer buffer, T object, int count )
       {
-         return (T) delegate.get().deserialize( buffer, object, count );
+         return (T) delegate.deserialize( buffer, object, count );
       }
 
       @Override
       public int getForcedElementCount()
       {
-         return delegate.get().getForcedElementCount();
+         return delegate.getForcedElementCount();
       }
 
       @Override
       public void serialize( ByteBuffer buffer, T object, int count )
       {
-         delegate.get().serialize( buffer, object, count );
+         delegate.serialize( buffer, object, count );
       }
 
       @Override
       public int serializeSize( T object, int count )
       {
-         return delegate.get().serializeSize (object, count);
+         return delegate.serializeSize (object, count);
       }
    }
 
@@ -0,0 +1,178 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.lang3.Validate;
+import org.epics.ca.impl.monitor.latency.MonitorLatencyHistogram;
+import org.epics.ca.util.logging.LibraryLogManager;
+
+import java.net.InetSocketAddress;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * The health of a circuit: when data was last received on it, the echo request
+ * awaiting a reply and whether the server has stopped responding.
+ *
+ * The circuit records each receipt of data, which costs a volatile write. The
+ * {@link CircuitHealthMonitor} checks every circuit periodically. It sends an echo
+ * request over a circuit only when nothing has been received on it for the idle
+ * timeout, and marks the circuit unresponsive when neither the reply nor any other
+ * data has been received within the echo timeout. The circuit becomes responsive
+ * again as soon as data is received on it.
+ *
+ * Servers older than v4.3 do not reply to echo requests; a keep-alive message is
+ * sent to them instead, and they are never marked unresponsive.
+ */
+@ThreadSafe
+final class CircuitHealth
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final Logger logger = LibraryLogManager.getLogger( CircuitHealth.class );
+
+   private final InetSocketAddress address;
+   private final BooleanSupplier echoSender;
+   private final boolean echoReplied;
+   private final MonitorLatencyHistogram echoRoundTripTime;
+
+   private volatile long lastReceiveNanos;
+   private volatile long echoSentNanos;
+   private volatile boolean echoPending;
+   private volatile boolean unresponsive;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Creates the health of a newly opened circuit.
+    *
+    * @param address the address of the server, for logging.
+    * @param minorRevision the protocol minor revision of the server.
+    * @param echoSender sends an echo request (or a keep-alive message) over the
+    *    circuit without blocking, and returns false if it could not.
+    * @param echoRoundTripTime the histogram in which the round-trip times of the
+    *    echo requests are recorded.
+    */
+   CircuitHealth( InetSocketAddress address, short minorRevision, BooleanSupplier echoSender, MonitorLatencyHistogram echoRoundTripTime )
+   {
+      this.address = Validate.notNull( address );
+      this.echoSender = Validate.notNull( echoSender );
+      this.echoReplied = minorRevision >= 3;
+      this.echoRoundTripTime = Validate.notNull( echoRoundTripTime );
+
+      final long now = System.nanoTime();
+      lastReceiveNanos = now;
+      echoSentNanos = now;
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   /**
+    * Records the receipt of data on the circuit.
+    *
+    * @param nanoTime the value of System.nanoTime() when the data was received.
+    */
+   void dataReceived( long nanoTime )
+   {
+      lastReceiveNanos = nanoTime;
+      if ( unresponsive )
+      {
+         unresponsive = false;
+         logger.info( () -> "CA server " + address + " is responding again." );
+      }
+   }
+
+   /**
+    * Records the receipt of the reply to the echo request.
+    *
+    * @param nanoTime the value of System.nanoTime() when the reply was received.
+    */
+   void echoReceived( long nanoTime )
+   {
+      if ( echoPending )
+      {
+         echoPending = false;
+         echoRoundTripTime.record( nanoTime - echoSentNanos );
+      }
+   }
+
+   /**
+    * Sends an echo request if the circuit has been idle, and checks whether the
+    * reply to the previous one is overdue.
+    *
+    * @param now the value of System.nanoTime().
+    * @param idleTimeoutNanos the time without receipt after which an echo request is sent.
+    * @param echoTimeoutNanos the time within which the reply to an echo request is expected.
+    * @return true if the circuit is unresponsive.
+    */
+   boolean check( long now, long idleTimeoutNanos, long echoTimeoutNanos )
+   {
+      final long lastReceive = lastReceiveNanos;
+      final long echoSent = echoSentNanos;
+      if ( echoPending )
+      {
+         if ( now - echoSent >= echoTimeoutNanos )
+         {
+            if ( lastReceive - echoSent >= 0 )
+            {
+               // the circuit is alive although the reply has not come, send another when idle
+               echoPending = false;
+            }
+            else if ( !unresponsive )
+            {
+               unresponsive = true;
+               logger.warning( () -> "CA server " + address + " has not responded for " + ( now - lastReceive ) / 1_000_000 + " ms, the circuit is unresponsive." );
+            }
+         }
+         return unresponsive;
+      }
+
+      // idle since both the last receipt and the last echo request; the request is
+      // recorded before it is sent, since the reply may be received at once
+      if ( now - lastReceive >= idleTimeoutNanos && now - echoSent >= idleTimeoutNanos )
+      {
+         echoSentNanos = now;
+         echoPending = echoReplied;
+         if ( !echoSender.getAsBoolean() )
+         {
+            echoPending = false;
+            echoSentNanos = echoSent;
+         }
+      }
+      return unresponsive;
+   }
+
+   /**
+    * Tests whether the server has failed to respond to an echo request in time.
+    *
+    * @return true if the circuit is unresponsive.
+    */
+   boolean isUnresponsive()
+   {
+      return unresponsive;
+   }
+
+   /**
+    * Returns the histogram of the round-trip times of the echo requests.
+    *
+    * @return the histogram.
+    */
+   MonitorLatencyHistogram getEchoRoundTripTime()
+   {
+      return echoRoundTripTime;
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
@@ -0,0 +1,125 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.lang3.Validate;
+import org.epics.ca.util.logging.LibraryLogManager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Checks the health of all the circuits of a context from a single periodic task,
+ * instead of each circuit running its own echo timer.
+ *
+ * The circuits on which data is flowing cost a comparison of timestamps per check;
+ * an echo request is sent only over the circuits which have been idle for the idle
+ * timeout (EPICS_CA_CONN_TMO), and a circuit whose server has not replied within
+ * the echo timeout is marked unresponsive. See {@link CircuitHealth}.
+ */
+@ThreadSafe
+final class CircuitHealthMonitor implements Runnable
+{
+
+/*- Public attributes --------------------------------------------------------*/
+
+   /**
+    * Time within which the reply to an echo request is expected, unless the idle
+    * timeout is shorter.
+    */
+   static final long MAX_ECHO_TIMEOUT_MS = 5000;
+
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final Logger logger = LibraryLogManager.getLogger( CircuitHealthMonitor.class );
+
+   private final TransportRegistry transportRegistry;
+   private final long idleTimeoutNanos;
+   private final long echoTimeoutNanos;
+   private volatile int unresponsiveCircuitCount;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Creates a monitor of the circuits in the specified registry.
+    *
+    * @param transportRegistry the registry.
+    * @param idleTimeout the time without receipt after which an echo request is sent.
+    * @param unit the unit of the timeout.
+    */
+   CircuitHealthMonitor( TransportRegistry transportRegistry, long idleTimeout, TimeUnit unit )
+   {
+      Validate.isTrue( idleTimeout > 0, "idle timeout must be positive" );
+      this.transportRegistry = Validate.notNull( transportRegistry );
+      this.idleTimeoutNanos = unit.toNanos( idleTimeout );
+      this.echoTimeoutNanos = Math.min( idleTimeoutNanos, TimeUnit.MILLISECONDS.toNanos( MAX_ECHO_TIMEOUT_MS ) );
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   @Override
+   public void run()
+   {
+      try
+      {
+         check( System.nanoTime() );
+      }
+      catch ( Throwable th )
+      {
+         logger.log( Level.WARNING, "Unexpected exception caught while checking the health of the circuits.", th );
+      }
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+
+   /**
+    * Returns the period at which the circuits should be checked, so that an
+    * unresponsive server is detected within a fraction of the echo timeout.
+    *
+    * @return the period in milliseconds.
+    */
+   long getCheckPeriodMillis()
+   {
+      return Math.max( 10, Math.min( 1000, TimeUnit.NANOSECONDS.toMillis( echoTimeoutNanos ) / 4 ) );
+   }
+
+   /**
+    * Returns the number of circuits found unresponsive by the last check.
+    *
+    * @return the count.
+    */
+   int getUnresponsiveCircuitCount()
+   {
+      return unresponsiveCircuitCount;
+   }
+
+   /**
+    * Checks every circuit.
+    *
+    * @param now the value of System.nanoTime().
+    */
+   void check( long now )
+   {
+      int unresponsive = 0;
+      for ( Transport transport : transportRegistry.toArray() )
+      {
+         if ( transport instanceof CircuitTransport && ( (CircuitTransport) transport ).getHealth().check( now, idleTimeoutNanos, echoTimeoutNanos ) )
+         {
+            unresponsive++;
+         }
+      }
+      unresponsiveCircuitCount = unresponsive;
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
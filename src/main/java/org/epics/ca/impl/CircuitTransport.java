@@ -0,0 +1,36 @@
+package org.epics.ca.impl;
+
+/**
+ * Interface defining the transport of a virtual circuit (a connection to a CA
+ * server which is shared by the channels hosted on that server).
+ *
+ * Circuits are looked up in the context's transport registry by server address
+ * and priority, so an implementation registered there is used by every channel
+ * whose search response names that server.
+ */
+public interface CircuitTransport extends Transport
+{
+
+   /**
+    * Acquires transport.
+    *
+    * @param client client (channel) acquiring the transport
+    * @return <code>true</code> if transport was granted, <code>false</code> otherwise.
+    */
+   boolean acquire( TransportClient client );
+
+   /**
+    * Releases transport.
+    *
+    * @param client client (channel) releasing the transport
+    */
+   void release( TransportClient client );
+
+   /**
+    * Returns the health of the circuit, which the transport updates as it receives data.
+    *
+    * @return the health.
+    */
+   CircuitHealth getHealth();
+
+}
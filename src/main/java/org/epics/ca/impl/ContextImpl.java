@@ -14,22 +14,36 @@ import java.nio.channels.SocketChannel;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import eu.javaspecialists.tjsn.concurrency.stripedexecutor.StripedExecutorService;
+import eu.javaspecialists.tjsn.concurrency.stripedexecutor.StripedRunnable;
 import org.apache.commons.lang3.Validate;
 import org.epics.ca.Channel;
+import org.epics.ca.ConnectionState;
 import org.epics.ca.Constants;
+import org.epics.ca.impl.capture.WireCapture;
+import org.epics.ca.impl.metrics.MetricsMBean;
+import org.epics.ca.impl.metrics.MetricsRegistry;
+import org.epics.ca.impl.metrics.PrometheusHttpExporter;
+import org.epics.ca.impl.metrics.PvTrafficAccounting;
+import org.epics.ca.impl.metrics.TrafficCounters;
+import org.epics.ca.impl.metrics.TrafficReport;
 import org.epics.ca.impl.monitor.MonitorNotificationServiceFactoryCreator;
 import org.epics.ca.impl.monitor.MonitorNotificationServiceFactory;
+import org.epics.ca.impl.monitor.latency.LatencyRecordingMonitorNotificationServiceFactory;
+import org.epics.ca.impl.monitor.latency.MonitorLatencyStatistics;
 import org.epics.ca.impl.reactor.Reactor;
 import org.epics.ca.impl.reactor.ReactorHandler;
 import org.epics.ca.impl.reactor.lf.LeaderFollowersHandler;
 import org.epics.ca.impl.reactor.lf.LeaderFollowersThreadPool;
 import org.epics.ca.impl.repeater.CARepeaterServiceManager;
 import org.epics.ca.impl.search.ChannelSearchManager;
-import org.epics.ca.util.IntHashMap;
+import org.epics.ca.util.ConcurrentIntHashMap;
 import org.epics.ca.util.logging.LibraryLogManager;
 import org.epics.ca.util.net.InetAddressUtil;
 import org.epics.ca.util.sync.NamedLockPattern;
@@ -66,6 +80,26 @@ public class ContextImpl implements AutoCloseable
     */
    private static final CARepeaterServiceManager caRepeaterServiceManager = new CARepeaterServiceManager();
 
+   /**
+    * Source of the names which distinguish the metrics of each context in the JVM.
+    */
+   private static final AtomicInteger contextSequence = new AtomicInteger();
+
+   /**
+    * Resolution of the expiry of the requests.
+    */
+   private static final long REQUEST_EXPIRY_TICK_MS = 100;
+
+   /**
+    * Number of ticks in a turn of the request expiry wheel (51.2 seconds).
+    */
+   private static final int REQUEST_EXPIRY_TICKS_PER_WHEEL = 512;
+
+   /**
+    * Number of channels from which the channels of several circuits are closed in parallel.
+    */
+   private static final int PARALLEL_CLOSE_MIN_CHANNELS = 1000;
+
 /*- Private final attributes (initialised immediately) -----------------------*/
 
    /**
@@ -73,15 +107,41 @@ public class ContextImpl implements AutoCloseable
     */
    private final NamedLockPattern namedLocker = new NamedLockPattern();
 
+   /**
+    * Name which distinguishes the metrics of this context from those of the other contexts in the JVM.
+    */
+   private final String contextName = String.valueOf( contextSequence.incrementAndGet() );
+
+   /**
+    * Registry of the counters, gauges and histograms which describe the activity of this context.
+    */
+   private final MetricsRegistry metricsRegistry = new MetricsRegistry( "context", contextName );
+
+   /**
+    * Counters of the messages received, indexed by CA command.
+    */
+   private final LongAdder[] messageCounters = ResponseHandlers.createMessageCounters( metricsRegistry );
+
    /**
     * Timer.
     */
    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
 
    /**
-    * General executor service (e.g. event dispatcher).
+    * Dispatcher of the connection and access rights events. The events of each channel
+    * are dispatched in order, those of different channels in parallel.
+    */
+   private final StripedExecutorService eventDispatcher = new StripedExecutorService( LibraryConfiguration.getInstance().getEventDispatcherThreads() );
+
+   /**
+    * Number of connection and access rights events awaiting dispatch.
+    */
+   private final AtomicInteger pendingEvents = new AtomicInteger();
+
+   /**
+    * Number of connection and access rights events dispatched.
     */
-   private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+   private final LongAdder dispatchedEvents = new LongAdder();
 
    /**
     * TCP transport registry.
@@ -100,14 +160,24 @@ public class ContextImpl implements AutoCloseable
    private final Map<InetSocketAddress, BeaconHandler> beaconHandlers = new HashMap<>();
 
    /**
-    * Map of channels (keys are CIDs).
+    * Map of channels (keys are CIDs). The map also allocates the CIDs.
     */
-   private final IntHashMap<ChannelImpl<?>> channelsByCID = new IntHashMap<>();
+   private final ConcurrentIntHashMap<ChannelImpl<?>> channelsByCID = new ConcurrentIntHashMap<>();
 
    /**
-    * Map of requests (keys are IOID).
+    * Map of requests (keys are IOID). The map also allocates the IOIDs.
     */
-   private final IntHashMap<ResponseRequest> responseRequests = new IntHashMap<>();
+   private final ConcurrentIntHashMap<ResponseRequest> responseRequests = new ConcurrentIntHashMap<>();
+
+   /**
+    * Expires the requests whose response has not arrived in time.
+    */
+   private final RequestExpiryWheel requestExpiryWheel = new RequestExpiryWheel( REQUEST_EXPIRY_TICK_MS, TimeUnit.MILLISECONDS, REQUEST_EXPIRY_TICKS_PER_WHEEL );
+
+   /**
+    * Time after which a get or put requested without an explicit timeout expires (0 = never).
+    */
+   private final long requestTimeoutMillis = (long) ( LibraryConfiguration.getInstance().getRequestTimeout() * 1000 );
 
    /**
     * Closed flag.
@@ -148,30 +218,53 @@ public class ContextImpl implements AutoCloseable
    private final ChannelSearchManager channelSearchManager;
 
    /**
-    * Cached hostname.
+    * Reconnects the channels of lost circuits directly to their servers, or null
+    * when the channels of a lost circuit are searched for again.
     */
-   private final String hostName;
+   private final ServerReconnector serverReconnector;
 
    /**
-    * Cached username.
+    * Checks the health of all the circuits, or null when the connection timeout is disabled.
     */
-   private final String userName;
+   private final CircuitHealthMonitor circuitHealthMonitor;
 
+   /**
+    * Ranks the channels by traffic, or null when PV traffic accounting is disabled.
+    */
+   private final PvTrafficAccounting pvTrafficAccounting;
 
-/*- Private attributes --------------------------------------------------------*/
+   /**
+    * Captures the frames sent and received to pcap files, or null when the capture is disabled.
+    */
+   private final WireCapture wireCapture;
+
+   /**
+    * Number of circuits of each priority opened to each server.
+    */
+   private final int circuitsPerServer;
 
    /**
-    * Last CID cache.
+    * MBean through which the metrics are published, or null when JMX publication is disabled.
     */
-   private int lastCID = 0;
+   private final MetricsMBean metricsMBean;
 
+   /**
+    * Port of the Prometheus metrics endpoint, or zero when the endpoint is disabled.
+    */
+   private final int metricsPrometheusPort;
 
    /**
-    * Last IOID cache.
+    * Cached hostname.
     */
-   private int lastIOID = 0;
+   private final String hostName;
+
+   /**
+    * Cached username.
+    */
+   private final String userName;
 
 
+/*- Private attributes --------------------------------------------------------*/
 /*- Main ---------------------------------------------------------------------*/
 /*- Constructor --------------------------------------------------------------*/
 
@@ -183,6 +276,22 @@ public class ContextImpl implements AutoCloseable
     * @throws NullPointerException if the properties argument was null.
     */
    public ContextImpl( ProtocolConfiguration protocolConfiguration )
+   {
+      this( protocolConfiguration, LibraryConfiguration.getInstance().getKnownServerReconnectTimeout() );
+   }
+
+   /**
+    * Creates an instance based on the supplied EPICS channel-access protocol
+    * configuration, which reconnects the channels of a lost circuit directly to
+    * their server for the specified time.
+    *
+    * @param protocolConfiguration the configuration.
+    * @param knownServerReconnectTimeout the time in seconds for which the channels of
+    *    a lost circuit wait for their server to come back before they are searched
+    *    for, or zero to search for them at once.
+    * @throws NullPointerException if the properties argument was null.
+    */
+   ContextImpl( ProtocolConfiguration protocolConfiguration, float knownServerReconnectTimeout )
    {
       Validate.notNull( protocolConfiguration, "null properties" );
 
@@ -193,6 +302,12 @@ public class ContextImpl implements AutoCloseable
       hostName = InetAddressUtil.getHostName();
       userName = System.getProperty("user.name", "nobody" );
 
+      // Start the capture of the CA traffic, if enabled, before any transport is created.
+      final LibraryConfiguration libraryConfiguration = LibraryConfiguration.getInstance();
+      final String captureFile = libraryConfiguration.getCaptureFile();
+      wireCapture = captureFile.isEmpty() ? null :
+            new WireCapture( captureFile, contextName, libraryConfiguration.getCaptureFileSize() * 1024L * 1024L, libraryConfiguration.getCaptureFileCount() );
+
       // Create the asynchronous IO reactor.
       try
       {
@@ -228,9 +343,52 @@ public class ContextImpl implements AutoCloseable
       // Create the channel search manager.
       channelSearchManager = new ChannelSearchManager( udpBroadcastTransportRef.get() );
 
+      // Create the reconnector of lost circuits, if enabled.
+      serverReconnector = knownServerReconnectTimeout > 0 ?
+            new ServerReconnector( this, (long) ( knownServerReconnectTimeout * 1000 ), TimeUnit.MILLISECONDS ) : null;
+
+      // Start the task which checks the health of all the circuits, if enabled.
+      final long connectionTimeoutMillis = (long) ( getConnectionTimeout() * 1000 );
+      if ( connectionTimeoutMillis > 0 )
+      {
+         circuitHealthMonitor = new CircuitHealthMonitor( transportRegistry, connectionTimeoutMillis, TimeUnit.MILLISECONDS );
+         final long checkPeriod = circuitHealthMonitor.getCheckPeriodMillis();
+         timer.scheduleWithFixedDelay( circuitHealthMonitor, checkPeriod, checkPeriod, TimeUnit.MILLISECONDS );
+      }
+      else
+      {
+         circuitHealthMonitor = null;
+      }
+
+      // Start the task which expires the requests whose response has not arrived in time.
+      timer.scheduleWithFixedDelay( requestExpiryWheel, REQUEST_EXPIRY_TICK_MS, REQUEST_EXPIRY_TICK_MS, TimeUnit.MILLISECONDS );
+
       // Create the monitor notification engine.
-      final String monitorNotifierImpl = LibraryConfiguration.getInstance().getMonitorNotifierImplementation();
-      monitorNotificationServiceFactory = MonitorNotificationServiceFactoryCreator.create( monitorNotifierImpl );
+      circuitsPerServer = libraryConfiguration.getCircuitsPerServer();
+      final String monitorNotifierImpl = libraryConfiguration.getMonitorNotifierImplementation();
+      final MonitorNotificationServiceFactory monitorNotifier = MonitorNotificationServiceFactoryCreator.create( monitorNotifierImpl );
+      monitorNotificationServiceFactory = libraryConfiguration.isMonitorLatencyHistogramsEnabled() ?
+            new LatencyRecordingMonitorNotificationServiceFactory( monitorNotifier, libraryConfiguration.isMonitorLatencyIocTimestampEnabled() ) : monitorNotifier;
+
+      // Start the task which ranks the channels by traffic, if enabled.
+      if ( libraryConfiguration.isMetricsPvTrafficEnabled() )
+      {
+         pvTrafficAccounting = new PvTrafficAccounting( metricsRegistry, this::getChannelTrafficCounters );
+         timer.scheduleWithFixedDelay( pvTrafficAccounting, PvTrafficAccounting.SAMPLE_PERIOD_MS, PvTrafficAccounting.SAMPLE_PERIOD_MS, TimeUnit.MILLISECONDS );
+      }
+      else
+      {
+         pvTrafficAccounting = null;
+      }
+
+      // Register the context-wide metrics and publish them where configured.
+      registerMetrics();
+      metricsMBean = libraryConfiguration.isMetricsJmxEnabled() ? new MetricsMBean( metricsRegistry, contextName ) : null;
+      metricsPrometheusPort = Math.max( 0, libraryConfiguration.getMetricsPrometheusPort() );
+      if ( metricsPrometheusPort > 0 )
+      {
+         PrometheusHttpExporter.addRegistry( metricsPrometheusPort, metricsRegistry );
+      }
    }
 
 /*- Public methods -----------------------------------------------------------*/
@@ -270,6 +428,28 @@ public class ContextImpl implements AutoCloseable
       return new ChannelImpl<>( this, channelName, channelType, priority );
    }
 
+   /**
+    * Closes the specified channels of this context together. The clear channel messages
+    * of the channels of each circuit are sent in as few frames as the send buffers allow,
+    * rather than in a frame of their own, and large numbers of channels on several
+    * circuits are closed in parallel.
+    *
+    * @param channels the channels.
+    * @throws NullPointerException if the channels argument was null.
+    * @throws IllegalArgumentException if one of the channels was not created by this context.
+    */
+   public void closeChannels( Collection<? extends Channel<?>> channels )
+   {
+      Validate.notNull( channels, "null channels" );
+      final List<ChannelImpl<?>> channelImpls = new ArrayList<>( channels.size() );
+      for ( Channel<?> channel : channels )
+      {
+         Validate.isTrue( channel instanceof ChannelImpl && ( (ChannelImpl<?>) channel ).getContext() == this, "channel not of this context" );
+         channelImpls.add( (ChannelImpl<?>) channel );
+      }
+      closeChannels( channelImpls, true );
+   }
+
    /**
     * Closes the context, disposing of all underlying resources.
     */
@@ -282,11 +462,25 @@ public class ContextImpl implements AutoCloseable
          return;
       }
 
+      // Withdraw the metrics from publication.
+      if ( metricsMBean != null )
+      {
+         metricsMBean.close();
+      }
+      if ( metricsPrometheusPort > 0 )
+      {
+         PrometheusHttpExporter.removeRegistry( metricsPrometheusPort, metricsRegistry );
+      }
+
       // Cancel the CA Repeater Service for the port configured for this context.
       caRepeaterServiceManager.cancelServiceRequestOnPort( getRepeaterPort() );
 
       channelSearchManager.cancel();
       udpBroadcastTransportRef.get().close();
+      if ( serverReconnector != null )
+      {
+         serverReconnector.close();
+      }
 
       // this will also close all CA transports
       destroyAllChannels();
@@ -298,16 +492,22 @@ public class ContextImpl implements AutoCloseable
       // Dispose of the monitor service factory and all services which it has created
       monitorNotificationServiceFactory.close();
 
-      executorService.shutdown();
+      eventDispatcher.shutdown();
       try
       {
-         executorService.awaitTermination (3, TimeUnit.SECONDS);
+         eventDispatcher.awaitTermination (3, TimeUnit.SECONDS);
       }
       catch ( InterruptedException e )
       {
          // noop
       }
-      executorService.shutdownNow();
+      eventDispatcher.shutdownNow();
+
+      // Write what remains of the capture, now that the transports are closed.
+      if ( wireCapture != null )
+      {
+         wireCapture.close();
+      }
    }
 
    /**
@@ -318,12 +518,7 @@ public class ContextImpl implements AutoCloseable
     */
    public int registerResponseRequest( ResponseRequest request )
    {
-      synchronized ( responseRequests )
-      {
-         int ioid = generateIOID ();
-         responseRequests.put (ioid, request);
-         return ioid;
-      }
+      return responseRequests.add( request );
    }
 
    /**
@@ -334,14 +529,73 @@ public class ContextImpl implements AutoCloseable
     */
    public ResponseRequest unregisterResponseRequest( ResponseRequest request )
    {
-      synchronized ( responseRequests )
-      {
-         return responseRequests.remove (request.getIOID ());
-      }
+      return responseRequests.remove( request.getIOID() );
+   }
+
+   /**
+    * Returns the wheel with which the requests expire when their response has not arrived in time.
+    *
+    * @return the wheel.
+    */
+   public RequestExpiryWheel getRequestExpiryWheel()
+   {
+      return requestExpiryWheel;
+   }
+
+   /**
+    * Returns the channels which received the most updates and the most bytes over the
+    * last minute, as of the last sample of their traffic counters.
+    *
+    * @param n the maximum number of channels in each ranking.
+    * @return the report; TrafficReport.DISABLED if PV traffic accounting is not enabled.
+    */
+   public TrafficReport getPvTrafficReport( int n )
+   {
+      return pvTrafficAccounting != null ? pvTrafficAccounting.getReport( n ) : TrafficReport.DISABLED;
    }
 
 /*- Package-level methods ----------------------------------------------------*/
 
+   /**
+    * Returns the time after which a get or put requested without an explicit timeout expires.
+    *
+    * @return the time in milliseconds; zero means that such requests never expire.
+    */
+   long getRequestTimeoutMillis()
+   {
+      return requestTimeoutMillis;
+   }
+
+   /**
+    * Indicates whether the channels and subscriptions of this context count their traffic.
+    *
+    * @return true if PV traffic accounting is enabled.
+    */
+   boolean isPvTrafficEnabled()
+   {
+      return pvTrafficAccounting != null;
+   }
+
+   /**
+    * Returns the task which ranks the channels by traffic.
+    *
+    * @return the task, or null when PV traffic accounting is disabled.
+    */
+   PvTrafficAccounting getPvTrafficAccounting()
+   {
+      return pvTrafficAccounting;
+   }
+
+   /**
+    * Returns the capture to which the transports write the frames they send and receive.
+    *
+    * @return the capture, or null when the capture is disabled.
+    */
+   WireCapture getWireCapture()
+   {
+      return wireCapture;
+   }
+
    /**
     * Searches for a response request with given channel IOID.
     *
@@ -350,10 +604,7 @@ public class ContextImpl implements AutoCloseable
     */
    ResponseRequest getResponseRequest( int ioid )
    {
-      synchronized ( responseRequests )
-      {
-         return responseRequests.get (ioid);
-      }
+      return responseRequests.get( ioid );
    }
 
    /**
@@ -364,10 +615,7 @@ public class ContextImpl implements AutoCloseable
     */
    ChannelImpl<?> getChannel( int channelID )
    {
-      synchronized ( channelsByCID )
-      {
-         return channelsByCID.get (channelID);
-      }
+      return channelsByCID.get( channelID );
    }
 
    /**
@@ -389,12 +637,34 @@ public class ContextImpl implements AutoCloseable
       }
 
       logger.log ( Level.FINER, "Search response for channel " + channel.getName () + " received.");
+      connectChannel( channel, sid, type, count, minorRevision, serverAddress, true );
+   }
 
+   /**
+    * Creates a channel on the server at the given address, opening a circuit to
+    * the server if necessary.
+    *
+    * @param channel       the channel.
+    * @param sid           server channel ID.
+    * @param type          channel native type code.
+    * @param count         channel element count.
+    * @param minorRevision server minor CA revision.
+    * @param serverAddress server address.
+    * @param searched      true if the server has answered a search for the channel,
+    *                      false if the channel is reconnected to its previous server.
+    */
+   void connectChannel( ChannelImpl<?> channel, int sid, short type, int count, short minorRevision, InetSocketAddress serverAddress, boolean searched )
+   {
       // check for multiple responses
       //noinspection SynchronizationOnLocalVariableOrMethodParameter
       synchronized( channel )
       {
-         TcpTransport transport = channel.getTcpTransport();
+         if ( channel.getConnectionState() == ConnectionState.CLOSED )
+         {
+            return;
+         }
+
+         CircuitTransport transport = channel.getTransport();
          if ( transport != null )
          {
             // multiple defined PV or reconnect request (same server address)
@@ -406,10 +676,13 @@ public class ContextImpl implements AutoCloseable
             }
          }
 
-         // do not search anymore (also unregisters)
-         channelSearchManager.searchResponse (channel);
+         if ( searched )
+         {
+            // do not search anymore (also unregisters)
+            channelSearchManager.searchResponse (channel);
+         }
 
-         transport = getTcpTransport(channel, serverAddress, minorRevision, channel.getPriority ());
+         transport = getTransport(channel, serverAddress, minorRevision, channel.getPriority (), getCircuitIndex (channel));
          if ( transport == null )
          {
             channel.createChannelFailed ();
@@ -421,6 +694,57 @@ public class ContextImpl implements AutoCloseable
       }
    }
 
+   /**
+    * Returns the index of the circuit over which the channel communicates with its
+    * server, among the circuits of the channel's priority to the server.
+    *
+    * When several circuits are opened to each server, the channels of array types
+    * have the last circuit to themselves, so that their large transfers do not delay
+    * the updates of the other channels, which are spread over the remaining circuits.
+    *
+    * @param channel the channel.
+    * @return the index.
+    */
+   int getCircuitIndex( ChannelImpl<?> channel )
+   {
+      if ( circuitsPerServer == 1 )
+      {
+         return 0;
+      }
+      if ( channel.getChannelType().isArray() )
+      {
+         return circuitsPerServer - 1;
+      }
+      return Math.floorMod( channel.getName().hashCode(), circuitsPerServer - 1 );
+   }
+
+   /**
+    * Parks a channel whose circuit has been lost until the circuit is reopened,
+    * if the channels of lost circuits are reconnected directly to their servers.
+    *
+    * @param channel the channel.
+    * @param transport the circuit which has been lost.
+    * @return true if the channel has been parked, false if it must be searched for.
+    */
+   boolean parkChannel( ChannelImpl<?> channel, CircuitTransport transport )
+   {
+      return serverReconnector != null && !closed.get() && serverReconnector.park( channel, transport );
+   }
+
+   /**
+    * Removes a channel which is being closed from the channels waiting for their
+    * circuit to be reopened.
+    *
+    * @param channel the channel.
+    */
+   void unparkChannel( ChannelImpl<?> channel )
+   {
+      if ( serverReconnector != null )
+      {
+         serverReconnector.unpark( channel );
+      }
+   }
+
    void repeaterConfirm( InetSocketAddress responseFrom )
    {
       logger.fine( "Repeater registration confirmed from: " + responseFrom );
@@ -436,7 +760,8 @@ public class ContextImpl implements AutoCloseable
    {
       if ( event.allowEnqueue () )
       {
-         executorService.execute( event );
+         pendingEvents.incrementAndGet();
+         eventDispatcher.execute( new StatefullEventTask( event ) );
          return true;
       }
       else
@@ -445,13 +770,17 @@ public class ContextImpl implements AutoCloseable
       }
    }
 
-   void beaconAnomalyNotify()
+   void beaconAnomalyNotify( InetSocketAddress responseFrom )
    {
-      logger.fine( "A beacon anomaly has been detected." );
+      logger.fine( "A beacon anomaly has been detected from: " + responseFrom );
       if ( channelSearchManager != null )
       {
          channelSearchManager.beaconAnomalyNotify();
       }
+      if ( serverReconnector != null )
+      {
+         serverReconnector.serverReappeared( responseFrom );
+      }
    }
 
    /**
@@ -481,19 +810,7 @@ public class ContextImpl implements AutoCloseable
     */
    int generateCID()
    {
-      synchronized ( channelsByCID )
-      {
-         // search first free (theoretically possible loop of death)
-         //noinspection StatementWithEmptyBody
-         while ( channelsByCID.containsKey( ++lastCID ) )
-         {
-            // Intentionally left blank
-         }
-
-         // reserve CID
-         channelsByCID.put( lastCID, null );
-         return lastCID;
-      }
+      return channelsByCID.reserve();
    }
 
    /**
@@ -503,10 +820,7 @@ public class ContextImpl implements AutoCloseable
     */
    void registerChannel( ChannelImpl<?> channel )
    {
-      synchronized ( channelsByCID )
-      {
-         channelsByCID.put (channel.getCID (), channel);
-      }
+      channelsByCID.put( channel.getCID(), channel );
    }
 
    /**
@@ -516,10 +830,7 @@ public class ContextImpl implements AutoCloseable
     */
    void unregisterChannel( ChannelImpl<?> channel )
    {
-      synchronized ( channelsByCID )
-      {
-         channelsByCID.remove (channel.getCID ());
-      }
+      channelsByCID.remove( channel.getCID() );
    }
 
 /*- Package-level getter methods ---------------------------------------------*/
@@ -564,23 +875,90 @@ public class ContextImpl implements AutoCloseable
       return protocolConfiguration.getMaxArrayBytes();
    }
 
-   ScheduledExecutorService getScheduledExecutor()
+   Reactor getReactor()
    {
-      return timer;
+      return reactor;
    }
 
-   Reactor getReactor()
+   /**
+    * Returns the registry of the counters, gauges and histograms which describe the
+    * activity of this context.
+    *
+    * @return the registry.
+    */
+   public MetricsRegistry getMetricsRegistry()
    {
-      return reactor;
+      return metricsRegistry;
+   }
+
+   LongAdder[] getMessageCounters()
+   {
+      return messageCounters;
    }
 
-   MonitorNotificationServiceFactory getMonitorNotificationServiceFactory()
+   /**
+    * Returns the factory used for creating MonitorNotificationService instances. This
+    * provides access to the QoS metrics and latency statistics of the notification engine.
+    *
+    * @return the factory.
+    */
+   public MonitorNotificationServiceFactory getMonitorNotificationServiceFactory()
    {
       return monitorNotificationServiceFactory;
    }
 
 /*- Private methods ----------------------------------------------------------*/
 
+   private Collection<TrafficCounters> getChannelTrafficCounters()
+   {
+      final List<TrafficCounters> counters = new ArrayList<>();
+      for ( ChannelImpl<?> channel : channelsByCID.values() )
+      {
+         final TrafficCounters channelCounters = channel.getTrafficCounters();
+         if ( channelCounters != null )
+         {
+            counters.add( channelCounters );
+         }
+      }
+      return counters;
+   }
+
+   private void registerMetrics()
+   {
+      metricsRegistry.gauge( "ca_channels", "Channels created in the context.", channelsByCID::size );
+      metricsRegistry.gauge( "ca_pending_ioids", "Requests (gets, puts and monitors) awaiting a response from a server.", responseRequests::size );
+      metricsRegistry.counter( "ca_requests_expired_total", "Gets and puts expired because their response did not arrive in time.", requestExpiryWheel::getExpiredCount );
+      metricsRegistry.gauge( "ca_channel_events_pending", "Connection and access rights events awaiting dispatch to the listeners.", pendingEvents::get );
+      metricsRegistry.counter( "ca_channel_events_dispatched_total", "Connection and access rights events dispatched to the listeners.", dispatchedEvents::sum );
+      if ( serverReconnector != null )
+      {
+         metricsRegistry.gauge( "ca_parked_channels", "Channels waiting for their lost circuit to be reopened.", serverReconnector::getParkedChannelCount );
+      }
+      metricsRegistry.gauge( "ca_circuits", "Open CA circuits (TCP connections to servers).", transportRegistry::numberOfActiveTransports );
+      if ( wireCapture != null )
+      {
+         metricsRegistry.counter( "ca_capture_frames_total", "Frames sent or received written to the capture files.", wireCapture::getCapturedCount );
+         metricsRegistry.counter( "ca_capture_frames_dropped_total", "Frames sent or received dropped from the capture because the disk could not keep up.", wireCapture::getDroppedCount );
+      }
+      if ( circuitHealthMonitor != null )
+      {
+         metricsRegistry.gauge( "ca_circuits_unresponsive", "Open CA circuits whose server has not replied to an echo request in time.", circuitHealthMonitor::getUnresponsiveCircuitCount );
+      }
+      metricsRegistry.counter( "ca_reactor_dispatched_events_total", "IO selection events dispatched by the reactor.", reactor::getDispatchedEventCount );
+      metricsRegistry.gauge( "ca_monitor_notification_services", "Monitor notification service instances created by the notification engine.", monitorNotificationServiceFactory::getServiceCount );
+      metricsRegistry.gauge( "ca_monitor_notifications_pending", "Monitor notifications published but not yet delivered to the consumer.", monitorNotificationServiceFactory::getPendingNotificationCount );
+
+      final MonitorLatencyStatistics latencyStatistics = monitorNotificationServiceFactory.getLatencyStatistics();
+      if ( latencyStatistics.isEnabled() )
+      {
+         for ( MonitorLatencyStatistics.Stage stage : MonitorLatencyStatistics.Stage.values() )
+         {
+            metricsRegistry.histogram( "ca_monitor_latency_seconds", "Latency of the monitor notifications, by stage.",
+                                       latencyStatistics.getHistogram( stage ), "stage", stage.name().toLowerCase( Locale.ROOT ) );
+         }
+      }
+   }
+
    private UdpBroadcastTransport getUdpBroadcastTransport()
    {
       final String addressList = this.protocolConfiguration.getAddressList();
@@ -675,48 +1053,75 @@ public class ContextImpl implements AutoCloseable
     */
    private void destroyAllChannels()
    {
-      ChannelImpl<?>[] channels;
-      synchronized ( channelsByCID )
+      // all the circuits close with their last channel, and the servers then destroy
+      // the channels of the circuits themselves
+      closeChannels( channelsByCID.removeAll(), false );
+   }
+
+   /**
+    * Closes channels circuit by circuit: the flushes of the channels of a circuit are
+    * deferred to the end, and the circuits are processed in parallel when there are
+    * enough channels to make it worthwhile.
+    *
+    * @param channels the channels.
+    * @param clearOnServer whether to ask the servers to destroy the channels.
+    */
+   private void closeChannels( Collection<ChannelImpl<?>> channels, boolean clearOnServer )
+   {
+      final Map<CircuitTransport, List<ChannelImpl<?>>> channelsByCircuit = new HashMap<>();
+      for ( ChannelImpl<?> channel : channels )
       {
-         channels = (ChannelImpl<?>[]) new ChannelImpl[ channelsByCID.size () ];
-         channelsByCID.toArray (channels);
-         channelsByCID.clear ();
+         // the channels which are not connected are grouped under null
+         channelsByCircuit.computeIfAbsent( channel.getTransport(), transport -> new ArrayList<>() ).add( channel );
       }
 
-      for ( ChannelImpl<?> channel : channels )
+      final int threads = Math.min( channelsByCircuit.size(), Runtime.getRuntime().availableProcessors() );
+      if ( threads < 2 || channels.size() < PARALLEL_CLOSE_MIN_CHANNELS )
       {
-         try
-         {
-            if ( channel != null )
-            {
-               channel.close();
-            }
-         }
-         catch ( Throwable th )
+         channelsByCircuit.values().forEach( circuitChannels -> closeCircuitChannels( circuitChannels, clearOnServer ) );
+         return;
+      }
+
+      final ExecutorService executor = Executors.newFixedThreadPool( threads, runnable -> {
+         final Thread thread = new Thread( runnable, "ChannelCloser-" + contextName );
+         thread.setDaemon( true );
+         return thread;
+      } );
+      channelsByCircuit.values().forEach( circuitChannels -> executor.execute( () -> closeCircuitChannels( circuitChannels, clearOnServer ) ) );
+      executor.shutdown();
+      try
+      {
+         if ( !executor.awaitTermination( LOCK_TIMEOUT, TimeUnit.MILLISECONDS ) )
          {
-            logger.log(Level.SEVERE, "Unexpected exception caught while closing a channel", th);
+            logger.warning( "Timed out while closing the channels." );
          }
       }
+      catch ( InterruptedException ex )
+      {
+         Thread.currentThread().interrupt();
+      }
    }
 
-   /**
-    * Generate IOID.
-    *
-    * @return IOID.
-    */
-   private int generateIOID()
+   private static void closeCircuitChannels( List<ChannelImpl<?>> channels, boolean clearOnServer )
    {
-      synchronized ( responseRequests )
+      FlushBatch.begin();
+      try
       {
-         // search first free (theoretically possible loop of death)
-         //noinspection StatementWithEmptyBody
-         while ( responseRequests.containsKey (++lastIOID) )
+         for ( ChannelImpl<?> channel : channels )
          {
-            // Intentionally left blank
+            try
+            {
+               channel.close( clearOnServer );
+            }
+            catch ( Throwable th )
+            {
+               logger.log( Level.SEVERE, "Unexpected exception caught while closing a channel", th );
+            }
          }
-         // reserve IOID
-         responseRequests.put (lastIOID, null);
-         return lastIOID;
+      }
+      finally
+      {
+         FlushBatch.end();
       }
    }
 
@@ -724,14 +1129,16 @@ public class ContextImpl implements AutoCloseable
     * Get, or create if necessary, transport of given server address.
     *
     * @param priority process priority.
+    * @param circuitIndex index of the circuit among the circuits of the same priority to the server.
     * @return transport for given address
     */
-   private TcpTransport getTcpTransport( TransportClient client, InetSocketAddress address, short minorRevision, int priority )
+   CircuitTransport getTransport( TransportClient client, InetSocketAddress address, short minorRevision, int priority, int circuitIndex )
    {
       SocketChannel socket = null;
+      final int circuitKey = TransportRegistry.getCircuitKey( priority, circuitIndex );
 
       // first try to check cache w/o named lock...
-      TcpTransport transport = (TcpTransport) transportRegistry.get(address, priority );
+      CircuitTransport transport = (CircuitTransport) transportRegistry.get(address, circuitKey );
       if ( transport != null )
       {
          logger.log ( Level.FINER,"Reusing existing connection to CA server: " + address);
@@ -747,7 +1154,7 @@ public class ContextImpl implements AutoCloseable
          try
          {
             // ... transport created during waiting in lock
-            transport = (TcpTransport) transportRegistry.get (address, priority);
+            transport = (CircuitTransport) transportRegistry.get (address, circuitKey);
             if ( transport != null )
             {
                logger.log ( Level.FINER,"Reusing existing connection to CA server: " + address);
@@ -771,9 +1178,10 @@ public class ContextImpl implements AutoCloseable
             socket.socket().setKeepAlive( true );
 
             // create transport
-            transport = new TcpTransport(this, client, ResponseHandlers::handleResponse, socket, minorRevision, priority );
+            final TcpTransport tcpTransport = new TcpTransport(this, client, ResponseHandlers::handleResponse, socket, minorRevision, priority, circuitIndex );
+            transport = tcpTransport;
 
-            ReactorHandler handler = transport;
+            ReactorHandler handler = tcpTransport;
             if ( leaderFollowersThreadPool != null )
             {
                handler = new LeaderFollowersHandler (reactor, handler, leaderFollowersThreadPool);
@@ -866,6 +1274,39 @@ public class ContextImpl implements AutoCloseable
 
 /*- Nested classes -----------------------------------------------------------*/
 
+   /**
+    * StatefullEventTask
+    */
+   private class StatefullEventTask implements StripedRunnable
+   {
+      private final StatefullEventSource event;
+
+      StatefullEventTask( StatefullEventSource event )
+      {
+         this.event = event;
+      }
+
+      @Override
+      public Object getStripe()
+      {
+         return event.getStripe();
+      }
+
+      @Override
+      public void run()
+      {
+         pendingEvents.decrementAndGet();
+         try
+         {
+            event.run();
+         }
+         finally
+         {
+            dispatchedEvents.increment();
+         }
+      }
+   }
+
    /**
     * RepeaterRegistrationTask
     */
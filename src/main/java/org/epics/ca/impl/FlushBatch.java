@@ -0,0 +1,163 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.NotThreadSafe;
+import org.epics.ca.util.logging.LibraryLogManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Defers the flushes of the requests which are sent in bulk by the current
+ * thread, so that each transport is flushed once, at the end of the batch.
+ *
+ * When a circuit reconnects, each of its channels sends a create channel request;
+ * the create channel responses then arrive together and each of them resubscribes
+ * the monitors of its channel. Flushing after every one of those messages would
+ * send thousands of tiny frames at the moment the server comes back, whereas
+ * inside a batch they leave in as few frames as the send buffers allow.
+ *
+ * Only the flushes requested through {@link #flush(Transport)} are deferred: the
+ * create channel, resubscription and clear channel requests. Every other flush,
+ * such as those of flow control and those of the gets and puts of user code which
+ * runs during a batch, is done at once. The batches are opened explicitly: by the
+ * reconnection of the channels of a circuit, by the closing of channels in bulk,
+ * and by the threads which read from the network over each run of consecutive
+ * create channel responses (see {@link #followResponses(boolean, int)}). Batches
+ * may be nested, in which case the flushes are done at the end of the outermost one.
+ */
+@NotThreadSafe
+final class FlushBatch
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final Logger logger = LibraryLogManager.getLogger( FlushBatch.class );
+
+   private static final ThreadLocal<FlushBatch> batches = ThreadLocal.withInitial( FlushBatch::new );
+
+   // reused by every batch of the thread; a batch rarely involves more than a few transports
+   private final List<Transport> deferred = new ArrayList<>();
+   private int depth;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   private FlushBatch()
+   {
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   /**
+    * Opens a batch on the current thread. Every call must be matched by a call to
+    * {@link #end()}, in a finally block.
+    */
+   static void begin()
+   {
+      batches.get().depth++;
+   }
+
+   /**
+    * Closes the batch opened by the matching call to {@link #begin()} and, if it is
+    * the outermost batch, flushes the transports whose flush was deferred.
+    */
+   static void end()
+   {
+      final FlushBatch batch = batches.get();
+      if ( --batch.depth > 0 )
+      {
+         return;
+      }
+
+      // the batch is closed first, so that the transports really flush this time
+      for ( int i = 0; i < batch.deferred.size(); i++ )
+      {
+         try
+         {
+            batch.deferred.get( i ).flush();
+         }
+         catch ( Throwable th )
+         {
+            logger.log( Level.WARNING, "Unexpected exception caught while flushing a transport at the end of a batch.", th );
+         }
+      }
+      batch.deferred.clear();
+   }
+
+   /**
+    * Tests whether the current thread is processing a batch.
+    *
+    * @return true if a batch is open.
+    */
+   static boolean isActive()
+   {
+      return batches.get().depth > 0;
+   }
+
+   /**
+    * Flushes a transport after a request which may be sent in bulk: at the end of
+    * the current thread's batch if there is one, otherwise at once.
+    *
+    * @param transport the transport.
+    */
+   static void flush( Transport transport )
+   {
+      final FlushBatch batch = batches.get();
+      if ( batch.depth == 0 )
+      {
+         transport.flush();
+         return;
+      }
+
+      for ( int i = 0; i < batch.deferred.size(); i++ )
+      {
+         if ( batch.deferred.get( i ) == transport )
+         {
+            return;
+         }
+      }
+      batch.deferred.add( transport );
+   }
+
+   /**
+    * Keeps a batch open over each run of consecutive create channel responses
+    * processed by the current thread, so that the subscriptions which they resend
+    * leave together. The access rights response which a server sends before each
+    * create channel response, and the create channel failures, continue a run.
+    * The threads which read from the network call this before each response which
+    * they process, and with a command of -1 once they have processed what they
+    * received, so that no batch stays open over anything else.
+    *
+    * @param open whether the current thread has a batch open for a run.
+    * @param command the command of the next response, or -1.
+    * @return whether the current thread has a batch open for a run now.
+    */
+   static boolean followResponses( boolean open, int command )
+   {
+      final boolean connectionResponse = command == ResponseHandlers.CREATE_CHANNEL_RESPONSE || command == ResponseHandlers.ACCESS_RIGHTS_RESPONSE || command == ResponseHandlers.CREATE_CHANNEL_FAILED_RESPONSE;
+      if ( connectionResponse && !open )
+      {
+         begin();
+      }
+      else if ( !connectionResponse && open )
+      {
+         end();
+      }
+      return connectionResponse;
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
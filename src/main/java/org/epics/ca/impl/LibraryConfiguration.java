@@ -26,10 +26,24 @@ public class LibraryConfiguration
    public enum PropertyNames
    {
       CA_MONITOR_NOTIFIER_IMPL,
+      CA_MONITOR_LATENCY_HISTOGRAMS,
+      CA_MONITOR_LATENCY_IOC_TIMESTAMP,
+      CA_EVENT_DISPATCHER_THREADS,
+      CA_KNOWN_SERVER_RECONNECT_TIMEOUT,
+      CA_CIRCUITS_PER_SERVER,
+      CA_REQUEST_TIMEOUT,
+      CA_METRICS_JMX_ENABLE,
+      CA_METRICS_PROMETHEUS_PORT,
+      CA_METRICS_PV_TRAFFIC_ENABLE,
+      CA_CAPTURE_FILE,
+      CA_CAPTURE_FILE_SIZE,
+      CA_CAPTURE_FILE_COUNT,
       CA_REPEATER_DISABLE,
       CA_REPEATER_OUTPUT_CAPTURE,
       CA_REPEATER_LOG_LEVEL,
-      CA_LIBRARY_LOG_LEVEL
+      CA_LIBRARY_LOG_LEVEL,
+      CA_LIBRARY_TRACE_ENABLE,
+      CA_LIBRARY_TRACE_EVENTS_PER_THREAD
    }
 
    /**
@@ -37,6 +51,66 @@ public class LibraryConfiguration
     */
    public static final String CA_MONITOR_NOTIFIER_IMPL_DEFAULT = "BlockingQueueMultipleWorkerMonitorNotificationServiceImpl,16";
 
+   /**
+    * Default state of enablement of the monitor notification latency histograms.
+    */
+   public static final boolean CA_MONITOR_LATENCY_HISTOGRAMS_DEFAULT = false;
+
+   /**
+    * Default state of enablement of the comparison of the monitor notification time with the IOC timestamp.
+    */
+   public static final boolean CA_MONITOR_LATENCY_IOC_TIMESTAMP_DEFAULT = false;
+
+   /**
+    * Default number of threads dispatching the connection and access rights events of each context.
+    */
+   public static final int CA_EVENT_DISPATCHER_THREADS_DEFAULT = Runtime.getRuntime().availableProcessors();
+
+   /**
+    * Default time in seconds for which the channels of a lost circuit wait for their server to come back (0 = searched at once).
+    */
+   public static final float CA_KNOWN_SERVER_RECONNECT_TIMEOUT_DEFAULT = 0;
+
+   /**
+    * Default number of circuits of each priority opened to each server.
+    */
+   public static final int CA_CIRCUITS_PER_SERVER_DEFAULT = 1;
+
+   /**
+    * Default time in seconds after which a get or put awaiting its response expires (0 = never).
+    */
+   public static final float CA_REQUEST_TIMEOUT_DEFAULT = 0;
+
+   /**
+    * Default state of enablement of the publication of the context metrics as JMX MBeans.
+    */
+   public static final boolean CA_METRICS_JMX_ENABLE_DEFAULT = false;
+
+   /**
+    * Default port of the local Prometheus metrics endpoint (0 = endpoint disabled).
+    */
+   public static final int CA_METRICS_PROMETHEUS_PORT_DEFAULT = 0;
+
+   /**
+    * Default state of enablement of the per-PV traffic counters and top-talker rankings.
+    */
+   public static final boolean CA_METRICS_PV_TRAFFIC_ENABLE_DEFAULT = false;
+
+   /**
+    * Default name of the file to which the CA traffic is captured (empty = capture disabled).
+    */
+   public static final String CA_CAPTURE_FILE_DEFAULT = "";
+
+   /**
+    * Default size in megabytes at which the next capture file is started.
+    */
+   public static final int CA_CAPTURE_FILE_SIZE_DEFAULT = 100;
+
+   /**
+    * Default number of capture files in the rotating set.
+    */
+   public static final int CA_CAPTURE_FILE_COUNT_DEFAULT = 5;
+
    /**
     * Default state of enablement of the CA Repeater spawned by the CA library.
     */
@@ -57,6 +131,16 @@ public class LibraryConfiguration
     */
    public static final Level CA_LIBRARY_LOG_LEVEL_DEFAULT = Level.INFO;
 
+   /**
+    * Default state of enablement of the CA library's binary trace recorder.
+    */
+   public static final boolean CA_LIBRARY_TRACE_ENABLE_DEFAULT = false;
+
+   /**
+    * Default number of events retained in each thread's trace ring.
+    */
+   public static final int CA_LIBRARY_TRACE_EVENTS_PER_THREAD_DEFAULT = 4096;
+
 
 /*- Private attributes -------------------------------------------------------*/
 
@@ -96,6 +180,153 @@ public class LibraryConfiguration
       return ConfigurationReader.readStringProperty( PropertyNames.CA_MONITOR_NOTIFIER_IMPL.toString(), properties, CA_MONITOR_NOTIFIER_IMPL_DEFAULT );
    }
 
+   /**
+    * Indicates whether the CA library should record histograms of the latency of each monitor
+    * notification as it passes from the network to the end of the call to the consumer.
+    *
+    * @return the configured value.
+    */
+   public boolean isMonitorLatencyHistogramsEnabled()
+   {
+      return ConfigurationReader.readBooleanProperty( PropertyNames.CA_MONITOR_LATENCY_HISTOGRAMS.toString(), properties, CA_MONITOR_LATENCY_HISTOGRAMS_DEFAULT );
+   }
+
+   /**
+    * Indicates whether, when the monitor latency histograms are enabled, the CA library should additionally
+    * record the latency relative to the IOC's timestamp for monitors whose values are timestamped. The result
+    * is only meaningful where the clocks of the IOC and the local host are synchronised.
+    *
+    * @return the configured value.
+    */
+   public boolean isMonitorLatencyIocTimestampEnabled()
+   {
+      return ConfigurationReader.readBooleanProperty( PropertyNames.CA_MONITOR_LATENCY_IOC_TIMESTAMP.toString(), properties, CA_MONITOR_LATENCY_IOC_TIMESTAMP_DEFAULT );
+   }
+
+   /**
+    * Returns the number of threads with which each CA library context dispatches the connection
+    * and access rights events of its channels to their listeners. The events of each channel are
+    * always dispatched in order; a value of one dispatches all events in order.
+    *
+    * @return the configured value.
+    */
+   public int getEventDispatcherThreads()
+   {
+      return Math.max( 1, ConfigurationReader.readIntegerProperty( PropertyNames.CA_EVENT_DISPATCHER_THREADS.toString(), properties, CA_EVENT_DISPATCHER_THREADS_DEFAULT ) );
+   }
+
+   /**
+    * Returns the time in seconds for which the channels of a lost circuit wait for their server
+    * to come back, so that they are re-created directly on the server when it restarts. Channels
+    * which the server no longer hosts, and all the channels of a server which has not come back
+    * within this time, are searched for. A value of zero searches for the channels at once.
+    *
+    * @return the configured value.
+    */
+   public float getKnownServerReconnectTimeout()
+   {
+      return Math.max( 0, ConfigurationReader.readFloatProperty( PropertyNames.CA_KNOWN_SERVER_RECONNECT_TIMEOUT.toString(), properties, CA_KNOWN_SERVER_RECONNECT_TIMEOUT_DEFAULT ) );
+   }
+
+   /**
+    * Returns the number of circuits (TCP connections) of each priority which each CA library
+    * context opens to each server. When there are several, the channels of array types share
+    * the last circuit and the other channels are spread over the remaining ones by name, so that
+    * large transfers do not hold up the updates of small channels and the circuits are decoded
+    * in parallel.
+    *
+    * @return the configured value.
+    */
+   public int getCircuitsPerServer()
+   {
+      return Math.max( 1, ConfigurationReader.readIntegerProperty( PropertyNames.CA_CIRCUITS_PER_SERVER.toString(), properties, CA_CIRCUITS_PER_SERVER_DEFAULT ) );
+   }
+
+   /**
+    * Returns the time in seconds after which a get or put requested without an explicit timeout
+    * expires if the server has not responded. An expired request completes exceptionally with
+    * the TIMEOUT status and releases its IOID. A value of zero means that such requests never
+    * expire, which suits puts whose completion takes long, for example that of a motor move.
+    *
+    * @return the configured value.
+    */
+   public float getRequestTimeout()
+   {
+      return Math.max( 0, ConfigurationReader.readFloatProperty( PropertyNames.CA_REQUEST_TIMEOUT.toString(), properties, CA_REQUEST_TIMEOUT_DEFAULT ) );
+   }
+
+   /**
+    * Indicates whether each CA library context should publish its metrics (traffic counters,
+    * send lock contention, search activity, pending requests, notification queue depths etc)
+    * as the attributes of an MBean registered in the platform MBean server.
+    *
+    * @return the configured value.
+    */
+   public boolean isMetricsJmxEnabled()
+   {
+      return ConfigurationReader.readBooleanProperty( PropertyNames.CA_METRICS_JMX_ENABLE.toString(), properties, CA_METRICS_JMX_ENABLE_DEFAULT );
+   }
+
+   /**
+    * Returns the local TCP port on which the CA library should serve the metrics of all
+    * contexts in the Prometheus text format. The endpoint is bound to the loopback interface.
+    *
+    * @return the configured value; zero means that the endpoint is disabled.
+    */
+   public int getMetricsPrometheusPort()
+   {
+      return ConfigurationReader.readIntegerProperty( PropertyNames.CA_METRICS_PROMETHEUS_PORT.toString(), properties, CA_METRICS_PROMETHEUS_PORT_DEFAULT );
+   }
+
+   /**
+    * Indicates whether each CA library context should count the updates, bytes and buffer
+    * overruns received by each channel and each subscription, and rank the PVs which receive
+    * the most updates and the most bytes over the last minute. The rankings are available
+    * from the context and are exported with its metrics. When disabled, the cost on the
+    * receive path is a single null check per update.
+    *
+    * @return the configured value.
+    */
+   public boolean isMetricsPvTrafficEnabled()
+   {
+      return ConfigurationReader.readBooleanProperty( PropertyNames.CA_METRICS_PV_TRAFFIC_ENABLE.toString(), properties, CA_METRICS_PV_TRAFFIC_ENABLE_DEFAULT );
+   }
+
+   /**
+    * Returns the name of the file to which each CA library context should capture the CA
+    * frames it sends and receives over TCP and UDP, in the pcap format. The files of each
+    * context are named after it with the context name and the index of the file inserted
+    * before the extension, and are rotated according to the configured size and count.
+    *
+    * @return the configured value; empty means that the capture is disabled.
+    */
+   public String getCaptureFile()
+   {
+      return ConfigurationReader.readStringProperty( PropertyNames.CA_CAPTURE_FILE.toString(), properties, CA_CAPTURE_FILE_DEFAULT ).trim();
+   }
+
+   /**
+    * Returns the size in megabytes at which the next file of the rotating set of capture
+    * files is started.
+    *
+    * @return the configured value.
+    */
+   public int getCaptureFileSize()
+   {
+      return Math.max( 1, ConfigurationReader.readIntegerProperty( PropertyNames.CA_CAPTURE_FILE_SIZE.toString(), properties, CA_CAPTURE_FILE_SIZE_DEFAULT ) );
+   }
+
+   /**
+    * Returns the number of files in the rotating set of capture files; when the last is full
+    * the first is overwritten.
+    *
+    * @return the configured value.
+    */
+   public int getCaptureFileCount()
+   {
+      return Math.max( 1, ConfigurationReader.readIntegerProperty( PropertyNames.CA_CAPTURE_FILE_COUNT.toString(), properties, CA_CAPTURE_FILE_COUNT_DEFAULT ) );
+   }
+
    /**
     * Indicates whether the CA library should start a CA Repeater instance when the first CA library context
     * is created and stop it when the last CA library context is destroyed.
@@ -137,6 +368,28 @@ public class LibraryConfiguration
       return ConfigurationReader.readDebugLevelProperty(PropertyNames.CA_LIBRARY_LOG_LEVEL.toString(), properties, CA_LIBRARY_LOG_LEVEL_DEFAULT);
    }
 
+   /**
+    * Indicates whether the CA library should initially record binary trace events from its hot
+    * paths. Tracing can also be switched on and off at runtime through the LibraryLogManager.
+    *
+    * @return the configured value.
+    */
+   public boolean isTraceEnabled()
+   {
+      return ConfigurationReader.readBooleanProperty( PropertyNames.CA_LIBRARY_TRACE_ENABLE.toString(), properties, CA_LIBRARY_TRACE_ENABLE_DEFAULT );
+   }
+
+   /**
+    * Returns the number of trace events to be retained in each thread's trace ring. The value
+    * is rounded down to a power of two.
+    *
+    * @return the configured value.
+    */
+   public int getTraceEventsPerThread()
+   {
+      return ConfigurationReader.readIntegerProperty( PropertyNames.CA_LIBRARY_TRACE_EVENTS_PER_THREAD.toString(), properties, CA_LIBRARY_TRACE_EVENTS_PER_THREAD_DEFAULT );
+   }
+
 /*- Private methods ----------------------------------------------------------*/
 /*- Nested Classes -----------------------------------------------------------*/
 
@@ -184,7 +184,8 @@ public final class Messages
    }
 
    /**
-    * Generate echo message.
+    * Generate echo message: an echo request, to which servers from v4.3 reply, or
+    * for older servers a version message, which is only a keep-alive.
     *
     * @param transport the transport.
     * @param buffer the buffer.
@@ -194,7 +195,7 @@ public final class Messages
       Validate.notNull( transport );
       Validate.notNull( buffer );
 
-      if ( transport.getMinorRevision () < 4 )
+      if ( transport.getMinorRevision () >= 3 )
       {
          buffer.putShort( (short) 23 );
          // conversion int -> unsigned short is done right
@@ -18,4 +18,18 @@ public interface NotifyResponseRequest extends ResponseRequest
     */
    void response( int status, short dataType, int dataCount, ByteBuffer dataPayloadBuffer );
 
+   /**
+    * Notification response, additionally supplying the time at which the response was received.
+    *
+    * @param status the CA status code.
+    * @param dataType the CA data type.
+    * @param dataCount the CA channel element count.
+    * @param dataPayloadBuffer the buffer with the payload
+    * @param receiveTimestamp the value of System.nanoTime() when the response was received.
+    */
+   default void response( int status, short dataType, int dataCount, ByteBuffer dataPayloadBuffer, long receiveTimestamp )
+   {
+      response( status, dataType, dataCount, dataPayloadBuffer );
+   }
+
 }
@@ -0,0 +1,292 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.lang3.Validate;
+import org.epics.ca.util.logging.LibraryLogManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Expires the requests awaiting a response from a server whose deadline has
+ * passed, using a hashed timing wheel.
+ *
+ * The wheel is a ring of buckets, each covering one tick. A request is added to
+ * the bucket of the tick of its deadline and removed from it when the request
+ * completes, both in constant time. The wheel is advanced periodically by the
+ * context's timer, which expires the requests left in the buckets of the ticks
+ * that have passed; a deadline further away than one turn of the wheel waits in
+ * its bucket for the turns in between. A request therefore expires up to one
+ * tick after its deadline.
+ *
+ * A request may be added to the bucket of a tick while the timer is expiring
+ * it. The timer publishes the tick before it visits the buckets, and the adder
+ * checks it after the insertion, so at least one of them sees the other. A
+ * request which the adder finds it might have missed is handed off to the timer,
+ * which expires it on its next advance.
+ */
+@ThreadSafe
+public final class RequestExpiryWheel implements Runnable
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final Logger logger = LibraryLogManager.getLogger( RequestExpiryWheel.class );
+
+   private final long tickNanos;
+   private final long startNanos;
+   private final Set<Timeout>[] buckets;
+   private final int mask;
+   private final LongAdder expiredCount = new LongAdder();
+
+   /**
+    * The requests handed off by the adders, whose deadline had passed when they
+    * were added to their bucket; expired on the next advance.
+    */
+   private final Queue<Timeout> overdue = new ConcurrentLinkedQueue<>();
+
+   /**
+    * The last tick whose bucket is being, or has been, expired; written only by
+    * the timer, before it visits the buckets.
+    */
+   private volatile long expiredTick;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Creates a wheel.
+    *
+    * @param tickDuration the duration of a tick, which is the resolution of the deadlines.
+    * @param unit the unit of the duration.
+    * @param ticksPerWheel the number of buckets, rounded up to a power of two.
+    */
+   RequestExpiryWheel( long tickDuration, TimeUnit unit, int ticksPerWheel )
+   {
+      this( tickDuration, unit, ticksPerWheel, System.nanoTime() );
+   }
+
+   /**
+    * Creates a wheel whose first tick starts at the specified time.
+    *
+    * @param tickDuration the duration of a tick, which is the resolution of the deadlines.
+    * @param unit the unit of the duration.
+    * @param ticksPerWheel the number of buckets, rounded up to a power of two.
+    * @param startNanos the value of System.nanoTime() at which the first tick starts.
+    */
+   @SuppressWarnings( "unchecked" )
+   RequestExpiryWheel( long tickDuration, TimeUnit unit, int ticksPerWheel, long startNanos )
+   {
+      Validate.isTrue( tickDuration > 0, "tick duration must be positive" );
+      Validate.isTrue( ticksPerWheel > 0 && ticksPerWheel <= 1 << 16, "ticks per wheel out of range" );
+
+      this.tickNanos = unit.toNanos( tickDuration );
+      this.startNanos = startNanos;
+
+      final int size = Integer.highestOneBit( ticksPerWheel - 1 ) << 1;
+      buckets = new Set[ Math.max( 1, size ) ];
+      for ( int i = 0; i < buckets.length; i++ )
+      {
+         buckets[ i ] = ConcurrentHashMap.newKeySet();
+      }
+      mask = buckets.length - 1;
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * Adds a request to the wheel.
+    *
+    * @param expiryAction the action which expires the request; it is run by the
+    *    timer of the context, unless the request is removed from the wheel first.
+    * @param timeout the time after which the request expires.
+    * @param unit the unit of the timeout.
+    * @return the handle with which to remove the request.
+    */
+   public Timeout add( Runnable expiryAction, long timeout, TimeUnit unit )
+   {
+      return add( expiryAction, timeout, unit, System.nanoTime() );
+   }
+
+   /**
+    * Removes a request from the wheel, typically because it has completed.
+    *
+    * @param handle the handle returned when it was added.
+    */
+   public void remove( Timeout handle )
+   {
+      if ( !buckets[ (int) handle.deadlineTick & mask ].remove( handle ) && handle.deadlineTick <= expiredTick )
+      {
+         overdue.remove( handle );
+      }
+   }
+
+   /**
+    * Expires the requests whose deadline has passed.
+    */
+   @Override
+   public void run()
+   {
+      try
+      {
+         advance( System.nanoTime() );
+      }
+      catch ( Throwable th )
+      {
+         logger.log( Level.WARNING, "Unexpected exception caught while expiring the requests.", th );
+      }
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+
+   /**
+    * Returns the duration of a tick, the period at which the wheel should be advanced.
+    *
+    * @return the duration in milliseconds.
+    */
+   long getTickMillis()
+   {
+      return TimeUnit.NANOSECONDS.toMillis( tickNanos );
+   }
+
+   /**
+    * Returns the number of requests in the wheel.
+    *
+    * @return the count.
+    */
+   int size()
+   {
+      int size = overdue.size();
+      for ( Set<Timeout> bucket : buckets )
+      {
+         size += bucket.size();
+      }
+      return size;
+   }
+
+   /**
+    * Returns the number of requests expired since the wheel was created.
+    *
+    * @return the count.
+    */
+   long getExpiredCount()
+   {
+      return expiredCount.sum();
+   }
+
+   /**
+    * Adds a request to the wheel at the specified time.
+    *
+    * @param expiryAction the action which expires the request.
+    * @param timeout the time after which the request expires.
+    * @param unit the unit of the timeout.
+    * @param now the value of System.nanoTime().
+    * @return the handle with which to remove the request.
+    */
+   Timeout add( Runnable expiryAction, long timeout, TimeUnit unit, long now )
+   {
+      Validate.notNull( expiryAction );
+      Validate.isTrue( timeout > 0, "timeout must be positive" );
+
+      // rounded up to a whole tick, and never into a tick which has already been expired
+      final long deadlineNanos = now - startNanos + unit.toNanos( timeout );
+      final long deadlineTick = Math.max( ( deadlineNanos + tickNanos - 1 ) / tickNanos, expiredTick + 1 );
+
+      final Timeout handle = new Timeout( expiryAction, deadlineTick );
+      final Set<Timeout> bucket = buckets[ (int) deadlineTick & mask ];
+      bucket.add( handle );
+
+      // the timer may have visited the bucket before the insertion
+      if ( deadlineTick <= expiredTick && bucket.remove( handle ) )
+      {
+         overdue.add( handle );
+      }
+      return handle;
+   }
+
+   /**
+    * Expires the requests of all the ticks which have ended by the specified time.
+    *
+    * @param now the value of System.nanoTime().
+    */
+   void advance( long now )
+   {
+      final long currentTick = ( now - startNanos ) / tickNanos;
+      final long lastTick = expiredTick;
+      if ( currentTick <= lastTick )
+      {
+         return;
+      }
+
+      // published first, so that a request added meanwhile to a bucket already
+      // visited is handed off by its adder
+      expiredTick = currentTick;
+
+      // after a stall of the timer every bucket is visited once
+      final long firstTick = Math.max( lastTick + 1, currentTick - mask );
+      final List<Timeout> expired = new ArrayList<>();
+      for ( Timeout handle = overdue.poll(); handle != null; handle = overdue.poll() )
+      {
+         expired.add( handle );
+      }
+      for ( long tick = firstTick; tick <= currentTick; tick++ )
+      {
+         final Set<Timeout> bucket = buckets[ (int) tick & mask ];
+         for ( Timeout handle : bucket )
+         {
+            if ( handle.deadlineTick <= currentTick && bucket.remove( handle ) )
+            {
+               expired.add( handle );
+            }
+         }
+      }
+      expiredCount.add( expired.size() );
+
+      for ( Timeout handle : expired )
+      {
+         try
+         {
+            handle.expiryAction.run();
+         }
+         catch ( Throwable th )
+         {
+            logger.log( Level.WARNING, "Unexpected exception caught while expiring a request.", th );
+         }
+      }
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+   /**
+    * The handle of a request added to the wheel.
+    */
+   public static final class Timeout
+   {
+      private final Runnable expiryAction;
+      private final long deadlineTick;
+
+      private Timeout( Runnable expiryAction, long deadlineTick )
+      {
+         this.expiryAction = expiryAction;
+         this.deadlineTick = deadlineTick;
+      }
+   }
+
+}
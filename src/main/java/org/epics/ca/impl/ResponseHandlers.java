@@ -4,13 +4,18 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.apache.commons.lang3.Validate;
 import org.epics.ca.Constants;
 import org.epics.ca.Status;
+import org.epics.ca.impl.metrics.MetricsRegistry;
 import org.epics.ca.util.logging.LibraryLogManager;
+import org.epics.ca.util.logging.TraceRecorder;
 import org.epics.ca.util.net.InetAddressUtil;
 
 public class ResponseHandlers
@@ -35,38 +40,76 @@ public class ResponseHandlers
 
    }
 
-   private static final ResponseHandler[] handlers =
+   /*
+    * The commands of the responses which are handled. Any other command up to the
+    * last of these is unexpected from a server.
+    */
+   static final int VERSION_RESPONSE = 0;
+   static final int EVENT_ADD_RESPONSE = 1;
+   static final int SEARCH_RESPONSE = 6;
+   static final int ERROR_RESPONSE = 11;
+   static final int CLEAR_CHANNEL_RESPONSE = 12;
+   static final int BEACON_RESPONSE = 13;
+   static final int READ_NOTIFY_RESPONSE = 15;
+   static final int REPEATER_CONFIRM_RESPONSE = 17;
+   static final int CREATE_CHANNEL_RESPONSE = 18;
+   static final int WRITE_NOTIFY_RESPONSE = 19;
+   static final int ACCESS_RIGHTS_RESPONSE = 22;
+   static final int ECHO_RESPONSE = 23;
+   static final int CREATE_CHANNEL_FAILED_RESPONSE = 26;
+   static final int SERVER_DISCONNECT_RESPONSE = 27;
+
+   private static final ResponseHandler[] handlers = createHandlers();
+
+   /**
+    * Names of the commands in the handler table, used to label the per-command message counters.
+    */
+   private static final String[] commandNames =
          {
-               ResponseHandlers::noopResponse,   /* 0 */
-               ResponseHandlers::notifyResponse,   /* 1 - monitor */
-               ResponseHandlers::badResponse,   /* 2 */
-               ResponseHandlers::badResponse,   /* 3 */
-               ResponseHandlers::badResponse,   /* 4 */
-               ResponseHandlers::badResponse,   /* 5 */
-               ResponseHandlers::searchResponse,   /* 6 */
-               ResponseHandlers::badResponse,   /* 7 */
-               ResponseHandlers::badResponse,   /* 8 */
-               ResponseHandlers::badResponse,   /* 9 */
-               ResponseHandlers::badResponse,   /* 10 */
-               ResponseHandlers::exceptionResponse,   /* 11 */
-               ResponseHandlers::noopResponse,   /* 12 - clear channel */
-               ResponseHandlers::beaconResponse,   /* 13 */
-               ResponseHandlers::badResponse,   /* 14 */
-               ResponseHandlers::notifyResponse,   /* 15 - read */
-               ResponseHandlers::badResponse,   /* 16 */
-               ResponseHandlers::repeaterConfirmResponse,   /* 17 */
-               ResponseHandlers::channelCreateResponse,   /* 18 */
-               ResponseHandlers::notifyResponse,   /* 19 - write */
-               ResponseHandlers::badResponse,   /* 20 */
-               ResponseHandlers::badResponse,   /* 21 */
-               ResponseHandlers::accessRightsResponse,   /* 22 */
-               ResponseHandlers::noopResponse,   /* 23 */
-               ResponseHandlers::badResponse,   /* 24 */
-               ResponseHandlers::badResponse,   /* 25 */
-               ResponseHandlers::badResponse,   /* 26 */
-               ResponseHandlers::channelDisconnectedResponse   /* 27 */
+               "version", "event_add", "event_cancel", "read", "write", "snapshot", "search", "build",
+               "events_off", "events_on", "read_sync", "error", "clear_channel", "rsrv_is_up", "not_found", "read_notify",
+               "read_build", "repeater_confirm", "create_chan", "write_notify", "client_name", "host_name",
+               "access_rights", "echo", "repeater_register", "signal", "create_ch_fail", "server_disconn"
          };
 
+   /**
+    * Creates a counter in the specified registry for each command in the handler table.
+    *
+    * @param metricsRegistry the registry.
+    * @return the counters, indexed by command.
+    */
+   static LongAdder[] createMessageCounters( MetricsRegistry metricsRegistry )
+   {
+      final LongAdder[] counters = new LongAdder[ handlers.length ];
+      for ( int command = 0; command < handlers.length; command++ )
+      {
+         counters[ command ] = metricsRegistry.counter( "ca_messages_received_total", "CA messages received over TCP and UDP, by command.",
+                                                        "command", commandNames[ command ] );
+      }
+      return counters;
+   }
+
+   private static ResponseHandler[] createHandlers()
+   {
+      final ResponseHandler[] table = new ResponseHandler[ SERVER_DISCONNECT_RESPONSE + 1 ];
+      Arrays.fill( table, (ResponseHandler) ResponseHandlers::badResponse );
+      table[ VERSION_RESPONSE ] = ResponseHandlers::noopResponse;
+      table[ EVENT_ADD_RESPONSE ] = ResponseHandlers::notifyResponse;
+      table[ SEARCH_RESPONSE ] = ResponseHandlers::searchResponse;
+      table[ ERROR_RESPONSE ] = ResponseHandlers::exceptionResponse;
+      table[ CLEAR_CHANNEL_RESPONSE ] = ResponseHandlers::noopResponse;
+      table[ BEACON_RESPONSE ] = ResponseHandlers::beaconResponse;
+      table[ READ_NOTIFY_RESPONSE ] = ResponseHandlers::notifyResponse;
+      table[ REPEATER_CONFIRM_RESPONSE ] = ResponseHandlers::repeaterConfirmResponse;
+      table[ CREATE_CHANNEL_RESPONSE ] = ResponseHandlers::channelCreateResponse;
+      table[ WRITE_NOTIFY_RESPONSE ] = ResponseHandlers::notifyResponse;
+      table[ ACCESS_RIGHTS_RESPONSE ] = ResponseHandlers::accessRightsResponse;
+      table[ ECHO_RESPONSE ] = ResponseHandlers::echoResponse;
+      table[ CREATE_CHANNEL_FAILED_RESPONSE ] = ResponseHandlers::channelCreateFailedResponse;
+      table[ SERVER_DISCONNECT_RESPONSE ] = ResponseHandlers::channelDisconnectedResponse;
+      return table;
+   }
+
    public static void handleResponse( InetSocketAddress responseFrom, Transport transport, Header header, ByteBuffer payloadBuffer )
    {
       if ( header.command < 0 || header.command >= handlers.length )
@@ -75,7 +118,9 @@ public class ResponseHandlers
          return;
       }
 
-      logger.log (Level.FINEST, "Message " + header.command + " received from " + responseFrom + ", payload size " + header.payloadSize + ".");
+      transport.getContext().getMessageCounters()[ header.command ].increment();
+
+      TraceRecorder.record (TraceRecorder.Event.RESPONSE, header.command, header.payloadSize);
 
       handlers[ header.command ].handleResponse (responseFrom, transport, header, payloadBuffer);
    }
@@ -134,6 +179,33 @@ public class ResponseHandlers
       }
    }
 
+   public static void echoResponse( InetSocketAddress responseFrom, Transport transport, Header header, ByteBuffer payloadBuffer )
+   {
+      Validate.notNull( responseFrom );
+      Validate.notNull( transport );
+      Validate.notNull( header );
+      Validate.notNull( payloadBuffer );
+
+      if ( transport instanceof CircuitTransport )
+      {
+         ( (CircuitTransport) transport ).getHealth().echoReceived( System.nanoTime() );
+      }
+   }
+
+   public static void channelCreateFailedResponse( InetSocketAddress responseFrom, Transport transport, Header header, ByteBuffer payloadBuffer )
+   {
+      Validate.notNull( responseFrom );
+      Validate.notNull( transport );
+      Validate.notNull( header );
+      Validate.notNull( payloadBuffer );
+
+      final ChannelImpl<?> channel = transport.getContext ().getChannel( header.parameter1 );
+      if ( channel != null )
+      {
+         channel.createChannelFailed();
+      }
+   }
+
    public static void searchResponse( InetSocketAddress responseFrom, Transport transport, Header header, ByteBuffer payloadBuffer )
    {
       Validate.notNull( responseFrom );
@@ -220,10 +292,11 @@ public class ResponseHandlers
 
    public static void notifyResponse( InetSocketAddress responseFrom, Transport transport, Header header, ByteBuffer payloadBuffer )
    {
-      Validate.notNull( responseFrom );
-      Validate.notNull( transport );
-      Validate.notNull( header );
-      Validate.notNull( payloadBuffer );
+      // unlike Validate.notNull these checks allocate no varargs array on each monitor update
+      Objects.requireNonNull( responseFrom );
+      Objects.requireNonNull( transport );
+      Objects.requireNonNull( header );
+      Objects.requireNonNull( payloadBuffer );
 
       NotifyResponseRequest nrr = (NotifyResponseRequest) transport.getContext().getResponseRequest( header.parameter2 );
       if ( nrr == null )
@@ -232,7 +305,7 @@ public class ResponseHandlers
       }
 
       final int status = ( transport.getMinorRevision () < 1 ) ? Status.NORMAL.getValue() : header.parameter1;
-      nrr.response ( status, header.dataType, header.dataCount, payloadBuffer );
+      nrr.response ( status, header.dataType, header.dataCount, payloadBuffer, transport.getReceiveTimestamp() );
    }
 
    public static void repeaterConfirmResponse( InetSocketAddress responseFrom, Transport transport, Header header, ByteBuffer payloadBuffer )
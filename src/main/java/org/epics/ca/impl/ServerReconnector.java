@@ -0,0 +1,352 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.lang3.Validate;
+import org.epics.ca.util.logging.LibraryLogManager;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Reconnects the channels of a lost circuit directly to the server which hosted
+ * them, instead of searching for them again.
+ *
+ * The channels are parked by server address and circuit when their circuit is
+ * lost. The client then tries to open a new circuit to the server: at once when
+ * the server's beacons show that it has come back, and otherwise with probes at
+ * increasing intervals. As soon as the circuit is open, all the channels parked
+ * for it are re-created on it in a single batch. A channel which the server no
+ * longer hosts is refused by the server and searched for again, as are all the
+ * channels of a server which has not come back before the timeout.
+ *
+ * The circuits are opened by a thread of the reconnector, since opening a TCP
+ * connection blocks.
+ */
+@ThreadSafe
+class ServerReconnector implements TransportClient, AutoCloseable
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final Logger logger = LibraryLogManager.getLogger( ServerReconnector.class );
+
+   /**
+    * Delay before the first probe of a server whose circuit has been lost.
+    */
+   private static final long INITIAL_PROBE_DELAY_MS = 250;
+
+   /**
+    * Limit of the delay between probes, which doubles after each failed probe.
+    */
+   private static final long MAX_PROBE_DELAY_MS = 8000;
+
+   private final ContextImpl context;
+   private final long timeoutNanos;
+   private final ScheduledExecutorService executor;
+
+   @GuardedBy( "this" )
+   private final Map<Server, ParkedChannels> parkedChannels = new HashMap<>();
+
+   @GuardedBy( "this" )
+   private boolean closed;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Creates a reconnector.
+    *
+    * @param context the context of the channels.
+    * @param timeout the time for which the channels of a server are parked before
+    *    they are searched for.
+    * @param unit the unit of the timeout.
+    */
+   ServerReconnector( ContextImpl context, long timeout, TimeUnit unit )
+   {
+      Validate.isTrue( timeout > 0, "timeout must be positive" );
+      this.context = Validate.notNull( context );
+      this.timeoutNanos = unit.toNanos( timeout );
+
+      final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor( 1, runnable -> {
+         final Thread thread = new Thread( runnable, ServerReconnector.class.getSimpleName() );
+         thread.setDaemon( true );
+         return thread;
+      } );
+      executor.setExecuteExistingDelayedTasksAfterShutdownPolicy( false );
+      executor.setRemoveOnCancelPolicy( true );
+      this.executor = executor;
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * Closes the reconnector, abandoning the channels which are parked.
+    */
+   @Override
+   public void close()
+   {
+      synchronized ( this )
+      {
+         closed = true;
+         parkedChannels.clear();
+      }
+      executor.shutdownNow();
+   }
+
+   @Override
+   public void transportClosed()
+   {
+      // the circuit was lost while the channels were being re-created on it,
+      // the channels which were re-created are notified by the circuit itself
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+
+   /**
+    * Parks a channel whose circuit has been lost until the circuit is reopened.
+    *
+    * @param channel the channel, which must allow creation.
+    * @param transport the circuit which has been lost.
+    * @return true if the channel has been parked, false if it must be searched for.
+    */
+   boolean park( ChannelImpl<?> channel, CircuitTransport transport )
+   {
+      // before v4.4 the server supplies the attributes of the channel in the search response only
+      if ( transport.getMinorRevision() < 4 )
+      {
+         return false;
+      }
+
+      final Server server = new Server( transport.getRemoteAddress(), channel.getPriority(), context.getCircuitIndex( channel ) );
+      synchronized ( this )
+      {
+         if ( closed )
+         {
+            return false;
+         }
+
+         ParkedChannels parked = parkedChannels.get( server );
+         if ( parked == null )
+         {
+            parked = new ParkedChannels( transport.getMinorRevision(), System.nanoTime() + timeoutNanos );
+            parkedChannels.put( server, parked );
+            scheduleProbe( server, parked, INITIAL_PROBE_DELAY_MS );
+         }
+         parked.channels.add( channel );
+      }
+
+      logger.log( Level.FINER, () -> "Channel " + channel.getName() + " parked until the circuit to " + server.address + " is reopened." );
+      return true;
+   }
+
+   /**
+    * Removes a channel which is being closed, if it is parked.
+    *
+    * @param channel the channel.
+    */
+   synchronized void unpark( ChannelImpl<?> channel )
+   {
+      final Iterator<ParkedChannels> iterator = parkedChannels.values().iterator();
+      while ( iterator.hasNext() )
+      {
+         final ParkedChannels parked = iterator.next();
+         if ( parked.channels.remove( channel ) && parked.channels.isEmpty() )
+         {
+            parked.probe.cancel( false );
+            iterator.remove();
+         }
+      }
+   }
+
+   /**
+    * Probes the server at once, since its beacons show that it has come back.
+    *
+    * @param address the address of the server.
+    */
+   synchronized void serverReappeared( InetSocketAddress address )
+   {
+      for ( Map.Entry<Server, ParkedChannels> entry : parkedChannels.entrySet() )
+      {
+         if ( entry.getKey().address.equals( address ) && entry.getValue().probe.cancel( false ) )
+         {
+            logger.log( Level.FINE, () -> "Server " + address + " has reappeared, reconnecting its channels." );
+            scheduleProbe( entry.getKey(), entry.getValue(), 0 );
+         }
+      }
+   }
+
+   /**
+    * Returns the number of channels which are parked.
+    *
+    * @return the count.
+    */
+   synchronized int getParkedChannelCount()
+   {
+      int count = 0;
+      for ( ParkedChannels parked : parkedChannels.values() )
+      {
+         count += parked.channels.size();
+      }
+      return count;
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   @GuardedBy( "this" )
+   private void scheduleProbe( Server server, ParkedChannels parked, long delayMillis )
+   {
+      parked.probeDelayMillis = delayMillis;
+      parked.probe = executor.schedule( () -> probe( server, parked ), delayMillis, TimeUnit.MILLISECONDS );
+   }
+
+   /**
+    * Tries to reopen the circuit to the server and, if it succeeds, re-creates the
+    * channels on it. Otherwise probes again later or, after the timeout, searches
+    * for the channels.
+    */
+   private void probe( Server server, ParkedChannels parked )
+   {
+      synchronized ( this )
+      {
+         if ( parkedChannels.get( server ) != parked )
+         {
+            return;
+         }
+      }
+
+      // the circuit is held by the reconnector until the channels have acquired it
+      final CircuitTransport transport = context.getTransport( this, server.address, parked.minorRevision, server.priority, server.circuitIndex );
+
+      final List<ChannelImpl<?>> channels;
+      synchronized ( this )
+      {
+         if ( parkedChannels.get( server ) != parked )
+         {
+            channels = null;
+         }
+         else if ( transport == null && System.nanoTime() - parked.deadline < 0 )
+         {
+            scheduleProbe( server, parked, Math.min( Math.max( INITIAL_PROBE_DELAY_MS, 2 * parked.probeDelayMillis ), MAX_PROBE_DELAY_MS ) );
+            channels = null;
+         }
+         else
+         {
+            parkedChannels.remove( server );
+            channels = new ArrayList<>( parked.channels );
+         }
+      }
+
+      if ( channels != null && transport == null )
+      {
+         logger.log( Level.FINE, () -> "Server " + server.address + " has not come back, searching for its " + channels.size() + " channel(s)." );
+         channels.forEach( ChannelImpl::initiateSearch );
+      }
+      else if ( channels != null )
+      {
+         logger.log( Level.FINE, () -> "Reconnecting " + channels.size() + " channel(s) to " + server.address + "." );
+
+         // from v4.4 the server supplies the attributes of the channel in the create
+         // channel response; the requests are flushed together
+         FlushBatch.begin();
+         try
+         {
+            for ( ChannelImpl<?> channel : channels )
+            {
+               context.connectChannel( channel, 0, (short) 0, 0, parked.minorRevision, server.address, false );
+            }
+         }
+         finally
+         {
+            FlushBatch.end();
+         }
+      }
+
+      if ( transport != null )
+      {
+         transport.release( this );
+      }
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+   /**
+    * The circuits are identified by server address, priority and index.
+    */
+   @Immutable
+   private static final class Server
+   {
+      private final InetSocketAddress address;
+      private final int priority;
+      private final int circuitIndex;
+
+      private Server( InetSocketAddress address, int priority, int circuitIndex )
+      {
+         this.address = address;
+         this.priority = priority;
+         this.circuitIndex = circuitIndex;
+      }
+
+      @Override
+      public boolean equals( Object other )
+      {
+         if ( this == other )
+         {
+            return true;
+         }
+         if ( !( other instanceof Server ) )
+         {
+            return false;
+         }
+         final Server server = (Server) other;
+         return priority == server.priority && circuitIndex == server.circuitIndex && address.equals( server.address );
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return Objects.hash( address, priority, circuitIndex );
+      }
+   }
+
+   /**
+    * The channels parked for a circuit, and the state of the probes of its server.
+    */
+   private static final class ParkedChannels
+   {
+      private final Set<ChannelImpl<?>> channels = new LinkedHashSet<>();
+      private final short minorRevision;
+      private final long deadline;
+      private long probeDelayMillis;
+      private ScheduledFuture<?> probe;
+
+      private ParkedChannels( short minorRevision, long deadline )
+      {
+         this.minorRevision = minorRevision;
+         this.deadline = deadline;
+      }
+   }
+
+}
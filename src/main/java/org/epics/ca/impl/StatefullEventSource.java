@@ -1,23 +1,31 @@
 package org.epics.ca.impl;
 
-import java.util.concurrent.atomic.AtomicBoolean;
+import eu.javaspecialists.tjsn.concurrency.stripedexecutor.StripedObject;
 
-public abstract class StatefullEventSource implements Runnable
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+// the events of sources with the same stripe are dispatched in order,
+// the events of sources with different stripes may be dispatched concurrently
+public abstract class StatefullEventSource implements Runnable, StripedObject
 {
-   protected final AtomicBoolean enqueued = new AtomicBoolean ();
+   // a field rather than an AtomicBoolean, there is a source for every channel with listeners
+   private static final AtomicIntegerFieldUpdater<StatefullEventSource> ENQUEUED_UPDATER =
+         AtomicIntegerFieldUpdater.newUpdater( StatefullEventSource.class, "enqueued" );
+
+   private volatile int enqueued;
 
    // returns true if event can be enqueue,
    // false if not (i.e. already enqueued or destroyed)
    public boolean allowEnqueue()
    {
-      return enqueued.compareAndSet (false, true);
+      return ENQUEUED_UPDATER.compareAndSet( this, 0, 1 );
    }
 
    // dispatches the event
    // (and clears already enqueued flag)
    public void run()
    {
-      enqueued.set (false);
+      enqueued = 0;
       dispatch ();
    }
 
@@ -7,10 +7,10 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
@@ -18,14 +18,19 @@ import java.util.logging.Logger;
 
 import org.epics.ca.Constants;
 import org.epics.ca.impl.ResponseHandlers.ResponseHandler;
+import org.epics.ca.impl.capture.WireCapture;
+import org.epics.ca.impl.jfr.FlightRecorderEvents;
+import org.epics.ca.impl.metrics.MetricsRegistry;
+import org.epics.ca.impl.monitor.latency.MonitorLatencyHistogram;
 import org.epics.ca.impl.reactor.ReactorHandler;
 import org.epics.ca.util.ResettableLatch;
 import org.epics.ca.util.logging.LibraryLogManager;
+import org.epics.ca.util.logging.TraceRecorder;
 
 /**
  * CA transport implementation.
  */
-public class TcpTransport implements Transport, ReactorHandler, Runnable
+public class TcpTransport implements CircuitTransport, ReactorHandler
 {
 
    private static final Logger logger = LibraryLogManager.getLogger( TcpTransport.class );
@@ -60,6 +65,11 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
     */
    private final int priority;
 
+   /**
+    * Index of the circuit among the circuits of the same priority to the server.
+    */
+   private final int circuitIndex;
+
    /**
     * Receive buffer.
     */
@@ -101,6 +111,12 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
     */
    private static final int INITIAL_TX_BUFFER_SIZE = 1024;
 
+   /**
+    * Size to which the send buffer may grow while its flush is deferred by a batch
+    * (as for the 16k buffers of the C library), rather than being sent as soon as it is full.
+    */
+   private static final int MAX_BATCH_TX_BUFFER_SIZE = 16384;
+
    /**
     * CA header structure.
     */
@@ -110,7 +126,44 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
    private ByteBuffer sendBuffer;
    private int lastSendBufferPosition = 0;
 
-   private final ScheduledFuture<?> echoTimer;
+   /**
+    * Whether the send buffer has been grown for a batch, and is to be shrunk again
+    * once the batch has been sent. Guarded by the send buffer lock.
+    */
+   private boolean sendBufferGrownForBatch;
+
+   /**
+    * Whether the reading thread has a batch open for a run of create channel responses.
+    */
+   private boolean createChannelResponseRun;
+
+   /**
+    * Health of the circuit, checked by the context's circuit health monitor.
+    */
+   private final CircuitHealth health;
+
+   /**
+    * Capture of the frames sent and received, or null when the capture is disabled.
+    */
+   private final WireCapture.TcpFlow captureFlow;
+
+   /**
+    * The time at which the data in the receive buffer was received.
+    */
+   private long receiveTimestamp;
+
+   /**
+    * Label pairs which identify the metrics of this circuit in the context's registry.
+    */
+   private final String[] metricsLabels;
+
+   private final LongAdder bytesReceived;
+   private final LongAdder bytesSent;
+   private final LongAdder messagesReceived;
+   private final LongAdder messagesSent;
+   private final LongAdder flowControlOnTransitions;
+   private final LongAdder flowControlOffTransitions;
+   private final MonitorLatencyHistogram sendLockWaitTime;
 
    /**
     * Constructs a new object for managing the TCP connection with a remote server.
@@ -124,35 +177,68 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
     */
    public TcpTransport( ContextImpl context, TransportClient client, ResponseHandler responseHandler,
                         SocketChannel channel, short remoteTransportRevision, int priority )
+   {
+      this( context, client, responseHandler, channel, remoteTransportRevision, priority, 0 );
+   }
+
+   /**
+    * Constructs a new object for managing one of several TCP connections of the same
+    * priority with a remote server.
+    *
+    * @param context the CA context in which the communication takes place.
+    * @param responseHandler reference to an object which will manage the handling of the server responses.
+    * @param client the client.
+    * @param channel socket through which communication will flow.
+    * @param remoteTransportRevision the CA transport revision (a constant) to be used in communication.
+    * @param priority the CA message priority.
+    * @param circuitIndex the index of the connection among those of the same priority with the server.
+    */
+   public TcpTransport( ContextImpl context, TransportClient client, ResponseHandler responseHandler,
+                        SocketChannel channel, short remoteTransportRevision, int priority, int circuitIndex )
    {
       this.context = context;
       this.responseHandler = responseHandler;
       this.channel = channel;
       this.remoteTransportRevision = remoteTransportRevision;
       this.priority = priority;
+      this.circuitIndex = circuitIndex;
 
       socketAddress = (InetSocketAddress) channel.socket().getRemoteSocketAddress ();
 
+      // register the circuit's metrics
+      final MetricsRegistry metricsRegistry = context.getMetricsRegistry ();
+      final String circuitName = socketAddress.getAddress ().getHostAddress () + ":" + socketAddress.getPort ();
+      metricsLabels = new String[] { "circuit", ( circuitIndex == 0 ) ? circuitName : circuitName + "#" + circuitIndex,
+                                     "priority", String.valueOf (priority) };
+      bytesReceived = metricsRegistry.counter ("ca_circuit_bytes_received_total", "Bytes received on the CA circuit.", metricsLabels);
+      bytesSent = metricsRegistry.counter ("ca_circuit_bytes_sent_total", "Bytes sent on the CA circuit.", metricsLabels);
+      messagesReceived = metricsRegistry.counter ("ca_circuit_messages_received_total", "CA messages received on the circuit.", metricsLabels);
+      messagesSent = metricsRegistry.counter ("ca_circuit_messages_sent_total", "CA messages queued for sending on the circuit.", metricsLabels);
+      flowControlOnTransitions = metricsRegistry.counter ("ca_circuit_flow_control_transitions_total", "Flow control (events off/on) transitions requested on the CA circuit.",
+                                                          metricsLabels[ 0 ], metricsLabels[ 1 ], metricsLabels[ 2 ], metricsLabels[ 3 ], "state", "on");
+      flowControlOffTransitions = metricsRegistry.counter ("ca_circuit_flow_control_transitions_total", "Flow control (events off/on) transitions requested on the CA circuit.",
+                                                           metricsLabels[ 0 ], metricsLabels[ 1 ], metricsLabels[ 2 ], metricsLabels[ 3 ], "state", "off");
+      sendLockWaitTime = metricsRegistry.histogram ("ca_circuit_send_lock_wait_seconds", "Time spent waiting for the CA circuit's send buffer when it was held by another thread.", metricsLabels);
+
+      final WireCapture wireCapture = context.getWireCapture ();
+      captureFlow = ( wireCapture != null ) ? wireCapture.createTcpFlow (channel.socket ()) : null;
+
       // initialize buffers
       receiveBuffer = ByteBuffer.allocateDirect( INITIAL_RX_BUFFER_SIZE );
       sendBuffer = ByteBuffer.allocateDirect( INITIAL_TX_BUFFER_SIZE );
+      clearSendBuffer ();
 
       // acquire transport
       acquire( client );
 
-      // read echo period and start timer (watchdog)
-      final long echoPeriod = (long) (context.getConnectionTimeout () * 1000);
-      if ( echoPeriod >= 0 )
-      {
-         echoTimer = context.getScheduledExecutor ().scheduleWithFixedDelay (this, 0, echoPeriod, TimeUnit.MILLISECONDS);
-      }
-      else
-      {
-         echoTimer = null;
-      }
+      // the echo requests are sent by the context's circuit health monitor
+      health = new CircuitHealth (socketAddress, remoteTransportRevision, this::sendEcho,
+                                  metricsRegistry.histogram ("ca_circuit_echo_rtt_seconds", "Round-trip time of the echo requests sent over the idle CA circuit.", metricsLabels));
+      metricsRegistry.gauge ("ca_circuit_unresponsive", "Whether the server has failed to reply to an echo request on the CA circuit in time (1) or not (0).",
+                             () -> health.isUnresponsive () ? 1 : 0, metricsLabels);
 
       // add to registry
-      context.getTransportRegistry().put( socketAddress, this );
+      context.getTransportRegistry().put( socketAddress, TransportRegistry.getCircuitKey( priority, circuitIndex ), this );
    }
 
    /**
@@ -169,19 +255,14 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
          return;
       }
 
-      // cancel echo timer
-      if ( echoTimer != null )
-      {
-         echoTimer.cancel(false);
-      }
-
       // remove from registry
-      context.getTransportRegistry().remove( socketAddress, priority );
+      context.getTransportRegistry().remove( socketAddress, TransportRegistry.getCircuitKey( priority, circuitIndex ) );
+      context.getMetricsRegistry().remove( metricsLabels );
 
       // flush first
       if ( !remotelyClosed )
       {
-         flush();
+         flush (false);
       }
 
       closedNotifyClients();
@@ -226,12 +307,7 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
       }
    }
 
-   /**
-    * Acquires transport.
-    *
-    * @param client client (channel) acquiring the transport
-    * @return <code>true</code> if transport was granted, <code>false</code> otherwise.
-    */
+   @Override
    public boolean acquire( TransportClient client )
    {
 
@@ -253,11 +329,7 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
       return true;
    }
 
-   /**
-    * Releases transport.
-    *
-    * @param client client (channel) releasing the transport
-    */
+   @Override
    public void release( TransportClient client )
    {
 
@@ -285,6 +357,12 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
       return remoteTransportRevision;
    }
 
+   @Override
+   public long getReceiveTimestamp()
+   {
+      return receiveTimestamp;
+   }
+
    /**
     * Handle IO event.
     */
@@ -320,15 +398,22 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
             // attempt to read from the channel as many bytes as available
             // in the supplied receive buffer. Store the data at successive
             // locations starting from the current position.
-            logger.finest( "About to read into buffer starting at pos: " + receiveBuffer.position());
 
             int bytesRead = channel.read (receiveBuffer);
-            logger.finest( "Read #bytes from channel: " + bytesRead);
+            TraceRecorder.record (TraceRecorder.Event.TCP_READ, bytesRead, receiveBuffer.position ());
+            if ( bytesRead > 0 )
+            {
+               bytesReceived.add (bytesRead);
+               if ( captureFlow != null )
+               {
+                  captureFlow.captureReceived (receiveBuffer, receiveBuffer.position () - bytesRead, bytesRead);
+               }
+            }
 
             if ( bytesRead < 0 )
             {
                // error (disconnect, end-of-stream) detected
-               logger.finest(  "End of stream ");
+               TraceRecorder.record (TraceRecorder.Event.TCP_END_OF_STREAM, receiveBuffer.position (), 0);
                close (true);
                return;
             }
@@ -337,19 +422,15 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
                // no more data, disable flow control... hopefully this will allow
                // more data to be read pretty soon.
                // Note: flow control only works with monitors !
-               logger.finest(  "Disabling flow control...");
                disableFlowControl();
                break;
             }
 
-            logger.log(Level.FINEST,"Received " + bytesRead + " bytes from " + socketAddress + ".");
-
             // flow control check
             if ( receiveBuffer.hasRemaining () )
             {
                // buffer not full, disable flow control
                bufferFullCount = 0;
-               logger.finest( "Disabling flow control...");
                disableFlowControl ();
             }
             else
@@ -358,7 +439,6 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
                if ( bufferFullCount >= FLOW_CONTROL_BUFFER_FULL_COUNT_LIMIT )
                {
                   // enable flow control
-                  logger.finest( "Enabling flow control...");
                   enableFlowControl ();
                }
                else
@@ -367,19 +447,23 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
 
             // Prepare the buffer for reading out. Sets the limit to the current position
             // and sets the position back to zero again.
-            logger.finest( "Flipping buffer.");
             receiveBuffer.flip ();
-            logger.finest( "ReceiveBuffer now has #bytes: " + receiveBuffer.remaining());
 
             // Now go ahead and try to process whatever data we have obtained
-            logger.finest( "CA: processing new data...");
-            processReadBuffer ();
+            try
+            {
+               processReadBuffer ();
+            }
+            finally
+            {
+               createChannelResponseRun = FlushBatch.followResponses (createChannelResponseRun, -1);
+            }
          }
 
       }
       catch ( IOException ioex )
       {
-         logger.finest( "CA: socket exception. Closing connection.");
+         TraceRecorder.record (TraceRecorder.Event.TCP_END_OF_STREAM, receiveBuffer.position (), 0);
          // close connection
          close (true);
       }
@@ -393,7 +477,9 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
       int lastMessageStartPosition = 0;
       int lastMessageBytesAvailable;
 
-      logger.finest( "\n\nProcessing READ buffer from thread: " + Thread.currentThread ());
+      receiveTimestamp = System.nanoTime();
+      health.dataReceived (receiveTimestamp);
+
       // Read and process as many messages as may be available...
       while ( !closed.get () )
       {
@@ -401,35 +487,32 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
          lastMessageStartPosition = receiveBuffer.position ();
          lastMessageBytesAvailable = receiveBuffer.remaining ();
 
-         logger.finest( "Processing NEXT loop iteration...");
-         logger.finest( "- lastMessagePosition = " + lastMessageStartPosition);
-         logger.finest( "- lastMessageBytesAvailable = " + lastMessageBytesAvailable);
+         TraceRecorder.record (TraceRecorder.Event.TCP_PROCESS_BUFFER, lastMessageStartPosition, lastMessageBytesAvailable);
 
          // Definitely not full header yet so break (nothing has been read from the byte buffer)
          if ( lastMessageBytesAvailable < Constants.CA_MESSAGE_HEADER_SIZE )
          {
-            logger.finest( "Not enough bytes for normal header - breaking from loop.");
+            TraceRecorder.record (TraceRecorder.Event.TCP_INCOMPLETE_HEADER, lastMessageStartPosition, lastMessageBytesAvailable);
             break;
          }
          // Try to read header - if not enough data to read the extended header break (at this point
          // 16 bytes have been read from the byte buffer)
          if ( !header.read (receiveBuffer) )
          {
-            logger.finest("Not enough bytes for extended header - breaking from loop.");
+            TraceRecorder.record (TraceRecorder.Event.TCP_INCOMPLETE_HEADER, lastMessageStartPosition, lastMessageBytesAvailable);
             break;
          }
 
          // If there is not yet enough data in the buffer to read the expected payload...
          if ( receiveBuffer.remaining () < header.payloadSize )
          {
-            logger.finest("Not enough bytes for payload: " + header.payloadSize);
+            TraceRecorder.record (TraceRecorder.Event.TCP_INCOMPLETE_PAYLOAD, header.payloadSize, receiveBuffer.remaining ());
             // If the buffer itself is not big enough to contain the expected payload
             // then we need to allocate a new buffer, transfer the existing information
             // to it, then bail out of this function to wait for more data.
             if ( header.payloadSize > (receiveBuffer.capacity () - Constants.CA_EXTENDED_MESSAGE_HEADER_SIZE) )
             {
                // we need to dynamically resize the receive buffer
-               logger.finest( "Not enough room to read payload: need to resize buffer!");
                // Comment: Why was 4096 chosen ?  Was this to match the initial size of the
                // receive buffer which was historically chosen to be 4096 ?(Simon Rees, PSI) ?
                final int PAGE_SIZE = 4096;
@@ -447,6 +530,8 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
                   return;
                }
 
+               TraceRecorder.record (TraceRecorder.Event.TCP_RESIZE_RECEIVE_BUFFER, header.payloadSize, newSize);
+               FlightRecorderEvents.INSTANCE.bufferResize (socketAddress, "receive", receiveBuffer.capacity (), newSize);
                ByteBuffer newBuffer = ByteBuffer.allocateDirect (newSize);
 
                // copy remaining
@@ -468,21 +553,29 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
          // when we are done with this one.
          int endOfMessage = receiveBuffer.position () + header.payloadSize;
 
+         // Limit the buffer to the current message so that its handler sees its own payload only,
+         // and not the messages which follow it in the same read.
+         final int endOfData = receiveBuffer.limit ();
+         receiveBuffer.limit (endOfMessage);
+
+         messagesReceived.increment ();
          try
          {
-            logger.finest("Processing message starting at position:" + receiveBuffer.position());
-            logger.finest("Payload size is: " + header.payloadSize);
+            TraceRecorder.record (TraceRecorder.Event.TCP_MESSAGE, header.command, header.payloadSize);
+            createChannelResponseRun = FlushBatch.followResponses (createChannelResponseRun, header.command);
             // Note: the first character to be read in the receiveBuffer is the first byte of the payload.
             responseHandler.handleResponse (socketAddress, this, header, receiveBuffer);
          }
          catch ( Throwable th )
          {
             logger.log( Level.WARNING, th, () -> "Unexpected exception caught while processing CA message over TCP from " + socketAddress );
+            TraceRecorder.logCurrentThread (logger, Level.WARNING);
          }
          finally
          {
             // Whatever the outcome of the last message handling always adjust the pointers in the receiveBuffer
             // to point to the next message.
+            receiveBuffer.limit (endOfData);
             receiveBuffer.position (endOfMessage);
          }
 
@@ -500,23 +593,20 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
       // of the receive buffer and to exit the method with the buffer's position pointer ready
       // to receive new data.
 
-      logger.finest( "Checking for any remaining bytes.");
       int unprocessedBytes = receiveBuffer.limit () - lastMessageStartPosition;
       if ( unprocessedBytes > 0 )
       {
          // copy remaining buffer, lastMessageBytesAvailable bytes from lastMessagePosition,
          // to the start of receiveBuffer
-         logger.finest( "- moving remaining bytes to start of buffer. Unprocessed bytes = " + unprocessedBytes);
+         TraceRecorder.record (TraceRecorder.Event.TCP_COMPACT_RECEIVE_BUFFER, unprocessedBytes, lastMessageStartPosition);
          if ( unprocessedBytes < 1024 )
          {
-            logger.finest( "- using copy algorithm 1");
             for ( int i = 0; i < unprocessedBytes; i++ )
                receiveBuffer.put (i, receiveBuffer.get (lastMessageStartPosition++));
             receiveBuffer.position (unprocessedBytes);
          }
          else
          {
-            logger.finest( "- using copy algorithm 2");
             receiveBuffer.position (lastMessageStartPosition);
             ByteBuffer remainingBuffer = receiveBuffer.slice ();
             receiveBuffer.position (0);
@@ -526,7 +616,6 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
       // If there were no bytes remaining the block move is unnecessary.
       else
       {
-         logger.finest("No remaining bytes to copy.");
          receiveBuffer.position (0);
       }
       // Post processing conditions for the receiveBuffer are as follows:
@@ -534,7 +623,6 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
       // - the position is set to the last unprocessed byte
       // - the limit is set to the buffer's capacity.
       receiveBuffer.limit (receiveBuffer.capacity ());
-      logger.finest("Done with read processing for now. Buffer Position is: " + receiveBuffer.position());
    }
 
 
@@ -553,6 +641,9 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
    {
       if ( flowControlState.getAndSet(false) )
       {
+         flowControlOffTransitions.increment();
+         TraceRecorder.record (TraceRecorder.Event.TCP_FLOW_CONTROL, 0, 0);
+         FlightRecorderEvents.INSTANCE.flowControl (socketAddress, false);
          flowControlChangeRequest.set( Boolean.FALSE );
          // send MUST not be done in this (read) thread
          flush();
@@ -566,6 +657,9 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
    {
       if ( !flowControlState.getAndSet (true) )
       {
+         flowControlOnTransitions.increment();
+         TraceRecorder.record (TraceRecorder.Event.TCP_FLOW_CONTROL, 1, 0);
+         FlightRecorderEvents.INSTANCE.flowControl (socketAddress, true);
          flowControlChangeRequest.set (Boolean.TRUE);
          // send MUST not be done in this (read) thread
          flush ();
@@ -586,27 +680,31 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
          final int SEND_BUFFER_LIMIT = 64000;
          int bufferLimit = buffer.limit ();
 
-         logger.finest( "Sending " + bufferLimit + " bytes to " + socketAddress + ".");
-
          // limit sending large buffers, split the into parts
          int parts = (buffer.limit () - 1) / SEND_BUFFER_LIMIT + 1;
+         TraceRecorder.record (TraceRecorder.Event.TCP_SEND, bufferLimit - buffer.position (), parts);
          for ( int part = 1; part <= parts; part++ )
          {
             if ( parts > 1 )
             {
                buffer.limit (Math.min (part * SEND_BUFFER_LIMIT, bufferLimit));
-               logger.log(Level.FINEST,"[Parted] Sending (part " + part + "/" + parts + ") " + (buffer.limit () - buffer.position ()) + " bytes to " + socketAddress + ".");
             }
 
             for ( int tries = 0; ; tries++ )
             {
 
                // send
+               final int position = buffer.position ();
                int bytesSent = channel.write (buffer);
                if ( bytesSent < 0 )
                {
                   throw new IOException("bytesSent < 0");
                }
+               this.bytesSent.add (bytesSent);
+               if ( captureFlow != null && bytesSent > 0 )
+               {
+                  captureFlow.captureSent (buffer, position, bytesSent);
+               }
 
                // bytesSend == buffer.position(), so there is no need for flip()
                if ( buffer.position () != buffer.limit () )
@@ -626,7 +724,7 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
                   }
 
                   // flush & wait for a while...
-                  logger.finest( "Send buffer full for " + socketAddress + ", waiting...");
+                  TraceRecorder.record (TraceRecorder.Event.TCP_SEND_BUFFER_FULL, buffer.remaining (), tries);
 
                   try
                   {
@@ -669,7 +767,7 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
       {
          throw new RuntimeException("transport closed");
       }
-      sendBufferLock.lock ();
+      lockSendBuffer ();
 
       lastSendBufferPosition = sendBuffer.position ();
 
@@ -677,6 +775,27 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
       if ( sendBuffer.remaining () >= requiredSize )
          return sendBuffer;
 
+      // the flush is deferred, grow rather than send a part of the batch
+      if ( FlushBatch.isActive () && sendBuffer.position () + requiredSize <= MAX_BATCH_TX_BUFFER_SIZE )
+      {
+         try
+         {
+            final ByteBuffer largerBuffer = ByteBuffer.allocateDirect (Math.min (MAX_BATCH_TX_BUFFER_SIZE,
+                                                                                 Math.max (2 * sendBuffer.capacity (), sendBuffer.position () + requiredSize)));
+            FlightRecorderEvents.INSTANCE.bufferResize (socketAddress, "send", sendBuffer.capacity (), largerBuffer.capacity ());
+            sendBuffer.flip ();
+            largerBuffer.put (sendBuffer);
+            sendBuffer = largerBuffer;
+            sendBufferGrownForBatch = true;
+         }
+         catch ( Throwable th )
+         {
+            sendBufferLock.unlock ();
+            throw th;
+         }
+         return sendBuffer;
+      }
+
       // flush and wait until buffer is actually sent
       try
       {
@@ -700,7 +819,9 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
          }
          try
          {
+            FlightRecorderEvents.INSTANCE.bufferResize (socketAddress, "send", sendBuffer.capacity (), newSize);
             sendBuffer = ByteBuffer.allocate (newSize);
+            sendBufferGrownForBatch = false;
             clearSendBuffer ();
          }
          catch ( Throwable th )
@@ -739,11 +860,13 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
       if ( sendBuffer.remaining () >= requiredSize )
          return sendBuffer;
 
+      // we do not wait for free buffer
+      sendBufferLock.unlock ();
+
       // sanity check
       if ( sendBuffer.capacity () < requiredSize )
          throw new RuntimeException ("sendBuffer.capacity() < requiredSize");
 
-      // we do not wait for free buffer
       return null;
    }
 
@@ -756,9 +879,13 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
          {
             sendBuffer.position (lastSendBufferPosition);
          }
-         else if ( flush )
+         else
          {
-            flush ();
+            messagesSent.increment ();
+            if ( flush )
+            {
+               flush ();
+            }
          }
       }
       finally
@@ -771,6 +898,10 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
    @Override
    public void flush()
    {
+      if ( closed.get () )
+      {
+         return;
+      }
       flush (false);
    }
 
@@ -780,6 +911,20 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
 
    private int startPosition;
 
+   /**
+    * Acquires the send buffer lock, recording the time spent waiting where
+    * the lock is held by another thread.
+    */
+   private void lockSendBuffer()
+   {
+      if ( !sendBufferLock.tryLock () )
+      {
+         final long waitStart = System.nanoTime ();
+         sendBufferLock.lock ();
+         sendLockWaitTime.record (System.nanoTime () - waitStart);
+      }
+   }
+
    private void clearSendBuffer()
    {
       sendBuffer.clear ();
@@ -794,7 +939,7 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
       //	sendCompletedLatch.reset(1);
 
       // TODO do not send in this thread (e.g. use LF pool)
-      sendBufferLock.lock();
+      lockSendBuffer ();
       try
       {
 
@@ -815,6 +960,14 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
 
          noSyncSend (sendBuffer);
          clearSendBuffer ();
+
+         // the buffer grown for a batch is not kept once the batch has been sent
+         if ( sendBufferGrownForBatch && !FlushBatch.isActive () )
+         {
+            sendBuffer = ByteBuffer.allocateDirect (INITIAL_TX_BUFFER_SIZE);
+            sendBufferGrownForBatch = false;
+            clearSendBuffer ();
+         }
       }
       catch ( IOException e1 )
       {
@@ -845,20 +998,33 @@ public class TcpTransport implements Transport, ReactorHandler, Runnable
       return priority;
    }
 
+   @Override
+   public CircuitHealth getHealth()
+   {
+      return health;
+   }
+
    /**
-    * Echo timer.
+    * Sends an echo request, unless the send buffer is in use.
+    *
+    * @return true if the request has been sent.
     */
-   public void run()
+   private boolean sendEcho()
    {
-      ByteBuffer buffer = acquireSendBufferNoBlocking (
-            Constants.CA_MESSAGE_HEADER_SIZE,
-            1, TimeUnit.SECONDS);
-      if ( buffer != null )
+      if ( closed.get () )
       {
-         Messages.generateEchoMessage (this, buffer);
-         // should be non-blocking
-         releaseSendBuffer (false, true);
+         return false;
       }
+
+      final ByteBuffer buffer = acquireSendBufferNoBlocking (Constants.CA_MESSAGE_HEADER_SIZE, 0, TimeUnit.MILLISECONDS);
+      if ( buffer == null )
+      {
+         return false;
+      }
+      Messages.generateEchoMessage (this, buffer);
+      // should be non-blocking
+      releaseSendBuffer (false, true);
+      return true;
    }
 
 }
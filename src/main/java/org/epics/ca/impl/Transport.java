@@ -30,6 +30,13 @@ public interface Transport
     */
    short getMinorRevision();
 
+   /**
+    * Get the time at which the data currently being processed was received.
+    *
+    * @return the value of System.nanoTime() when the data was received.
+    */
+   long getReceiveTimestamp();
+
    int getPriority();
 
    ByteBuffer acquireSendBuffer( int requiredSize );
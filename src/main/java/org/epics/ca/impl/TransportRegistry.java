@@ -7,8 +7,14 @@ import java.util.Map;
 
 import org.epics.ca.util.IntHashMap;
 
+import static org.epics.ca.Constants.CHANNEL_PRIORITY_MAX;
+
 /**
  * Class to cache CA transports (connections to other hosts).
+ *
+ * The transports to a host are identified by their circuit key, which is their
+ * priority unless several circuits of the same priority are opened to the host
+ * (see {@link #getCircuitKey(int, int)}).
  */
 public class TransportRegistry
 {
@@ -30,6 +36,18 @@ public class TransportRegistry
     * @param transport tranport to the host computer.
     */
    public void put( InetSocketAddress address, Transport transport )
+   {
+      put( address, transport.getPriority (), transport );
+   }
+
+   /**
+    * Cache new (address, transport) pair under the given circuit key.
+    *
+    * @param address    address of the host computer.
+    * @param circuitKey circuit key of the transport.
+    * @param transport  tranport to the host computer.
+    */
+   public void put( InetSocketAddress address, int circuitKey, Transport transport )
    {
       synchronized ( transports )
       {
@@ -39,7 +57,7 @@ public class TransportRegistry
             priorities = new IntHashMap<>();
             transports.put( address, priorities);
          }
-         priorities.put (transport.getPriority (), transport);
+         priorities.put (circuitKey, transport);
          allTransports.add (transport);
       }
    }
@@ -47,17 +65,17 @@ public class TransportRegistry
    /**
     * Lookup for a transport for given address.
     *
-    * @param address  address of the host computer.
-    * @param priority priority of the transport.
+    * @param address    address of the host computer.
+    * @param circuitKey circuit key of the transport.
     * @return corresponding transport, <code>null</code> if none found.
     */
-   public Transport get( InetSocketAddress address, int priority )
+   public Transport get( InetSocketAddress address, int circuitKey )
    {
       synchronized ( transports )
       {
          IntHashMap<Transport> priorities = transports.get (address);
          if ( priorities != null )
-            return priorities.get (priority);
+            return priorities.get (circuitKey);
          else
             return null;
       }
@@ -88,18 +106,18 @@ public class TransportRegistry
    /**
     * Remove (address, transport) pair from cache.
     *
-    * @param address  address of the host computer.
-    * @param priority priority of the transport to be removed.
+    * @param address    address of the host computer.
+    * @param circuitKey circuit key of the transport to be removed.
     * @return removed transport, <code>null</code> if none found.
     */
-   public Transport remove( InetSocketAddress address, int priority )
+   public Transport remove( InetSocketAddress address, int circuitKey )
    {
       synchronized ( transports )
       {
          IntHashMap<Transport> priorities = transports.get (address);
          if ( priorities != null )
          {
-            Transport transport = priorities.remove (priority);
+            Transport transport = priorities.remove (circuitKey);
             if ( priorities.size () == 0 )
                transports.remove (address);
             if ( transport != null )
@@ -111,6 +129,18 @@ public class TransportRegistry
       }
    }
 
+   /**
+    * Get the key identifying a circuit to a host among the circuits to the same host.
+    *
+    * @param priority     priority of the circuit.
+    * @param circuitIndex index of the circuit among the circuits of the same priority.
+    * @return the circuit key, which is the priority for the first circuit of each priority.
+    */
+   public static int getCircuitKey( int priority, int circuitIndex )
+   {
+      return priority + circuitIndex * ( CHANNEL_PRIORITY_MAX + 1 );
+   }
+
    /**
     * Clear cache.
     */
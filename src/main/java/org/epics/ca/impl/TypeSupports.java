@@ -30,6 +30,10 @@ public class TypeSupports
     */
    private static final int OPTIMIZED_COPY_THRESHOLD = 128;
 
+   // values() copies the array on every call
+   private static final AlarmStatus[] ALARM_STATUS_LUT = AlarmStatus.values();
+   private static final AlarmSeverity[] ALARM_SEVERITY_LUT = AlarmSeverity.values();
+
    /**
     * Gets the TypeSupport for the specified type class.
     *
@@ -130,8 +134,8 @@ public class TypeSupports
       final int status = buffer.getShort () & 0xFFFF;
       final int severity = buffer.getShort () & 0xFFFF;
 
-      data.setAlarmStatus (AlarmStatus.values ()[ status ]);
-      data.setAlarmSeverity (AlarmSeverity.values ()[ severity ]);
+      data.setAlarmStatus (ALARM_STATUS_LUT[ status ]);
+      data.setAlarmSeverity (ALARM_SEVERITY_LUT[ severity ]);
    }
 
    private static void readTimestamp( ByteBuffer buffer, Timestamped<?> data )
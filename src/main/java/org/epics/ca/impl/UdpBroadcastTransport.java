@@ -14,8 +14,10 @@ import java.util.logging.Logger;
 
 import org.epics.ca.Constants;
 import org.epics.ca.impl.ResponseHandlers.ResponseHandler;
+import org.epics.ca.impl.capture.WireCapture;
 import org.epics.ca.impl.reactor.ReactorHandler;
 import org.epics.ca.util.logging.LibraryLogManager;
+import org.epics.ca.util.logging.TraceRecorder;
 
 /*- Interface Declaration ----------------------------------------------------*/
 /*- Class Declaration --------------------------------------------------------*/
@@ -74,6 +76,21 @@ public class UdpBroadcastTransport implements ReactorHandler, Transport
     */
    private final Header header = new Header ();
 
+   /**
+    * The time at which the datagram currently being processed was received.
+    */
+   private long receiveTimestamp;
+
+   /**
+    * Capture of the datagrams sent and received, or null when the capture is disabled.
+    */
+   private final WireCapture wireCapture;
+
+   /**
+    * Local address, recorded in the captured datagrams.
+    */
+   private final InetSocketAddress localAddress;
+
 
 /*- Main ---------------------------------------------------------------------*/
 /*- Constructor --------------------------------------------------------------*/
@@ -99,6 +116,8 @@ public class UdpBroadcastTransport implements ReactorHandler, Transport
       this.broadcastAddresses = broadcastAddresses;
 
       socketAddress = (InetSocketAddress) channel.socket ().getRemoteSocketAddress ();
+      localAddress = (InetSocketAddress) channel.socket ().getLocalSocketAddress ();
+      wireCapture = context.getWireCapture ();
 
       // allocate receive buffer
       receiveBuffer = ByteBuffer.allocate (Constants.MAX_UDP_RECV);
@@ -153,6 +172,12 @@ public class UdpBroadcastTransport implements ReactorHandler, Transport
       return Constants.CA_MINOR_PROTOCOL_REVISION;
    }
 
+   @Override
+   public long getReceiveTimestamp()
+   {
+      return receiveTimestamp;
+   }
+
    @Override
    public int getPriority()
    {
@@ -196,7 +221,10 @@ public class UdpBroadcastTransport implements ReactorHandler, Transport
          {
             // prepare buffer
             buffer.flip();
-            channel.send( buffer, broadcastAddress );
+            if ( channel.send( buffer, broadcastAddress ) > 0 && wireCapture != null )
+            {
+               wireCapture.captureDatagram( true, localAddress, broadcastAddress, buffer, 0, buffer.limit() );
+            }
          }
          catch ( Throwable ioex )
          {
@@ -216,7 +244,10 @@ public class UdpBroadcastTransport implements ReactorHandler, Transport
    public void send( ByteBuffer buffer, InetSocketAddress address ) throws IOException
    {
       buffer.flip ();
-      channel.send( buffer, address );
+      if ( channel.send( buffer, address ) > 0 && wireCapture != null )
+      {
+         wireCapture.captureDatagram( true, localAddress, address, buffer, 0, buffer.limit() );
+      }
    }
 
 
@@ -248,7 +279,12 @@ public class UdpBroadcastTransport implements ReactorHandler, Transport
                break;
             }
 
-            logger.finest(  "Received " + receiveBuffer.position() + " bytes from " + fromAddress + ".");
+            receiveTimestamp = System.nanoTime();
+            TraceRecorder.record( TraceRecorder.Event.UDP_RECEIVE, receiveBuffer.position(), 0 );
+            if ( wireCapture != null )
+            {
+               wireCapture.captureDatagram( false, localAddress, fromAddress, receiveBuffer, 0, receiveBuffer.position() );
+            }
 
             // prepare buffer for reading
             receiveBuffer.flip();
@@ -0,0 +1,485 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.capture;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.lang3.Validate;
+import org.epics.ca.util.logging.LibraryLogManager;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Captures the CA traffic of a context to a rotating set of pcap files, so that
+ * it can be analysed offline with Wireshark's CA dissector on hosts where
+ * running tcpdump is not allowed.
+ *
+ * Each frame which is sent or received is written with its timestamp as an IPv4
+ * packet (LINKTYPE_RAW) carrying a synthesized TCP or UDP header, from which the
+ * direction of the frame and the endpoints of the circuit can be read. The TCP
+ * sequence numbers count the bytes of each direction of the circuit, so that the
+ * dissector can reassemble the CA messages which span several reads or writes.
+ *
+ * The I/O threads only copy each frame into a preallocated buffer, under a lock
+ * which is held for the duration of the copy. A background thread swaps the
+ * buffer with a spare one periodically and writes it to the current file. When
+ * the buffer is full, because the disk cannot keep up, frames are dropped and
+ * counted rather than slowing the I/O threads. When the current file reaches
+ * its maximum size the next file of the set is started, overwriting the oldest.
+ */
+@ThreadSafe
+public final class WireCapture
+{
+
+/*- Public attributes --------------------------------------------------------*/
+
+   /**
+    * The pcap link type of the captured packets: raw IPv4.
+    */
+   public static final int LINKTYPE_RAW = 101;
+
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final Logger logger = LibraryLogManager.getLogger( WireCapture.class );
+
+   private static final int PCAP_MAGIC = 0xa1b2c3d4;
+   private static final int PCAP_HEADER_SIZE = 24;
+   private static final int RECORD_HEADER_SIZE = 16;
+   private static final int IP_HEADER_SIZE = 20;
+   private static final int TCP_HEADER_SIZE = 20;
+   private static final int UDP_HEADER_SIZE = 8;
+   private static final int MAX_PACKET_SIZE = 0xFFFF;
+   private static final int MAX_TCP_SEGMENT = MAX_PACKET_SIZE - IP_HEADER_SIZE - TCP_HEADER_SIZE;
+
+   private static final byte PROTOCOL_TCP = 6;
+   private static final byte PROTOCOL_UDP = 17;
+   private static final short TCP_FLAGS_PSH_ACK = 0x5018;
+
+   private static final int BUFFER_SIZE = 4 * 1024 * 1024;
+   private static final long WRITE_PERIOD_MS = 100;
+
+   private final String fileNamePrefix;
+   private final long maxFileSize;
+   private final int fileCount;
+   private final long startMicros = TimeUnit.MILLISECONDS.toMicros( System.currentTimeMillis() );
+   private final long startNanos = System.nanoTime();
+   private final LongAdder capturedCount = new LongAdder();
+   private final LongAdder droppedCount = new LongAdder();
+   private final Thread writer;
+
+   private final Object lock = new Object();
+
+   @GuardedBy( "lock" )
+   private ByteBuffer pending = ByteBuffer.allocateDirect( BUFFER_SIZE );
+
+   @GuardedBy( "lock" )
+   private ByteBuffer spare = ByteBuffer.allocateDirect( BUFFER_SIZE );
+
+   @GuardedBy( "lock" )
+   private short packetId;
+
+   @GuardedBy( "lock" )
+   private boolean closed;
+
+   // accessed only by the writer thread
+   private FileChannel file;
+   private long fileSize;
+   private int fileIndex = -1;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Starts a capture. The files are named after the specified file, with the
+    * name of the context and the index of the file in the set inserted before
+    * the extension (eg "ca.pcap" becomes "ca-1-0.pcap", "ca-1-1.pcap" etc).
+    *
+    * @param fileName the name of the capture file.
+    * @param contextName the name of the context, which distinguishes the files of the contexts of the JVM.
+    * @param maxFileSize the size in bytes at which the next file is started.
+    * @param fileCount the number of files in the set.
+    */
+   public WireCapture( String fileName, String contextName, long maxFileSize, int fileCount )
+   {
+      Validate.notBlank( fileName );
+      Validate.notNull( contextName );
+      Validate.isTrue( maxFileSize > 0, "maximum file size must be positive" );
+      Validate.isTrue( fileCount > 0, "file count must be positive" );
+
+      final String baseName = fileName.endsWith( ".pcap" ) ? fileName.substring( 0, fileName.length() - ".pcap".length() ) : fileName;
+      this.fileNamePrefix = baseName + "-" + contextName + "-";
+      this.maxFileSize = maxFileSize;
+      this.fileCount = fileCount;
+
+      writer = new Thread( this::write, "WireCapture-" + contextName );
+      writer.setDaemon( true );
+      writer.start();
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * Creates the capture of the traffic of a TCP circuit.
+    *
+    * @param socket the socket of the circuit.
+    * @return the capture of the circuit.
+    */
+   public TcpFlow createTcpFlow( Socket socket )
+   {
+      return new TcpFlow( ipv4( socket.getLocalAddress() ), socket.getLocalPort(), ipv4( socket.getInetAddress() ), socket.getPort() );
+   }
+
+   /**
+    * Captures a datagram.
+    *
+    * @param outbound whether the datagram was sent (true) or received (false).
+    * @param localAddress the local address of the socket.
+    * @param remoteAddress the address the datagram was sent to or received from.
+    * @param buffer the buffer containing the datagram.
+    * @param offset the position of the datagram in the buffer.
+    * @param length the length of the datagram.
+    */
+   public void captureDatagram( boolean outbound, InetSocketAddress localAddress, InetSocketAddress remoteAddress, ByteBuffer buffer, int offset, int length )
+   {
+      final int local = ipv4( localAddress.getAddress() );
+      final int remote = ipv4( remoteAddress.getAddress() );
+      final int capturedLength = Math.min( length, MAX_PACKET_SIZE - IP_HEADER_SIZE - UDP_HEADER_SIZE );
+      if ( outbound )
+      {
+         append( PROTOCOL_UDP, local, localAddress.getPort(), remote, remoteAddress.getPort(), null, false, buffer, offset, capturedLength );
+      }
+      else
+      {
+         append( PROTOCOL_UDP, remote, remoteAddress.getPort(), local, localAddress.getPort(), null, false, buffer, offset, capturedLength );
+      }
+   }
+
+   /**
+    * Returns the number of frames captured.
+    *
+    * @return the count.
+    */
+   public long getCapturedCount()
+   {
+      return capturedCount.sum();
+   }
+
+   /**
+    * Returns the number of frames dropped because the buffer was full.
+    *
+    * @return the count.
+    */
+   public long getDroppedCount()
+   {
+      return droppedCount.sum();
+   }
+
+   /**
+    * Stops the capture, writing the frames captured so far.
+    */
+   public void close()
+   {
+      synchronized ( lock )
+      {
+         closed = true;
+         lock.notifyAll();
+      }
+      try
+      {
+         writer.join( TimeUnit.SECONDS.toMillis( 5 ) );
+      }
+      catch ( InterruptedException e )
+      {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+
+   /**
+    * Returns the path of a file of the set.
+    *
+    * @param index the index of the file.
+    * @return the path.
+    */
+   Path getFile( int index )
+   {
+      return Paths.get( fileNamePrefix + index + ".pcap" );
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   private void append( byte protocol, int sourceAddress, int sourcePort, int destinationAddress, int destinationPort,
+                        TcpFlow flow, boolean outbound, ByteBuffer data, int offset, int length )
+   {
+      final long micros = startMicros + ( System.nanoTime() - startNanos ) / 1000;
+      final int packetSize = IP_HEADER_SIZE + ( protocol == PROTOCOL_TCP ? TCP_HEADER_SIZE : UDP_HEADER_SIZE ) + length;
+
+      synchronized ( lock )
+      {
+         if ( closed || pending.remaining() < RECORD_HEADER_SIZE + packetSize )
+         {
+            // the sequence numbers still advance, so that the gap shows in the capture
+            if ( flow != null )
+            {
+               flow.advance( outbound, length );
+            }
+            droppedCount.increment();
+            return;
+         }
+
+         // the pcap record header, little-endian like the file header
+         pending.putInt( Integer.reverseBytes( (int) ( micros / 1_000_000 ) ) );
+         pending.putInt( Integer.reverseBytes( (int) ( micros % 1_000_000 ) ) );
+         pending.putInt( Integer.reverseBytes( packetSize ) );
+         pending.putInt( Integer.reverseBytes( packetSize ) );
+
+         final int ipStart = pending.position();
+         pending.put( (byte) 0x45 ).put( (byte) 0 ).putShort( (short) packetSize );
+         pending.putShort( packetId++ ).putShort( (short) 0x4000 );
+         pending.put( (byte) 64 ).put( protocol ).putShort( (short) 0 );
+         pending.putInt( sourceAddress ).putInt( destinationAddress );
+         pending.putShort( ipStart + 10, ipChecksum( pending, ipStart ) );
+
+         pending.putShort( (short) sourcePort ).putShort( (short) destinationPort );
+         if ( protocol == PROTOCOL_TCP )
+         {
+            pending.putInt( outbound ? flow.sentSequence : flow.receivedSequence );
+            pending.putInt( outbound ? flow.receivedSequence : flow.sentSequence );
+            pending.putShort( TCP_FLAGS_PSH_ACK ).putShort( (short) 0xFFFF );
+            pending.putShort( (short) 0 ).putShort( (short) 0 );
+            flow.advance( outbound, length );
+         }
+         else
+         {
+            // a zero checksum means none for UDP over IPv4
+            pending.putShort( (short) ( UDP_HEADER_SIZE + length ) ).putShort( (short) 0 );
+         }
+
+         final int position = data.position();
+         final int limit = data.limit();
+         data.limit( offset + length ).position( offset );
+         pending.put( data );
+         data.limit( limit ).position( position );
+
+         if ( pending.position() > BUFFER_SIZE / 2 )
+         {
+            lock.notifyAll();
+         }
+      }
+      capturedCount.increment();
+   }
+
+   private void write()
+   {
+      try
+      {
+         while ( true )
+         {
+            final ByteBuffer buffer;
+            final boolean last;
+            synchronized ( lock )
+            {
+               if ( !closed )
+               {
+                  lock.wait( WRITE_PERIOD_MS );
+               }
+               last = closed;
+               buffer = pending;
+               pending = spare;
+               spare = buffer;
+            }
+
+            // the spare buffer is not touched by the I/O threads until the next swap
+            buffer.flip();
+            if ( buffer.hasRemaining() )
+            {
+               writeToFile( buffer );
+            }
+            buffer.clear();
+
+            if ( last )
+            {
+               break;
+            }
+         }
+      }
+      catch ( InterruptedException e )
+      {
+         Thread.currentThread().interrupt();
+      }
+      catch ( IOException e )
+      {
+         logger.log( Level.WARNING, "Failed to write the CA capture file, the capture is stopped.", e );
+         synchronized ( lock )
+         {
+            closed = true;
+         }
+      }
+      finally
+      {
+         closeFile();
+      }
+   }
+
+   private void writeToFile( ByteBuffer buffer ) throws IOException
+   {
+      // the buffer holds whole packets, so the files are rotated between buffers
+      if ( file == null || fileSize > PCAP_HEADER_SIZE && fileSize + buffer.remaining() > maxFileSize )
+      {
+         closeFile();
+         fileIndex = ( fileIndex + 1 ) % fileCount;
+         file = FileChannel.open( getFile( fileIndex ), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING );
+         fileSize = 0;
+         writeFully( createFileHeader() );
+      }
+      writeFully( buffer );
+   }
+
+   private void writeFully( ByteBuffer buffer ) throws IOException
+   {
+      while ( buffer.hasRemaining() )
+      {
+         fileSize += file.write( buffer );
+      }
+   }
+
+   private void closeFile()
+   {
+      if ( file != null )
+      {
+         try
+         {
+            file.close();
+         }
+         catch ( IOException e )
+         {
+            logger.log( Level.FINE, "Failed to close the CA capture file.", e );
+         }
+         file = null;
+      }
+   }
+
+   private static ByteBuffer createFileHeader()
+   {
+      final ByteBuffer header = ByteBuffer.allocate( PCAP_HEADER_SIZE );
+      header.putInt( Integer.reverseBytes( PCAP_MAGIC ) );
+      header.putShort( Short.reverseBytes( (short) 2 ) ).putShort( Short.reverseBytes( (short) 4 ) );
+      header.putInt( 0 ).putInt( 0 );
+      header.putInt( Integer.reverseBytes( MAX_PACKET_SIZE ) );
+      header.putInt( Integer.reverseBytes( LINKTYPE_RAW ) );
+      header.flip();
+      return header;
+   }
+
+   private static short ipChecksum( ByteBuffer buffer, int start )
+   {
+      int sum = 0;
+      for ( int i = 0; i < IP_HEADER_SIZE; i += 2 )
+      {
+         sum += buffer.getShort( start + i ) & 0xFFFF;
+      }
+      while ( ( sum >>> 16 ) != 0 )
+      {
+         sum = ( sum & 0xFFFF ) + ( sum >>> 16 );
+      }
+      return (short) ~sum;
+   }
+
+   private static int ipv4( InetAddress address )
+   {
+      // CA runs over IPv4; anything else is recorded as the unspecified address
+      return address instanceof Inet4Address ? ByteBuffer.wrap( address.getAddress() ).getInt() : 0;
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+   /**
+    * The capture of the traffic of a TCP circuit, which numbers the bytes of
+    * each direction of the circuit.
+    */
+   @ThreadSafe
+   public final class TcpFlow
+   {
+      private final int localAddress;
+      private final int localPort;
+      private final int remoteAddress;
+      private final int remotePort;
+
+      @GuardedBy( "lock" )
+      private int sentSequence = 1;
+
+      @GuardedBy( "lock" )
+      private int receivedSequence = 1;
+
+      private TcpFlow( int localAddress, int localPort, int remoteAddress, int remotePort )
+      {
+         this.localAddress = localAddress;
+         this.localPort = localPort;
+         this.remoteAddress = remoteAddress;
+         this.remotePort = remotePort;
+      }
+
+      @GuardedBy( "lock" )
+      private void advance( boolean outbound, int length )
+      {
+         if ( outbound )
+         {
+            sentSequence += length;
+         }
+         else
+         {
+            receivedSequence += length;
+         }
+      }
+
+      /**
+       * Captures the bytes sent on the circuit.
+       *
+       * @param buffer the buffer from which the bytes were written.
+       * @param offset the position of the bytes in the buffer.
+       * @param length the number of bytes.
+       */
+      public void captureSent( ByteBuffer buffer, int offset, int length )
+      {
+         for ( int done = 0; done < length; done += MAX_TCP_SEGMENT )
+         {
+            append( PROTOCOL_TCP, localAddress, localPort, remoteAddress, remotePort, this, true, buffer, offset + done, Math.min( MAX_TCP_SEGMENT, length - done ) );
+         }
+      }
+
+      /**
+       * Captures the bytes received on the circuit.
+       *
+       * @param buffer the buffer into which the bytes were read.
+       * @param offset the position of the bytes in the buffer.
+       * @param length the number of bytes.
+       */
+      public void captureReceived( ByteBuffer buffer, int offset, int length )
+      {
+         for ( int done = 0; done < length; done += MAX_TCP_SEGMENT )
+         {
+            append( PROTOCOL_TCP, remoteAddress, remotePort, localAddress, localPort, this, false, buffer, offset + done, Math.min( MAX_TCP_SEGMENT, length - done ) );
+         }
+      }
+   }
+
+}
@@ -0,0 +1,219 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.jfr;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.ThreadSafe;
+import org.epics.ca.Status;
+import org.epics.ca.util.logging.LibraryLogManager;
+
+import java.net.InetSocketAddress;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Emits Java Flight Recorder events for the operations of the CA library: the
+ * connection of channels and the search for them, gets, puts, the delivery of
+ * monitor notifications, flow control and the resizing of the circuit buffers.
+ *
+ * This class does not reference the jdk.jfr API, whose methods here do nothing.
+ * The {@link #INSTANCE} used by the library is only replaced by an implementation
+ * which emits the events when the API is present in the running JVM and a
+ * recorder is available, so the library runs unchanged on the JVMs without one.
+ * The implementation is compiled in a source set of its own, which the build leaves
+ * out where the JDK lacks the API, in which case this class is used everywhere.
+ *
+ * The begin methods return an opaque event, which is null when the event type is
+ * not enabled in any recording; the end methods accept null and then do nothing.
+ * The callers should pass the attributes of an event to its end method only, so
+ * that they are only formatted when the event is committed.
+ */
+@ThreadSafe
+public class FlightRecorderEvents
+{
+
+/*- Public attributes --------------------------------------------------------*/
+
+   /**
+    * The events of the library.
+    */
+   public static final FlightRecorderEvents INSTANCE = load();
+
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final String IMPLEMENTATION_CLASS_NAME = "org.epics.ca.impl.jfr.JfrFlightRecorderEvents";
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   FlightRecorderEvents()
+   {
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * Returns whether the events are emitted to the Java Flight Recorder.
+    *
+    * @return true if the jdk.jfr API is available.
+    */
+   public boolean isAvailable()
+   {
+      return false;
+   }
+
+   /**
+    * Begins the connection of a channel, from the start of its search.
+    *
+    * @return the event, or null.
+    */
+   public Object beginConnect()
+   {
+      return null;
+   }
+
+   /**
+    * Ends the connection of a channel.
+    *
+    * @param event the event returned by {@link #beginConnect()}, or null.
+    * @param channelName the name of the channel.
+    * @param server the address of the server which hosts it.
+    */
+   public void endConnect( Object event, String channelName, InetSocketAddress server )
+   {
+   }
+
+   /**
+    * Begins the search for a channel.
+    *
+    * @return the event, or null.
+    */
+   public Object beginSearch()
+   {
+      return null;
+   }
+
+   /**
+    * Ends the search for a channel, which has been found.
+    *
+    * @param event the event returned by {@link #beginSearch()}, or null.
+    * @param channelName the name of the channel.
+    * @param requests the number of search requests sent for it.
+    */
+   public void endSearch( Object event, String channelName, int requests )
+   {
+   }
+
+   /**
+    * Begins a get request.
+    *
+    * @return the event, or null.
+    */
+   public Object beginGet()
+   {
+      return null;
+   }
+
+   /**
+    * Ends a get request.
+    *
+    * @param event the event returned by {@link #beginGet()}, or null.
+    * @param channelName the name of the channel.
+    * @param elementCount the number of elements requested.
+    * @param status the completion status of the request.
+    */
+   public void endGet( Object event, String channelName, int elementCount, Status status )
+   {
+   }
+
+   /**
+    * Begins a put request.
+    *
+    * @return the event, or null.
+    */
+   public Object beginPut()
+   {
+      return null;
+   }
+
+   /**
+    * Ends a put request.
+    *
+    * @param event the event returned by {@link #beginPut()}, or null.
+    * @param channelName the name of the channel.
+    * @param elementCount the number of elements written.
+    * @param status the completion status of the request.
+    */
+   public void endPut( Object event, String channelName, int elementCount, Status status )
+   {
+   }
+
+   /**
+    * Returns a consumer which emits an event for each notification delivered to
+    * the specified consumer, covering the time which it takes to process it.
+    *
+    * @param consumer the consumer of the notifications of a monitor.
+    * @param channelName the name of the channel of the monitor.
+    * @param notifier the name of the notification service which delivers them.
+    * @param <T> the type of the notified values.
+    * @return the consumer itself when the events are not available.
+    */
+   public <T> Consumer<? super T> monitorDeliveryConsumer( Consumer<? super T> consumer, String channelName, String notifier )
+   {
+      return consumer;
+   }
+
+   /**
+    * Records a change of the flow control state of a circuit.
+    *
+    * @param server the address of the server at the other end of the circuit.
+    * @param enabled whether flow control was enabled, suspending the monitor updates.
+    */
+   public void flowControl( InetSocketAddress server, boolean enabled )
+   {
+   }
+
+   /**
+    * Records the resizing of a buffer of a circuit.
+    *
+    * @param server the address of the server at the other end of the circuit.
+    * @param buffer the name of the buffer.
+    * @param oldCapacity the capacity of the buffer before the resize.
+    * @param newCapacity the capacity of the buffer after the resize.
+    */
+   public void bufferResize( InetSocketAddress server, String buffer, int oldCapacity, int newCapacity )
+   {
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+/*- Private methods ----------------------------------------------------------*/
+
+   private static FlightRecorderEvents load()
+   {
+      // the logger of the class is not yet initialized when the instance is loaded
+      final Logger logger = LibraryLogManager.getLogger( FlightRecorderEvents.class );
+      try
+      {
+         // the implementation fails to load where the jdk.jfr API is missing
+         final FlightRecorderEvents events = (FlightRecorderEvents) Class.forName( IMPLEMENTATION_CLASS_NAME ).getDeclaredConstructor().newInstance();
+         if ( events.isAvailable() )
+         {
+            logger.fine( "Java Flight Recorder events are available." );
+            return events;
+         }
+      }
+      catch ( ReflectiveOperationException | LinkageError ex )
+      {
+         logger.log( Level.FINE, "Java Flight Recorder events are not available.", ex );
+      }
+      return new FlightRecorderEvents();
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
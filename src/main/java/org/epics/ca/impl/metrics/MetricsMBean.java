@@ -0,0 +1,177 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.metrics;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.lang3.Validate;
+import org.epics.ca.util.logging.LibraryLogManager;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Exposes the contents of a MetricsRegistry as the read-only attributes of a
+ * dynamic MBean in the platform MBean server.
+ *
+ * The attribute names are the keys returned by MetricsRegistry#getSnapshot. Since
+ * circuits come and go the set of attributes changes over the lifetime of the MBean.
+ */
+@ThreadSafe
+public class MetricsMBean implements DynamicMBean, AutoCloseable
+{
+
+/*- Public attributes --------------------------------------------------------*/
+
+   /**
+    * The domain of the MBean object names.
+    */
+   public static final String DOMAIN = "org.epics.ca";
+
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final Logger logger = LibraryLogManager.getLogger( MetricsMBean.class );
+
+   private final MetricsRegistry registry;
+   private final ObjectName objectName;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Creates a new instance and registers it with the platform MBean server under
+    * the name org.epics.ca:type=Context,name=[contextName]. Failure to register
+    * is logged but is otherwise ignored.
+    *
+    * @param registry the registry whose metrics are to be exposed.
+    * @param contextName the name which distinguishes the context within the JVM.
+    */
+   public MetricsMBean( MetricsRegistry registry, String contextName )
+   {
+      this.registry = Validate.notNull( registry );
+      this.objectName = createObjectName( Validate.notEmpty( contextName ) );
+
+      try
+      {
+         ManagementFactory.getPlatformMBeanServer().registerMBean( this, objectName );
+         logger.finer( "Registered MBean " + objectName + "." );
+      }
+      catch ( JMException ex )
+      {
+         logger.log( Level.WARNING, "Failed to register MBean " + objectName + ".", ex );
+      }
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * Returns the name under which the MBean is registered.
+    *
+    * @return the result.
+    */
+   public ObjectName getObjectName()
+   {
+      return objectName;
+   }
+
+   @Override
+   public Object getAttribute( String attribute ) throws AttributeNotFoundException
+   {
+      final Number value = registry.getSnapshot().get( attribute );
+      if ( value == null )
+      {
+         throw new AttributeNotFoundException( attribute );
+      }
+      return value;
+   }
+
+   @Override
+   public void setAttribute( Attribute attribute ) throws AttributeNotFoundException
+   {
+      throw new AttributeNotFoundException( "attribute '" + attribute.getName() + "' is read-only" );
+   }
+
+   @Override
+   public AttributeList getAttributes( String[] attributes )
+   {
+      final Map<String, Number> snapshot = registry.getSnapshot();
+      final AttributeList result = new AttributeList();
+      for ( String attribute : attributes )
+      {
+         final Number value = snapshot.get( attribute );
+         if ( value != null )
+         {
+            result.add( new Attribute( attribute, value ) );
+         }
+      }
+      return result;
+   }
+
+   @Override
+   public AttributeList setAttributes( AttributeList attributes )
+   {
+      return new AttributeList();
+   }
+
+   @Override
+   public Object invoke( String actionName, Object[] params, String[] signature ) throws ReflectionException
+   {
+      throw new ReflectionException( new NoSuchMethodException( actionName ) );
+   }
+
+   @Override
+   public MBeanInfo getMBeanInfo()
+   {
+      final Map<String, Number> snapshot = registry.getSnapshot();
+      final MBeanAttributeInfo[] attributeInfos = snapshot.entrySet().stream()
+            .map( e -> new MBeanAttributeInfo( e.getKey(), e.getValue().getClass().getName(), e.getKey(), true, false, false ) )
+            .toArray( MBeanAttributeInfo[]::new );
+
+      return new MBeanInfo( getClass().getName(), "CA library context metrics", attributeInfos, null, null, null );
+   }
+
+   /**
+    * Unregisters the MBean from the platform MBean server.
+    */
+   @Override
+   public void close()
+   {
+      try
+      {
+         ManagementFactory.getPlatformMBeanServer().unregisterMBean( objectName );
+      }
+      catch ( InstanceNotFoundException ex )
+      {
+         // noop
+      }
+      catch ( JMException ex )
+      {
+         logger.log( Level.WARNING, "Failed to unregister MBean " + objectName + ".", ex );
+      }
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+/*- Private methods ----------------------------------------------------------*/
+
+   private static ObjectName createObjectName( String contextName )
+   {
+      try
+      {
+         return new ObjectName( DOMAIN + ":type=Context,name=" + contextName );
+      }
+      catch ( MalformedObjectNameException ex )
+      {
+         throw new IllegalArgumentException( "invalid context name: '" + contextName + "'", ex );
+      }
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
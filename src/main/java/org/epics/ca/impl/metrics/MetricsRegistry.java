@@ -0,0 +1,392 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.metrics;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.lang3.Validate;
+import org.epics.ca.impl.monitor.latency.MonitorLatencyHistogram;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * A registry of the counters, gauges and histograms which describe the activity
+ * of a single CA library context.
+ *
+ * Each metric is identified by a name which follows the Prometheus naming
+ * conventions and by an optional set of label pairs (eg "circuit", "10.0.0.1:5064").
+ * The labels supplied when the registry was created are added to every metric.
+ *
+ * Counters are LongAdder instances and histograms are MonitorLatencyHistogram
+ * instances, so updating a metric never blocks and never allocates. The components
+ * which update the metrics hold on to the returned objects; the registry itself is
+ * only consulted when metrics are created, removed or exported.
+ */
+@ThreadSafe
+public class MetricsRegistry
+{
+
+/*- Public attributes --------------------------------------------------------*/
+
+   public enum Type
+   {
+      COUNTER,
+      GAUGE,
+      SUMMARY
+   }
+
+   /**
+    * The percentiles which are exported for each histogram.
+    */
+   public static final double[] EXPORTED_PERCENTILES = { 50.0, 90.0, 99.0, 99.9 };
+
+/*- Private attributes -------------------------------------------------------*/
+
+   private final String[] commonLabels;
+   private final ConcurrentMap<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Creates a new registry.
+    *
+    * @param commonLabels label pairs (name followed by value) to be added to every metric.
+    * @throws IllegalArgumentException if the label pairs were incomplete or invalid.
+    */
+   public MetricsRegistry( String... commonLabels )
+   {
+      validateLabels( commonLabels );
+      this.commonLabels = commonLabels.clone();
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * Returns the counter with the specified name and labels, creating it if necessary.
+    *
+    * @param name the metric name.
+    * @param help a short description of the metric.
+    * @param labels label pairs (name followed by value).
+    * @return the counter.
+    * @throws IllegalArgumentException if the name or label pairs were invalid.
+    * @throws IllegalStateException if a metric of a different kind was already registered under the same key.
+    */
+   public LongAdder counter( String name, String help, String... labels )
+   {
+      return register( new Metric( name, help, Type.COUNTER, render( labels ), new LongAdder() ) ).adder;
+   }
+
+   /**
+    * Registers a counter whose value is maintained elsewhere and which is obtained
+    * from the supplier whenever it is exported. An existing registration with the
+    * same name and labels is replaced.
+    *
+    * @param name the metric name.
+    * @param help a short description of the metric.
+    * @param supplier the source of the value.
+    * @param labels label pairs (name followed by value).
+    * @throws IllegalArgumentException if the name or label pairs were invalid.
+    */
+   public void counter( String name, String help, LongSupplier supplier, String... labels )
+   {
+      replace( new Metric( name, help, Type.COUNTER, render( labels ), Validate.notNull( supplier ) ) );
+   }
+
+   /**
+    * Registers a gauge whose value is obtained from the supplier whenever it is exported.
+    * An existing registration with the same name and labels is replaced.
+    *
+    * @param name the metric name.
+    * @param help a short description of the metric.
+    * @param supplier the source of the value.
+    * @param labels label pairs (name followed by value).
+    * @throws IllegalArgumentException if the name or label pairs were invalid.
+    */
+   public void gauge( String name, String help, LongSupplier supplier, String... labels )
+   {
+      replace( new Metric( name, help, Type.GAUGE, render( labels ), Validate.notNull( supplier ) ) );
+   }
+
+   /**
+    * Returns the histogram with the specified name and labels, creating it if necessary.
+    * The recorded values are in nanoseconds; they are exported in seconds.
+    *
+    * @param name the metric name.
+    * @param help a short description of the metric.
+    * @param labels label pairs (name followed by value).
+    * @return the histogram.
+    * @throws IllegalArgumentException if the name or label pairs were invalid.
+    * @throws IllegalStateException if a metric of a different kind was already registered under the same key.
+    */
+   public MonitorLatencyHistogram histogram( String name, String help, String... labels )
+   {
+      return register( new Metric( name, help, Type.SUMMARY, render( labels ), new MonitorLatencyHistogram() ) ).histogram;
+   }
+
+   /**
+    * Registers a histogram which is maintained elsewhere. An existing registration
+    * with the same name and labels is replaced.
+    *
+    * @param name the metric name.
+    * @param help a short description of the metric.
+    * @param histogram the histogram.
+    * @param labels label pairs (name followed by value).
+    * @throws IllegalArgumentException if the name or label pairs were invalid.
+    */
+   public void histogram( String name, String help, MonitorLatencyHistogram histogram, String... labels )
+   {
+      replace( new Metric( name, help, Type.SUMMARY, render( labels ), Validate.notNull( histogram ) ) );
+   }
+
+   /**
+    * Removes every metric which carries all of the specified label pairs. Typically
+    * used to discard the metrics of a circuit when it is closed.
+    *
+    * @param labels label pairs (name followed by value).
+    * @return the number of metrics removed.
+    */
+   public int remove( String... labels )
+   {
+      validateLabels( labels );
+      final List<String> wanted = new ArrayList<>();
+      for ( int i = 0; i < labels.length; i += 2 )
+      {
+         wanted.add( renderPair( labels[ i ], labels[ i + 1 ] ) );
+      }
+
+      int removed = 0;
+      for ( Iterator<Metric> it = metrics.values().iterator(); it.hasNext(); )
+      {
+         final Metric metric = it.next();
+         if ( wanted.stream().allMatch( pair -> metric.labels.contains( pair ) ) )
+         {
+            it.remove();
+            removed++;
+         }
+      }
+      return removed;
+   }
+
+   /**
+    * Returns the current value of every metric, keyed in the form name{labels}.
+    *
+    * Counters and gauges are returned as Long values. Each histogram is expanded
+    * into name_count (Long), name_sum, name_max and one name_pNN entry for each
+    * exported percentile (Double values, in seconds).
+    *
+    * @return the result, sorted by key.
+    */
+   public Map<String, Number> getSnapshot()
+   {
+      final Map<String, Number> snapshot = new TreeMap<>();
+      for ( Metric metric : metrics.values() )
+      {
+         final String labels = metric.labels.isEmpty() ? "" : "{" + metric.labels + "}";
+         if ( metric.type == Type.SUMMARY )
+         {
+            final MonitorLatencyHistogram histogram = metric.histogram;
+            snapshot.put( metric.name + "_count" + labels, histogram.getCount() );
+            snapshot.put( metric.name + "_sum" + labels, toSeconds( histogram.getMeanValue() * histogram.getCount() ) );
+            snapshot.put( metric.name + "_max" + labels, toSeconds( histogram.getMaxValue() ) );
+            for ( double percentile : EXPORTED_PERCENTILES )
+            {
+               final String suffix = "_p" + Double.toString( percentile ).replace( ".0", "" ).replace( ".", "" );
+               snapshot.put( metric.name + suffix + labels, toSeconds( histogram.getValueAtPercentile( percentile ) ) );
+            }
+         }
+         else
+         {
+            snapshot.put( metric.name + labels, metric.getValue() );
+         }
+      }
+      return snapshot;
+   }
+
+   /**
+    * Returns the metrics in this registry in the Prometheus text exposition format (version 0.0.4).
+    *
+    * @return the result.
+    */
+   public String toPrometheusText()
+   {
+      return toPrometheusText( Collections.singletonList( this ) );
+   }
+
+   /**
+    * Returns the metrics in the specified registries in the Prometheus text exposition
+    * format (version 0.0.4). Metrics of the same name from different registries are
+    * written as a single metric family; the common labels of each registry keep the
+    * samples distinct.
+    *
+    * @param registries the registries.
+    * @return the result.
+    */
+   public static String toPrometheusText( Collection<MetricsRegistry> registries )
+   {
+      final Map<String, List<Metric>> families = new TreeMap<>();
+      for ( MetricsRegistry registry : registries )
+      {
+         for ( Metric metric : registry.metrics.values() )
+         {
+            families.computeIfAbsent( metric.name, k -> new ArrayList<>() ).add( metric );
+         }
+      }
+
+      final StringBuilder sb = new StringBuilder();
+      for ( List<Metric> family : families.values() )
+      {
+         final Metric first = family.get( 0 );
+         sb.append( "# HELP " ).append( first.name ).append( ' ' ).append( escapeHelp( first.help ) ).append( '\n' );
+         sb.append( "# TYPE " ).append( first.name ).append( ' ' ).append( first.type.name().toLowerCase( Locale.ROOT ) ).append( '\n' );
+         for ( Metric metric : family )
+         {
+            if ( metric.type == Type.SUMMARY )
+            {
+               final MonitorLatencyHistogram histogram = metric.histogram;
+               for ( double percentile : EXPORTED_PERCENTILES )
+               {
+                  final String quantile = renderPair( "quantile", BigDecimal.valueOf( percentile ).movePointLeft( 2 ).stripTrailingZeros().toPlainString() );
+                  appendSample( sb, metric.name, metric.labels, quantile, Double.toString( toSeconds( histogram.getValueAtPercentile( percentile ) ) ) );
+               }
+               appendSample( sb, metric.name + "_sum", metric.labels, "", Double.toString( toSeconds( histogram.getMeanValue() * histogram.getCount() ) ) );
+               appendSample( sb, metric.name + "_count", metric.labels, "", Long.toString( histogram.getCount() ) );
+            }
+            else
+            {
+               appendSample( sb, metric.name, metric.labels, "", Long.toString( metric.getValue() ) );
+            }
+         }
+      }
+      return sb.toString();
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+
+   static String escapeLabelValue( String value )
+   {
+      return value.replace( "\\", "\\\\" ).replace( "\"", "\\\"" ).replace( "\n", "\\n" );
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   private Metric register( Metric metric )
+   {
+      final Metric existing = metrics.putIfAbsent( metric.key, metric );
+      if ( existing == null )
+      {
+         return metric;
+      }
+      Validate.validState( ( existing.type == metric.type ) && ( existing.adder != null ) == ( metric.adder != null ), "metric '%s' already registered with a different kind", metric.key );
+      return existing;
+   }
+
+   private void replace( Metric metric )
+   {
+      metrics.put( metric.key, metric );
+   }
+
+   private String render( String... labels )
+   {
+      validateLabels( labels );
+      final StringJoiner joiner = new StringJoiner( "," );
+      for ( int i = 0; i < commonLabels.length; i += 2 )
+      {
+         joiner.add( renderPair( commonLabels[ i ], commonLabels[ i + 1 ] ) );
+      }
+      for ( int i = 0; i < labels.length; i += 2 )
+      {
+         joiner.add( renderPair( labels[ i ], labels[ i + 1 ] ) );
+      }
+      return joiner.toString();
+   }
+
+   private static String renderPair( String name, String value )
+   {
+      return name + "=\"" + escapeLabelValue( value ) + "\"";
+   }
+
+   private static void validateLabels( String[] labels )
+   {
+      Validate.notNull( labels );
+      Validate.isTrue( labels.length % 2 == 0, "labels must be supplied as name/value pairs" );
+      for ( int i = 0; i < labels.length; i += 2 )
+      {
+         Validate.isTrue( isValidName( labels[ i ] ), "invalid label name: '%s'", labels[ i ] );
+         Validate.notNull( labels[ i + 1 ], "null label value" );
+      }
+   }
+
+   private static boolean isValidName( String name )
+   {
+      return ( name != null ) && name.matches( "[a-zA-Z_][a-zA-Z0-9_]*" );
+   }
+
+   private static void appendSample( StringBuilder sb, String name, String labels, String extraLabel, String value )
+   {
+      sb.append( name );
+      if ( ! labels.isEmpty() || ! extraLabel.isEmpty() )
+      {
+         sb.append( '{' ).append( labels );
+         if ( ! labels.isEmpty() && ! extraLabel.isEmpty() )
+         {
+            sb.append( ',' );
+         }
+         sb.append( extraLabel ).append( '}' );
+      }
+      sb.append( ' ' ).append( value ).append( '\n' );
+   }
+
+   private static String escapeHelp( String help )
+   {
+      return help.replace( "\\", "\\\\" ).replace( "\n", "\\n" );
+   }
+
+   private static double toSeconds( double nanos )
+   {
+      return nanos / TimeUnit.SECONDS.toNanos( 1 );
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+   private static final class Metric
+   {
+      private final String name;
+      private final String help;
+      private final Type type;
+      private final String labels;
+      private final String key;
+      private final LongAdder adder;
+      private final LongSupplier supplier;
+      private final MonitorLatencyHistogram histogram;
+
+      private Metric( String name, String help, Type type, String labels, Object source )
+      {
+         Validate.isTrue( isValidName( name ), "invalid metric name: '%s'", name );
+         this.name = name;
+         this.help = Validate.notNull( help );
+         this.type = type;
+         this.labels = labels;
+         this.key = name + "{" + labels + "}";
+         this.adder = source instanceof LongAdder ? (LongAdder) source : null;
+         this.supplier = source instanceof LongSupplier ? (LongSupplier) source : null;
+         this.histogram = source instanceof MonitorLatencyHistogram ? (MonitorLatencyHistogram) source : null;
+      }
+
+      private long getValue()
+      {
+         return adder != null ? adder.sum() : supplier.getAsLong();
+      }
+   }
+
+}
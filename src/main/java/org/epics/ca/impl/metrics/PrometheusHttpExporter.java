@@ -0,0 +1,179 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.metrics;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.lang3.Validate;
+import org.epics.ca.util.logging.LibraryLogManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Serves the metrics of one or more registries in the Prometheus text exposition
+ * format on the path "/metrics" of a local HTTP endpoint.
+ *
+ * Every CA context in the JVM which is configured to use the same port shares
+ * the same endpoint. The endpoint is started when the first registry is added
+ * and is stopped when the last registry is removed. It is bound to the loopback
+ * interface only; remote scraping requires a local agent or proxy.
+ *
+ * Requests are handled on the HTTP server's own dispatcher thread.
+ */
+@ThreadSafe
+public class PrometheusHttpExporter
+{
+
+/*- Public attributes --------------------------------------------------------*/
+
+   /**
+    * The path on which the metrics are served.
+    */
+   public static final String PATH = "/metrics";
+
+   /**
+    * The content type of the Prometheus text exposition format.
+    */
+   public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final Logger logger = LibraryLogManager.getLogger( PrometheusHttpExporter.class );
+
+   private static final Map<Integer, PrometheusHttpExporter> exporters = new HashMap<>();
+
+   private final HttpServer server;
+   private final List<MetricsRegistry> registries = new ArrayList<>();
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   private PrometheusHttpExporter( int port ) throws IOException
+   {
+      server = HttpServer.create( new InetSocketAddress( InetAddress.getLoopbackAddress(), port ), 0 );
+      server.createContext( PATH, this::handle );
+      server.setExecutor( null );
+      server.start();
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * Adds the registry to the set of registries served on the specified port,
+    * starting the endpoint if necessary. Failure to start the endpoint is logged
+    * but is otherwise ignored.
+    *
+    * @param port the local TCP port.
+    * @param registry the registry.
+    * @throws IllegalArgumentException if the port was out of range.
+    */
+   public static void addRegistry( int port, MetricsRegistry registry )
+   {
+      Validate.inclusiveBetween( 1, 65535, port, "port out of range" );
+      Validate.notNull( registry );
+
+      synchronized ( exporters )
+      {
+         PrometheusHttpExporter exporter = exporters.get( port );
+         if ( exporter == null )
+         {
+            try
+            {
+               exporter = new PrometheusHttpExporter( port );
+            }
+            catch ( IOException ex )
+            {
+               logger.log( Level.WARNING, "Failed to start the Prometheus metrics endpoint on port " + port + ".", ex );
+               return;
+            }
+            exporters.put( port, exporter );
+            logger.info( "Serving CA library metrics on http://localhost:" + port + PATH );
+         }
+         synchronized ( exporter.registries )
+         {
+            exporter.registries.add( registry );
+         }
+      }
+   }
+
+   /**
+    * Removes the registry from the set of registries served on the specified port,
+    * stopping the endpoint if no registries remain.
+    *
+    * @param port the local TCP port.
+    * @param registry the registry.
+    */
+   public static void removeRegistry( int port, MetricsRegistry registry )
+   {
+      synchronized ( exporters )
+      {
+         final PrometheusHttpExporter exporter = exporters.get( port );
+         if ( exporter == null )
+         {
+            return;
+         }
+
+         final boolean empty;
+         synchronized ( exporter.registries )
+         {
+            exporter.registries.remove( registry );
+            empty = exporter.registries.isEmpty();
+         }
+         if ( empty )
+         {
+            exporters.remove( port );
+            exporter.server.stop( 0 );
+            logger.finer( "Stopped the Prometheus metrics endpoint on port " + port + "." );
+         }
+      }
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+/*- Private methods ----------------------------------------------------------*/
+
+   private void handle( HttpExchange exchange ) throws IOException
+   {
+      try
+      {
+         if ( ! "GET".equals( exchange.getRequestMethod() ) )
+         {
+            exchange.sendResponseHeaders( 405, -1 );
+            return;
+         }
+
+         final List<MetricsRegistry> snapshot;
+         synchronized ( registries )
+         {
+            snapshot = new ArrayList<>( registries );
+         }
+         final byte[] body = MetricsRegistry.toPrometheusText( snapshot ).getBytes( StandardCharsets.UTF_8 );
+
+         exchange.getResponseHeaders().set( "Content-Type", CONTENT_TYPE );
+         exchange.sendResponseHeaders( 200, body.length );
+         try ( OutputStream os = exchange.getResponseBody() )
+         {
+            os.write( body );
+         }
+      }
+      finally
+      {
+         exchange.close();
+      }
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
@@ -0,0 +1,200 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.metrics;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.lang3.Validate;
+import org.epics.ca.util.logging.LibraryLogManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Samples the traffic counters of the channels of a context periodically and
+ * ranks the process variables by update rate and by byte rate over a sliding
+ * window, so that the PVs responsible for saturating a link can be identified.
+ *
+ * Each sample records the cumulative counts of every channel in a small ring
+ * of slots, one per sample in the window, and computes its rates since the
+ * oldest slot; the channels themselves only increment their counters. After
+ * each sample the top {@link #EXPORTED_TOP_N} PVs of each ranking are exported
+ * as gauges labelled with their rank and name, replacing those of the previous
+ * sample.
+ */
+@ThreadSafe
+public final class PvTrafficAccounting implements Runnable
+{
+
+/*- Public attributes --------------------------------------------------------*/
+
+   /**
+    * The period at which the counters should be sampled.
+    */
+   public static final long SAMPLE_PERIOD_MS = 5000;
+
+   /**
+    * The number of sample periods in the sliding window.
+    */
+   public static final int WINDOW_SAMPLES = 12;
+
+   /**
+    * The number of PVs of each ranking exported as metrics.
+    */
+   public static final int EXPORTED_TOP_N = 10;
+
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final Logger logger = LibraryLogManager.getLogger( PvTrafficAccounting.class );
+
+   private final MetricsRegistry metricsRegistry;
+   private final Supplier<Collection<TrafficCounters>> countersSupplier;
+
+   // The times of the samples in the window; accessed only by the sampling thread.
+   private final long[] sampleTimes = new long[ WINDOW_SAMPLES + 1 ];
+   private long sampleCount;
+
+   private volatile List<TrafficCounters> sampled = Collections.emptyList();
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Creates an accounting of the traffic of the channels of a context.
+    *
+    * @param metricsRegistry the registry to which the rankings are exported.
+    * @param countersSupplier supplies the counters of the channels at each sample.
+    */
+   public PvTrafficAccounting( MetricsRegistry metricsRegistry, Supplier<Collection<TrafficCounters>> countersSupplier )
+   {
+      this.metricsRegistry = Validate.notNull( metricsRegistry );
+      this.countersSupplier = Validate.notNull( countersSupplier );
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * Samples the counters.
+    */
+   @Override
+   public void run()
+   {
+      try
+      {
+         sample( System.nanoTime() );
+      }
+      catch ( Throwable th )
+      {
+         logger.log( Level.WARNING, "Unexpected exception caught while sampling the PV traffic counters.", th );
+      }
+   }
+
+   /**
+    * Returns the PVs with the highest rates as of the last sample.
+    *
+    * @param n the maximum number of PVs in each ranking.
+    * @return the report.
+    */
+   public TrafficReport getReport( int n )
+   {
+      Validate.isTrue( n >= 0, "n must not be negative" );
+
+      final List<TrafficCounters> counters = sampled;
+      final long windowSeconds = TimeUnit.MILLISECONDS.toSeconds( SAMPLE_PERIOD_MS * WINDOW_SAMPLES );
+      return new TrafficReport( windowSeconds, top( counters, n, TrafficReport.Entry::getUpdateRate ), top( counters, n, TrafficReport.Entry::getByteRate ) );
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+
+   /**
+    * Samples the counters at the specified time and exports the rankings.
+    *
+    * @param now the value of System.nanoTime().
+    */
+   void sample( long now )
+   {
+      final int windowSize = sampleTimes.length;
+      final int slot = (int) ( sampleCount % windowSize );
+      final int oldestSlot = (int) ( sampleCount < WINDOW_SAMPLES ? 0 : ( sampleCount - WINDOW_SAMPLES ) % windowSize );
+      sampleTimes[ slot ] = now;
+
+      final List<TrafficCounters> counters = new ArrayList<>( countersSupplier.get() );
+      for ( TrafficCounters counter : counters )
+      {
+         counter.sample( slot, oldestSlot, windowSize, sampleTimes[ oldestSlot ], now );
+      }
+      sampleCount++;
+      sampled = counters;
+
+      final TrafficReport report = getReport( EXPORTED_TOP_N );
+      export( "updates", "ca_pv_top_updates_per_second", "The PVs which received the most updates over the last minute.", report.getTopByUpdateRate(), TrafficReport.Entry::getUpdateRate );
+      export( "bytes", "ca_pv_top_bytes_per_second", "The PVs which received the most bytes over the last minute.", report.getTopByByteRate(), TrafficReport.Entry::getByteRate );
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   private void export( String ranking, String name, String help, List<TrafficReport.Entry> entries, ToDoubleFunction<TrafficReport.Entry> rate )
+   {
+      metricsRegistry.remove( "top", ranking );
+      for ( int i = 0; i < entries.size(); i++ )
+      {
+         final TrafficReport.Entry entry = entries.get( i );
+         final long value = Math.round( rate.applyAsDouble( entry ) );
+         metricsRegistry.gauge( name, help, () -> value, "top", ranking, "rank", String.valueOf( i + 1 ), "pv", entry.getName() );
+      }
+   }
+
+   private static List<TrafficReport.Entry> top( List<TrafficCounters> counters, int n, ToDoubleFunction<TrafficReport.Entry> rate )
+   {
+      if ( n == 0 )
+      {
+         return Collections.emptyList();
+      }
+
+      // a min-heap of the n highest rates, so that ranking does not sort every channel;
+      // the entries capture the rates, which change while a sample is being taken
+      final Comparator<TrafficReport.Entry> comparator = Comparator.comparingDouble( rate );
+      final PriorityQueue<TrafficReport.Entry> highest = new PriorityQueue<>( n, comparator );
+      for ( TrafficCounters counter : counters )
+      {
+         if ( counter.getUpdateRate() <= 0 )
+         {
+            continue;
+         }
+         final TrafficReport.Entry entry = new TrafficReport.Entry( counter );
+         if ( highest.size() < n )
+         {
+            highest.add( entry );
+         }
+         else if ( comparator.compare( entry, highest.peek() ) > 0 )
+         {
+            highest.poll();
+            highest.add( entry );
+         }
+      }
+
+      final List<TrafficReport.Entry> entries = new ArrayList<>( highest.size() );
+      while ( !highest.isEmpty() )
+      {
+         entries.add( highest.poll() );
+      }
+      Collections.reverse( entries );
+      return entries;
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
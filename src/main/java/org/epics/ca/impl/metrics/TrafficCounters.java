@@ -0,0 +1,210 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.metrics;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.lang3.Validate;
+import org.epics.ca.Constants;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * The traffic received for a single process variable, by a channel or by one of
+ * its subscriptions: the number of updates, the bytes which carried them, the
+ * updates which overran the notification buffer and the time of the last update.
+ *
+ * Recording an update costs a few uncontended atomic additions and does not
+ * allocate. The counters are only created when PV traffic accounting is enabled.
+ *
+ * The update and byte rates over the sliding window are computed for the counters
+ * of the channels by {@link PvTrafficAccounting}; they stay zero for the counters
+ * of subscriptions.
+ */
+@ThreadSafe
+public final class TrafficCounters
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final AtomicLongFieldUpdater<TrafficCounters> UPDATES = AtomicLongFieldUpdater.newUpdater( TrafficCounters.class, "updates" );
+   private static final AtomicLongFieldUpdater<TrafficCounters> BYTES = AtomicLongFieldUpdater.newUpdater( TrafficCounters.class, "bytes" );
+   private static final AtomicLongFieldUpdater<TrafficCounters> OVERRUNS = AtomicLongFieldUpdater.newUpdater( TrafficCounters.class, "overruns" );
+
+   private final String name;
+
+   private volatile long updates;
+   private volatile long bytes;
+   private volatile long overruns;
+   private volatile long lastUpdateMillis;
+
+   private volatile double updateRate;
+   private volatile double byteRate;
+
+   // The cumulative values at each sample of the window; accessed only by the sampling thread.
+   private long[] sampledUpdates;
+   private long[] sampledBytes;
+   private long firstSampleNanos;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Creates the counters of a process variable.
+    *
+    * @param name the name of the process variable.
+    */
+   public TrafficCounters( String name )
+   {
+      this.name = Validate.notNull( name );
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * Records an update.
+    *
+    * @param messageBytes the size of the message which carried the update, header included.
+    * @param overrun whether the update overran the notification buffer.
+    */
+   public void record( int messageBytes, boolean overrun )
+   {
+      UPDATES.incrementAndGet( this );
+      BYTES.addAndGet( this, messageBytes );
+      if ( overrun )
+      {
+         OVERRUNS.incrementAndGet( this );
+      }
+      lastUpdateMillis = System.currentTimeMillis();
+   }
+
+   /**
+    * Returns the size of the message which carried a payload of the specified size.
+    *
+    * @param payloadSize the size of the payload.
+    * @return the size including the header, which is extended for large payloads.
+    */
+   public static int messageSize( int payloadSize )
+   {
+      return payloadSize + ( payloadSize < 0xFFFF ? Constants.CA_MESSAGE_HEADER_SIZE : Constants.CA_EXTENDED_MESSAGE_HEADER_SIZE );
+   }
+
+   /**
+    * Returns the name of the process variable.
+    *
+    * @return the name.
+    */
+   public String getName()
+   {
+      return name;
+   }
+
+   /**
+    * Returns the number of updates received.
+    *
+    * @return the count.
+    */
+   public long getUpdateCount()
+   {
+      return updates;
+   }
+
+   /**
+    * Returns the number of bytes received, including the message headers.
+    *
+    * @return the count.
+    */
+   public long getByteCount()
+   {
+      return bytes;
+   }
+
+   /**
+    * Returns the number of updates which overran the notification buffer, so that
+    * the oldest value in the buffer was discarded.
+    *
+    * @return the count.
+    */
+   public long getOverrunCount()
+   {
+      return overruns;
+   }
+
+   /**
+    * Returns the time of the last update.
+    *
+    * @return the time in milliseconds since the epoch; zero if there has been no update.
+    */
+   public long getLastUpdateMillis()
+   {
+      return lastUpdateMillis;
+   }
+
+   /**
+    * Returns the rate of the updates over the sliding window, as of the last sample.
+    *
+    * @return the rate in updates per second.
+    */
+   public double getUpdateRate()
+   {
+      return updateRate;
+   }
+
+   /**
+    * Returns the rate of the bytes over the sliding window, as of the last sample.
+    *
+    * @return the rate in bytes per second.
+    */
+   public double getByteRate()
+   {
+      return byteRate;
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+
+   /**
+    * Records the cumulative values in a slot of the window and computes the rates
+    * since the oldest slot. Counters sampled for the first time fill the whole
+    * window with their current values, so their rates are computed from then on.
+    *
+    * @param slot the slot of this sample.
+    * @param oldestSlot the slot of the oldest sample in the window.
+    * @param windowSize the number of slots.
+    * @param windowStartNanos the time of the oldest sample in the window.
+    * @param now the time of this sample.
+    */
+   void sample( int slot, int oldestSlot, int windowSize, long windowStartNanos, long now )
+   {
+      final long currentUpdates = updates;
+      final long currentBytes = bytes;
+      if ( sampledUpdates == null )
+      {
+         sampledUpdates = new long[ windowSize ];
+         sampledBytes = new long[ windowSize ];
+         Arrays.fill( sampledUpdates, currentUpdates );
+         Arrays.fill( sampledBytes, currentBytes );
+         firstSampleNanos = now;
+         return;
+      }
+
+      sampledUpdates[ slot ] = currentUpdates;
+      sampledBytes[ slot ] = currentBytes;
+
+      final long elapsedNanos = now - ( windowStartNanos - firstSampleNanos > 0 ? windowStartNanos : firstSampleNanos );
+      if ( elapsedNanos > 0 )
+      {
+         updateRate = ( currentUpdates - sampledUpdates[ oldestSlot ] ) * 1e9 / elapsedNanos;
+         byteRate = ( currentBytes - sampledBytes[ oldestSlot ] ) * 1e9 / elapsedNanos;
+      }
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
@@ -0,0 +1,206 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.metrics;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.Immutable;
+import org.apache.commons.lang3.Validate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * The process variables which received the most updates and the most bytes over
+ * the sliding window, as of the last sample taken by {@link PvTrafficAccounting}.
+ */
+@Immutable
+public final class TrafficReport
+{
+
+/*- Public attributes --------------------------------------------------------*/
+
+   /**
+    * The report returned when PV traffic accounting is disabled.
+    */
+   public static final TrafficReport DISABLED = new TrafficReport( false, 0, Collections.emptyList(), Collections.emptyList() );
+
+/*- Private attributes -------------------------------------------------------*/
+
+   private final boolean enabled;
+   private final long windowSeconds;
+   private final List<Entry> topByUpdateRate;
+   private final List<Entry> topByByteRate;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Creates a report.
+    *
+    * @param windowSeconds the length of the sliding window.
+    * @param topByUpdateRate the entries in descending order of update rate.
+    * @param topByByteRate the entries in descending order of byte rate.
+    */
+   TrafficReport( long windowSeconds, List<Entry> topByUpdateRate, List<Entry> topByByteRate )
+   {
+      this( true, windowSeconds, topByUpdateRate, topByByteRate );
+   }
+
+   private TrafficReport( boolean enabled, long windowSeconds, List<Entry> topByUpdateRate, List<Entry> topByByteRate )
+   {
+      this.enabled = enabled;
+      this.windowSeconds = windowSeconds;
+      this.topByUpdateRate = Collections.unmodifiableList( new ArrayList<>( Validate.notNull( topByUpdateRate ) ) );
+      this.topByByteRate = Collections.unmodifiableList( new ArrayList<>( Validate.notNull( topByByteRate ) ) );
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * Indicates whether PV traffic accounting is enabled.
+    *
+    * @return false for the DISABLED report.
+    */
+   public boolean isEnabled()
+   {
+      return enabled;
+   }
+
+   /**
+    * Returns the length of the sliding window over which the rates are computed.
+    *
+    * @return the length in seconds.
+    */
+   public long getWindowSeconds()
+   {
+      return windowSeconds;
+   }
+
+   /**
+    * Returns the process variables with the highest update rates.
+    *
+    * @return the entries in descending order of update rate.
+    */
+   public List<Entry> getTopByUpdateRate()
+   {
+      return topByUpdateRate;
+   }
+
+   /**
+    * Returns the process variables with the highest byte rates.
+    *
+    * @return the entries in descending order of byte rate.
+    */
+   public List<Entry> getTopByByteRate()
+   {
+      return topByByteRate;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "TrafficReport{" +
+            "windowSeconds=" + windowSeconds +
+            ", topByUpdateRate=" + topByUpdateRate +
+            ", topByByteRate=" + topByByteRate +
+            '}';
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+   /**
+    * The traffic of a single process variable.
+    */
+   @Immutable
+   public static final class Entry
+   {
+      private final String name;
+      private final double updateRate;
+      private final double byteRate;
+      private final long updateCount;
+      private final long byteCount;
+      private final long overrunCount;
+      private final long lastUpdateMillis;
+
+      Entry( TrafficCounters counters )
+      {
+         this.name = counters.getName();
+         this.updateRate = counters.getUpdateRate();
+         this.byteRate = counters.getByteRate();
+         this.updateCount = counters.getUpdateCount();
+         this.byteCount = counters.getByteCount();
+         this.overrunCount = counters.getOverrunCount();
+         this.lastUpdateMillis = counters.getLastUpdateMillis();
+      }
+
+      /**
+       * @return the name of the process variable.
+       */
+      public String getName()
+      {
+         return name;
+      }
+
+      /**
+       * @return the rate of the updates over the sliding window, in updates per second.
+       */
+      public double getUpdateRate()
+      {
+         return updateRate;
+      }
+
+      /**
+       * @return the rate of the bytes over the sliding window, in bytes per second.
+       */
+      public double getByteRate()
+      {
+         return byteRate;
+      }
+
+      /**
+       * @return the number of updates received since the channel was created.
+       */
+      public long getUpdateCount()
+      {
+         return updateCount;
+      }
+
+      /**
+       * @return the number of bytes received since the channel was created.
+       */
+      public long getByteCount()
+      {
+         return byteCount;
+      }
+
+      /**
+       * @return the number of updates which overran the notification buffer.
+       */
+      public long getOverrunCount()
+      {
+         return overrunCount;
+      }
+
+      /**
+       * @return the time of the last update in milliseconds since the epoch; zero if there has been none.
+       */
+      public long getLastUpdateMillis()
+      {
+         return lastUpdateMillis;
+      }
+
+      @Override
+      public String toString()
+      {
+         return String.format( "%s: %.1f updates/s, %.0f bytes/s", name, updateRate, byteRate );
+      }
+   }
+
+}
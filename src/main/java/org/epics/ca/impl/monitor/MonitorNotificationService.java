@@ -6,6 +6,8 @@ package org.epics.ca.impl.monitor;
 /*- Interface Declaration ----------------------------------------------------*/
 
 import org.epics.ca.impl.TypeSupports.TypeSupport;
+import org.epics.ca.impl.monitor.latency.MonitorLatencyStatistics;
+
 import java.nio.ByteBuffer;
 
 /**
@@ -47,6 +49,28 @@ public interface MonitorNotificationService<T> extends AutoCloseable
     */
    boolean publish( ByteBuffer dataBuffer, TypeSupport<T> typeSupport, int dataCount );
 
+   /**
+    * Publishes a new value to a monitor's subscriber using a value that must
+    * first be deserialized from the supplied data buffer, additionally supplying
+    * the time at which the data was received from the network.
+    *
+    * @implNote
+    * The default implementation ignores the receive timestamp.
+    *
+    * @param dataBuffer the byte buffer containing the new value.
+    * @param typeSupport reference to an object which has the capability of
+    *        deserializing the information in the byte buffer.
+    * @param dataCount the number of items in the buffer to be deserialized.
+    * @param receiveTimestamp the value of System.nanoTime() when the data was received.
+    *
+    * @return true when the new value was accepted without any loss of data;
+    *         false if the oldest value in the notification buffer was discarded.
+    */
+   default boolean publish( ByteBuffer dataBuffer, TypeSupport<T> typeSupport, int dataCount, long receiveTimestamp )
+   {
+      return publish( dataBuffer, typeSupport, dataCount );
+   }
+
    /**
     * Publishes a new value to a monitor's subscriber (which this library models as
     * a Java Consumer) using the value that is  directly supplied.
@@ -78,6 +102,19 @@ public interface MonitorNotificationService<T> extends AutoCloseable
     */
    void close();
 
+   /**
+    * Returns the latencies recorded for the notifications published by this service.
+    *
+    * @implNote
+    * The default implementation does not record latencies and returns MonitorLatencyStatistics.DISABLED.
+    *
+    * @return the result.
+    */
+   default MonitorLatencyStatistics getLatencyStatistics()
+   {
+      return MonitorLatencyStatistics.DISABLED;
+   }
+
 /*- Private methods ----------------------------------------------------------*/
 /*- Nested Classes -----------------------------------------------------------*/
 
@@ -5,6 +5,10 @@ package org.epics.ca.impl.monitor;
 /*- Imported packages --------------------------------------------------------*/
 /*- Interface Declaration ----------------------------------------------------*/
 
+import org.apache.commons.lang3.Validate;
+import org.epics.ca.MonitorQos;
+import org.epics.ca.impl.monitor.latency.MonitorLatencyStatistics;
+
 import java.util.function.Consumer;
 
 public interface MonitorNotificationServiceFactory extends AutoCloseable
@@ -27,6 +31,27 @@ public interface MonitorNotificationServiceFactory extends AutoCloseable
     */
    <T> MonitorNotificationService<T> getServiceForConsumer( Consumer<? super T> consumer );
 
+   /**
+    * Returns a service instance which will publish events to the specified Consumer
+    * taking into account the supplied hints on how the notification CPU bandwidth
+    * should be shared.
+    *
+    * @implNote
+    * The default implementation ignores the hints.
+    *
+    * @param consumer the consumer to publish to.
+    * @param qos the QoS hints.
+    * @param <T> the type of events that this service instance will publish.
+    *
+    * @return the service instance.
+    * @throws NullPointerException if the qos hints were null.
+    */
+   default <T> MonitorNotificationService<T> getServiceForConsumer( Consumer<? super T> consumer, MonitorQos qos )
+   {
+      Validate.notNull( qos );
+      return getServiceForConsumer( consumer );
+   }
+
    /**
     * Closes down this service factory and releases all underlying resources.
     */
@@ -78,6 +103,57 @@ public interface MonitorNotificationServiceFactory extends AutoCloseable
     */
    boolean getQosMetricIsNullPublishable();
 
+   /**
+    * Returns an indication of whether the service implementation takes into account
+    * the QoS hints supplied when a service instance is requested for a consumer.
+    *
+    * @return the result.
+    */
+   default boolean getQosMetricIsQosHintAware()
+   {
+      return false;
+   }
+
+   /**
+    * Returns an indication of whether the service implementation records the
+    * latency of each notification.
+    *
+    * @return the result.
+    */
+   default boolean getQosMetricIsLatencyRecorded()
+   {
+      return false;
+   }
+
+   /**
+    * Returns the latencies recorded for the notifications published by all
+    * service instances created by this factory.
+    *
+    * @implNote
+    * The default implementation does not record latencies and returns MonitorLatencyStatistics.DISABLED.
+    *
+    * @return the result.
+    */
+   default MonitorLatencyStatistics getLatencyStatistics()
+   {
+      return MonitorLatencyStatistics.DISABLED;
+   }
+
+   /**
+    * Returns the number of notifications which have been published by the service
+    * instances created by this factory but whose delivery to the consumer has not
+    * yet started.
+    *
+    * @implNote
+    * The default implementation returns zero.
+    *
+    * @return the result.
+    */
+   default long getPendingNotificationCount()
+   {
+      return 0;
+   }
+
 
 /*- Private methods ----------------------------------------------------------*/
 /*- Nested Classes -----------------------------------------------------------*/
@@ -7,6 +7,8 @@ package org.epics.ca.impl.monitor;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.epics.ca.impl.monitor.blockingqueue.BlockingQueueMonitorNotificationServiceFactory;
+import org.epics.ca.impl.monitor.fairshare.FairShareMonitorNotificationServiceFactory;
+import org.epics.ca.impl.monitor.inline.InlineMonitorNotificationServiceFactory;
 import org.epics.ca.impl.monitor.striped.StripedExecutorServiceMonitorNotificationServiceFactory;
 import org.epics.ca.util.logging.LibraryLogManager;
 
@@ -30,7 +32,9 @@ public class MonitorNotificationServiceFactoryCreator implements AutoCloseable
    {
       BlockingQueueSingleWorkerMonitorNotificationServiceImpl,
       BlockingQueueMultipleWorkerMonitorNotificationServiceImpl,
-      StripedExecutorServiceMonitorNotificationServiceImpl;
+      StripedExecutorServiceMonitorNotificationServiceImpl,
+      FairShareMonitorNotificationServiceImpl,
+      InlineMonitorNotificationServiceImpl;
 
       private static final ServiceImpl[] copyOfValues = values();
 
@@ -86,6 +90,17 @@ public class MonitorNotificationServiceFactoryCreator implements AutoCloseable
     */
    public static final String MACHINE_CONSUMER_IMPL = ServiceImpl.BlockingQueueMultipleWorkerMonitorNotificationServiceImpl.name() + ",100";
 
+   /**
+    * This definition configures the behaviour for a client requiring the lowest possible notification latency
+    * whose consumers guarantee to complete quickly and never to block.
+    *
+    * @implNote
+    * The current implementation uses an InlineMonitorNotificationServiceImpl which notifies the consumers
+    * directly on the thread that processes the IOC's response, with a time budget of 100 microseconds.
+    * This may change in future releases.
+    */
+   public static final String LOW_LATENCY_CONSUMER_IMPL = ServiceImpl.InlineMonitorNotificationServiceImpl.name() + ",1,100";
+
    /**
     * The number of service threads that will be used by default for service implementations which require
     * more than one thread.
@@ -97,10 +112,17 @@ public class MonitorNotificationServiceFactoryCreator implements AutoCloseable
     *
     * @implNote
     * This definition currently applies to the BlockingQueueSingleWorkerMonitorNotificationServiceImpl,
-    * BlockingQueueMultipleWorkerMonitorNotificationServiceImpl service implementations.
+    * BlockingQueueMultipleWorkerMonitorNotificationServiceImpl and FairShareMonitorNotificationServiceImpl
+    * service implementations.
     */
    public static final int NOTIFICATION_VALUE_BUFFER_SIZE_DEFAULT = Integer.MAX_VALUE;
 
+   /**
+    * The time budget for each call to a consumer which will be used by default for the
+    * InlineMonitorNotificationServiceImpl service implementation.
+    */
+   public static final int INLINE_TIME_BUDGET_IN_MICROS_DEFAULT = 100;
+
 /*- Private attributes -------------------------------------------------------*/
 
    private static final Logger logger = LibraryLogManager.getLogger( MonitorNotificationServiceFactoryCreator.class );
@@ -119,6 +141,8 @@ public class MonitorNotificationServiceFactoryCreator implements AutoCloseable
     * <li> BlockingQueueSingleWorkerMonitorNotificationServiceImpl,XXXX[,BufferSize]</li>
     * <li> BlockingQueueMultipleWorkerMonitorNotificationServiceImpl[,NumberOfThreads][,BufferSize]</li>
     * <li> StripedExecutorServiceMonitorNotificationServiceImpl[,NumberOfThreads]</li>
+    * <li> FairShareMonitorNotificationServiceImpl[,NumberOfThreads][,BufferSize]</li>
+    * <li> InlineMonitorNotificationServiceImpl,XXXX[,TimeBudgetInMicroseconds]</li>
     * </ul>
     *
     * @param serviceConfiguration specifies the properties of the service instances that
@@ -165,6 +189,28 @@ public class MonitorNotificationServiceFactoryCreator implements AutoCloseable
          }
          break;
 
+         case FairShareMonitorNotificationServiceImpl:
+         {
+            final int totalNumberOfServiceThreads = (args.length >= 2) ? NumberUtils.toInt(args[ 1 ], NUMBER_OF_SERVICE_THREADS_DEFAULT) : NUMBER_OF_SERVICE_THREADS_DEFAULT;
+            final int notificationValueBufferQueueSize = (args.length == 3) ? NumberUtils.toInt(args[ 2 ], NOTIFICATION_VALUE_BUFFER_SIZE_DEFAULT ) : NOTIFICATION_VALUE_BUFFER_SIZE_DEFAULT;
+
+            serviceFactory = new FairShareMonitorNotificationServiceFactory( totalNumberOfServiceThreads, notificationValueBufferQueueSize );
+         }
+         break;
+
+         case InlineMonitorNotificationServiceImpl:
+         {
+            if( (args.length >= 2) )
+            {
+               logger.info( "Note: in this implementation the value for the number of notification threads will be ignored since the consumers are notified on the publishing thread." );
+            }
+
+            final int timeBudgetInMicros = (args.length == 3) ? NumberUtils.toInt(args[ 2 ], INLINE_TIME_BUDGET_IN_MICROS_DEFAULT ) : INLINE_TIME_BUDGET_IN_MICROS_DEFAULT;
+
+            serviceFactory = new InlineMonitorNotificationServiceFactory( timeBudgetInMicros );
+         }
+         break;
+
          default:
          case BlockingQueueMultipleWorkerMonitorNotificationServiceImpl:
          {
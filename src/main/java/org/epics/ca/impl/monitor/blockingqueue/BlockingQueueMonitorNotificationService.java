@@ -12,8 +12,10 @@ import org.apache.commons.lang3.Validate;
 import org.epics.ca.impl.TypeSupports;
 import org.epics.ca.impl.monitor.MonitorNotificationService;
 import org.epics.ca.util.logging.LibraryLogManager;
+import org.epics.ca.util.logging.TraceRecorder;
 
 import java.nio.ByteBuffer;
+import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.function.Consumer;
@@ -97,17 +99,15 @@ public class BlockingQueueMonitorNotificationService<T> implements MonitorNotifi
    @Override
    synchronized public boolean publish( T value )
    {
-      Validate.notNull( value );
+      Objects.requireNonNull( value );
 
       // Add the latest value to the tail of the notification queue, where necessary evicting
       // the oldest value to ensure success.
       boolean overrun = false;
       if ( ! valueQueue.offer( value ) )
       {
-         logger.finest( String.format( "Buffer is full [size is: %d]", valueQueue.size() ) );
          overrun = true;
-         final T discardedValue = valueQueue.remove();
-         logger.finest( String.format( "Removing and throwing away oldest queue item, %s", discardedValue ) );
+         valueQueue.remove();
 
          // Theoretically this call could throw an IllegalStateException but it should
          // not do so since the previous remove operation should now guarantee success.
@@ -115,14 +115,13 @@ public class BlockingQueueMonitorNotificationService<T> implements MonitorNotifi
       }
       else
       {
-         logger.finest( String.format("Added new item to buffer [size is: %d]", valueQueue.size() ) );
-
          // In the case that there is a new notifcation item in the queue create a new task to pass the
          // value on to the consumer.
-         logger.finest( String.format( "Queueing Task for consumer '%s' on work queue '%s'. Latest value is: '%s'", consumer, executor.getQueue().hashCode(), value ) );
          executor.submit( new MonitorNotificationTask<>( consumer, this ) );
       }
 
+      TraceRecorder.record( TraceRecorder.Event.MONITOR_PUBLISH, valueQueue.size(), overrun ? 1 : 0 );
+
       // Return true for success; false if there was a buffer overrun.
       return ! overrun;
    }
@@ -137,10 +136,13 @@ public class BlockingQueueMonitorNotificationService<T> implements MonitorNotifi
    synchronized public T get()
    {
       // Check the precondition has not been violated. If it has there is a programming error
-      Validate.isTrue( ! valueQueue.isEmpty(), "programming error - value notification queue was unexpectedly empty" );
+      if ( valueQueue.isEmpty() )
+      {
+         throw new IllegalStateException( "programming error - value notification queue was unexpectedly empty" );
+      }
 
       final T value = valueQueue.remove();
-      logger.finest(  String.format( "Retrieved value '%s'", value ) );
+      TraceRecorder.record( TraceRecorder.Event.MONITOR_NOTIFY, valueQueue.size(), 0 );
 
       // Get the oldest value from the head of the notification value queue
       return value;
@@ -140,6 +140,18 @@ public class BlockingQueueMonitorNotificationServiceFactory implements MonitorNo
       return false;
    }
 
+   /**
+    * {@inheritDoc}
+    *
+    * @implNote
+    * Each buffered value has a corresponding task in the queue of the shared executor.
+    */
+   @Override
+   public long getPendingNotificationCount()
+   {
+      return threadPoolExecutor.getQueue().size();
+   }
+
 
 /*- Private methods ----------------------------------------------------------*/
 /*- Nested Classes -----------------------------------------------------------*/
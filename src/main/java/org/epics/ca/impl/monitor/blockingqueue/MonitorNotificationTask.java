@@ -5,9 +5,9 @@ package org.epics.ca.impl.monitor.blockingqueue;
 /*- Imported packages --------------------------------------------------------*/
 
 import net.jcip.annotations.Immutable;
-import org.apache.commons.lang3.Validate;
 import org.epics.ca.util.logging.LibraryLogManager;
 
+import java.util.Objects;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.logging.Level;
@@ -49,8 +49,8 @@ class MonitorNotificationTask<T> implements Runnable
     */
     MonitorNotificationTask( Consumer<? super T> valueConsumer, Supplier<? extends T> valueSupplier )
     {
-       this.valueConsumer = Validate.notNull( valueConsumer );
-       this.valueSupplier = Validate.notNull( valueSupplier );
+       this.valueConsumer = Objects.requireNonNull( valueConsumer );
+       this.valueSupplier = Objects.requireNonNull( valueSupplier );
     }
 
 /*- Public methods -----------------------------------------------------------*/
@@ -74,9 +74,7 @@ class MonitorNotificationTask<T> implements Runnable
          try
          {
             final T latestValue = valueSupplier.get();
-            logger.finest( String.format("Notifying consumer '%s' with value: '%s'... ", valueConsumer, latestValue ) );
             valueConsumer.accept(latestValue);
-            logger.finest( "Notification completed ok" );
          }
          catch ( RuntimeException ex )
          {
@@ -0,0 +1,237 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.monitor.fairshare;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.lang3.Validate;
+import org.epics.ca.MonitorQos;
+import org.epics.ca.impl.TypeSupports;
+import org.epics.ca.impl.monitor.MonitorNotificationService;
+import org.epics.ca.util.logging.LibraryLogManager;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * A monitor notification service whose Consumer competes for the notification
+ * threads of a shared FairShareScheduler according to the Consumer's QoS hints.
+ *
+ * @param <T> the type of the new value.
+ */
+@ThreadSafe
+public class FairShareMonitorNotificationService<T> implements MonitorNotificationService<T>
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final Logger logger = LibraryLogManager.getLogger( FairShareMonitorNotificationService.class );
+
+   /**
+    * The cost charged for a notification whose elapsed time was below the
+    * resolution of the system timer.
+    */
+   private static final long MINIMUM_NOTIFICATION_COST_IN_NANOS = 1_000;
+
+   private final FairShareScheduler scheduler;
+   private final Consumer<? super T> consumer;
+   private final MonitorQos qos;
+   private final int bufferSize;
+
+   // Guarded by this.
+   private final ArrayDeque<T> valueQueue = new ArrayDeque<>();
+   private boolean scheduled = false;
+
+   // Only accessed by the scheduler or by the notification thread which
+   // currently owns this service's turn.
+   private long credit = 0;
+
+   private T deserializedValue;
+
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Creates a new instance.
+    *
+    * @param scheduler the scheduler which will hand out the notification threads.
+    * @param consumer the consumer to whom published values will be sent.
+    * @param qos the consumer's QoS hints.
+    * @param bufferSize the size of the consumer's notification buffer.
+    *
+    * @throws NullPointerException if the scheduler, consumer or qos were null.
+    * @throws IllegalArgumentException if the buffer size was not positive.
+    */
+   FairShareMonitorNotificationService( FairShareScheduler scheduler, Consumer<? super T> consumer, MonitorQos qos, int bufferSize )
+   {
+      this.scheduler = Validate.notNull( scheduler );
+      this.consumer = Validate.notNull( consumer );
+      this.qos = Validate.notNull( qos );
+      Validate.inclusiveBetween( 1, Integer.MAX_VALUE, bufferSize );
+      this.bufferSize = bufferSize;
+
+      this.deserializedValue = null;
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * {@inheritDoc}
+    *
+    * @implNote
+    * This implementation does not accept null as a valid publication value.
+    *
+    * @throws NullPointerException if the passed value was null.
+    */
+   @Override
+   public boolean publish( ByteBuffer dataBuffer, TypeSupports.TypeSupport<T> typeSupport, int dataCount )
+   {
+      // The deserializer is optimised to reuse the same data structure thus
+      // avoiding the cost of object creation
+      deserializedValue = typeSupport.deserialize( dataBuffer, deserializedValue, dataCount );
+      return publish( deserializedValue );
+   }
+
+   /**
+    * {@inheritDoc}
+    *
+    * @implNote
+    * This implementation does not accept null as a publication value.
+    *
+    * @throws NullPointerException if the passed value was null.
+    */
+   @Override
+   public synchronized boolean publish( T value )
+   {
+      Objects.requireNonNull( value );
+
+      // Add the latest value to the tail of the notification queue, where necessary evicting
+      // the oldest value to ensure success.
+      boolean overrun = false;
+      if ( valueQueue.size() >= bufferSize )
+      {
+         valueQueue.removeFirst();
+         overrun = true;
+      }
+      else
+      {
+         scheduler.addPendingNotifications( 1 );
+      }
+      valueQueue.addLast( value );
+
+      // Where the consumer is idle make it known to the scheduler.
+      if ( ! scheduled )
+      {
+         scheduled = true;
+         scheduler.activate( this );
+      }
+
+      // Return true for success; false if there was a buffer overrun.
+      return ! overrun;
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * The implementation here does not need to do anything since the service leverages
+    * off a shared scheduler whose lifecycle is managed outside the scope of this
+    * object's lifetime.
+    */
+   @Override
+   public void init() {}
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * The implementation here does not need to do anything since the service leverages
+    * off a shared scheduler whose lifecycle is managed outside the scope of this
+    * object's lifetime.
+    */
+   @Override
+   public void close()
+   {
+      logger.finest( "Closing monitor notification service for consumer." );
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+
+   MonitorQos.PriorityClass getPriorityClass()
+   {
+      return qos.getPriorityClass();
+   }
+
+   int getWeight()
+   {
+      return qos.getWeight();
+   }
+
+   void addCredit( long nanos )
+   {
+      credit += nanos;
+   }
+
+   long getCredit()
+   {
+      return credit;
+   }
+
+   boolean hasCredit()
+   {
+      return credit > 0;
+   }
+
+   /**
+    * Delivers buffered values to the consumer until either the buffer is empty
+    * or the credit for this turn is exhausted. In the latter case the service
+    * goes back to the scheduler to wait for its next turn.
+    */
+   void serve()
+   {
+      while ( true )
+      {
+         final T value;
+         synchronized ( this )
+         {
+            if ( valueQueue.isEmpty() )
+            {
+               // An idle flow does not accumulate credit.
+               credit = 0;
+               scheduled = false;
+               return;
+            }
+            if ( credit <= 0 )
+            {
+               scheduler.activate( this );
+               return;
+            }
+            value = valueQueue.removeFirst();
+         }
+         scheduler.addPendingNotifications( -1 );
+
+         final long startTime = System.nanoTime();
+         try
+         {
+            consumer.accept( value );
+         }
+         catch ( RuntimeException ex )
+         {
+            logger.log( Level.WARNING, String.format( "Unexpected exception during transfer. Message was: '%s'", ex ) );
+         }
+         credit -= Math.max( MINIMUM_NOTIFICATION_COST_IN_NANOS, System.nanoTime() - startTime );
+      }
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
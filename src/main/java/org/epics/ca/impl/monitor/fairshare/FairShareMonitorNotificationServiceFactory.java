@@ -0,0 +1,206 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.monitor.fairshare;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.apache.commons.lang3.Validate;
+import org.epics.ca.MonitorQos;
+import org.epics.ca.impl.monitor.MonitorNotificationService;
+import org.epics.ca.impl.monitor.MonitorNotificationServiceFactory;
+import org.epics.ca.impl.monitor.MonitorNotificationServiceFactoryCreator;
+import org.epics.ca.util.logging.LibraryLogManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+public class FairShareMonitorNotificationServiceFactory implements MonitorNotificationServiceFactory, AutoCloseable
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final Logger logger = LibraryLogManager.getLogger( FairShareMonitorNotificationServiceFactory.class );
+
+   private final List<MonitorNotificationService<?>> serviceList = new ArrayList<>();
+   private final FairShareScheduler scheduler = new FairShareScheduler();
+   private final ExecutorService executorService;
+   private final int bufferSize;
+   private final int numberOfThreads;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Creates a new factory with the capability of generating MonitorNotificationService
+    * instances for each Consumer. This factory provides service instances whose
+    * Consumers share a pool of notification threads according to the QoS hints
+    * supplied when each service instance was requested.
+    *
+    * @param numberOfThreads the number of notification threads.
+    * @param bufferSize the size of each consumer's notification value buffer.
+    */
+   public FairShareMonitorNotificationServiceFactory( int numberOfThreads, int bufferSize )
+   {
+      Validate.inclusiveBetween( 1, Integer.MAX_VALUE, numberOfThreads );
+      Validate.inclusiveBetween( 1, Integer.MAX_VALUE, bufferSize );
+      this.bufferSize = bufferSize;
+      this.numberOfThreads = numberOfThreads;
+
+      logger.fine( String.format( "A FairShareMonitorNotificationServiceFactory is being created with %d threads and a buffer size with %d notification entries...", numberOfThreads, bufferSize ) );
+
+      executorService = Executors.newFixedThreadPool( numberOfThreads, new MyThreadFactory( "FairShareMonitorNotificationServiceThread-" ) );
+      for ( int i = 0; i < numberOfThreads; i++ )
+      {
+         executorService.submit( scheduler::runWorker );
+      }
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * {@inheritDoc}
+    *
+    * @implNote
+    * The consumer is assigned the default QoS hints.
+    */
+   @Override
+   public <T> MonitorNotificationService<T> getServiceForConsumer( Consumer<? super T> consumer )
+   {
+      return getServiceForConsumer( consumer, MonitorQos.DEFAULT );
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public <T> MonitorNotificationService<T> getServiceForConsumer( Consumer<? super T> consumer, MonitorQos qos )
+   {
+      Validate.notNull( consumer );
+      Validate.notNull( qos );
+
+      final MonitorNotificationService<T> instance = new FairShareMonitorNotificationService<>( scheduler, consumer, qos, bufferSize );
+      serviceList.add( instance );
+      instance.init();
+      return instance;
+   }
+
+   /**
+    * {@inheritDoc}
+    * @implNote
+    *
+    * This implementation calls close on all service instances that it previously created.
+    */
+   @Override
+   public void close()
+   {
+      logger.finest( String.format( "A FairShareMonitorNotificationServiceFactory is being closed with %d service entries...", getServiceCount() ) );
+      for ( MonitorNotificationService<?> service : serviceList )
+      {
+         service.close();
+      }
+      serviceList.clear();
+      scheduler.shutdown();
+      MonitorNotificationServiceFactoryCreator.shutdownExecutor( executorService );
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int getServiceCount()
+   {
+      return serviceList.size();
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public boolean getQosMetricIsBuffered()
+   {
+      return ( bufferSize > 1 );
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int getQosMetricBufferSizePerConsumer()
+   {
+      return bufferSize;
+   }
+
+   /**
+    * {@inheritDoc}
+    *
+    * @implNote
+    * Each consumer may be called back on any of the notification threads, but
+    * never on more than one of them at the same time.
+    */
+   @Override
+   public int getQosMetricNumberOfNotificationThreadsPerConsumer()
+   {
+      return numberOfThreads;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public boolean getQosMetricIsNullPublishable()
+   {
+      return false;
+   }
+
+   /**
+    * {@inheritDoc}
+    *
+    * @implNote
+    * True for this service factory.
+    */
+   @Override
+   public boolean getQosMetricIsQosHintAware()
+   {
+      return true;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public long getPendingNotificationCount()
+   {
+      return scheduler.getPendingNotificationCount();
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+   // ThreadFactory that will be used to construct new threads for consumers
+   private static class MyThreadFactory implements ThreadFactory
+   {
+      private static int id=1;
+      private final String prefix;
+
+      private MyThreadFactory( String prefix )
+      {
+         this.prefix = prefix;
+      }
+
+      @Override
+      public Thread newThread( Runnable r )
+      {
+         return new Thread(r, prefix + id++);
+      }
+   }
+
+}
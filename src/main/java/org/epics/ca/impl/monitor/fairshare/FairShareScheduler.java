@@ -0,0 +1,273 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.monitor.fairshare;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.ThreadSafe;
+import org.epics.ca.MonitorQos;
+import org.epics.ca.util.logging.LibraryLogManager;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Schedules the backlogged services of a FairShareMonitorNotificationServiceFactory
+ * onto the factory's notification threads.
+ *
+ * The scheduler maintains one round-robin list of backlogged services for each
+ * priority class. The lists are served in strict priority order. Within a list the
+ * services are served according to the Deficit Round Robin (DRR) algorithm using the
+ * time actually spent in the Consumer as the cost of each notification. A service
+ * whose turn comes round is credited with a quantum proportional to its weight and
+ * may then deliver notifications until the credit is exhausted or its buffer is empty.
+ *
+ * Since a notification thread returns to the scheduler at the end of every turn the
+ * latency seen by a HIGH priority Consumer is bounded by one quantum plus the time
+ * taken by a single call to the slowest Consumer currently being served.
+ */
+@ThreadSafe
+class FairShareScheduler
+{
+
+/*- Public attributes --------------------------------------------------------*/
+
+   /**
+    * The notification time credited to a service of weight 1 on each of its turns.
+    */
+   static final long QUANTUM_PER_UNIT_WEIGHT_IN_NANOS = 100_000;
+
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final Logger logger = LibraryLogManager.getLogger( FairShareScheduler.class );
+
+   private final ReentrantLock lock = new ReentrantLock();
+   private final Condition workAvailable = lock.newCondition();
+   private final ArrayDeque<FairShareMonitorNotificationService<?>>[] activeLists;
+   private final LongAdder pendingNotificationCount = new LongAdder();
+   private boolean shutdown = false;
+
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   @SuppressWarnings( "unchecked" )
+   FairShareScheduler()
+   {
+      final int numberOfPriorityClasses = MonitorQos.PriorityClass.values().length;
+      activeLists = (ArrayDeque<FairShareMonitorNotificationService<?>>[]) new ArrayDeque[ numberOfPriorityClasses ];
+      for ( int i = 0; i < numberOfPriorityClasses; i++ )
+      {
+         activeLists[ i ] = new ArrayDeque<>();
+      }
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+
+   /**
+    * Appends the specified service to the tail of the round-robin list of its
+    * priority class.
+    *
+    * The caller is responsible for ensuring that a service is never activated
+    * more than once before it has been picked up again by a notification thread.
+    *
+    * @param service the service which has notifications waiting.
+    */
+   void activate( FairShareMonitorNotificationService<?> service )
+   {
+      Objects.requireNonNull( service );
+
+      lock.lock();
+      try
+      {
+         activeLists[ service.getPriorityClass().ordinal() ].addLast( service );
+         workAvailable.signal();
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Runs the notification loop of a single notification thread until
+    * the scheduler is shut down.
+    */
+   void runWorker()
+   {
+      logger.finest( "Notification worker is starting." );
+      while ( true )
+      {
+         final FairShareMonitorNotificationService<?> service = awaitNextService();
+         if ( service == null )
+         {
+            logger.finest( "Notification worker is stopping." );
+            return;
+         }
+         service.serve();
+      }
+   }
+
+   /**
+    * Adjusts the number of values which are buffered by the services using this scheduler.
+    *
+    * @param delta the change.
+    */
+   void addPendingNotifications( long delta )
+   {
+      pendingNotificationCount.add( delta );
+   }
+
+   /**
+    * Returns the number of values which are buffered by the services using this scheduler.
+    *
+    * @return the result.
+    */
+   long getPendingNotificationCount()
+   {
+      return pendingNotificationCount.sum();
+   }
+
+   /**
+    * Causes all notification threads to stop as soon as they have completed
+    * their current turn. Any notifications still buffered are discarded.
+    */
+   void shutdown()
+   {
+      lock.lock();
+      try
+      {
+         shutdown = true;
+         for ( ArrayDeque<FairShareMonitorNotificationService<?>> activeList : activeLists )
+         {
+            activeList.clear();
+         }
+         workAvailable.signalAll();
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   /**
+    * Waits for the next service to become eligible for a turn.
+    *
+    * @return the service, or null if the scheduler was shut down.
+    */
+   private FairShareMonitorNotificationService<?> awaitNextService()
+   {
+      lock.lock();
+      try
+      {
+         while ( ! shutdown )
+         {
+            final FairShareMonitorNotificationService<?> service = pollNextService();
+            if ( service != null )
+            {
+               return service;
+            }
+            workAvailable.await();
+         }
+         return null;
+      }
+      catch ( InterruptedException ex )
+      {
+         Thread.currentThread().interrupt();
+         return null;
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Selects the next service in the highest priority class which has one
+    * and credits it with its quantum.
+    *
+    * A round of the list credits each service with its quantum in turn until one
+    * is in credit; those still in deficit go back to the tail of the list. Where
+    * a whole round leaves every service in deficit, the rounds in which none of
+    * them would come back into credit are credited to all the services in one
+    * step, however large their deficits, before the deciding round is played.
+    * This selects the same service as playing the rounds one by one would.
+    *
+    * @return the service, or null if there was no work.
+    */
+   private FairShareMonitorNotificationService<?> pollNextService()
+   {
+      for ( ArrayDeque<FairShareMonitorNotificationService<?>> activeList : activeLists )
+      {
+         FairShareMonitorNotificationService<?> service = pollNextServiceInRound( activeList );
+         if ( ( service == null ) && ! activeList.isEmpty() )
+         {
+            skipRoundsInDeficit( activeList );
+            service = pollNextServiceInRound( activeList );
+         }
+         if ( service != null )
+         {
+            return service;
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Plays a round of the specified list.
+    *
+    * @param activeList the list.
+    * @return the first service to be in credit after being credited, or null if none was.
+    */
+   private static FairShareMonitorNotificationService<?> pollNextServiceInRound( ArrayDeque<FairShareMonitorNotificationService<?>> activeList )
+   {
+      for ( int i = activeList.size(); i > 0; i-- )
+      {
+         final FairShareMonitorNotificationService<?> service = activeList.pollFirst();
+         service.addCredit( getQuantum( service ) );
+         if ( service.hasCredit() )
+         {
+            return service;
+         }
+         activeList.addLast( service );
+      }
+      return null;
+   }
+
+   /**
+    * Credits every service in the specified list, all of which are in deficit, with
+    * its quanta for the rounds which would leave all of them in deficit, so that
+    * the next round brings at least one of them back into credit.
+    *
+    * @param activeList the list.
+    */
+   private static void skipRoundsInDeficit( ArrayDeque<FairShareMonitorNotificationService<?>> activeList )
+   {
+      long rounds = Long.MAX_VALUE;
+      for ( FairShareMonitorNotificationService<?> service : activeList )
+      {
+         rounds = Math.min( rounds, ( - service.getCredit() / getQuantum( service ) ) + 1 );
+      }
+      for ( FairShareMonitorNotificationService<?> service : activeList )
+      {
+         service.addCredit( ( rounds - 1 ) * getQuantum( service ) );
+      }
+   }
+
+   private static long getQuantum( FairShareMonitorNotificationService<?> service )
+   {
+      return service.getWeight() * QUANTUM_PER_UNIT_WEIGHT_IN_NANOS;
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
@@ -0,0 +1,234 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.monitor.inline;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.lang3.Validate;
+import org.epics.ca.impl.TypeSupports;
+import org.epics.ca.impl.monitor.MonitorNotificationService;
+import org.epics.ca.util.logging.LibraryLogManager;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * A monitor notification service which calls the Consumer directly on the
+ * thread which publishes the value. In normal operation this will be the
+ * thread which is processing the responses received from the remote IOC.
+ *
+ * There is no buffering and no thread handoff. The price for this is that a
+ * Consumer which takes a long time to complete will delay the processing of
+ * all other traffic received on the same circuit. Each call is therefore timed
+ * against the factory's time budget and overruns are reported.
+ *
+ * @param <T> the type of the new value.
+ */
+@ThreadSafe
+public class InlineMonitorNotificationService<T> implements MonitorNotificationService<T>
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final Logger logger = LibraryLogManager.getLogger( InlineMonitorNotificationService.class );
+
+   private final Consumer<? super T> consumer;
+   private final long timeBudgetInNanos;
+   private final Consumer<? super InlineMonitorNotificationService<T>> closeHandler;
+   private final LongAdder budgetOverrunCount = new LongAdder();
+
+   // The start time of the call in progress, or zero when the Consumer is idle.
+   private volatile long callStartTime = 0;
+   private volatile Thread callThread = null;
+   private volatile boolean callReportedByWatchdog = false;
+
+   private T deserializedValue;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Creates a new instance.
+    *
+    * @param consumer the consumer to whom published values will be sent.
+    * @param timeBudgetInNanos the time within which each call to the consumer is
+    *    expected to complete, or zero if the calls are not to be timed.
+    * @param closeHandler called with this service when it is closed.
+    *
+    * @throws NullPointerException if the consumer or the close handler was null.
+    * @throws IllegalArgumentException if the time budget was negative.
+    */
+   InlineMonitorNotificationService( Consumer<? super T> consumer, long timeBudgetInNanos, Consumer<? super InlineMonitorNotificationService<T>> closeHandler )
+   {
+      this.consumer = Validate.notNull( consumer );
+      Validate.inclusiveBetween( 0, Long.MAX_VALUE, timeBudgetInNanos );
+      this.timeBudgetInNanos = timeBudgetInNanos;
+      this.closeHandler = Validate.notNull( closeHandler );
+
+      this.deserializedValue = null;
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * {@inheritDoc}
+    *
+    * @implNote
+    * Since this service implementation does not buffer this method always returns true.
+    */
+   @Override
+   public boolean publish( ByteBuffer dataBuffer, TypeSupports.TypeSupport<T> typeSupport, int dataCount )
+   {
+      Objects.requireNonNull( dataBuffer );
+      Objects.requireNonNull( typeSupport );
+      Validate.inclusiveBetween( 0, Integer.MAX_VALUE, dataCount);
+
+      // The deserializer is optimised to reuse the same data structure thus
+      // avoiding the cost of object creation
+      deserializedValue = typeSupport.deserialize( dataBuffer, deserializedValue, dataCount );
+
+      return publish( deserializedValue );
+   }
+
+   /**
+    * {@inheritDoc}
+    *
+    * @implNote
+    * This implementation calls the Consumer synchronously on the caller's thread.
+    * It does not accept null as a publication value. Since this service implementation
+    * does not buffer this method always returns true.
+    *
+    * @throws NullPointerException if the passed value was null.
+    */
+   @Override
+   public boolean publish( T value )
+   {
+      Objects.requireNonNull( value );
+
+      if ( timeBudgetInNanos == 0 )
+      {
+         notifyConsumer( value );
+         return true;
+      }
+
+      final long startTime = System.nanoTime();
+      callThread = Thread.currentThread();
+      callStartTime = startTime;
+      try
+      {
+         notifyConsumer( value );
+      }
+      finally
+      {
+         callStartTime = 0;
+         callThread = null;
+         callReportedByWatchdog = false;
+      }
+
+      final long elapsedTimeInNanos = System.nanoTime() - startTime;
+      if ( elapsedTimeInNanos > timeBudgetInNanos )
+      {
+         budgetOverrunCount.increment();
+
+         // Report only the first overrun at WARNING level so that a consistently slow
+         // Consumer does not flood the log. The total is available via the factory.
+         final Level level = ( budgetOverrunCount.sum() == 1 ) ? Level.WARNING : Level.FINE;
+         if ( logger.isLoggable( level ) )
+         {
+            logger.log( level, String.format( "Consumer %s took %d us to process a notification which exceeds the inline time budget of %d us.",
+                                              consumer, TimeUnit.NANOSECONDS.toMicros( elapsedTimeInNanos ), TimeUnit.NANOSECONDS.toMicros( timeBudgetInNanos ) ) );
+         }
+      }
+      return true;
+   }
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * The implementation here does not need to do anything since the service
+    * does not own any threads.
+    */
+   @Override
+   public void init() {}
+
+   /**
+    * {@inheritDoc}
+    * <p>
+    * The service does not own any threads. The implementation here only
+    * informs the factory, which stops managing the service.
+    */
+   @Override
+   public void close()
+   {
+      logger.finest( "Closing monitor notification service for consumer." );
+      closeHandler.accept( this );
+   }
+
+   /**
+    * Returns the number of notifications whose delivery to the Consumer took
+    * longer than the time budget.
+    *
+    * @return the result.
+    */
+   public long getBudgetOverrunCount()
+   {
+      return budgetOverrunCount.sum();
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+
+   /**
+    * Reports the call to the Consumer which is currently in progress if it has
+    * already exceeded the time budget. Each call is reported at most once.
+    *
+    * Invoked periodically by the factory's watchdog thread. This catches Consumers
+    * which block for a long time or forever, which the check performed by the
+    * publishing thread itself can only report once the Consumer has returned.
+    *
+    * @param now the current value of System.nanoTime().
+    */
+   void checkCallInProgress( long now )
+   {
+      final long startTime = callStartTime;
+      final Thread thread = callThread;
+      if ( ( startTime == 0 ) || ( thread == null ) || callReportedByWatchdog )
+      {
+         return;
+      }
+
+      final long elapsedTimeInNanos = now - startTime;
+      if ( elapsedTimeInNanos > timeBudgetInNanos )
+      {
+         callReportedByWatchdog = true;
+         logger.log( Level.WARNING, String.format( "Consumer %s has been blocking thread '%s' for %d ms which exceeds the inline time budget of %d us.",
+                                                   consumer, thread.getName(), TimeUnit.NANOSECONDS.toMillis( elapsedTimeInNanos ), TimeUnit.NANOSECONDS.toMicros( timeBudgetInNanos ) ) );
+      }
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   private void notifyConsumer( T value )
+   {
+      try
+      {
+         consumer.accept( value );
+      }
+      catch ( RuntimeException ex )
+      {
+         logger.log( Level.WARNING, String.format( "Unexpected exception during transfer. Message was: '%s'", ex ) );
+      }
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
@@ -0,0 +1,197 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.monitor.inline;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.apache.commons.lang3.Validate;
+import org.epics.ca.impl.monitor.MonitorNotificationService;
+import org.epics.ca.impl.monitor.MonitorNotificationServiceFactory;
+import org.epics.ca.impl.monitor.MonitorNotificationServiceFactoryCreator;
+import org.epics.ca.util.logging.LibraryLogManager;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+public class InlineMonitorNotificationServiceFactory implements MonitorNotificationServiceFactory, AutoCloseable
+{
+
+/*- Public attributes --------------------------------------------------------*/
+
+   /**
+    * The interval at which the watchdog checks for Consumers which are
+    * blocking the publishing thread.
+    */
+   public static final long WATCHDOG_CHECK_INTERVAL_IN_MILLIS = 100;
+
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final Logger logger = LibraryLogManager.getLogger( InlineMonitorNotificationServiceFactory.class );
+
+   // Each service removes itself from the set when it is closed.
+   private final Set<InlineMonitorNotificationService<?>> serviceSet = ConcurrentHashMap.newKeySet();
+   private final long timeBudgetInMicros;
+   private final ScheduledExecutorService watchdog;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Creates a new factory with the capability of generating MonitorNotificationService
+    * instances for each Consumer. This factory provides service instances which
+    * call their Consumer directly on the publishing thread.
+    *
+    * @param timeBudgetInMicros the time within which each call to a Consumer is
+    *    expected to complete. Zero disables both the timing of each call and the watchdog.
+    */
+   public InlineMonitorNotificationServiceFactory( long timeBudgetInMicros )
+   {
+      Validate.inclusiveBetween( 0, Long.MAX_VALUE, timeBudgetInMicros );
+      this.timeBudgetInMicros = timeBudgetInMicros;
+
+      logger.fine( String.format( "An InlineMonitorNotificationServiceFactory is being created with a time budget of %d us...", timeBudgetInMicros ) );
+
+      if ( timeBudgetInMicros > 0 )
+      {
+         watchdog = Executors.newSingleThreadScheduledExecutor( r -> {
+            final Thread thread = new Thread( r, "InlineMonitorNotificationServiceWatchdog" );
+            thread.setDaemon( true );
+            return thread;
+         } );
+         watchdog.scheduleAtFixedRate( this::checkServices, WATCHDOG_CHECK_INTERVAL_IN_MILLIS, WATCHDOG_CHECK_INTERVAL_IN_MILLIS, TimeUnit.MILLISECONDS );
+      }
+      else
+      {
+         watchdog = null;
+      }
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public <T> MonitorNotificationService<T> getServiceForConsumer( Consumer<? super T> consumer )
+   {
+      Validate.notNull( consumer );
+
+      final InlineMonitorNotificationService<T> instance = new InlineMonitorNotificationService<>( consumer, TimeUnit.MICROSECONDS.toNanos( timeBudgetInMicros ), serviceSet::remove );
+      serviceSet.add( instance );
+      instance.init();
+      return instance;
+   }
+
+   /**
+    * {@inheritDoc}
+    * @implNote
+    *
+    * This implementation calls close on all service instances that it previously created.
+    */
+   @Override
+   public void close()
+   {
+      logger.finest( String.format( "An InlineMonitorNotificationServiceFactory is being closed with %d service entries...", getServiceCount() ) );
+      serviceSet.forEach( InlineMonitorNotificationService::close );
+      serviceSet.clear();
+      if ( watchdog != null )
+      {
+         MonitorNotificationServiceFactoryCreator.shutdownExecutor( watchdog );
+      }
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public int getServiceCount()
+   {
+      return serviceSet.size();
+   }
+
+   /**
+    * Returns the time within which each call to a Consumer is expected to complete.
+    *
+    * @return the result, or zero if calls are not being timed.
+    */
+   public long getTimeBudgetInMicros()
+   {
+      return timeBudgetInMicros;
+   }
+
+   /**
+    * Returns the total number of notifications whose delivery exceeded the time budget
+    * for all service instances currently managed by this factory. The overruns of the
+    * service instances which have been closed are not included.
+    *
+    * @return the result.
+    */
+   public long getBudgetOverrunCount()
+   {
+      return serviceSet.stream().mapToLong( InlineMonitorNotificationService::getBudgetOverrunCount ).sum();
+   }
+
+   /**
+    * {@inheritDoc}
+    *
+    * @implNote
+    * False for this service factory.
+    */
+   @Override
+   public boolean getQosMetricIsBuffered()
+   {
+      return false;
+   }
+
+   /**
+    * {@inheritDoc}
+    *
+    * @implNote
+    * 1 for this service factory.
+    */
+   @Override
+   public int getQosMetricBufferSizePerConsumer()
+   {
+      return 1;
+   }
+
+   /**
+    * {@inheritDoc}
+    *
+    * @implNote
+    * The consumer is called back on the publishing thread.
+    */
+   @Override
+   public int getQosMetricNumberOfNotificationThreadsPerConsumer()
+   {
+      return 1;
+   }
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public boolean getQosMetricIsNullPublishable()
+   {
+      return false;
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   private void checkServices()
+   {
+      final long now = System.nanoTime();
+      serviceSet.forEach( s -> s.checkCallInProgress( now ) );
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
@@ -0,0 +1,186 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.monitor.latency;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.lang3.Validate;
+import org.epics.ca.data.Timestamped;
+import org.epics.ca.impl.TypeSupports;
+import org.epics.ca.impl.monitor.MonitorNotificationService;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.epics.ca.impl.monitor.latency.MonitorLatencyStatistics.Stage.*;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * A monitor notification service which records the latency of each notification
+ * before passing it on to the service of an underlying notification engine.
+ *
+ * The timestamps for each value travel through the underlying engine together
+ * with the value itself so that the measurements are exact whatever the engine's
+ * buffering and threading policy.
+ *
+ * @param <T> the type of the new value.
+ */
+@ThreadSafe
+class LatencyRecordingMonitorNotificationService<T> implements MonitorNotificationService<T>
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private final MonitorNotificationService<Sample<T>> delegate;
+   private final MonitorLatencyStatistics statistics;
+   private final boolean iocTimestampEnabled;
+   private final boolean nullPublishable;
+
+   private T deserializedValue;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Creates a new instance.
+    *
+    * @param delegate the service of the underlying notification engine.
+    * @param statistics the object in which the latencies will be recorded.
+    * @param iocTimestampEnabled whether to record the latency relative to the IOC's timestamp
+    *    where the published value is Timestamped.
+    * @param nullPublishable whether the underlying notification engine supports the publication of null.
+    */
+   LatencyRecordingMonitorNotificationService( MonitorNotificationService<Sample<T>> delegate, MonitorLatencyStatistics statistics, boolean iocTimestampEnabled, boolean nullPublishable )
+   {
+      this.delegate = Validate.notNull( delegate );
+      this.statistics = Validate.notNull( statistics );
+      this.iocTimestampEnabled = iocTimestampEnabled;
+      this.nullPublishable = nullPublishable;
+
+      this.deserializedValue = null;
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   @Override
+   public boolean publish( ByteBuffer dataBuffer, TypeSupports.TypeSupport<T> typeSupport, int dataCount )
+   {
+      return publish( dataBuffer, typeSupport, dataCount, System.nanoTime() );
+   }
+
+   @Override
+   public boolean publish( ByteBuffer dataBuffer, TypeSupports.TypeSupport<T> typeSupport, int dataCount, long receiveTimestamp )
+   {
+      // The deserializer is optimised to reuse the same data structure thus
+      // avoiding the cost of object creation
+      deserializedValue = typeSupport.deserialize( dataBuffer, deserializedValue, dataCount );
+      return publish( deserializedValue, receiveTimestamp );
+   }
+
+   @Override
+   public boolean publish( T value )
+   {
+      return publish( value, System.nanoTime() );
+   }
+
+   @Override
+   public MonitorLatencyStatistics getLatencyStatistics()
+   {
+      return statistics;
+   }
+
+   @Override
+   public void init()
+   {
+      delegate.init();
+   }
+
+   @Override
+   public void close()
+   {
+      delegate.close();
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+
+   /**
+    * Returns a Consumer which will record the latency of each sample delivered by the
+    * underlying engine before passing the sample's value on to the specified Consumer.
+    *
+    * @param consumer the consumer.
+    * @param statistics the object in which the latencies will be recorded.
+    * @param <T> the type of the value.
+    * @return the consumer of samples.
+    */
+   static <T> Consumer<Sample<T>> createSampleConsumer( Consumer<? super T> consumer, MonitorLatencyStatistics statistics )
+   {
+      Validate.notNull( consumer );
+      Validate.notNull( statistics );
+
+      return sample -> {
+         final long startTimestamp = System.nanoTime();
+         statistics.record( PUBLISH_TO_CONSUMER_START, startTimestamp - sample.publishTimestamp );
+         try
+         {
+            consumer.accept( sample.value );
+         }
+         finally
+         {
+            final long endTimestamp = System.nanoTime();
+            statistics.record( CONSUMER_START_TO_END, endTimestamp - startTimestamp );
+            statistics.record( RECEIVE_TO_CONSUMER_END, endTimestamp - sample.receiveTimestamp );
+         }
+      };
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   private boolean publish( T value, long receiveTimestamp )
+   {
+      if ( ! nullPublishable )
+      {
+         Validate.notNull( value );
+      }
+
+      final long publishTimestamp = System.nanoTime();
+      statistics.record( RECEIVE_TO_PUBLISH, publishTimestamp - receiveTimestamp );
+
+      if ( iocTimestampEnabled && ( value instanceof Timestamped ) )
+      {
+         final Timestamped<?> timestamped = (Timestamped<?>) value;
+         final long iocTimestampInNanos = TimeUnit.SECONDS.toNanos( timestamped.getSeconds() ) + timestamped.getNanos();
+         statistics.record( IOC_TIMESTAMP_TO_PUBLISH, TimeUnit.MILLISECONDS.toNanos( System.currentTimeMillis() ) - iocTimestampInNanos );
+      }
+
+      return delegate.publish( new Sample<>( value, receiveTimestamp, publishTimestamp ) );
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+   /**
+    * A published value together with the timestamps of its progress so far.
+    *
+    * @param <T> the type of the value.
+    */
+   @Immutable
+   static class Sample<T>
+   {
+      private final T value;
+      private final long receiveTimestamp;
+      private final long publishTimestamp;
+
+      Sample( T value, long receiveTimestamp, long publishTimestamp )
+      {
+         this.value = value;
+         this.receiveTimestamp = receiveTimestamp;
+         this.publishTimestamp = publishTimestamp;
+      }
+   }
+
+}
@@ -0,0 +1,146 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.monitor.latency;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.apache.commons.lang3.Validate;
+import org.epics.ca.MonitorQos;
+import org.epics.ca.impl.monitor.MonitorNotificationService;
+import org.epics.ca.impl.monitor.MonitorNotificationServiceFactory;
+import org.epics.ca.util.logging.LibraryLogManager;
+
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * A monitor notification service factory which adds latency recording to the
+ * service instances generated by an underlying factory.
+ *
+ * The latencies are recorded both in the statistics of each service instance
+ * and in the statistics of this factory.
+ */
+public class LatencyRecordingMonitorNotificationServiceFactory implements MonitorNotificationServiceFactory, AutoCloseable
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final Logger logger = LibraryLogManager.getLogger( LatencyRecordingMonitorNotificationServiceFactory.class );
+
+   private final MonitorNotificationServiceFactory delegate;
+   private final boolean iocTimestampEnabled;
+   private final MonitorLatencyStatistics statistics = new MonitorLatencyStatistics();
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Creates a new factory.
+    *
+    * @param delegate the factory of the underlying notification engine.
+    * @param iocTimestampEnabled whether to additionally record the latency relative
+    *    to the IOC's timestamp for monitors whose values are Timestamped.
+    */
+   public LatencyRecordingMonitorNotificationServiceFactory( MonitorNotificationServiceFactory delegate, boolean iocTimestampEnabled )
+   {
+      this.delegate = Validate.notNull( delegate );
+      this.iocTimestampEnabled = iocTimestampEnabled;
+
+      logger.fine( String.format( "A LatencyRecordingMonitorNotificationServiceFactory is being created [IOC timestamp comparison: %b]...", iocTimestampEnabled ) );
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   @Override
+   public <T> MonitorNotificationService<T> getServiceForConsumer( Consumer<? super T> consumer )
+   {
+      return getServiceForConsumer( consumer, MonitorQos.DEFAULT );
+   }
+
+   @Override
+   public <T> MonitorNotificationService<T> getServiceForConsumer( Consumer<? super T> consumer, MonitorQos qos )
+   {
+      Validate.notNull( consumer );
+      Validate.notNull( qos );
+
+      final MonitorLatencyStatistics serviceStatistics = new MonitorLatencyStatistics( statistics );
+      final Consumer<LatencyRecordingMonitorNotificationService.Sample<T>> sampleConsumer = LatencyRecordingMonitorNotificationService.createSampleConsumer( consumer, serviceStatistics );
+      final MonitorNotificationService<LatencyRecordingMonitorNotificationService.Sample<T>> delegateService = delegate.getServiceForConsumer( sampleConsumer, qos );
+      return new LatencyRecordingMonitorNotificationService<>( delegateService, serviceStatistics, iocTimestampEnabled, delegate.getQosMetricIsNullPublishable() );
+   }
+
+   @Override
+   public void close()
+   {
+      logger.finest( String.format( "A LatencyRecordingMonitorNotificationServiceFactory is being closed. Latencies were: %s", statistics ) );
+      delegate.close();
+   }
+
+   @Override
+   public int getServiceCount()
+   {
+      return delegate.getServiceCount();
+   }
+
+   @Override
+   public boolean getQosMetricIsBuffered()
+   {
+      return delegate.getQosMetricIsBuffered();
+   }
+
+   @Override
+   public int getQosMetricBufferSizePerConsumer()
+   {
+      return delegate.getQosMetricBufferSizePerConsumer();
+   }
+
+   @Override
+   public int getQosMetricNumberOfNotificationThreadsPerConsumer()
+   {
+      return delegate.getQosMetricNumberOfNotificationThreadsPerConsumer();
+   }
+
+   @Override
+   public boolean getQosMetricIsNullPublishable()
+   {
+      return delegate.getQosMetricIsNullPublishable();
+   }
+
+   @Override
+   public boolean getQosMetricIsQosHintAware()
+   {
+      return delegate.getQosMetricIsQosHintAware();
+   }
+
+   /**
+    * {@inheritDoc}
+    *
+    * @implNote
+    * True for this service factory.
+    */
+   @Override
+   public boolean getQosMetricIsLatencyRecorded()
+   {
+      return true;
+   }
+
+   @Override
+   public MonitorLatencyStatistics getLatencyStatistics()
+   {
+      return statistics;
+   }
+
+   @Override
+   public long getPendingNotificationCount()
+   {
+      return delegate.getPendingNotificationCount();
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
@@ -0,0 +1,200 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.monitor.latency;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.lang3.Validate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * A lock-free histogram of latency values in nanoseconds.
+ *
+ * The bucket layout follows the log-linear scheme popularised by HdrHistogram.
+ * Values below 2 * SUB_BUCKET_COUNT are recorded exactly. Above that, each power-of-two
+ * range is divided into SUB_BUCKET_COUNT equal sub-buckets, giving a relative error of
+ * at most 1 / SUB_BUCKET_COUNT over the whole trackable range. Values above the highest
+ * trackable value are recorded in the top bucket.
+ *
+ * Recording a value costs a few arithmetic operations and a small number of uncontended
+ * atomic updates. It never allocates.
+ */
+@ThreadSafe
+public class MonitorLatencyHistogram
+{
+
+/*- Public attributes --------------------------------------------------------*/
+
+   /**
+    * The highest value which can be recorded without being clamped (about 137 seconds).
+    */
+   public static final long HIGHEST_TRACKABLE_VALUE_IN_NANOS = ( 1L << 37 ) - 1;
+
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final int SUB_BUCKET_BITS = 4;
+   private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+   private static final int BUCKET_COUNT = bucketIndexOf( HIGHEST_TRACKABLE_VALUE_IN_NANOS ) + 1;
+
+   private final AtomicLongArray buckets = new AtomicLongArray( BUCKET_COUNT );
+   private final LongAdder count = new LongAdder();
+   private final LongAdder sum = new LongAdder();
+   private final AtomicLong max = new AtomicLong();
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * Records the specified value. Negative values are recorded as zero.
+    *
+    * @param valueInNanos the value.
+    */
+   public void record( long valueInNanos )
+   {
+      final long value = Math.min( Math.max( 0, valueInNanos ), HIGHEST_TRACKABLE_VALUE_IN_NANOS );
+      buckets.incrementAndGet( bucketIndexOf( value ) );
+      count.increment();
+      sum.add( value );
+
+      long currentMax = max.get();
+      while ( ( value > currentMax ) && ! max.compareAndSet( currentMax, value ) )
+      {
+         currentMax = max.get();
+      }
+   }
+
+   /**
+    * Returns the number of values recorded.
+    *
+    * @return the result.
+    */
+   public long getCount()
+   {
+      return count.sum();
+   }
+
+   /**
+    * Returns the largest value recorded.
+    *
+    * @return the result in nanoseconds, or zero if nothing has been recorded.
+    */
+   public long getMaxValue()
+   {
+      return max.get();
+   }
+
+   /**
+    * Returns the arithmetic mean of the values recorded.
+    *
+    * @return the result in nanoseconds, or zero if nothing has been recorded.
+    */
+   public double getMeanValue()
+   {
+      final long n = count.sum();
+      return n == 0 ? 0 : (double) sum.sum() / n;
+   }
+
+   /**
+    * Returns the value below which the specified percentage of recorded values fall.
+    *
+    * The result is the highest value that is equivalent, within the precision of
+    * the histogram, to the recorded value at the requested percentile. It never
+    * exceeds the largest value recorded.
+    *
+    * @param percentile the percentile in the range 0 to 100.
+    * @return the result in nanoseconds, or zero if nothing has been recorded.
+    * @throws IllegalArgumentException if the percentile was out of range.
+    */
+   public long getValueAtPercentile( double percentile )
+   {
+      Validate.inclusiveBetween( 0.0, 100.0, percentile );
+
+      long total = 0;
+      for ( int i = 0; i < BUCKET_COUNT; i++ )
+      {
+         total += buckets.get( i );
+      }
+      if ( total == 0 )
+      {
+         return 0;
+      }
+
+      final long countAtPercentile = Math.max( 1, (long) Math.ceil( ( percentile / 100.0 ) * total ) );
+      long runningCount = 0;
+      for ( int i = 0; i < BUCKET_COUNT; i++ )
+      {
+         runningCount += buckets.get( i );
+         if ( runningCount >= countAtPercentile )
+         {
+            return Math.min( highestEquivalentValueOf( i ), max.get() );
+         }
+      }
+      return max.get();
+   }
+
+   /**
+    * Discards all recorded values.
+    *
+    * Values which are recorded concurrently with the reset may or may not be discarded.
+    */
+   public void reset()
+   {
+      for ( int i = 0; i < BUCKET_COUNT; i++ )
+      {
+         buckets.set( i, 0 );
+      }
+      count.reset();
+      sum.reset();
+      max.set( 0 );
+   }
+
+   @Override
+   public String toString()
+   {
+      return String.format( "count=%d, mean=%.1fus, p50=%dus, p90=%dus, p99=%dus, p99.9=%dus, max=%dus",
+                            getCount(),
+                            getMeanValue() / 1000.0,
+                            TimeUnit.NANOSECONDS.toMicros( getValueAtPercentile( 50.0 ) ),
+                            TimeUnit.NANOSECONDS.toMicros( getValueAtPercentile( 90.0 ) ),
+                            TimeUnit.NANOSECONDS.toMicros( getValueAtPercentile( 99.0 ) ),
+                            TimeUnit.NANOSECONDS.toMicros( getValueAtPercentile( 99.9 ) ),
+                            TimeUnit.NANOSECONDS.toMicros( getMaxValue() ) );
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+
+   static int bucketIndexOf( long value )
+   {
+      if ( value < 2 * SUB_BUCKET_COUNT )
+      {
+         return (int) value;
+      }
+      final int shift = ( 63 - Long.numberOfLeadingZeros( value ) ) - SUB_BUCKET_BITS;
+      final int subBucket = (int) ( value >>> shift );
+      return ( shift * SUB_BUCKET_COUNT ) + subBucket;
+   }
+
+   static long highestEquivalentValueOf( int bucketIndex )
+   {
+      if ( bucketIndex < 2 * SUB_BUCKET_COUNT )
+      {
+         return bucketIndex;
+      }
+      final int shift = ( bucketIndex / SUB_BUCKET_COUNT ) - 1;
+      final long subBucket = ( bucketIndex % SUB_BUCKET_COUNT ) + SUB_BUCKET_COUNT;
+      return ( ( subBucket + 1 ) << shift ) - 1;
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
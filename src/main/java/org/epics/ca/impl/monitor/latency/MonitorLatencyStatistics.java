@@ -0,0 +1,168 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.monitor.latency;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.lang3.Validate;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * A set of latency histograms, one for each stage of the path that a monitor
+ * update takes from the IOC to the end of the call to the Consumer.
+ *
+ * The stage boundaries are the times at which:
+ * <ul>
+ * <li> the IOC timestamped the value (Timestamped monitors only; wall-clock).</li>
+ * <li> the TCP transport received the data containing the update.</li>
+ * <li> the update was published to the monitor notification service.</li>
+ * <li> the notification engine started the call to the Consumer.</li>
+ * <li> the call to the Consumer returned.</li>
+ * </ul>
+ */
+@ThreadSafe
+public class MonitorLatencyStatistics
+{
+
+/*- Public attributes --------------------------------------------------------*/
+
+   public enum Stage
+   {
+      /**
+       * From the IOC's timestamp to publication. Depends on clock synchronisation
+       * between the IOC and the local host.
+       */
+      IOC_TIMESTAMP_TO_PUBLISH,
+
+      /**
+       * From the receipt of the data by the transport to publication. This covers
+       * the processing of any earlier messages in the same receive buffer and the
+       * deserialization of the value.
+       */
+      RECEIVE_TO_PUBLISH,
+
+      /**
+       * From publication to the start of the call to the Consumer. This is the time
+       * spent queueing in the notification engine.
+       */
+      PUBLISH_TO_CONSUMER_START,
+
+      /**
+       * The time spent in the Consumer.
+       */
+      CONSUMER_START_TO_END,
+
+      /**
+       * From the receipt of the data by the transport to the end of the call to the Consumer.
+       */
+      RECEIVE_TO_CONSUMER_END
+   }
+
+   /**
+    * An instance which is never updated. Returned where latency recording is not enabled.
+    */
+   public static final MonitorLatencyStatistics DISABLED = new MonitorLatencyStatistics( false, null );
+
+/*- Private attributes -------------------------------------------------------*/
+
+   private final boolean enabled;
+   private final MonitorLatencyStatistics parent;
+   private final MonitorLatencyHistogram[] histograms;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Creates a new instance which accumulates the latencies of a whole factory.
+    */
+   MonitorLatencyStatistics()
+   {
+      this( true, null );
+   }
+
+   /**
+    * Creates a new instance which accumulates the latencies of a single monitor
+    * and which additionally forwards them to the specified parent.
+    *
+    * @param parent the statistics of the factory which created the monitor's service.
+    */
+   MonitorLatencyStatistics( MonitorLatencyStatistics parent )
+   {
+      this( true, Validate.notNull( parent ) );
+   }
+
+   private MonitorLatencyStatistics( boolean enabled, MonitorLatencyStatistics parent )
+   {
+      this.enabled = enabled;
+      this.parent = parent;
+      this.histograms = new MonitorLatencyHistogram[ Stage.values().length ];
+      for ( int i = 0; i < histograms.length; i++ )
+      {
+         histograms[ i ] = new MonitorLatencyHistogram();
+      }
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * Returns an indication of whether latencies are being recorded in this instance.
+    *
+    * @return the result.
+    */
+   public boolean isEnabled()
+   {
+      return enabled;
+   }
+
+   /**
+    * Returns the histogram for the specified stage.
+    *
+    * @param stage the stage.
+    * @return the histogram.
+    */
+   public MonitorLatencyHistogram getHistogram( Stage stage )
+   {
+      Validate.notNull( stage );
+      return histograms[ stage.ordinal() ];
+   }
+
+   /**
+    * Discards all recorded values in this instance. The parent instance, if any, is unaffected.
+    */
+   public void reset()
+   {
+      for ( MonitorLatencyHistogram histogram : histograms )
+      {
+         histogram.reset();
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      final StringBuilder sb = new StringBuilder( "MonitorLatencyStatistics{" );
+      for ( Stage stage : Stage.values() )
+      {
+         sb.append( "\n   " ).append( stage ).append( ": " ).append( getHistogram( stage ) );
+      }
+      return sb.append( "\n}" ).toString();
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+
+   void record( Stage stage, long valueInNanos )
+   {
+      histograms[ stage.ordinal() ].record( valueInNanos );
+      if ( parent != null )
+      {
+         parent.record( stage, valueInNanos );
+      }
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
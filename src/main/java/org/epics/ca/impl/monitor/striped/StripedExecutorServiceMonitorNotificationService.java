@@ -10,6 +10,7 @@ import org.epics.ca.impl.monitor.MonitorNotificationService;
 import org.epics.ca.util.logging.LibraryLogManager;
 
 import java.nio.ByteBuffer;
+import java.util.Objects;
 import java.util.concurrent.ExecutorService;
 
 import java.util.function.Consumer;
@@ -26,7 +27,6 @@ public class StripedExecutorServiceMonitorNotificationService<T> implements Moni
 
    private static final Logger logger = LibraryLogManager.getLogger( StripedExecutorServiceMonitorNotificationService.class );
 
-   @SuppressWarnings( "FieldCanBeLocal" )
    private final StripedExecutorServiceMonitorNotificationServiceFactory factory;
    private final Consumer<? super T> consumer;
    private final ExecutorService executorService;
@@ -62,8 +62,8 @@ public class StripedExecutorServiceMonitorNotificationService<T> implements Moni
    @Override
    public boolean publish( ByteBuffer dataBuffer, TypeSupports.TypeSupport<T> typeSupport, int dataCount )
    {
-      Validate.notNull( dataBuffer );
-      Validate.notNull( typeSupport );
+      Objects.requireNonNull( dataBuffer );
+      Objects.requireNonNull( typeSupport );
       Validate.inclusiveBetween( 0, Integer.MAX_VALUE, dataCount);
 
       // The deserializer is optimised to reuse the same data structure thus
@@ -82,8 +82,8 @@ public class StripedExecutorServiceMonitorNotificationService<T> implements Moni
    @Override
    public boolean publish( T value )
    {
-      final StripedMonitorNotificationTask<T> task = new StripedMonitorNotificationTask<>( consumer, value );
-      logger.finest( String.format( "Submitting task on stripe: '%s' ", task.getStripe() ) );
+      final StripedMonitorNotificationTask<T> task = new StripedMonitorNotificationTask<>( consumer, value, factory.getPendingNotificationCounter() );
+      factory.getPendingNotificationCounter().increment();
       executorService.submit( task );
 
       return true;
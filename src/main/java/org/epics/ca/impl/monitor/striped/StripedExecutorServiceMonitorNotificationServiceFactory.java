@@ -13,6 +13,7 @@ import org.epics.ca.util.logging.LibraryLogManager;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.logging.Logger;
 
@@ -30,6 +31,7 @@ public class StripedExecutorServiceMonitorNotificationServiceFactory implements
 
    private final StripedExecutorService stripedExecutorService;
    private final  int numberOfThreads;
+   private final LongAdder pendingNotificationCount = new LongAdder();
 
 
 /*- Main ---------------------------------------------------------------------*/
@@ -145,6 +147,21 @@ public class StripedExecutorServiceMonitorNotificationServiceFactory implements
       return Integer.MAX_VALUE;
    }
 
+   /**
+    * {@inheritDoc}
+    */
+   @Override
+   public long getPendingNotificationCount()
+   {
+      return pendingNotificationCount.sum();
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+
+   LongAdder getPendingNotificationCounter()
+   {
+      return pendingNotificationCount;
+   }
 
 /*- Private methods ----------------------------------------------------------*/
 /*- Nested Classes -----------------------------------------------------------*/
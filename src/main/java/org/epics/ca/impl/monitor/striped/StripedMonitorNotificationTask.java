@@ -4,9 +4,10 @@ package org.epics.ca.impl.monitor.striped;
 
 import eu.javaspecialists.tjsn.concurrency.stripedexecutor.StripedRunnable;
 import net.jcip.annotations.Immutable;
-import org.apache.commons.lang3.Validate;
 import org.epics.ca.util.logging.LibraryLogManager;
 
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -31,6 +32,7 @@ class StripedMonitorNotificationTask<T> implements StripedRunnable
    private static final Logger logger = LibraryLogManager.getLogger( StripedMonitorNotificationTask.class );
    private final T value;
    private final Consumer<? super T> valueConsumer;
+   private final LongAdder pendingNotificationCount;
 
 
 /*- Main ---------------------------------------------------------------------*/
@@ -42,11 +44,13 @@ class StripedMonitorNotificationTask<T> implements StripedRunnable
     *
     * @param valueConsumer the consumer.
     * @param value the value.
+    * @param pendingNotificationCount the counter of queued tasks, which is decremented when this task starts.
     */
-    StripedMonitorNotificationTask( Consumer<? super T> valueConsumer, T value )
+    StripedMonitorNotificationTask( Consumer<? super T> valueConsumer, T value, LongAdder pendingNotificationCount )
     {
-       this.valueConsumer = Validate.notNull( valueConsumer );
-       this.value = Validate.notNull( value );
+       this.valueConsumer = Objects.requireNonNull( valueConsumer );
+       this.value = Objects.requireNonNull( value );
+       this.pendingNotificationCount = Objects.requireNonNull( pendingNotificationCount );
     }
 
 
@@ -58,6 +62,7 @@ class StripedMonitorNotificationTask<T> implements StripedRunnable
    @Override
    public void run()
    {
+      pendingNotificationCount.decrement();
       try
       {
          //logger.finest( String.format( "Notifying consumer '%s' with value: '%s'... ", valueConsumer, value ) );
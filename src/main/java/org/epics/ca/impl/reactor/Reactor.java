@@ -16,6 +16,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -235,6 +236,11 @@ public class Reactor
     */
    private final Object shutdownMonitor = new Object ();
 
+   /**
+    * Number of selection events dispatched to handlers.
+    */
+   private final LongAdder dispatchedEventCount = new LongAdder ();
+
    /**
     * Creates a new instance of reactor.
     *
@@ -429,6 +435,7 @@ public class Reactor
          try
          {
             // process request
+            dispatchedEventCount.increment ();
             handler.handleEvent (selectedKey);
          }
          catch ( CancelledKeyException cke )
@@ -625,6 +632,16 @@ public class Reactor
       }
    }
 
+   /**
+    * Get the number of selection events which have been dispatched to handlers.
+    *
+    * @return the number of dispatched events.
+    */
+   public long getDispatchedEventCount()
+   {
+      return dispatchedEventCount.sum ();
+   }
+
    /**
     * Shutdown the reactor.
     */
@@ -1,6 +1,7 @@
 package org.epics.ca.impl.requests;
 
 import java.nio.ByteBuffer;
+import java.util.Objects;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.logging.Level;
@@ -11,7 +12,9 @@ import org.epics.ca.Monitor;
 import org.epics.ca.Status;
 import org.epics.ca.impl.*;
 import org.epics.ca.impl.TypeSupports.TypeSupport;
+import org.epics.ca.impl.metrics.TrafficCounters;
 import org.epics.ca.impl.monitor.MonitorNotificationService;
+import org.epics.ca.impl.monitor.latency.MonitorLatencyStatistics;
 import org.epics.ca.util.logging.LibraryLogManager;
 
 /**
@@ -59,6 +62,11 @@ public class MonitorRequest<T> implements Monitor<T>, NotifyResponseRequest
     */
    protected final Consumer<? super T> consumer;
 
+   /**
+    * Traffic received by this subscription, null unless PV traffic accounting is enabled.
+    */
+   private final TrafficCounters trafficCounters;
+
    /**
     * Closed flag.
     */
@@ -79,12 +87,14 @@ public class MonitorRequest<T> implements Monitor<T>, NotifyResponseRequest
       this.mask = mask;
       this.monitorNotificationService = Validate.notNull( monitorNotificationService );
       this.consumer = Validate.notNull( consumer );
+      this.trafficCounters = channel.getTrafficCounters() != null ? new TrafficCounters( channel.getName() ) : null;
 
       context = transport.getContext ();
       ioid = context.registerResponseRequest (this);
       channel.registerResponseRequest (this);
 
       resubscribe (transport);
+      transport.flush ();
    }
 
    @Override
@@ -93,16 +103,49 @@ public class MonitorRequest<T> implements Monitor<T>, NotifyResponseRequest
       return ioid;
    }
 
+   /**
+    * Returns the latencies recorded for the notifications delivered by this monitor.
+    *
+    * @return the result; MonitorLatencyStatistics.DISABLED if the monitor notification
+    *    engine is not configured to record latencies.
+    */
+   public MonitorLatencyStatistics getLatencyStatistics()
+   {
+      return monitorNotificationService.getLatencyStatistics();
+   }
+
+   /**
+    * Returns the updates, bytes and overruns received by this monitor.
+    *
+    * @return the counters, or null if PV traffic accounting is not enabled.
+    */
+   public TrafficCounters getTrafficCounters()
+   {
+      return trafficCounters;
+   }
+
    @Override
    public void response( int status, short dataType, int dataCount, ByteBuffer dataPayloadBuffer )
    {
-      Validate.notNull( dataPayloadBuffer );
+      response( status, dataType, dataCount, dataPayloadBuffer, System.nanoTime() );
+   }
+
+   @Override
+   public void response( int status, short dataType, int dataCount, ByteBuffer dataPayloadBuffer, long receiveTimestamp )
+   {
+      Objects.requireNonNull( dataPayloadBuffer );
 
       Status caStatus = Status.forStatusCode (status);
       if ( caStatus == Status.NORMAL )
       {
          // Publish the new value to the consumer.
-         final boolean overrun = ! monitorNotificationService.publish( dataPayloadBuffer, typeSupport, dataCount );
+         final int messageSize = trafficCounters != null ? TrafficCounters.messageSize( dataPayloadBuffer.remaining() ) : 0;
+         final boolean overrun = ! monitorNotificationService.publish( dataPayloadBuffer, typeSupport, dataCount, receiveTimestamp );
+         if ( trafficCounters != null )
+         {
+            trafficCounters.record( messageSize, overrun );
+            channel.getTrafficCounters().record( messageSize, overrun );
+         }
          if ( overrun )
          {
             bufferOverrunWarningCount++;
@@ -140,17 +183,21 @@ public class MonitorRequest<T> implements Monitor<T>, NotifyResponseRequest
       // monitorNotificationService.close();
    }
 
+   /**
+    * Sends the subscription request, without flushing the transport.
+    *
+    * @param transport the transport.
+    */
    public void resubscribe( Transport transport )
    {
       int dataCount = typeSupport.getForcedElementCount ();
 
-      if ( dataCount == 0 && channel.getTcpTransport().getMinorRevision () < 13 )
+      if ( dataCount == 0 && channel.getTransport().getMinorRevision () < 13 )
       {
          dataCount = channel.getNativeElementCount();
       }
 
       Messages.createSubscriptionMessage ( transport, typeSupport.getDataType (), dataCount, channel.getSID (), ioid, mask );
-      transport.flush ();
    }
 
    @Override
@@ -192,7 +239,7 @@ public class MonitorRequest<T> implements Monitor<T>, NotifyResponseRequest
 
       cancel ();
 
-      Transport transport = channel.getTcpTransport();
+      Transport transport = channel.getTransport();
       if ( transport == null )
       {
          return;
@@ -200,7 +247,7 @@ public class MonitorRequest<T> implements Monitor<T>, NotifyResponseRequest
 
       int dataCount = typeSupport.getForcedElementCount();
 
-      if ( dataCount == 0 && channel.getTcpTransport().getMinorRevision () < 13 )
+      if ( dataCount == 0 && channel.getTransport().getMinorRevision () < 13 )
       {
          dataCount = channel.getNativeElementCount();
       }
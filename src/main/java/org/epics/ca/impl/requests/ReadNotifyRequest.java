@@ -2,6 +2,7 @@ package org.epics.ca.impl.requests;
 
 import java.nio.ByteBuffer;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import org.epics.ca.CompletionException;
@@ -10,8 +11,11 @@ import org.epics.ca.impl.ChannelImpl;
 import org.epics.ca.impl.ContextImpl;
 import org.epics.ca.impl.Messages;
 import org.epics.ca.impl.NotifyResponseRequest;
+import org.epics.ca.impl.RequestExpiryWheel;
 import org.epics.ca.impl.Transport;
 import org.epics.ca.impl.TypeSupports.TypeSupport;
+import org.epics.ca.impl.jfr.FlightRecorderEvents;
+import org.epics.ca.impl.metrics.TrafficCounters;
 import org.epics.ca.util.logging.LibraryLogManager;
 
 /**
@@ -41,11 +45,25 @@ public class ReadNotifyRequest<T> extends CompletableFuture<T> implements Notify
     */
    protected final ChannelImpl<?> channel;
 
+   /**
+    * Handle of the expiry of the request, null if it does not expire.
+    */
+   private volatile RequestExpiryWheel.Timeout expiry;
+
    /**
     * Type support.
     */
    protected final TypeSupport<T> typeSupport;
 
+   /**
+    * Number of elements requested.
+    */
+   private final int dataCount;
+
+   /**
+    * Flight recorder event of the request, null if it is not recorded.
+    */
+   private final Object flightRecorderEvent;
 
    /**
     *
@@ -53,22 +71,29 @@ public class ReadNotifyRequest<T> extends CompletableFuture<T> implements Notify
     * @param transport the transport.
     * @param sid the CA Server ID.
     * @param typeSupport reference to an object which can provide support for this type.
+    * @param timeout the time after which the request expires, zero if it never does.
+    * @param unit the unit of the timeout.
     */
-   public ReadNotifyRequest( ChannelImpl<?> channel, Transport transport, int sid, TypeSupport<T> typeSupport )
+   public ReadNotifyRequest( ChannelImpl<?> channel, Transport transport, int sid, TypeSupport<T> typeSupport, long timeout, TimeUnit unit )
    {
       this.channel = channel;
       this.sid = sid;
       this.typeSupport = typeSupport;
 
-      final int minorRevision = channel.getTcpTransport().getMinorRevision();
+      final int minorRevision = transport.getMinorRevision();
       final int forcedElementCount = typeSupport.getForcedElementCount();
       final int nativeElementCount = channel.getNativeElementCount();
 
-      final int dataCount = ( forcedElementCount == 0 ) && ( minorRevision < 13 ) ? nativeElementCount : forcedElementCount;
+      dataCount = ( forcedElementCount == 0 ) && ( minorRevision < 13 ) ? nativeElementCount : forcedElementCount;
       logger.finest( "Receive data count is: " + dataCount );
+      flightRecorderEvent = FlightRecorderEvents.INSTANCE.beginGet();
       context = transport.getContext();
       ioid = context.registerResponseRequest( this );
       channel.registerResponseRequest( this );
+      if ( timeout > 0 )
+      {
+         expiry = context.getRequestExpiryWheel().add( this::expire, timeout, unit );
+      }
 
       Messages.readNotifyMessage( transport, typeSupport.getDataType(), dataCount, sid, ioid );
       transport.flush ();
@@ -89,8 +114,15 @@ public class ReadNotifyRequest<T> extends CompletableFuture<T> implements Notify
          final Status caStatus = Status.forStatusCode( status );
          if ( caStatus == Status.NORMAL )
          {
+            final TrafficCounters trafficCounters = channel.getTrafficCounters();
+            if ( trafficCounters != null )
+            {
+               trafficCounters.record( TrafficCounters.messageSize( dataPayloadBuffer.remaining() ), false );
+            }
+
             // NOTE: reserved for "reuse" option
             final T value = typeSupport.deserialize( dataPayloadBuffer, null, dataCount );
+            FlightRecorderEvents.INSTANCE.endGet( flightRecorderEvent, channel.getName(), this.dataCount, caStatus );
             complete( value );
          }
          else
@@ -111,6 +143,12 @@ public class ReadNotifyRequest<T> extends CompletableFuture<T> implements Notify
       // unregister response request
       context.unregisterResponseRequest (this);
       channel.unregisterResponseRequest (this);
+
+      final RequestExpiryWheel.Timeout expiry = this.expiry;
+      if ( expiry != null )
+      {
+         context.getRequestExpiryWheel().remove( expiry );
+      }
    }
 
    @Override
@@ -125,8 +163,18 @@ public class ReadNotifyRequest<T> extends CompletableFuture<T> implements Notify
       completeExceptionally (status, errorMessage);
    }
 
+   /**
+    * Expires the request, whose response has not arrived in time.
+    */
+   protected void expire()
+   {
+      cancel ();
+      completeExceptionally( Status.TIMEOUT, "No response to the get request within the timeout." );
+   }
+
    protected void completeExceptionally( Status status, String message )
    {
+      FlightRecorderEvents.INSTANCE.endGet( flightRecorderEvent, channel.getName(), dataCount, status );
       completeExceptionally( new CompletionException(status, message) );
    }
 }
@@ -2,6 +2,7 @@ package org.epics.ca.impl.requests;
 
 import java.nio.ByteBuffer;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import org.epics.ca.CompletionException;
@@ -10,8 +11,10 @@ import org.epics.ca.impl.ChannelImpl;
 import org.epics.ca.impl.ContextImpl;
 import org.epics.ca.impl.Messages;
 import org.epics.ca.impl.NotifyResponseRequest;
+import org.epics.ca.impl.RequestExpiryWheel;
 import org.epics.ca.impl.Transport;
 import org.epics.ca.impl.TypeSupports.TypeSupport;
+import org.epics.ca.impl.jfr.FlightRecorderEvents;
 import org.epics.ca.util.logging.LibraryLogManager;
 
 /**
@@ -42,6 +45,21 @@ public class WriteNotifyRequest<T> extends CompletableFuture<Status> implements
     */
    protected final ChannelImpl<?> channel;
 
+   /**
+    * Handle of the expiry of the request, null if it does not expire.
+    */
+   private volatile RequestExpiryWheel.Timeout expiry;
+
+   /**
+    * Number of elements written.
+    */
+   private final int count;
+
+   /**
+    * Flight recorder event of the request, null if it is not recorded.
+    */
+   private final Object flightRecorderEvent;
+
    /**
     * @param channel the channel.
     * @param transport the transport.
@@ -49,15 +67,23 @@ public class WriteNotifyRequest<T> extends CompletableFuture<Status> implements
     * @param typeSupport reference to an object which can provide support for this type.
     * @param value the value.
     * @param count the element count.
+    * @param timeout the time after which the request expires, zero if it never does.
+    * @param unit the unit of the timeout.
     */
-   public WriteNotifyRequest( ChannelImpl<?> channel, Transport transport, int sid, TypeSupport<T> typeSupport, T value, int count )
+   public WriteNotifyRequest( ChannelImpl<?> channel, Transport transport, int sid, TypeSupport<T> typeSupport, T value, int count, long timeout, TimeUnit unit )
    {
       this.channel = channel;
       this.sid = sid;
+      this.count = count;
 
+      flightRecorderEvent = FlightRecorderEvents.INSTANCE.beginPut();
       context = transport.getContext ();
       ioid = context.registerResponseRequest( this );
       channel.registerResponseRequest( this );
+      if ( timeout > 0 )
+      {
+         expiry = context.getRequestExpiryWheel().add( this::expire, timeout, unit );
+      }
 
       logger.finest( "Send data count is: " + count );
 
@@ -77,6 +103,7 @@ public class WriteNotifyRequest<T> extends CompletableFuture<Status> implements
       try
       {
          final Status caStatus = Status.forStatusCode( status );
+         FlightRecorderEvents.INSTANCE.endPut( flightRecorderEvent, channel.getName(), count, caStatus );
          complete( caStatus );
       }
       finally
@@ -92,6 +119,12 @@ public class WriteNotifyRequest<T> extends CompletableFuture<Status> implements
       // unregister response request
       context.unregisterResponseRequest( this );
       channel.unregisterResponseRequest( this );
+
+      final RequestExpiryWheel.Timeout expiry = this.expiry;
+      if ( expiry != null )
+      {
+         context.getRequestExpiryWheel().remove( expiry );
+      }
    }
 
    @Override
@@ -105,7 +138,18 @@ public class WriteNotifyRequest<T> extends CompletableFuture<Status> implements
          status = Status.PUTFAIL;
       }
 
+      FlightRecorderEvents.INSTANCE.endPut( flightRecorderEvent, channel.getName(), count, status );
       completeExceptionally( new CompletionException( status, errorMessage ) );
    }
 
+   /**
+    * Expires the request, whose response has not arrived in time.
+    */
+   protected void expire()
+   {
+      cancel();
+      FlightRecorderEvents.INSTANCE.endPut( flightRecorderEvent, channel.getName(), count, Status.TIMEOUT );
+      completeExceptionally( new CompletionException( Status.TIMEOUT, "No response to the put request within the timeout." ) );
+   }
+
 }
@@ -7,12 +7,15 @@ package org.epics.ca.impl.search;
 import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Logger;
 
 import org.epics.ca.Constants;
 import org.epics.ca.impl.UdpBroadcastTransport;
 import org.epics.ca.impl.ChannelImpl;
 import org.epics.ca.impl.Messages;
+import org.epics.ca.impl.jfr.FlightRecorderEvents;
+import org.epics.ca.impl.metrics.MetricsRegistry;
 import org.epics.ca.util.logging.LibraryLogManager;
 
 /*- Interface Declaration ----------------------------------------------------*/
@@ -76,6 +79,16 @@ public class ChannelSearchManager
     */
    private final ByteBuffer sendBuffer;
 
+   /**
+    * Number of search frames (datagrams) sent.
+    */
+   private final LongAdder searchFramesSent;
+
+   /**
+    * Number of search responses received for registered channels.
+    */
+   private final LongAdder searchResponsesReceived;
+
 
 /*- Main ---------------------------------------------------------------------*/
 /*- Constructor --------------------------------------------------------------*/
@@ -96,6 +109,11 @@ public class ChannelSearchManager
       // create and initialize send buffer
       sendBuffer = ByteBuffer.allocateDirect( Constants.MAX_UDP_SEND );
       initializeSendBuffer ();
+
+      final MetricsRegistry metricsRegistry = udpBroadcastTransport.getContext().getMetricsRegistry();
+      searchFramesSent = metricsRegistry.counter( "ca_search_frames_sent_total", "CA search request frames sent." );
+      searchResponsesReceived = metricsRegistry.counter( "ca_search_responses_total", "CA search responses received for channels awaiting connection." );
+      metricsRegistry.gauge( "ca_search_pending_channels", "Channels registered for searching.", channelCount::get );
    }
 
 
@@ -139,8 +157,8 @@ public class ChannelSearchManager
       {
          SearchTimer.cancel( timerTask );
          channel.setTimerId( null );
+         channelCount.decrementAndGet();
       }
-      channelCount.decrementAndGet();
    }
 
    /**
@@ -214,6 +232,7 @@ public class ChannelSearchManager
       }
 
       udpBroadcastTransport.send( sendBuffer );
+      searchFramesSent.increment();
       initializeSendBuffer();
    }
 
@@ -248,6 +267,14 @@ public class ChannelSearchManager
     */
    public void searchResponse( ChannelImpl<?> channel )
    {
+      searchResponsesReceived.increment();
+
+      final Object timerTask = channel.getTimerId();
+      if ( timerTask instanceof ChannelSearchTimerTask )
+      {
+         final ChannelSearchTimerTask channelSearchTimerTask = (ChannelSearchTimerTask) timerTask;
+         FlightRecorderEvents.INSTANCE.endSearch( channelSearchTimerTask.flightRecorderEvent, channel.getName(), channelSearchTimerTask.requests );
+      }
       unregisterChannel (channel);
    }
 
@@ -257,16 +284,22 @@ public class ChannelSearchManager
    private class ChannelSearchTimerTask extends SearchTimer.TimerTask
    {
       private final ChannelImpl<?> channel;
+      private final Object flightRecorderEvent;
+
+      // the number of search requests sent; written only by the timer thread
+      private volatile int requests;
 
       ChannelSearchTimerTask( ChannelImpl<?> channel )
       {
          this.channel = channel;
+         this.flightRecorderEvent = FlightRecorderEvents.INSTANCE.beginSearch();
       }
 
       public long timeout()
       {
          // send search message
          generateSearchRequestMessage( channel, true );
+         requests++;
 
          if ( !timer.hasNext( MESSAGE_COALESCENCE_TIME_MS ) )
          {
@@ -94,6 +94,8 @@ public class SearchTimer extends Thread
          TimerTask task
    )
    {
+      if ( shutdown )
+         return;
       long runtime = System.currentTimeMillis () + millisecondsToDelay;
       task.setTimeToRun (millisecondsToDelay, runtime);
       heap.insert (task);
@@ -137,6 +139,13 @@ public class SearchTimer extends Thread
     **/
    protected Thread thread;
 
+   /**
+    * Set once the timer has been shut down, after which no task is run or
+    * rescheduled and no thread is started. The interrupt alone is not enough
+    * because the tasks may clear it while sending.
+    */
+   protected boolean shutdown;
+
    /*
     * Return the thread being used to process commands, or null if there is no
     * such thread. You can use this to invoke any special methods on the
@@ -164,6 +173,8 @@ public class SearchTimer extends Thread
 
    public synchronized void restart()
    {
+      if ( shutdown )
+         return;
       if ( thread == null )
       {
          thread = new Thread (runLoop, this.getClass ().getName ());
@@ -176,13 +187,13 @@ public class SearchTimer extends Thread
 
    /**
     * Cancel all tasks and interrupt the background thread executing the
-    * current task, if any. A new background thread will be started if new
-    * execution requests are encountered. If the currently executing task does
-    * not respond to interrupts, the current thread may persist, even if a new
-    * thread is started via restart().
+    * current task, if any. The timer cannot be restarted: later execution
+    * requests are ignored, and the task which is executing, if any, is not
+    * rescheduled.
     **/
    public synchronized void shutDown()
    {
+      shutdown = true;
       heap.clear ();
       if ( thread != null )
          thread.interrupt ();
@@ -201,7 +212,7 @@ public class SearchTimer extends Thread
       // Note: This code assumes that there is only one run loop thread
       try
       {
-         while ( !Thread.interrupted () )
+         while ( !shutdown && !Thread.interrupted () )
          {
 
             // Using peek simplifies dealing with spurious wakeups
@@ -258,6 +269,18 @@ public class SearchTimer extends Thread
       return (nextTask (false, dT) != null);
    }
 
+   /**
+    * Put a task which has just run back into the queue, unless the timer has
+    * been shut down meanwhile.
+    *
+    * @param task the timer task.
+    */
+   protected synchronized void reschedule( TimerTask task )
+   {
+      if ( !shutdown )
+         heap.insert (task);
+   }
+
    /**
     * The run loop is isolated in its own Runnable class just so that the main
     * class need not implement Runnable, which would allow others to directly
@@ -280,7 +303,7 @@ public class SearchTimer extends Thread
                      long runtime = System.currentTimeMillis ()
                            + millisecondsToDelay;
                      task.setTimeToRun (millisecondsToDelay, runtime);
-                     heap.insert (task);
+                     reschedule (task);
                   }
                }
                else
@@ -0,0 +1,424 @@
+/*- Package Declaration ------------------------------------------------------*/
+package org.epics.ca.util;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.lang3.Validate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * A concurrent hash map that uses primitive ints for the keys and which also
+ * allocates unused keys, as required for the CA channel IDs (CID) and request
+ * IDs (IOID).
+ *
+ * The entries are stored in an open-addressing table with linear probing, so
+ * that a lookup touches one or two adjacent slots and allocates nothing. Reads
+ * never lock: a slot, once given a key, keeps it until the table is rebuilt,
+ * and its value is published with volatile semantics after the key. Removed
+ * entries leave a tombstone which is reclaimed when the table is rebuilt.
+ * Writes are serialised by the monitor of the map, which is held only for the
+ * few slots probed.
+ *
+ * Keys are allocated by counting upwards from the last allocated key and skipping
+ * the keys in use, which amortises to a single probe per allocation.
+ *
+ * @param <T> the type of the values.
+ */
+@ThreadSafe
+public final class ConcurrentIntHashMap<T>
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   /**
+    * Value of a slot whose entry has been removed.
+    */
+   private static final Object TOMBSTONE = new Object();
+
+   /**
+    * Value of an entry whose key has been allocated but whose value has not yet been set.
+    */
+   private static final Object RESERVED = new Object();
+
+   private static final int MINIMUM_CAPACITY = 16;
+
+   /**
+    * The table is rebuilt when the live entries and tombstones fill this fraction of it.
+    */
+   private static final float LOAD_FACTOR = 0.5f;
+
+   private volatile Table table;
+
+   /**
+    * The number of entries, including those which are reserved.
+    */
+   private volatile int count;
+
+   @GuardedBy( "this" )
+   private int tombstones;
+
+   @GuardedBy( "this" )
+   private int lastAllocatedKey;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Creates a new, empty map with the default initial capacity.
+    */
+   public ConcurrentIntHashMap()
+   {
+      this( MINIMUM_CAPACITY );
+   }
+
+   /**
+    * Creates a new, empty map which can hold the specified number of entries
+    * before it is rebuilt.
+    *
+    * @param expectedSize the expected number of entries.
+    * @throws IllegalArgumentException if the expected size is negative.
+    */
+   public ConcurrentIntHashMap( int expectedSize )
+   {
+      Validate.isTrue( expectedSize >= 0, "expectedSize must not be negative." );
+      table = new Table( getCapacityFor( expectedSize ) );
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * Returns the number of entries in the map, including those whose key has been
+    * reserved but whose value has not yet been set.
+    *
+    * @return the number of entries.
+    */
+   public int size()
+   {
+      return count;
+   }
+
+   /**
+    * Tests whether the map is empty.
+    *
+    * @return true if the map has no entries.
+    */
+   public boolean isEmpty()
+   {
+      return count == 0;
+   }
+
+   /**
+    * Tests whether the key is in use, either by an entry or by a reservation.
+    *
+    * @param key the key.
+    * @return true if the key is in use.
+    */
+   public boolean containsKey( int key )
+   {
+      final Object value = table.find( key );
+      return value != null && value != TOMBSTONE;
+   }
+
+   /**
+    * Returns the value mapped to the key. This method never blocks.
+    *
+    * @param key the key.
+    * @return the value, or null if the key is not mapped to a value.
+    */
+   public T get( int key )
+   {
+      return unwrap( table.find( key ) );
+   }
+
+   /**
+    * Maps the key to the value, replacing any previous value or reservation.
+    *
+    * @param key the key.
+    * @param value the value.
+    * @return the previous value, or null if there was none.
+    * @throws NullPointerException if the value is null.
+    */
+   public synchronized T put( int key, T value )
+   {
+      Validate.notNull( value );
+      return unwrap( store( key, value ) );
+   }
+
+   /**
+    * Allocates a key which is not in use and maps it to the value.
+    *
+    * @param value the value.
+    * @return the allocated key.
+    * @throws NullPointerException if the value is null.
+    */
+   public synchronized int add( T value )
+   {
+      Validate.notNull( value );
+      final int key = allocateKey();
+      store( key, value );
+      return key;
+   }
+
+   /**
+    * Allocates a key which is not in use and reserves it, without a value, until
+    * it is either mapped by {@link #put(int, Object)} or released by {@link #remove(int)}.
+    *
+    * @return the allocated key.
+    */
+   public synchronized int reserve()
+   {
+      final int key = allocateKey();
+      store( key, RESERVED );
+      return key;
+   }
+
+   /**
+    * Removes the entry or reservation of the key.
+    *
+    * @param key the key.
+    * @return the value to which the key was mapped, or null if it was not.
+    */
+   public synchronized T remove( int key )
+   {
+      final Table current = table;
+      final int slot = current.indexOf( key );
+      if ( slot < 0 )
+      {
+         return null;
+      }
+      final Object value = current.values.get( slot );
+      if ( value == TOMBSTONE )
+      {
+         return null;
+      }
+      current.values.set( slot, TOMBSTONE );
+      tombstones++;
+      count--;
+      return unwrap( value );
+   }
+
+   /**
+    * Removes all the entries and reservations.
+    */
+   public synchronized void clear()
+   {
+      removeAll();
+   }
+
+   /**
+    * Removes all the entries and reservations, returning the values which were removed.
+    *
+    * @return the values.
+    */
+   public synchronized List<T> removeAll()
+   {
+      final List<T> removed = values();
+      table = new Table( MINIMUM_CAPACITY );
+      tombstones = 0;
+      count = 0;
+      return removed;
+   }
+
+   /**
+    * Returns the values in the map. The result is a snapshot which is consistent
+    * with the writes that completed before the call but which may or may not
+    * reflect concurrent writes.
+    *
+    * @return a new list of the values, excluding reservations.
+    */
+   public List<T> values()
+   {
+      final Table current = table;
+      final List<T> values = new ArrayList<>( count );
+      for ( int slot = 0; slot < current.keys.length; slot++ )
+      {
+         final T value = unwrap( current.values.get( slot ) );
+         if ( value != null )
+         {
+            values.add( value );
+         }
+      }
+      return values;
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+/*- Private methods ----------------------------------------------------------*/
+
+   @GuardedBy( "this" )
+   private int allocateKey()
+   {
+      // the loop ends because the table is never full
+      //noinspection StatementWithEmptyBody
+      while ( containsKey( ++lastAllocatedKey ) )
+      {
+         // Intentionally left blank
+      }
+      return lastAllocatedKey;
+   }
+
+   /**
+    * Stores the value in the slot of the key, or in a new slot, rebuilding the
+    * table first if it would become too full.
+    *
+    * @return the value previously stored for the key, or null.
+    */
+   @GuardedBy( "this" )
+   private Object store( int key, Object value )
+   {
+      Table current = table;
+      final int slot = current.indexOf( key );
+      if ( slot >= 0 )
+      {
+         final Object previous = current.values.get( slot );
+         current.values.set( slot, value );
+         if ( previous == TOMBSTONE )
+         {
+            tombstones--;
+            count++;
+            return null;
+         }
+         return previous;
+      }
+
+      if ( count + tombstones + 1 > current.keys.length * LOAD_FACTOR )
+      {
+         current = rebuild( count + 1 );
+      }
+      current.insert( key, value );
+      count++;
+      return null;
+   }
+
+   /**
+    * Copies the entries to a new table sized for the specified number of entries,
+    * dropping the tombstones, and publishes it. Readers which are still probing the
+    * old table see the state of the map before the rebuild.
+    */
+   @GuardedBy( "this" )
+   private Table rebuild( int expectedSize )
+   {
+      final Table current = table;
+      final Table rebuilt = new Table( Math.max( current.keys.length, getCapacityFor( expectedSize ) ) );
+      for ( int slot = 0; slot < current.keys.length; slot++ )
+      {
+         final Object value = current.values.get( slot );
+         if ( value != null && value != TOMBSTONE )
+         {
+            rebuilt.insert( current.keys[ slot ], value );
+         }
+      }
+      tombstones = 0;
+      table = rebuilt;
+      return rebuilt;
+   }
+
+   @SuppressWarnings( "unchecked" )
+   private static <T> T unwrap( Object value )
+   {
+      return ( value == TOMBSTONE || value == RESERVED ) ? null : (T) value;
+   }
+
+   private static int getCapacityFor( int expectedSize )
+   {
+      final long minimum = (long) Math.ceil( expectedSize / LOAD_FACTOR ) + 1;
+      Validate.isTrue( minimum <= ( 1 << 30 ), "expectedSize is too large." );
+      int capacity = MINIMUM_CAPACITY;
+      while ( capacity < minimum )
+      {
+         capacity <<= 1;
+      }
+      return capacity;
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+   /**
+    * An open-addressing table whose capacity is a power of two. A slot is free while
+    * its value is null. The key of a slot is written before its value, so a reader
+    * which sees the value also sees the key.
+    */
+   private static final class Table
+   {
+      private final int[] keys;
+      private final AtomicReferenceArray<Object> values;
+      private final int mask;
+
+      private Table( int capacity )
+      {
+         keys = new int[ capacity ];
+         values = new AtomicReferenceArray<>( capacity );
+         mask = capacity - 1;
+      }
+
+      /**
+       * Returns the value stored for the key (possibly a tombstone or a reservation),
+       * or null if the key has no slot.
+       */
+      private Object find( int key )
+      {
+         for ( int slot = hash( key ) & mask; ; slot = ( slot + 1 ) & mask )
+         {
+            final Object value = values.get( slot );
+            if ( value == null )
+            {
+               return null;
+            }
+            if ( keys[ slot ] == key )
+            {
+               return value;
+            }
+         }
+      }
+
+      /**
+       * Returns the slot of the key, or -1 if the key has no slot.
+       */
+      private int indexOf( int key )
+      {
+         for ( int slot = hash( key ) & mask; ; slot = ( slot + 1 ) & mask )
+         {
+            if ( values.get( slot ) == null )
+            {
+               return -1;
+            }
+            if ( keys[ slot ] == key )
+            {
+               return slot;
+            }
+         }
+      }
+
+      /**
+       * Stores a key which has no slot in the first free slot.
+       */
+      private void insert( int key, Object value )
+      {
+         int slot = hash( key ) & mask;
+         while ( values.get( slot ) != null )
+         {
+            slot = ( slot + 1 ) & mask;
+         }
+         keys[ slot ] = key;
+         values.set( slot, value );
+      }
+
+      /**
+       * Spreads consecutive keys, which is how the IDs are allocated, across the table.
+       */
+      private static int hash( int key )
+      {
+         final int h = key * 0x9E3779B9;
+         return h ^ ( h >>> 16 );
+      }
+   }
+
+}
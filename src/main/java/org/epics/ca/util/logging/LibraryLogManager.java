@@ -116,6 +116,45 @@ public class LibraryLogManager
    }
 
 
+   /**
+    * Enables or disables the recording of binary trace events from the hot paths of the
+    * CA library. See TraceRecorder.
+    *
+    * @param enabled true to start recording; false to stop.
+    */
+   public static void setTraceEnabled( boolean enabled )
+   {
+      TraceRecorder.setEnabled( enabled );
+   }
+
+   /**
+    * Returns an indication of whether binary trace events are being recorded.
+    *
+    * @return the result.
+    */
+   public static boolean isTraceEnabled()
+   {
+      return TraceRecorder.isEnabled();
+   }
+
+   /**
+    * Returns the trace events most recently recorded by each live thread, oldest first.
+    *
+    * @return the events as text; one line per event.
+    */
+   public static String dumpTrace()
+   {
+      return TraceRecorder.dump();
+   }
+
+   /**
+    * Discards all recorded trace events.
+    */
+   public static void clearTrace()
+   {
+      TraceRecorder.clear();
+   }
+
 /*- Package-level methods ----------------------------------------------------*/
 
    /**
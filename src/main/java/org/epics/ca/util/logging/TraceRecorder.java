@@ -0,0 +1,260 @@
+/*- Package Declaration ------------------------------------------------------*/
+package org.epics.ca.util.logging;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.ThreadSafe;
+import org.epics.ca.impl.LibraryConfiguration;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Records binary trace events from the hot paths of the CA library into a
+ * preallocated ring buffer owned by the recording thread.
+ *
+ * Each event consists of a timestamp, an event code and two numeric arguments.
+ * Recording an event never allocates and never blocks; when tracing is disabled
+ * it costs a single volatile read. The events are only converted to text when the
+ * trace is dumped, either on demand through the LibraryLogManager or automatically
+ * when the library logs an unexpected error.
+ *
+ * Dumps are best-effort: the rings of other threads are read without synchronisation
+ * so the oldest event of a ring which is being written during the dump may be garbled.
+ */
+@ThreadSafe
+public final class TraceRecorder
+{
+
+/*- Public attributes --------------------------------------------------------*/
+
+   /**
+    * The trace events and the meaning of their arguments.
+    */
+   public enum Event
+   {
+      TCP_READ( "bytesRead", "bufferPosition" ),
+      TCP_END_OF_STREAM( "bufferPosition", "-" ),
+      TCP_FLOW_CONTROL( "enabled", "-" ),
+      TCP_PROCESS_BUFFER( "bufferPosition", "bytesAvailable" ),
+      TCP_INCOMPLETE_HEADER( "bufferPosition", "bytesAvailable" ),
+      TCP_INCOMPLETE_PAYLOAD( "payloadSize", "bytesAvailable" ),
+      TCP_RESIZE_RECEIVE_BUFFER( "payloadSize", "newCapacity" ),
+      TCP_MESSAGE( "command", "payloadSize" ),
+      TCP_COMPACT_RECEIVE_BUFFER( "unprocessedBytes", "bufferPosition" ),
+      TCP_SEND( "bytes", "parts" ),
+      TCP_SEND_BUFFER_FULL( "bytesRemaining", "tries" ),
+      UDP_RECEIVE( "bytes", "-" ),
+      RESPONSE( "command", "payloadSize" ),
+      MONITOR_PUBLISH( "queueSize", "overrun" ),
+      MONITOR_NOTIFY( "queueSize", "-" );
+
+      private final String firstArgumentName;
+      private final String secondArgumentName;
+
+      Event( String firstArgumentName, String secondArgumentName )
+      {
+         this.firstArgumentName = firstArgumentName;
+         this.secondArgumentName = secondArgumentName;
+      }
+   }
+
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final Event[] events = Event.values();
+
+   /**
+    * Number of longs per recorded event: timestamp, event code and two arguments.
+    */
+   private static final int ENTRY_SIZE = 4;
+
+   private static final int eventsPerThread = Integer.highestOneBit( Math.max( 16, LibraryConfiguration.getInstance().getTraceEventsPerThread() ) );
+
+   private static final Queue<Ring> rings = new ConcurrentLinkedQueue<>();
+   private static final ThreadLocal<Ring> threadRing = ThreadLocal.withInitial( TraceRecorder::createRing );
+
+   private static volatile boolean enabled = LibraryConfiguration.getInstance().isTraceEnabled();
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   private TraceRecorder() {}
+
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * Returns an indication of whether events are currently being recorded.
+    *
+    * @return the result.
+    */
+   public static boolean isEnabled()
+   {
+      return enabled;
+   }
+
+   /**
+    * Records an event in the calling thread's ring, overwriting the oldest event
+    * where the ring is full. Does nothing when tracing is disabled.
+    *
+    * @param event the event.
+    * @param firstArgument the first argument.
+    * @param secondArgument the second argument.
+    */
+   public static void record( Event event, long firstArgument, long secondArgument )
+   {
+      if ( ! enabled )
+      {
+         return;
+      }
+
+      final Ring ring = threadRing.get();
+      final int offset = (int) ( ring.sequence & ( eventsPerThread - 1 ) ) * ENTRY_SIZE;
+      ring.entries[ offset ] = System.nanoTime();
+      ring.entries[ offset + 1 ] = event.ordinal();
+      ring.entries[ offset + 2 ] = firstArgument;
+      ring.entries[ offset + 3 ] = secondArgument;
+      ring.sequence++;
+   }
+
+   /**
+    * Writes the events recorded by the calling thread to the specified logger. Intended
+    * to be called when an unexpected error is logged so that the lead-up to the error
+    * is preserved. Does nothing when tracing is disabled or the logger would discard
+    * the message.
+    *
+    * @param logger the logger.
+    * @param level the level at which to log the events.
+    */
+   public static void logCurrentThread( Logger logger, Level level )
+   {
+      if ( enabled && logger.isLoggable( level ) )
+      {
+         final StringBuilder sb = new StringBuilder( "Trace leading up to the error:\n" );
+         threadRing.get().appendTo( sb, System.nanoTime() );
+         logger.log( level, sb.toString() );
+      }
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+
+   static void setEnabled( boolean enabled )
+   {
+      TraceRecorder.enabled = enabled;
+   }
+
+   static int getEventsPerThread()
+   {
+      return eventsPerThread;
+   }
+
+   /**
+    * Returns the events recorded by all live threads, oldest first within each thread.
+    */
+   static String dump()
+   {
+      final long now = System.nanoTime();
+      final StringBuilder sb = new StringBuilder();
+      for ( Ring ring : getLiveRings() )
+      {
+         ring.appendTo( sb, now );
+      }
+      return sb.toString();
+   }
+
+   /**
+    * Discards the events recorded by all threads.
+    */
+   static void clear()
+   {
+      for ( Ring ring : getLiveRings() )
+      {
+         ring.clear();
+      }
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   private static Ring createRing()
+   {
+      // Take the opportunity to forget the rings of threads which have terminated.
+      getLiveRings();
+      final Ring ring = new Ring( Thread.currentThread() );
+      rings.add( ring );
+      return ring;
+   }
+
+   private static List<Ring> getLiveRings()
+   {
+      final List<Ring> result = new ArrayList<>();
+      for ( Ring ring : rings )
+      {
+         final Thread thread = ring.thread.get();
+         if ( ( thread == null ) || ! thread.isAlive() )
+         {
+            rings.remove( ring );
+         }
+         else
+         {
+            result.add( ring );
+         }
+      }
+      return result;
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+   private static final class Ring
+   {
+      private final WeakReference<Thread> thread;
+      private final String threadName;
+      private final long[] entries = new long[ eventsPerThread * ENTRY_SIZE ];
+
+      // Written only by the owning thread.
+      private long sequence;
+
+      private Ring( Thread thread )
+      {
+         this.thread = new WeakReference<>( thread );
+         this.threadName = thread.getName();
+      }
+
+      private void clear()
+      {
+         sequence = 0;
+      }
+
+      private void appendTo( StringBuilder sb, long now )
+      {
+         final long end = sequence;
+         final long start = Math.max( 0, end - eventsPerThread );
+         sb.append( "Thread '" ).append( threadName ).append( "': " ).append( end - start ).append( " events\n" );
+         for ( long i = start; i < end; i++ )
+         {
+            final int offset = (int) ( i & ( eventsPerThread - 1 ) ) * ENTRY_SIZE;
+            final int code = (int) entries[ offset + 1 ];
+            if ( code < 0 || code >= events.length )
+            {
+               continue;
+            }
+            final Event event = events[ code ];
+            sb.append( String.format( "   %12.3fus ", ( entries[ offset ] - now ) / 1000.0 ) )
+              .append( event ).append( ' ' )
+              .append( event.firstArgumentName ).append( '=' ).append( entries[ offset + 2 ] );
+            if ( ! "-".equals( event.secondArgumentName ) )
+            {
+               sb.append( ' ' ).append( event.secondArgumentName ).append( '=' ).append( entries[ offset + 3 ] );
+            }
+            sb.append( '\n' );
+         }
+      }
+   }
+
+}
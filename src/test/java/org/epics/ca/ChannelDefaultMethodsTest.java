@@ -0,0 +1,127 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.epics.ca.data.Timestamped;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Verifies the default methods of {@link Channel}, which other implementations
+ * of the interface inherit.
+ */
+class ChannelDefaultMethodsTest
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private Channel<Double> channel;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @BeforeEach
+   @SuppressWarnings( "unchecked" )
+   void beforeEach()
+   {
+      channel = Mockito.mock( Channel.class, Mockito.CALLS_REAL_METHODS );
+   }
+
+   @Test
+   void testGetAsyncWithTimeout_completesWithTimeoutStatusWhenNoResponse()
+   {
+      Mockito.doReturn( new CompletableFuture<Double>() ).when( channel ).getAsync();
+
+      final CompletableFuture<Double> future = channel.getAsync( 50, TimeUnit.MILLISECONDS );
+
+      final ExecutionException ex = assertThrows( ExecutionException.class, () -> future.get( 5, TimeUnit.SECONDS ) );
+      assertThat( ex.getCause(), instanceOf( CompletionException.class ) );
+      assertThat( ( (CompletionException) ex.getCause() ).getStatus(), is( Status.TIMEOUT ) );
+   }
+
+   @Test
+   void testGetAsyncWithTimeout_returnsResponseWithinTimeout() throws Exception
+   {
+      final CompletableFuture<Double> response = new CompletableFuture<>();
+      Mockito.doReturn( response ).when( channel ).getAsync();
+
+      final CompletableFuture<Double> future = channel.getAsync( 5, TimeUnit.SECONDS );
+      response.complete( 1.0 );
+
+      assertThat( future.get(), is( 1.0 ) );
+   }
+
+   @Test
+   void testPutAsyncWithTimeout_completesWithTimeoutStatusWhenNoResponse()
+   {
+      Mockito.doReturn( new CompletableFuture<Status>() ).when( channel ).putAsync( 1.0 );
+
+      final CompletableFuture<Status> future = channel.putAsync( 1.0, 50, TimeUnit.MILLISECONDS );
+
+      final ExecutionException ex = assertThrows( ExecutionException.class, () -> future.get( 5, TimeUnit.SECONDS ) );
+      assertThat( ( (CompletionException) ex.getCause() ).getStatus(), is( Status.TIMEOUT ) );
+   }
+
+   @Test
+   void testPutAsyncWithTimeout_zeroTimeoutNeverExpires()
+   {
+      final CompletableFuture<Status> response = new CompletableFuture<>();
+      Mockito.doReturn( response ).when( channel ).putAsync( 1.0 );
+
+      assertThat( channel.putAsync( 1.0, 0, TimeUnit.MILLISECONDS ), is( response ) );
+      assertThat( response.isDone(), is( false ) );
+   }
+
+   @Test
+   void testGetAsyncWithTimeout_negativeTimeoutRejected()
+   {
+      assertThrows( IllegalArgumentException.class, () -> channel.getAsync( -1, TimeUnit.MILLISECONDS ) );
+   }
+
+   @Test
+   @SuppressWarnings( "unchecked" )
+   void testAddValueMonitorWithQos_hintsIgnored()
+   {
+      final Monitor<Double> monitor = Mockito.mock( Monitor.class );
+      final Consumer<Double> consumer = value -> {};
+      Mockito.doReturn( monitor ).when( channel ).addValueMonitor( consumer, Monitor.VALUE_MASK );
+
+      assertThat( channel.addValueMonitor( consumer, Monitor.VALUE_MASK, MonitorQos.DEFAULT ), is( monitor ) );
+      assertThrows( NullPointerException.class, () -> channel.addValueMonitor( consumer, Monitor.VALUE_MASK, null ) );
+   }
+
+   @Test
+   @SuppressWarnings( "unchecked" )
+   void testAddMonitorWithQos_hintsIgnored()
+   {
+      final Monitor<Timestamped<Double>> monitor = Mockito.mock( Monitor.class );
+      final Consumer<Timestamped<Double>> consumer = value -> {};
+      Mockito.doReturn( monitor ).when( channel ).addMonitor( Timestamped.class, consumer, Monitor.VALUE_MASK );
+
+      assertThat( channel.addMonitor( Timestamped.class, consumer, Monitor.VALUE_MASK, MonitorQos.DEFAULT ), is( monitor ) );
+      assertThrows( NullPointerException.class, () -> channel.addMonitor( Timestamped.class, consumer, Monitor.VALUE_MASK, null ) );
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
@@ -0,0 +1,355 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.epics.ca.impl.repeater.NetworkUtilities;
+import org.epics.ca.util.logging.LibraryLogManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.core.Is.is;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Demonstrates the requirement of MONITOR_INFO.md that at least 100_000 channels
+ * can be monitored without running into bottlenecks, by creating, connecting and
+ * monitoring that number of channels served by the LoadGeneratorServer and then
+ * keeping them under load for a soak period.
+ *
+ * The tests record the time taken to connect, the heap and direct memory retained
+ * per channel and per monitor and, throughout the soak, the notification rate,
+ * the garbage collections and the number of live threads. They fail if a monitor
+ * stops receiving updates or if the threads or the retained heap grow during the
+ * soak. The results are written to the performance report directory.
+ *
+ * The tests take several minutes even with the default settings so they are run
+ * by the scaleTest task rather than the test task, for example:
+ * <pre>
+ * ./gradlew scaleTest -DCA_SCALE_SOAK_DURATION=14400
+ * </pre>
+ * The settings are the system properties CA_SCALE_CHANNELS, CA_SCALE_UPDATE_RATE
+ * (per channel, in Hz), CA_SCALE_SOAK_DURATION and CA_SCALE_SAMPLE_PERIOD (in seconds)
+ * and CA_SCALE_CONNECT_TIMEOUT (in seconds).
+ */
+@Tag( ChannelScaleTests.SCALE_TAG )
+class ChannelScaleTests
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   static final String SCALE_TAG = "scale";
+
+   private static final Logger logger = LibraryLogManager.getLogger( ChannelScaleTests.class );
+
+   private static final String CA_SCALE_CHANNELS = "CA_SCALE_CHANNELS";
+   private static final int CA_SCALE_CHANNELS_DEFAULT = 100_000;
+   private static final String CA_SCALE_UPDATE_RATE = "CA_SCALE_UPDATE_RATE";
+   private static final double CA_SCALE_UPDATE_RATE_DEFAULT = 1.0;
+   private static final String CA_SCALE_SOAK_DURATION = "CA_SCALE_SOAK_DURATION";
+   private static final long CA_SCALE_SOAK_DURATION_DEFAULT = 300;
+   private static final String CA_SCALE_SAMPLE_PERIOD = "CA_SCALE_SAMPLE_PERIOD";
+   private static final long CA_SCALE_SAMPLE_PERIOD_DEFAULT = 10;
+   private static final String CA_SCALE_CONNECT_TIMEOUT = "CA_SCALE_CONNECT_TIMEOUT";
+   private static final long CA_SCALE_CONNECT_TIMEOUT_DEFAULT = 300;
+
+   private static final String PV_PREFIX = "scale:";
+
+   // the allowances for the growth during the soak of the threads and the retained heap
+   private static final int THREAD_GROWTH_ALLOWANCE = 4;
+   private static final double HEAP_GROWTH_ALLOWANCE = 0.25;
+   private static final long HEAP_GROWTH_ALLOWANCE_BYTES = 16 * 1024 * 1024;
+
+   private final int channelCount = Integer.getInteger( CA_SCALE_CHANNELS, CA_SCALE_CHANNELS_DEFAULT );
+   private final double updateRate = Double.parseDouble( System.getProperty( CA_SCALE_UPDATE_RATE, String.valueOf( CA_SCALE_UPDATE_RATE_DEFAULT ) ) );
+   private final long soakSeconds = Long.getLong( CA_SCALE_SOAK_DURATION, CA_SCALE_SOAK_DURATION_DEFAULT );
+   private final long samplePeriodSeconds = Long.getLong( CA_SCALE_SAMPLE_PERIOD, CA_SCALE_SAMPLE_PERIOD_DEFAULT );
+   private final long connectTimeoutSeconds = Long.getLong( CA_SCALE_CONNECT_TIMEOUT, CA_SCALE_CONNECT_TIMEOUT_DEFAULT );
+
+   private ThreadWatcher threadWatcher;
+   private File specificationFile;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @BeforeAll
+   static void beforeAll()
+   {
+      // This is a guard condition. There is no point in running the tests
+      // if the network stack is not appropriately configured for channel access.
+      assertThat( NetworkUtilities.verifyTargetPlatformNetworkStackIsChannelAccessCompatible(), is( true ) );
+
+      if ( NetworkUtilities.isVpnActive() )
+      {
+         fail( "This test is not supported when a VPN connection is active on the local network interface." );
+      }
+   }
+
+   @BeforeEach
+   void beforeEach() throws IOException
+   {
+      threadWatcher = ThreadWatcher.start();
+
+      final Properties specification = new Properties();
+      specification.setProperty( "groups", "scale" );
+      specification.setProperty( "scale.prefix", PV_PREFIX );
+      specification.setProperty( "scale.count", String.valueOf( channelCount ) );
+      specification.setProperty( "scale.type", LoadGeneratorSpecification.Type.DOUBLE.toString() );
+      specification.setProperty( "scale.rate", String.valueOf( updateRate ) );
+
+      specificationFile = File.createTempFile( "ChannelScaleTests", ".properties" );
+      specificationFile.deleteOnExit();
+      try ( OutputStream stream = new FileOutputStream( specificationFile ) )
+      {
+         specification.store( stream, "Written by ChannelScaleTests" );
+      }
+      LoadGeneratorServer.start( specificationFile.getAbsolutePath() );
+   }
+
+   @AfterEach
+   void afterEach()
+   {
+      LoadGeneratorServer.shutdown();
+      if ( ! specificationFile.delete() )
+      {
+         logger.warning( "Failed to delete the load generator specification: " + specificationFile );
+      }
+      threadWatcher.verify();
+   }
+
+   @Test
+   void testMonitorChannels_connectFootprintAndSoak() throws Exception
+   {
+      logger.info( String.format( "Scale test: %d channels updating at %.1fHz, soaking for %ds.", channelCount, updateRate, soakSeconds ) );
+
+      final List<String> summary = new ArrayList<>();
+      final List<String> soakRows = new ArrayList<>();
+      final AtomicIntegerArray notificationCounts = new AtomicIntegerArray( channelCount );
+      final LongAdder notifications = new LongAdder();
+
+      try ( JvmResourceMonitor resources = new JvmResourceMonitor(); Context context = new Context() )
+      {
+         final JvmResourceMonitor.Sample idle = resources.sampleRetained();
+
+         // Create the channels.
+         final List<Channel<Double>> channels = new ArrayList<>( channelCount );
+         long start = System.nanoTime();
+         for ( int i = 0; i < channelCount; i++ )
+         {
+            channels.add( context.createChannel( PV_PREFIX + i, Double.class ) );
+         }
+         summary.add( row( "Time to create", millisSince( start ) + " ms" ) );
+         final JvmResourceMonitor.Sample created = resources.sampleRetained();
+
+         // Connect them, which exercises the search path.
+         start = System.nanoTime();
+         final CompletableFuture<?>[] connections = channels.stream().map( Channel::connectAsync ).toArray( CompletableFuture[]::new );
+         CompletableFuture.allOf( connections ).get( connectTimeoutSeconds, TimeUnit.SECONDS );
+         summary.add( row( "Time to connect", millisSince( start ) + " ms" ) );
+         final JvmResourceMonitor.Sample connected = resources.sampleRetained();
+
+         // Monitor them and wait for the initial update of each monitor.
+         final List<Monitor<Double>> monitors = new ArrayList<>( channelCount );
+         start = System.nanoTime();
+         for ( int i = 0; i < channelCount; i++ )
+         {
+            final int index = i;
+            monitors.add( channels.get( i ).addValueMonitor( value -> {
+               notificationCounts.incrementAndGet( index );
+               notifications.increment();
+            } ) );
+         }
+         final int missingInitialUpdates = awaitNotifications( notificationCounts, new int[ channelCount ], connectTimeoutSeconds );
+         summary.add( row( "Time to receive the initial updates", millisSince( start ) + " ms" ) );
+         final JvmResourceMonitor.Sample subscribed = resources.sampleRetained();
+
+         summary.add( row( "Heap per channel (unconnected)", perChannel( created.getHeapBytes() - idle.getHeapBytes() ) ) );
+         summary.add( row( "Heap per channel (connected)", perChannel( connected.getHeapBytes() - idle.getHeapBytes() ) ) );
+         summary.add( row( "Heap per monitor", perChannel( subscribed.getHeapBytes() - connected.getHeapBytes() ) ) );
+         summary.add( row( "Direct memory per channel (connected)", perChannel( connected.getDirectBytes() - idle.getDirectBytes() ) ) );
+         summary.add( row( "Direct memory per monitor", perChannel( subscribed.getDirectBytes() - connected.getDirectBytes() ) ) );
+         summary.add( row( "Threads (idle / connected / monitoring)", idle.getThreadCount() + " / " + connected.getThreadCount() + " / " + subscribed.getThreadCount() ) );
+
+         // Soak, sampling the resources and the notification rate periodically.
+         final int[] countsBeforeSoak = snapshot( notificationCounts );
+         notifications.reset();
+         resources.sample();
+         long soakNotifications = 0;
+         long maxGcPauseMillis = 0;
+         double minNotificationRate = Double.MAX_VALUE;
+         final long soakStart = System.nanoTime();
+         long sampleStart = soakStart;
+         while ( System.nanoTime() - soakStart < TimeUnit.SECONDS.toNanos( soakSeconds ) )
+         {
+            Thread.sleep( TimeUnit.SECONDS.toMillis( samplePeriodSeconds ) );
+            final long now = System.nanoTime();
+            final long count = notifications.sumThenReset();
+            final double rate = count * (double) TimeUnit.SECONDS.toNanos( 1 ) / ( now - sampleStart );
+            sampleStart = now;
+
+            final JvmResourceMonitor.Sample sample = resources.sample();
+            soakNotifications += count;
+            maxGcPauseMillis = Math.max( maxGcPauseMillis, sample.getMaxGcPauseMillis() );
+            minNotificationRate = Math.min( minNotificationRate, rate );
+            soakRows.add( String.format( "%d,%.0f,%d,%d,%d,%d,%d,%d", TimeUnit.NANOSECONDS.toSeconds( now - soakStart ), rate, sample.getHeapBytes(),
+                                         sample.getDirectBytes(), sample.getThreadCount(), sample.getGcCount(), sample.getGcTimeMillis(), sample.getMaxGcPauseMillis() ) );
+            logger.info( String.format( "Soak: %.0f notifications/s, %s", rate, sample ) );
+         }
+         final long soakNanos = System.nanoTime() - soakStart;
+         final JvmResourceMonitor.Sample soaked = resources.sampleRetained();
+
+         // A monitor has stalled if it received no update during a soak long enough for several.
+         final int stalledMonitors = ( updateRate * soakSeconds >= 3 ) ? awaitNotifications( notificationCounts, countsBeforeSoak, 0 ) : 0;
+
+         summary.add( row( "Mean notification rate during soak", String.format( "%.0f/s (expected %.0f/s)", soakNotifications * (double) TimeUnit.SECONDS.toNanos( 1 ) / soakNanos, updateRate * channelCount ) ) );
+         summary.add( row( "Minimum notification rate during soak", String.format( "%.0f/s", soakRows.isEmpty() ? 0 : minNotificationRate ) ) );
+         summary.add( row( "Longest GC during soak", maxGcPauseMillis + " ms" ) );
+         summary.add( row( "GC time during soak", ( soaked.getGcTimeMillis() - subscribed.getGcTimeMillis() ) + " ms in " + ( soaked.getGcCount() - subscribed.getGcCount() ) + " collections" ) );
+         summary.add( row( "Retained heap (monitoring / after soak)", subscribed.getHeapBytes() / 1024 + " KB / " + soaked.getHeapBytes() / 1024 + " KB" ) );
+         summary.add( row( "Threads after soak", String.valueOf( soaked.getThreadCount() ) ) );
+         summary.add( row( "Monitors without an initial update / stalled during soak", missingInitialUpdates + " / " + stalledMonitors ) );
+
+         // Close everything, which should be quick.
+         start = System.nanoTime();
+         monitors.forEach( Monitor::close );
+         channels.forEach( Channel::close );
+         summary.add( row( "Time to close", millisSince( start ) + " ms" ) );
+
+         writeReport( summary, soakRows );
+
+         assertThat( missingInitialUpdates, is( 0 ) );
+         assertThat( stalledMonitors, is( 0 ) );
+         assertThat( soaked.getThreadCount(), lessThanOrEqualTo( subscribed.getThreadCount() + THREAD_GROWTH_ALLOWANCE ) );
+         assertThat( soaked.getHeapBytes(), lessThanOrEqualTo( (long) ( subscribed.getHeapBytes() * ( 1 + HEAP_GROWTH_ALLOWANCE ) ) + HEAP_GROWTH_ALLOWANCE_BYTES ) );
+      }
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   /**
+    * Waits for each channel to receive a notification beyond those counted in the
+    * specified baseline.
+    *
+    * @param counts the number of notifications received by each channel.
+    * @param baseline the counts to be exceeded.
+    * @param timeoutSeconds how long to wait.
+    * @return the number of channels which received no further notification.
+    * @throws InterruptedException if interrupted.
+    */
+   private static int awaitNotifications( AtomicIntegerArray counts, int[] baseline, long timeoutSeconds ) throws InterruptedException
+   {
+      final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( timeoutSeconds );
+      int next = 0;
+      while ( true )
+      {
+         while ( next < baseline.length && counts.get( next ) > baseline[ next ] )
+         {
+            next++;
+         }
+         if ( next == baseline.length || System.nanoTime() >= deadline )
+         {
+            break;
+         }
+         Thread.sleep( 10 );
+      }
+
+      int missing = 0;
+      for ( int i = next; i < baseline.length; i++ )
+      {
+         if ( counts.get( i ) <= baseline[ i ] )
+         {
+            missing++;
+         }
+      }
+      return missing;
+   }
+
+   private static int[] snapshot( AtomicIntegerArray counts )
+   {
+      final int[] result = new int[ counts.length() ];
+      for ( int i = 0; i < result.length; i++ )
+      {
+         result[ i ] = counts.get( i );
+      }
+      return result;
+   }
+
+   private static long millisSince( long startNanos )
+   {
+      return TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - startNanos );
+   }
+
+   private String perChannel( long bytes )
+   {
+      return String.format( "%.0f bytes", (double) bytes / channelCount );
+   }
+
+   private static String row( String name, String value )
+   {
+      return "| " + name + " | " + value + " |";
+   }
+
+   private void writeReport( List<String> summary, List<String> soakRows ) throws IOException
+   {
+      final File directory = new File( System.getProperty( PerformanceReport.CA_PERFORMANCE_REPORT_DIR, PerformanceReport.CA_PERFORMANCE_REPORT_DIR_DEFAULT ) );
+      if ( !directory.isDirectory() && !directory.mkdirs() )
+      {
+         throw new IOException( "Failed to create the report directory: " + directory );
+      }
+
+      final String name = ChannelScaleTests.class.getSimpleName();
+      try ( PrintWriter writer = new PrintWriter( new FileWriter( new File( directory, name + ".md" ) ) ) )
+      {
+         writer.println( "### " + name );
+         writer.println();
+         writer.println( String.format( " * Channels: %d, updating at %.1fHz, soaked for %ds", channelCount, updateRate, soakSeconds ) );
+         writer.println( " * Java: " + System.getProperty( "java.vendor" ) + " " + System.getProperty( "java.version" ) +
+                         ", max heap " + Runtime.getRuntime().maxMemory() / ( 1024 * 1024 ) + " MB" );
+         writer.println( " * Platform: " + System.getProperty( "os.name" ) + " " + System.getProperty( "os.arch" ) +
+                         ", " + Runtime.getRuntime().availableProcessors() + " processors" );
+         writer.println();
+         writer.println( "| Measurement | Result |" );
+         writer.println( "|-------------|-------:|" );
+         summary.forEach( writer::println );
+      }
+
+      try ( PrintWriter writer = new PrintWriter( new FileWriter( new File( directory, name + "-soak.csv" ) ) ) )
+      {
+         writer.println( "elapsed_s,notifications_per_s,heap_bytes,direct_bytes,threads,gc_count,gc_time_ms,max_gc_pause_ms" );
+         soakRows.forEach( writer::println );
+      }
+
+      summary.forEach( logger::info );
+      logger.info( "The scale test report was written to: " + directory.getAbsolutePath() );
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
@@ -4,24 +4,37 @@ package org.epics.ca;
 /*- Imported packages --------------------------------------------------------*/
 
 import org.apache.commons.lang3.time.StopWatch;
+import org.epics.ca.impl.ContextImpl;
+import org.epics.ca.impl.InMemoryCaServer;
 import org.epics.ca.impl.JavaProcessManager;
+import org.epics.ca.impl.LibraryConfiguration;
+import org.epics.ca.impl.ProtocolConfiguration;
 import org.epics.ca.impl.monitor.MonitorNotificationServiceFactoryCreator;
+import org.epics.ca.impl.monitor.latency.MonitorLatencyHistogram;
 import org.epics.ca.impl.repeater.NetworkUtilities;
 import org.epics.ca.util.logging.LibraryLogManager;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.TestInfo;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.core.Is.is;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -39,13 +52,39 @@ class ChannelThroughputTests
    
    private JavaProcessManager processManager;
 
+   /**
+    * The tag of the tests which measure latency distributions. They run against a
+    * server simulated in memory, so that the results depend only on the client
+    * library and may be compared with the stored baselines.
+    */
+   private static final String LATENCY_TAG = "latency";
+
+   private static final String CA_PERFORMANCE_ITERATIONS = "CA_PERFORMANCE_ITERATIONS";
+   private static final int CA_PERFORMANCE_ITERATIONS_DEFAULT = 10_000;
+   private static final String MONITOR_NOTIFIER_IMPL_PROPERTY = LibraryConfiguration.PropertyNames.CA_MONITOR_NOTIFIER_IMPL.toString();
+   private static final String PERFORMANCE_PV_NAME = "perf:int";
+
+   /**
+    * The number of putAsync requests which may be outstanding at once, so that
+    * their latency does not depend on the number of iterations.
+    */
+   private static final int PUT_ASYNC_OUTSTANDING_REQUESTS = 16;
+
+   private static final PerformanceReport report = new PerformanceReport( ChannelThroughputTests.class.getSimpleName() );
+   private static PerformanceBaselines baselines;
+
+   private boolean usesTestServer;
+   private String previousMonitorNotifierImpl;
+
 /*- Main ---------------------------------------------------------------------*/
 /*- Constructor --------------------------------------------------------------*/
 /*- Public methods -----------------------------------------------------------*/
 
    @BeforeAll
-   static void beforeAll()
+   static void beforeAll() throws IOException
    {
+      baselines = PerformanceBaselines.load( ChannelThroughputTests.class, ChannelThroughputTests.class.getSimpleName() + "-baselines.properties" );
+
       // This is a guard condition. There is no point in running the tests
       // if the network stack is not appropriately configured for channel access.
       assertThat( NetworkUtilities.verifyTargetPlatformNetworkStackIsChannelAccessCompatible(), is( true ) );
@@ -57,17 +96,45 @@ class ChannelThroughputTests
       }
    }
 
+   @AfterAll
+   static void afterAll() throws IOException
+   {
+      if ( ! report.getResults().isEmpty() )
+      {
+         report.write();
+      }
+   }
+
    @BeforeEach
-   void beforeEach()
+   void beforeEach( TestInfo testInfo )
    {
       threadWatcher = ThreadWatcher.start();
-      EpicsChannelAccessTestServer.start();
+      previousMonitorNotifierImpl = System.getProperty( MONITOR_NOTIFIER_IMPL_PROPERTY );
+
+      usesTestServer = ! testInfo.getTags().contains( LATENCY_TAG );
+      if ( usesTestServer )
+      {
+         EpicsChannelAccessTestServer.start();
+      }
    }
 
    @AfterEach
    void afterEach()
    {
-      EpicsChannelAccessTestServer.shutdown();
+      if ( usesTestServer )
+      {
+         EpicsChannelAccessTestServer.shutdown();
+      }
+
+      // the monitor notifier implementation is read from the system properties
+      if ( previousMonitorNotifierImpl == null )
+      {
+         System.clearProperty( MONITOR_NOTIFIER_IMPL_PROPERTY );
+      }
+      else
+      {
+         System.setProperty( MONITOR_NOTIFIER_IMPL_PROPERTY, previousMonitorNotifierImpl );
+      }
       threadWatcher.verify();
    }
 
@@ -148,10 +215,9 @@ class ChannelThroughputTests
    void testPutAndMonitor( String serviceImpl, int numberOfPuts )
    {
       logger.info( String.format("Starting PutAndMonitor throughput test using monitor notification impl: '%s' and for %d CA puts", serviceImpl, numberOfPuts ) );
-      final Properties contextProperties = new Properties();
-      contextProperties.setProperty( "CA_MONITOR_NOTIFIER_IMPL", serviceImpl );
+      System.setProperty( MONITOR_NOTIFIER_IMPL_PROPERTY, serviceImpl );
 
-      try ( final Context context = new Context( contextProperties ) )
+      try ( final Context context = new Context() )
       {
          final Channel<Integer> channel = context.createChannel("adc01", Integer.class);
          channel.connect();
@@ -207,10 +273,9 @@ class ChannelThroughputTests
    void testFastCounterMonitor( String serviceImpl, int numberOfNotifications )
    {
       logger.info( String.format("Starting FastCounterMonitor throughput test using impl: '%s'and for '%d' notifications...", serviceImpl, numberOfNotifications ) );
-      final Properties contextProperties = new Properties();
-      contextProperties.setProperty( "CA_MONITOR_NOTIFIER_IMPL", serviceImpl );
+      System.setProperty( MONITOR_NOTIFIER_IMPL_PROPERTY, serviceImpl );
 
-      try ( final Context context = new Context( contextProperties ) )
+      try ( final Context context = new Context() )
       {
          final Channel<Integer> channel = context.createChannel("1msCounter", Integer.class );
          channel.connect();
@@ -245,8 +310,155 @@ class ChannelThroughputTests
       }
    }
 
+   /**
+    * Measures the distribution of the latency of an operation, and its throughput,
+    * and compares them with the stored baselines.
+    *
+    * The get and put operations are synchronous, so each operation starts when the
+    * previous one has completed. Up to PUT_ASYNC_OUTSTANDING_REQUESTS putAsync operations
+    * are outstanding at once, so their latency includes the time spent queued behind
+    * at most that many others.
+    * The monitor latency is measured from the posting of each value by the server to
+    * the start of the call to the consumer, one value at a time.
+    *
+    * @param operation the operation: get, put, putAsync or monitor.
+    * @param serviceImpl the monitor notification service implementation.
+    */
+   @ParameterizedTest
+   @MethodSource( "getArgumentsForTestLatencyDistribution" )
+   @Tag( LATENCY_TAG )
+   void testLatencyDistribution( String operation, String serviceImpl ) throws Exception
+   {
+      final int iterations = Integer.getInteger( CA_PERFORMANCE_ITERATIONS, CA_PERFORMANCE_ITERATIONS_DEFAULT );
+      logger.info( String.format( "Starting LatencyDistribution test of %d %s operations using monitor notification impl: '%s'", iterations, operation, serviceImpl ) );
+      System.setProperty( MONITOR_NOTIFIER_IMPL_PROPERTY, serviceImpl );
+
+      // keep the searches, which no server will answer, off the network
+      final Properties properties = new Properties();
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_ADDR_LIST.toString(), "127.0.0.1" );
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_AUTO_ADDR_LIST.toString(), "NO" );
+
+      try ( final ContextImpl context = new ContextImpl( new ProtocolConfiguration( properties ) );
+            final InMemoryCaServer server = new InMemoryCaServer( context ) )
+      {
+         server.addProcessVariable( PERFORMANCE_PV_NAME, -1 );
+         final Channel<Integer> channel = context.createChannel( PERFORMANCE_PV_NAME, Integer.class, Constants.CHANNEL_PRIORITY_DEFAULT );
+         final CompletableFuture<Channel<Integer>> connected = channel.connectAsync();
+         server.connect( channel );
+         connected.get( 5, TimeUnit.SECONDS );
+
+         final MonitorLatencyHistogram histogram = new MonitorLatencyHistogram();
+         measureLatency( operation, channel, server, iterations / 5, histogram );
+         histogram.reset();
+
+         final StopWatch stopWatch = StopWatch.createStarted();
+         measureLatency( operation, channel, server, iterations, histogram );
+         final long elapsedTimeInNanoseconds = stopWatch.getNanoTime();
+
+         final String key = operation.equals( "monitor" ) ? operation + "." + serviceImpl : operation;
+         final PerformanceReport.Result result = PerformanceReport.Result.of( key, histogram, elapsedTimeInNanoseconds );
+         report.add( result );
+
+         logger.info( "RESULTS:" );
+         logger.info( "- " + result );
+         logger.info( "" );
+
+         assertThat( baselines.check( result ), is( empty() ) );
+      }
+   }
+
 /*- Private methods ----------------------------------------------------------*/
 
+   /**
+    * Performs the specified number of operations, recording the latency of each.
+    *
+    * @param operation the operation.
+    * @param channel the channel.
+    * @param server the server hosting the channel.
+    * @param iterations the number of operations.
+    * @param histogram the histogram in which to record the latencies.
+    * @throws Exception if an operation failed.
+    */
+   private static void measureLatency( String operation, Channel<Integer> channel, InMemoryCaServer server,
+                                       int iterations, MonitorLatencyHistogram histogram ) throws Exception
+   {
+      switch ( operation )
+      {
+         case "get":
+            for ( int i = 0; i < iterations; i++ )
+            {
+               final long start = System.nanoTime();
+               channel.get();
+               histogram.record( System.nanoTime() - start );
+            }
+            break;
+
+         case "put":
+            for ( int i = 0; i < iterations; i++ )
+            {
+               final long start = System.nanoTime();
+               channel.put( i );
+               histogram.record( System.nanoTime() - start );
+            }
+            break;
+
+         case "putAsync":
+            final Semaphore outstandingRequests = new Semaphore( PUT_ASYNC_OUTSTANDING_REQUESTS );
+            for ( int i = 0; i < iterations; i++ )
+            {
+               assertThat( outstandingRequests.tryAcquire( 5, TimeUnit.SECONDS ), is( true ) );
+               final long start = System.nanoTime();
+               channel.putAsync( i ).thenRun( () -> {
+                  histogram.record( System.nanoTime() - start );
+                  outstandingRequests.release();
+               } );
+            }
+            // wait for the last requests
+            assertThat( outstandingRequests.tryAcquire( PUT_ASYNC_OUTSTANDING_REQUESTS, 5, TimeUnit.SECONDS ), is( true ) );
+            break;
+
+         case "monitor":
+            // start from a value which is not timed
+            server.post( PERFORMANCE_PV_NAME, -1 );
+            final long[] postTimes = new long[ iterations ];
+            final AtomicInteger latestValue = new AtomicInteger( Integer.MIN_VALUE );
+            final Monitor<Integer> monitor = channel.addValueMonitor( value -> {
+               if ( value >= 0 && value < iterations )
+               {
+                  histogram.record( System.nanoTime() - postTimes[ value ] );
+               }
+               latestValue.set( value );
+            } );
+
+            // wait for the notification of the current value
+            awaitMonitorValue( latestValue, -1 );
+            for ( int i = 0; i < iterations; i++ )
+            {
+               postTimes[ i ] = System.nanoTime();
+               server.post( PERFORMANCE_PV_NAME, i );
+               awaitMonitorValue( latestValue, i );
+            }
+            monitor.close();
+            break;
+
+         default:
+            throw new IllegalArgumentException( "Unknown operation: " + operation );
+      }
+   }
+
+   private static void awaitMonitorValue( AtomicInteger latestValue, int expectedValue )
+   {
+      final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( 5 );
+      while ( latestValue.get() != expectedValue )
+      {
+         if ( System.nanoTime() > deadline )
+         {
+            fail( "The monitor did not receive the value " + expectedValue + " in time." );
+         }
+         Thread.yield();
+      }
+   }
+
    /**
     * Provides the argument data for the specified test.
     * @return the data.
@@ -271,6 +483,18 @@ class ChannelThroughputTests
       return serviceImpls.stream().flatMap(s -> notifications.stream().map(n -> Arguments.of(s, n) ) );
    }
 
+   /**
+    * Provides the argument data for the specified test.
+    * @return the data.
+    */
+   private static Stream<Arguments> getArgumentsForTestLatencyDistribution()
+   {
+      final String defaultServiceImpl = LibraryConfiguration.CA_MONITOR_NOTIFIER_IMPL_DEFAULT;
+      final Stream<Arguments> requests = Stream.of( "get", "put", "putAsync" ).map( operation -> Arguments.of( operation, defaultServiceImpl ) );
+      final Stream<Arguments> monitors = MonitorNotificationServiceFactoryCreator.getAllServiceImplementations().stream().map( s -> Arguments.of( "monitor", s ) );
+      return Stream.concat( requests, monitors );
+   }
+
 /*- Nested Classes -----------------------------------------------------------*/
 
 }
@@ -0,0 +1,272 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Samples the resources used by the current JVM - heap and direct memory, live
+ * threads and garbage collections - for the scale and soak tests.
+ *
+ * The longest garbage collection since the previous sample is obtained from the
+ * notifications of the garbage collectors, ignoring those requested by System.gc().
+ * For the concurrent collectors the reported duration includes the concurrent
+ * phases, so it overstates the pause.
+ */
+@ThreadSafe
+public class JvmResourceMonitor implements AutoCloseable
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final int MAX_RETAINED_COLLECTIONS = 5;
+   private static final String SYSTEM_GC_CAUSE = "System.gc()";
+
+   private final List<NotificationEmitter> emitters = new ArrayList<>();
+   private final NotificationListener listener = this::handleNotification;
+   private final AtomicLong maxGcPauseMillis = new AtomicLong();
+   private final long startNanos = System.nanoTime();
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Creates a new instance which listens for garbage collections until closed.
+    */
+   public JvmResourceMonitor()
+   {
+      for ( GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans() )
+      {
+         if ( collector instanceof NotificationEmitter )
+         {
+            final NotificationEmitter emitter = (NotificationEmitter) collector;
+            emitter.addNotificationListener( listener, null, null );
+            emitters.add( emitter );
+         }
+      }
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * Returns the resources currently in use, including any garbage not yet collected.
+    *
+    * @return the sample.
+    */
+   public Sample sample()
+   {
+      long gcCount = 0;
+      long gcTimeMillis = 0;
+      for ( GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans() )
+      {
+         gcCount += Math.max( 0, collector.getCollectionCount() );
+         gcTimeMillis += Math.max( 0, collector.getCollectionTime() );
+      }
+
+      long directBytes = 0;
+      for ( BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans( BufferPoolMXBean.class ) )
+      {
+         if ( "direct".equals( pool.getName() ) )
+         {
+            directBytes = pool.getMemoryUsed();
+         }
+      }
+
+      return new Sample( TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - startNanos ),
+                         ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(),
+                         directBytes,
+                         ManagementFactory.getThreadMXBean().getThreadCount(),
+                         gcCount,
+                         gcTimeMillis,
+                         maxGcPauseMillis.getAndSet( 0 ) );
+   }
+
+   /**
+    * Returns the resources retained once the garbage has been collected, as far as
+    * that can be forced.
+    *
+    * @return the sample.
+    * @throws InterruptedException if interrupted whilst waiting for the collections.
+    */
+   public Sample sampleRetained() throws InterruptedException
+   {
+      // the heap is measured as each collection left it, since the threads which keep
+      // allocating meanwhile would add their garbage; the parallel collector compacts
+      // the old generation fully only every few collections, so the least is kept
+      long retained = Long.MAX_VALUE;
+      for ( int i = 0; i < MAX_RETAINED_COLLECTIONS; i++ )
+      {
+         System.gc();
+         Thread.sleep( 100 );
+         retained = Math.min( retained, getHeapUsedAfterCollection() );
+      }
+
+      final Sample sample = sample();
+      return new Sample( sample.elapsedMillis, retained, sample.directBytes, sample.threadCount, sample.gcCount, sample.gcTimeMillis, sample.maxGcPauseMillis );
+   }
+
+   /**
+    * Stops listening for garbage collections.
+    */
+   @Override
+   public void close()
+   {
+      for ( NotificationEmitter emitter : emitters )
+      {
+         try
+         {
+            emitter.removeNotificationListener( listener );
+         }
+         catch ( ListenerNotFoundException ex )
+         {
+            // nothing to remove
+         }
+      }
+      emitters.clear();
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+/*- Private methods ----------------------------------------------------------*/
+
+   private static long getHeapUsedAfterCollection()
+   {
+      long used = 0;
+      for ( MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+      {
+         final MemoryUsage usage = pool.getCollectionUsage();
+         if ( pool.getType() == MemoryType.HEAP && usage != null )
+         {
+            used += usage.getUsed();
+         }
+      }
+      return used;
+   }
+
+   private void handleNotification( Notification notification, Object handback )
+   {
+      if ( GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals( notification.getType() ) )
+      {
+         final GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from( (CompositeData) notification.getUserData() );
+         if ( SYSTEM_GC_CAUSE.equals( info.getGcCause() ) )
+         {
+            return;
+         }
+         maxGcPauseMillis.accumulateAndGet( info.getGcInfo().getDuration(), Math::max );
+      }
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+   /**
+    * The resources in use at one instant.
+    */
+   @Immutable
+   public static final class Sample
+   {
+      private final long elapsedMillis;
+      private final long heapBytes;
+      private final long directBytes;
+      private final int threadCount;
+      private final long gcCount;
+      private final long gcTimeMillis;
+      private final long maxGcPauseMillis;
+
+      private Sample( long elapsedMillis, long heapBytes, long directBytes, int threadCount, long gcCount, long gcTimeMillis, long maxGcPauseMillis )
+      {
+         this.elapsedMillis = elapsedMillis;
+         this.heapBytes = heapBytes;
+         this.directBytes = directBytes;
+         this.threadCount = threadCount;
+         this.gcCount = gcCount;
+         this.gcTimeMillis = gcTimeMillis;
+         this.maxGcPauseMillis = maxGcPauseMillis;
+      }
+
+      /**
+       * Returns the time at which the sample was taken, relative to the creation of the monitor.
+       *
+       * @return the result.
+       */
+      public long getElapsedMillis()
+      {
+         return elapsedMillis;
+      }
+
+      public long getHeapBytes()
+      {
+         return heapBytes;
+      }
+
+      public long getDirectBytes()
+      {
+         return directBytes;
+      }
+
+      public int getThreadCount()
+      {
+         return threadCount;
+      }
+
+      /**
+       * Returns the number of garbage collections since the JVM started.
+       *
+       * @return the result.
+       */
+      public long getGcCount()
+      {
+         return gcCount;
+      }
+
+      /**
+       * Returns the accumulated time of the garbage collections since the JVM started.
+       *
+       * @return the result.
+       */
+      public long getGcTimeMillis()
+      {
+         return gcTimeMillis;
+      }
+
+      /**
+       * Returns the duration of the longest garbage collection since the previous sample.
+       *
+       * @return the result.
+       */
+      public long getMaxGcPauseMillis()
+      {
+         return maxGcPauseMillis;
+      }
+
+      @Override
+      public String toString()
+      {
+         return String.format( "heap=%dKB, direct=%dKB, threads=%d, gcCount=%d, gcTime=%dms, maxGcPause=%dms",
+                               heapBytes / 1024, directBytes / 1024, threadCount, gcCount, gcTimeMillis, maxGcPauseMillis );
+      }
+   }
+
+}
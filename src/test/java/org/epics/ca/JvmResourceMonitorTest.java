@@ -0,0 +1,57 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+class JvmResourceMonitorTest
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @Test
+   void testSample_reportsResourcesInUse()
+   {
+      try ( JvmResourceMonitor monitor = new JvmResourceMonitor() )
+      {
+         final long directBefore = monitor.sample().getDirectBytes();
+         final ByteBuffer buffer = ByteBuffer.allocateDirect( 1024 * 1024 );
+
+         final JvmResourceMonitor.Sample sample = monitor.sample();
+         assertThat( sample.getHeapBytes(), greaterThan( 0L ) );
+         assertThat( sample.getDirectBytes(), greaterThanOrEqualTo( directBefore + buffer.capacity() ) );
+         assertThat( sample.getThreadCount(), greaterThan( 0 ) );
+      }
+   }
+
+   @Test
+   void testSampleRetained_collectsGarbage() throws InterruptedException
+   {
+      try ( JvmResourceMonitor monitor = new JvmResourceMonitor() )
+      {
+         final JvmResourceMonitor.Sample before = monitor.sample();
+         final JvmResourceMonitor.Sample retained = monitor.sampleRetained();
+         assertThat( retained.getGcCount(), greaterThan( before.getGcCount() ) );
+         assertThat( retained.getGcTimeMillis(), greaterThanOrEqualTo( before.getGcTimeMillis() ) );
+      }
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
@@ -0,0 +1,429 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import com.cosylab.epics.caj.cas.util.DefaultServerImpl;
+import com.cosylab.epics.caj.cas.util.MemoryProcessVariable;
+import gov.aps.jca.CAException;
+import gov.aps.jca.JCALibrary;
+import gov.aps.jca.cas.ServerContext;
+import gov.aps.jca.dbr.*;
+import org.apache.commons.lang3.Validate;
+import org.epics.ca.impl.JavaProcessManager;
+import org.epics.ca.util.logging.LibraryLogManager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Provides a synthetic CA server which serves a configurable population of
+ * process variables updating at configurable rates, to support reproducible
+ * throughput, scale and soak testing of the PSI CA library on a single host.
+ *
+ * The population and the update pattern are described by a LoadGeneratorSpecification.
+ * Like the EpicsChannelAccessTestServer, the current implementation uses the
+ * EPICS-community Java CA Server library and is normally run in a separate JVM
+ * so that its activity does not disturb the measurements made in the client JVM.
+ */
+public class LoadGeneratorServer
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final Logger logger = LibraryLogManager.getLogger( LoadGeneratorServer.class );
+   private static final AtomicReference<JavaProcessManager> processManagerRef = new AtomicReference<>();
+
+   private static final String MAX_ARRAY_BYTES_PROPERTY = "com.cosylab.epics.caj.cas.CAJServerContext.max_array_bytes";
+   private static final long MIN_UPDATE_PERIOD_IN_NANOS = TimeUnit.MICROSECONDS.toNanos( 10 );
+   private static final int MAX_SLICES = 100;
+   private static final int STATISTICS_PERIOD_IN_SECONDS = 10;
+
+   private final LoadGeneratorSpecification specification;
+   private final ServerContext context;
+   private final ScheduledExecutorService updateExecutor;
+   private final List<List<MemoryProcessVariable>> processVariables = new ArrayList<>();
+   private final LongAdder updatesPosted = new LongAdder();
+
+
+/*- Main ---------------------------------------------------------------------*/
+
+   /**
+    * Runs the load generator server from the command line.
+    *
+    * @param args the name of the specification file (optional; when not supplied
+    *    the default specification is used).
+    */
+   public static void main( String[] args )
+   {
+      logger.info( "The Load Generator Server is starting..." );
+
+      final LoadGeneratorSpecification specification;
+      try
+      {
+         specification = ( args.length > 0 ) ? LoadGeneratorSpecification.fromFile( args[ 0 ] ) : LoadGeneratorSpecification.getDefault();
+      }
+      catch ( IOException | IllegalArgumentException ex )
+      {
+         final String msg = "The load generator specification could not be read.";
+         logger.log( Level.WARNING, msg, ex );
+         throw new RuntimeException( msg, ex );
+      }
+
+      if ( System.getProperty( MAX_ARRAY_BYTES_PROPERTY ) == null )
+      {
+         System.setProperty( MAX_ARRAY_BYTES_PROPERTY, String.valueOf( specification.getMaxArrayBytes() ) );
+      }
+
+      final LoadGeneratorServer loadGeneratorServer;
+      try
+      {
+         loadGeneratorServer = new LoadGeneratorServer( specification );
+      }
+      catch ( CAException ex )
+      {
+         final String msg = "An exception occurred which prevented the server from starting.";
+         logger.log( Level.WARNING, msg, ex );
+         throw new RuntimeException( msg, ex );
+      }
+
+      logger.info( String.format( "Serving %d PVs with a total of %.0f updates per second.", specification.getTotalChannelCount(), specification.getTotalUpdateRate() ) );
+      for ( LoadGeneratorSpecification.Group group : specification.getGroups() )
+      {
+         logger.info( group.toString() );
+      }
+
+      // Run the server until the process is killed.
+      loadGeneratorServer.run();
+   }
+
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Creates a new instance.
+    *
+    * @param specification the process variables to serve.
+    * @throws CAException if some unexpected condition occurs.
+    */
+   private LoadGeneratorServer( LoadGeneratorSpecification specification ) throws CAException
+   {
+      this.specification = Validate.notNull( specification );
+
+      System.setProperty( "EPICS_CA_ADDR_LIST", "localhost" );
+
+      final DefaultServerImpl server = new DefaultServerImpl();
+      context = JCALibrary.getInstance().createServerContext( JCALibrary.CHANNEL_ACCESS_SERVER_JAVA, server );
+
+      for ( LoadGeneratorSpecification.Group group : specification.getGroups() )
+      {
+         processVariables.add( registerProcessVariables( server, group ) );
+      }
+
+      updateExecutor = Executors.newScheduledThreadPool( specification.getUpdateThreads(), r -> {
+         final Thread thread = new Thread( r, "LoadGeneratorServer-updater" );
+         thread.setDaemon( true );
+         return thread;
+      } );
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * Starts the load generator server in a separate process.
+    *
+    * The server should not already have been started.
+    *
+    * @param specificationFileName the name of the specification file, or null
+    *    to use the default specification.
+    *
+    * @throws IllegalStateException if the server had already been started.
+    */
+   public static void start( String specificationFileName )
+   {
+      Validate.validState( ! isStarted(),"The LoadGeneratorServer was not shutdown." );
+
+      final Properties properties = new Properties();
+      final String[] programArgs = ( specificationFileName == null ) ? new String[] {} : new String[] { specificationFileName };
+      final JavaProcessManager processManager = new JavaProcessManager( LoadGeneratorServer.class, properties, programArgs );
+      processManager.start( true );
+      processManagerRef.set( processManager );
+   }
+
+   /**
+    * Shuts down a load generator server which was previously started.
+    *
+    * @throws IllegalStateException if the server had NOT already been started.
+    */
+   public static void shutdown()
+   {
+      Validate.validState( isStarted(),"The LoadGeneratorServer was not started." );
+
+      processManagerRef.get().shutdown();
+      processManagerRef.set( null );
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+/*- Private methods ----------------------------------------------------------*/
+
+   private static boolean isStarted()
+   {
+      return processManagerRef.get() != null;
+   }
+
+   /**
+    * Schedules the updates then runs the server until some exception occurs.
+    */
+   private void run()
+   {
+      for ( int i = 0; i < specification.getGroups().size(); i++ )
+      {
+         scheduleUpdates( specification.getGroups().get( i ), processVariables.get( i ) );
+      }
+
+      updateExecutor.scheduleAtFixedRate( this::logStatistics, STATISTICS_PERIOD_IN_SECONDS, STATISTICS_PERIOD_IN_SECONDS, TimeUnit.SECONDS );
+
+      try
+      {
+         // Zero means run and block forever.
+         context.run( 0 );
+      }
+      catch( CAException ex )
+      {
+         final String msg = "The following unexpected exception occurred:" ;
+         logger.log( Level.WARNING, msg, ex );
+         throw new RuntimeException( msg, ex );
+      }
+      finally
+      {
+         updateExecutor.shutdownNow();
+      }
+      logger.info( "Done" );
+   }
+
+   private void scheduleUpdates( LoadGeneratorSpecification.Group group, List<MemoryProcessVariable> pvs )
+   {
+      if ( group.getUpdateRate() > 0 )
+      {
+         // Where requested divide the group into slices which are updated one after the
+         // other so that the updates are spread evenly across the update period.
+         final long periodInNanos = (long) ( TimeUnit.SECONDS.toNanos( 1 ) / group.getUpdateRate() );
+         final int maxSlices = (int) Math.max( 1, Math.min( MAX_SLICES, periodInNanos / MIN_UPDATE_PERIOD_IN_NANOS ) );
+         final int slices = group.isSpread() ? Math.min( group.getCount(), maxSlices ) : 1;
+         final Updater updater = new Updater( group, pvs, slices, 1 );
+         updateExecutor.scheduleAtFixedRate( updater, 0, Math.max( 1, periodInNanos / slices ), TimeUnit.NANOSECONDS );
+      }
+
+      if ( group.getBurstSize() > 0 )
+      {
+         final Updater updater = new Updater( group, pvs, 1, group.getBurstSize() );
+         updateExecutor.scheduleAtFixedRate( updater, group.getBurstPeriodMillis(), group.getBurstPeriodMillis(), TimeUnit.MILLISECONDS );
+      }
+   }
+
+   private void logStatistics()
+   {
+      final long updates = updatesPosted.sumThenReset();
+      logger.info( String.format( "Posted %d updates in the last %d seconds (%.0f/s).", updates, STATISTICS_PERIOD_IN_SECONDS, (double) updates / STATISTICS_PERIOD_IN_SECONDS ) );
+   }
+
+   private static List<MemoryProcessVariable> registerProcessVariables( DefaultServerImpl server, LoadGeneratorSpecification.Group group )
+   {
+      final List<MemoryProcessVariable> pvs = new ArrayList<>( group.getCount() );
+      for ( int i = 0; i < group.getCount(); i++ )
+      {
+         final MemoryProcessVariable pv = createProcessVariable( group.getChannelName( i ), group.getType(), group.getElementCount() );
+         server.registerProcessVaribale( pv );
+         pvs.add( pv );
+      }
+      return pvs;
+   }
+
+   private static MemoryProcessVariable createProcessVariable( String name, LoadGeneratorSpecification.Type type, int elementCount )
+   {
+      switch ( type )
+      {
+         case DOUBLE:
+            return new MemoryProcessVariable( name, null, DBR_Double.TYPE, new double[ elementCount ] );
+         case FLOAT:
+            return new MemoryProcessVariable( name, null, DBR_Float.TYPE, new float[ elementCount ] );
+         case INT:
+            return new MemoryProcessVariable( name, null, DBR_Int.TYPE, new int[ elementCount ] );
+         case SHORT:
+            return new MemoryProcessVariable( name, null, DBR_Short.TYPE, new short[ elementCount ] );
+         case BYTE:
+            return new MemoryProcessVariable( name, null, DBR_Byte.TYPE, new byte[ elementCount ] );
+         case ENUM:
+            return new MemoryProcessVariable( name, null, DBR_Enum.TYPE, new short[ elementCount ] )
+            {
+               private final String[] labels = { "zero", "one", "two", "three", "four", "five", "six", "seven" };
+
+               @Override
+               public String[] getEnumLabels()
+               {
+                  return labels;
+               }
+            };
+         case STRING:
+         default:
+            final String[] initialValue = new String[ elementCount ];
+            Arrays.fill( initialValue, "" );
+            return new MemoryProcessVariable( name, null, DBR_String.TYPE, initialValue );
+      }
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+   /**
+    * Writes a new value to successive slices of the process variables of a group,
+    * which causes the CA server to post a monitor update to each subscriber.
+    *
+    * Each execution updates the next slice, updating each process variable in it
+    * the configured number of times back-to-back. The first element of each value
+    * carries a counter; the remaining elements are left unchanged.
+    */
+   private final class Updater implements Runnable
+   {
+      private final List<MemoryProcessVariable> pvs;
+      private final LoadGeneratorSpecification.Type type;
+      private final int slices;
+      private final int updatesPerExecution;
+      private final DBR dbr;
+      private int nextSlice;
+      private long counter;
+
+      private Updater( LoadGeneratorSpecification.Group group, List<MemoryProcessVariable> pvs, int slices, int updatesPerExecution )
+      {
+         this.pvs = pvs;
+         this.type = group.getType();
+         this.slices = slices;
+         this.updatesPerExecution = updatesPerExecution;
+         this.dbr = createDbr( group.getType(), group.getElementCount() );
+      }
+
+      @Override
+      public void run()
+      {
+         final int start = (int) ( (long) nextSlice * pvs.size() / slices );
+         final int end = (int) ( (long) ( nextSlice + 1 ) * pvs.size() / slices );
+         nextSlice = ( nextSlice + 1 ) % slices;
+
+         try
+         {
+            for ( int update = 0; update < updatesPerExecution; update++ )
+            {
+               setFirstElement( ++counter );
+               for ( int i = start; i < end; i++ )
+               {
+                  pvs.get( i ).write( dbr, null );
+               }
+               updatesPosted.add( end - start );
+            }
+         }
+         catch ( CAException | RuntimeException ex )
+         {
+            // Log but do not propagate, which would silently cancel all future updates.
+            logger.log( Level.WARNING, "Failed to update the load generator PVs.", ex );
+         }
+      }
+
+      private void setFirstElement( long value )
+      {
+         switch ( type )
+         {
+            case DOUBLE:
+               ( (DBR_Double) dbr ).getDoubleValue()[ 0 ] = value;
+               break;
+            case FLOAT:
+               ( (DBR_Float) dbr ).getFloatValue()[ 0 ] = value;
+               break;
+            case INT:
+               ( (DBR_Int) dbr ).getIntValue()[ 0 ] = (int) value;
+               break;
+            case SHORT:
+               ( (DBR_Short) dbr ).getShortValue()[ 0 ] = (short) value;
+               break;
+            case BYTE:
+               ( (DBR_Byte) dbr ).getByteValue()[ 0 ] = (byte) value;
+               break;
+            case ENUM:
+               ( (DBR_Enum) dbr ).getEnumValue()[ 0 ] = (short) ( value % 8 );
+               break;
+            case STRING:
+            default:
+               ( (DBR_String) dbr ).getStringValue()[ 0 ] = String.valueOf( value );
+               break;
+         }
+      }
+
+      private DBR createDbr( LoadGeneratorSpecification.Type type, int elementCount )
+      {
+         switch ( type )
+         {
+            case DOUBLE:
+            {
+               final double[] value = new double[ elementCount ];
+               Arrays.setAll( value, i -> i );
+               return new DBR_Double( value );
+            }
+            case FLOAT:
+            {
+               final float[] value = new float[ elementCount ];
+               for ( int i = 0; i < elementCount; i++ )
+               {
+                  value[ i ] = i;
+               }
+               return new DBR_Float( value );
+            }
+            case INT:
+            {
+               final int[] value = new int[ elementCount ];
+               Arrays.setAll( value, i -> i );
+               return new DBR_Int( value );
+            }
+            case SHORT:
+            {
+               final short[] value = new short[ elementCount ];
+               for ( int i = 0; i < elementCount; i++ )
+               {
+                  value[ i ] = (short) i;
+               }
+               return new DBR_Short( value );
+            }
+            case BYTE:
+            {
+               final byte[] value = new byte[ elementCount ];
+               for ( int i = 0; i < elementCount; i++ )
+               {
+                  value[ i ] = (byte) i;
+               }
+               return new DBR_Byte( value );
+            }
+            case ENUM:
+               return new DBR_Enum( new short[ elementCount ] );
+            case STRING:
+            default:
+            {
+               final String[] value = new String[ elementCount ];
+               Arrays.setAll( value, String::valueOf );
+               return new DBR_String( value );
+            }
+         }
+      }
+   }
+
+}
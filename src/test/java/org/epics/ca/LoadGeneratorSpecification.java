@@ -0,0 +1,479 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.Immutable;
+import org.apache.commons.lang3.EnumUtils;
+import org.apache.commons.lang3.Validate;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Describes the process variables served by the LoadGeneratorServer and the
+ * pattern in which they are updated.
+ *
+ * The specification is read from a properties file. For example:
+ * <pre>
+ * # The groups of process variables to be served.
+ * groups = fast, waveforms
+ *
+ * # The number of threads which post the updates (default 2).
+ * updateThreads = 4
+ *
+ * # 1000 scalar doubles named load:fast:0 to load:fast:999, each updating at
+ * # 100Hz, plus a burst of 50 back-to-back updates of each PV every 5 seconds.
+ * fast.prefix = load:fast:
+ * fast.count = 1000
+ * fast.type = DOUBLE
+ * fast.rate = 100
+ * fast.burst.size = 50
+ * fast.burst.period = 5000
+ *
+ * # 10 int waveforms of 100000 elements, all updated at the same instant at 2Hz.
+ * waveforms.count = 10
+ * waveforms.type = INT
+ * waveforms.elements = 100000
+ * waveforms.rate = 2
+ * waveforms.spread = false
+ * </pre>
+ *
+ * The properties of each group are all optional:
+ * <ul>
+ * <li>prefix - the PV names are the prefix followed by an index (default "[group]:").</li>
+ * <li>count - the number of PVs in the group (default 1).</li>
+ * <li>type - DOUBLE, FLOAT, INT, SHORT, BYTE, ENUM or STRING (default DOUBLE).</li>
+ * <li>elements - the number of elements in each PV (default 1).</li>
+ * <li>rate - the steady update rate of each PV in Hz (default 0 = no steady updates).</li>
+ * <li>spread - whether the steady updates of the group are spread evenly across the
+ *    update period rather than being posted all at once (default true).</li>
+ * <li>burst.size - the number of back-to-back updates of each PV in each burst (default 0 = no bursts).</li>
+ * <li>burst.period - the interval in milliseconds between bursts (default 1000).</li>
+ * </ul>
+ */
+@Immutable
+public final class LoadGeneratorSpecification
+{
+
+/*- Public attributes --------------------------------------------------------*/
+
+   /**
+    * The types of process variable supported by the load generator.
+    */
+   public enum Type
+   {
+      DOUBLE( 8 ), FLOAT( 4 ), INT( 4 ), SHORT( 2 ), BYTE( 1 ), ENUM( 2 ), STRING( 40 );
+
+      private final int elementSize;
+
+      Type( int elementSize )
+      {
+         this.elementSize = elementSize;
+      }
+
+      /**
+       * Returns the size of each element on the wire in bytes.
+       *
+       * @return the result.
+       */
+      public int getElementSize()
+      {
+         return elementSize;
+      }
+   }
+
+   /**
+    * The number of update threads when not otherwise specified.
+    */
+   public static final int UPDATE_THREADS_DEFAULT = 2;
+
+/*- Private attributes -------------------------------------------------------*/
+
+   private final List<Group> groups;
+   private final int updateThreads;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   private LoadGeneratorSpecification( List<Group> groups, int updateThreads )
+   {
+      this.groups = Collections.unmodifiableList( new ArrayList<>( groups ) );
+      this.updateThreads = updateThreads;
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * Reads the specification from the specified properties file.
+    *
+    * @param fileName the name of the file.
+    * @return the specification.
+    * @throws IOException if the file could not be read.
+    * @throws IllegalArgumentException if the specification was invalid.
+    */
+   public static LoadGeneratorSpecification fromFile( String fileName ) throws IOException
+   {
+      Validate.notEmpty( fileName );
+
+      final Properties properties = new Properties();
+      try ( InputStream inputStream = new FileInputStream( fileName ) )
+      {
+         properties.load( inputStream );
+      }
+      return fromProperties( properties );
+   }
+
+   /**
+    * Creates the specification from the supplied properties.
+    *
+    * @param properties the properties.
+    * @return the specification.
+    * @throws IllegalArgumentException if the specification was invalid.
+    */
+   public static LoadGeneratorSpecification fromProperties( Properties properties )
+   {
+      Validate.notNull( properties );
+
+      final String groupNames = properties.getProperty( "groups", "" ).trim();
+      Validate.notEmpty( groupNames, "the specification does not define any groups" );
+
+      final List<Group> groups = new ArrayList<>();
+      final Set<String> prefixes = new HashSet<>();
+      for ( String groupName : groupNames.split( "\\s*,\\s*" ) )
+      {
+         final Group group = Group.fromProperties( groupName, properties );
+         Validate.isTrue( prefixes.add( group.getPrefix() ), "the prefix '" + group.getPrefix() + "' is used by more than one group" );
+         groups.add( group );
+      }
+
+      final int updateThreads = readInteger( properties, "updateThreads", UPDATE_THREADS_DEFAULT );
+      Validate.isTrue( updateThreads > 0, "updateThreads must be positive" );
+
+      return new LoadGeneratorSpecification( groups, updateThreads );
+   }
+
+   /**
+    * Returns a modest specification which is used when no specification file is supplied:
+    * a thousand scalar PVs updating at 10Hz, a hundred at 100Hz with bursts and ten
+    * 10000-element waveforms at 10Hz.
+    *
+    * @return the specification.
+    */
+   public static LoadGeneratorSpecification getDefault()
+   {
+      final Properties properties = new Properties();
+      properties.setProperty( "groups", "slow,fast,waveform" );
+      properties.setProperty( "slow.prefix", "load:slow:" );
+      properties.setProperty( "slow.count", "1000" );
+      properties.setProperty( "slow.rate", "10" );
+      properties.setProperty( "fast.prefix", "load:fast:" );
+      properties.setProperty( "fast.count", "100" );
+      properties.setProperty( "fast.type", "INT" );
+      properties.setProperty( "fast.rate", "100" );
+      properties.setProperty( "fast.burst.size", "10" );
+      properties.setProperty( "fast.burst.period", "1000" );
+      properties.setProperty( "waveform.prefix", "load:waveform:" );
+      properties.setProperty( "waveform.count", "10" );
+      properties.setProperty( "waveform.elements", "10000" );
+      properties.setProperty( "waveform.rate", "10" );
+      return fromProperties( properties );
+   }
+
+   /**
+    * Returns the groups of process variables.
+    *
+    * @return the groups.
+    */
+   public List<Group> getGroups()
+   {
+      return groups;
+   }
+
+   /**
+    * Returns the number of threads which post the updates.
+    *
+    * @return the result.
+    */
+   public int getUpdateThreads()
+   {
+      return updateThreads;
+   }
+
+   /**
+    * Returns the total number of process variables across all groups.
+    *
+    * @return the result.
+    */
+   public int getTotalChannelCount()
+   {
+      return groups.stream().mapToInt( Group::getCount ).sum();
+   }
+
+   /**
+    * Returns the total number of updates per second, averaged over the burst periods,
+    * across all groups.
+    *
+    * @return the result.
+    */
+   public double getTotalUpdateRate()
+   {
+      return groups.stream().mapToDouble( Group::getAverageUpdateRate ).sum();
+   }
+
+   /**
+    * Returns the size of the largest value to be served, plus headroom for the
+    * metadata, in bytes.
+    *
+    * @return the result.
+    */
+   public int getMaxArrayBytes()
+   {
+      final int largestValue = groups.stream()
+            .mapToInt( g -> g.getElementCount() * g.getType().getElementSize() )
+            .max()
+            .orElse( 0 );
+      return largestValue + 1024;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "LoadGeneratorSpecification{" +
+            "groups=" + groups +
+            ", updateThreads=" + updateThreads +
+            '}';
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+/*- Private methods ----------------------------------------------------------*/
+
+   private static String read( Properties properties, String key, String defaultValue )
+   {
+      final String value = properties.getProperty( key );
+      return ( value == null ) ? defaultValue : value.trim();
+   }
+
+   private static int readInteger( Properties properties, String key, int defaultValue )
+   {
+      final String value = read( properties, key, null );
+      try
+      {
+         return ( value == null ) ? defaultValue : Integer.parseInt( value );
+      }
+      catch ( NumberFormatException ex )
+      {
+         throw new IllegalArgumentException( "the value of '" + key + "' was not an integer: '" + value + "'" );
+      }
+   }
+
+   private static double readDouble( Properties properties, String key, double defaultValue )
+   {
+      final String value = read( properties, key, null );
+      try
+      {
+         return ( value == null ) ? defaultValue : Double.parseDouble( value );
+      }
+      catch ( NumberFormatException ex )
+      {
+         throw new IllegalArgumentException( "the value of '" + key + "' was not a number: '" + value + "'" );
+      }
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+   /**
+    * A group of process variables of the same type and size which are updated
+    * in the same pattern.
+    */
+   @Immutable
+   public static final class Group
+   {
+      private final String name;
+      private final String prefix;
+      private final int count;
+      private final Type type;
+      private final int elementCount;
+      private final double updateRate;
+      private final boolean spread;
+      private final int burstSize;
+      private final int burstPeriodMillis;
+
+      private Group( String name, String prefix, int count, Type type, int elementCount, double updateRate,
+                     boolean spread, int burstSize, int burstPeriodMillis )
+      {
+         this.name = name;
+         this.prefix = prefix;
+         this.count = count;
+         this.type = type;
+         this.elementCount = elementCount;
+         this.updateRate = updateRate;
+         this.spread = spread;
+         this.burstSize = burstSize;
+         this.burstPeriodMillis = burstPeriodMillis;
+      }
+
+      private static Group fromProperties( String name, Properties properties )
+      {
+         Validate.notEmpty( name, "empty group name" );
+
+         final String prefix = read( properties, name + ".prefix", name + ":" );
+         final int count = readInteger( properties, name + ".count", 1 );
+         final String typeName = read( properties, name + ".type", Type.DOUBLE.name() ).toUpperCase();
+         final int elementCount = readInteger( properties, name + ".elements", 1 );
+         final double updateRate = readDouble( properties, name + ".rate", 0 );
+         final boolean spread = Boolean.parseBoolean( read( properties, name + ".spread", "true" ) );
+         final int burstSize = readInteger( properties, name + ".burst.size", 0 );
+         final int burstPeriodMillis = readInteger( properties, name + ".burst.period", 1000 );
+
+         Validate.notEmpty( prefix, "the prefix of group '" + name + "' was empty" );
+         Validate.isTrue( count > 0, "the count of group '" + name + "' must be positive" );
+         Validate.isTrue( EnumUtils.isValidEnum( Type.class, typeName ), "the type of group '" + name + "' was not recognised: '" + typeName + "'" );
+         Validate.isTrue( elementCount > 0, "the element count of group '" + name + "' must be positive" );
+         Validate.isTrue( updateRate >= 0, "the update rate of group '" + name + "' must not be negative" );
+         Validate.isTrue( burstSize >= 0, "the burst size of group '" + name + "' must not be negative" );
+         Validate.isTrue( burstPeriodMillis > 0, "the burst period of group '" + name + "' must be positive" );
+
+         return new Group( name, prefix, count, Type.valueOf( typeName ), elementCount, updateRate, spread, burstSize, burstPeriodMillis );
+      }
+
+      /**
+       * Returns the name of the group within the specification.
+       *
+       * @return the result.
+       */
+      public String getName()
+      {
+         return name;
+      }
+
+      /**
+       * Returns the prefix of the names of the process variables in the group.
+       *
+       * @return the result.
+       */
+      public String getPrefix()
+      {
+         return prefix;
+      }
+
+      /**
+       * Returns the number of process variables in the group.
+       *
+       * @return the result.
+       */
+      public int getCount()
+      {
+         return count;
+      }
+
+      /**
+       * Returns the name of the process variable with the specified index.
+       *
+       * @param index the index, starting at zero.
+       * @return the result.
+       */
+      public String getChannelName( int index )
+      {
+         Validate.isTrue( ( index >= 0 ) && ( index < count ), "index out of range" );
+         return prefix + index;
+      }
+
+      /**
+       * Returns the type of the process variables.
+       *
+       * @return the result.
+       */
+      public Type getType()
+      {
+         return type;
+      }
+
+      /**
+       * Returns the number of elements in each process variable.
+       *
+       * @return the result.
+       */
+      public int getElementCount()
+      {
+         return elementCount;
+      }
+
+      /**
+       * Returns the steady update rate of each process variable in Hz, or zero
+       * if there are no steady updates.
+       *
+       * @return the result.
+       */
+      public double getUpdateRate()
+      {
+         return updateRate;
+      }
+
+      /**
+       * Returns an indication of whether the steady updates of the group are spread
+       * evenly across the update period rather than being posted all at once.
+       *
+       * @return the result.
+       */
+      public boolean isSpread()
+      {
+         return spread;
+      }
+
+      /**
+       * Returns the number of back-to-back updates of each process variable in each
+       * burst, or zero if there are no bursts.
+       *
+       * @return the result.
+       */
+      public int getBurstSize()
+      {
+         return burstSize;
+      }
+
+      /**
+       * Returns the interval between bursts.
+       *
+       * @return the result.
+       */
+      public int getBurstPeriodMillis()
+      {
+         return burstPeriodMillis;
+      }
+
+      /**
+       * Returns the number of updates per second, averaged over the burst period,
+       * across all process variables in the group.
+       *
+       * @return the result.
+       */
+      public double getAverageUpdateRate()
+      {
+         return count * ( updateRate + ( burstSize * 1000.0 / burstPeriodMillis ) );
+      }
+
+      @Override
+      public String toString()
+      {
+         return "Group{" +
+               "name='" + name + '\'' +
+               ", prefix='" + prefix + '\'' +
+               ", count=" + count +
+               ", type=" + type +
+               ", elementCount=" + elementCount +
+               ", updateRate=" + updateRate +
+               ", spread=" + spread +
+               ", burstSize=" + burstSize +
+               ", burstPeriodMillis=" + burstPeriodMillis +
+               '}';
+      }
+   }
+
+}
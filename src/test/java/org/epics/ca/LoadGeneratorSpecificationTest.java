@@ -0,0 +1,133 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Properties;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+class LoadGeneratorSpecificationTest
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @Test
+   void testFromProperties_defaults()
+   {
+      final Properties properties = new Properties();
+      properties.setProperty( "groups", "test" );
+
+      final LoadGeneratorSpecification specification = LoadGeneratorSpecification.fromProperties( properties );
+      assertThat( specification.getUpdateThreads(), is( LoadGeneratorSpecification.UPDATE_THREADS_DEFAULT ) );
+      assertThat( specification.getGroups().size(), is( 1 ) );
+
+      final LoadGeneratorSpecification.Group group = specification.getGroups().get( 0 );
+      assertThat( group.getName(), is( "test" ) );
+      assertThat( group.getPrefix(), is( "test:" ) );
+      assertThat( group.getCount(), is( 1 ) );
+      assertThat( group.getType(), is( LoadGeneratorSpecification.Type.DOUBLE ) );
+      assertThat( group.getElementCount(), is( 1 ) );
+      assertThat( group.getUpdateRate(), is( 0.0 ) );
+      assertThat( group.isSpread(), is( true ) );
+      assertThat( group.getBurstSize(), is( 0 ) );
+      assertThat( group.getBurstPeriodMillis(), is( 1000 ) );
+      assertThat( group.getChannelName( 0 ), is( "test:0" ) );
+   }
+
+   @Test
+   void testFromFile() throws IOException
+   {
+      final File file = File.createTempFile( "load-generator", ".properties" );
+      file.deleteOnExit();
+      try ( Writer writer = new FileWriter( file ) )
+      {
+         writer.write( "# A comment\n" );
+         writer.write( "groups = fast, waveforms\n" );
+         writer.write( "updateThreads = 4\n" );
+         writer.write( "fast.prefix = load:fast:\n" );
+         writer.write( "fast.count = 1000\n" );
+         writer.write( "fast.rate = 100\n" );
+         writer.write( "fast.burst.size = 50\n" );
+         writer.write( "fast.burst.period = 5000\n" );
+         writer.write( "waveforms.count = 10\n" );
+         writer.write( "waveforms.type = int\n" );
+         writer.write( "waveforms.elements = 100000\n" );
+         writer.write( "waveforms.rate = 2\n" );
+         writer.write( "waveforms.spread = false\n" );
+      }
+
+      final LoadGeneratorSpecification specification = LoadGeneratorSpecification.fromFile( file.getPath() );
+      assertThat( specification.getUpdateThreads(), is( 4 ) );
+      assertThat( specification.getGroups().size(), is( 2 ) );
+      assertThat( specification.getTotalChannelCount(), is( 1010 ) );
+
+      // 1000 PVs at 100Hz plus 50 updates every 5s, and 10 PVs at 2Hz.
+      assertThat( specification.getTotalUpdateRate(), closeTo( 1000 * 110.0 + 10 * 2.0, 1e-9 ) );
+      assertThat( specification.getMaxArrayBytes(), is( 4 * 100_000 + 1024 ) );
+
+      final LoadGeneratorSpecification.Group fast = specification.getGroups().get( 0 );
+      assertThat( fast.getChannelName( 999 ), is( "load:fast:999" ) );
+      assertThat( fast.getBurstSize(), is( 50 ) );
+
+      final LoadGeneratorSpecification.Group waveforms = specification.getGroups().get( 1 );
+      assertThat( waveforms.getPrefix(), is( "waveforms:" ) );
+      assertThat( waveforms.getType(), is( LoadGeneratorSpecification.Type.INT ) );
+      assertThat( waveforms.isSpread(), is( false ) );
+   }
+
+   @Test
+   void testGetDefault()
+   {
+      final LoadGeneratorSpecification specification = LoadGeneratorSpecification.getDefault();
+      assertThat( specification.getTotalChannelCount(), is( 1110 ) );
+      assertThat( specification.getTotalUpdateRate(), greaterThan( 0.0 ) );
+   }
+
+   @ParameterizedTest
+   @ValueSource( strings = { "test.count=0", "test.type=LONG", "test.elements=-1", "test.rate=-1", "test.rate=fast",
+                             "test.burst.size=-1", "test.burst.period=0", "updateThreads=0", "groups=" } )
+   void testFromProperties_invalid( String assignment )
+   {
+      final Properties properties = new Properties();
+      properties.setProperty( "groups", "test" );
+      final String[] keyValue = assignment.split( "=", -1 );
+      properties.setProperty( keyValue[ 0 ], keyValue[ 1 ] );
+
+      assertThrows( IllegalArgumentException.class, () -> LoadGeneratorSpecification.fromProperties( properties ) );
+   }
+
+   @Test
+   void testFromProperties_duplicatePrefix()
+   {
+      final Properties properties = new Properties();
+      properties.setProperty( "groups", "a,b" );
+      properties.setProperty( "a.prefix", "pv:" );
+      properties.setProperty( "b.prefix", "pv:" );
+
+      assertThrows( IllegalArgumentException.class, () -> LoadGeneratorSpecification.fromProperties( properties ) );
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
@@ -0,0 +1,156 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.Immutable;
+import org.apache.commons.lang3.Validate;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * The stored performance baselines against which the results of a performance
+ * test suite are compared.
+ *
+ * The baselines are properties with keys of the form TEST.p50.us, TEST.p99.us and
+ * TEST.throughput, as written by {@link PerformanceReport}. A result regresses when
+ * one of its latency percentiles exceeds the baseline multiplied by the tolerance
+ * plus LATENCY_SLACK_MICROS, or when its throughput falls below the baseline divided
+ * by the tolerance. The slack stops percentiles of a few microseconds, which are
+ * dominated by scheduling noise, from failing the comparison. Tests without
+ * baselines are not checked.
+ *
+ * The tolerance allows for the difference between the machine on which the
+ * baselines were recorded and the one running the tests. It may be overridden by
+ * the system property CA_PERFORMANCE_TOLERANCE, and the baselines themselves by
+ * the system property CA_PERFORMANCE_BASELINES, which names a file.
+ */
+@Immutable
+public class PerformanceBaselines
+{
+
+/*- Public attributes --------------------------------------------------------*/
+
+   public static final String CA_PERFORMANCE_BASELINES = "CA_PERFORMANCE_BASELINES";
+   public static final String CA_PERFORMANCE_TOLERANCE = "CA_PERFORMANCE_TOLERANCE";
+   public static final double CA_PERFORMANCE_TOLERANCE_DEFAULT = 3.0;
+   public static final long LATENCY_SLACK_MICROS = 100;
+
+/*- Private attributes -------------------------------------------------------*/
+
+   private final Properties baselines;
+   private final double tolerance;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   public PerformanceBaselines( Properties baselines, double tolerance )
+   {
+      Validate.isTrue( tolerance >= 1.0, "tolerance must be at least 1" );
+      this.baselines = new Properties();
+      this.baselines.putAll( Validate.notNull( baselines ) );
+      this.tolerance = tolerance;
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * Loads the baselines from the file named by CA_PERFORMANCE_BASELINES or, when
+    * that is not set, from the specified resource of the specified class.
+    *
+    * @param owner the class whose resource holds the baselines.
+    * @param resourceName the name of the resource.
+    * @return the baselines, empty if the resource does not exist.
+    * @throws IOException if the baselines could not be read.
+    */
+   public static PerformanceBaselines load( Class<?> owner, String resourceName ) throws IOException
+   {
+      final Properties properties = new Properties();
+      final String fileName = System.getProperty( CA_PERFORMANCE_BASELINES );
+      try ( InputStream stream = ( fileName != null ) ? new FileInputStream( fileName ) : owner.getResourceAsStream( resourceName ) )
+      {
+         if ( stream != null )
+         {
+            properties.load( stream );
+         }
+      }
+
+      final double tolerance = Double.parseDouble( System.getProperty( CA_PERFORMANCE_TOLERANCE, String.valueOf( CA_PERFORMANCE_TOLERANCE_DEFAULT ) ) );
+      return new PerformanceBaselines( properties, tolerance );
+   }
+
+   public double getTolerance()
+   {
+      return tolerance;
+   }
+
+   /**
+    * Compares a result with its baselines.
+    *
+    * @param result the result.
+    * @return a description of each regression, empty if there were none.
+    * @throws IllegalArgumentException if a baseline is not a number.
+    */
+   public List<String> check( PerformanceReport.Result result )
+   {
+      final List<String> regressions = new ArrayList<>();
+      checkLatency( result, "p50", result.getP50Micros(), regressions );
+      checkLatency( result, "p99", result.getP99Micros(), regressions );
+
+      final String throughputBaseline = baselines.getProperty( result.getKey() + ".throughput" );
+      if ( throughputBaseline != null )
+      {
+         final double baseline = parse( result.getKey() + ".throughput", throughputBaseline );
+         if ( result.getThroughput() < baseline / tolerance )
+         {
+            regressions.add( String.format( "%s: throughput %.0f/s is below the baseline of %.0f/s divided by the tolerance of %.1f",
+                                            result.getKey(), result.getThroughput(), baseline, tolerance ) );
+         }
+      }
+      return regressions;
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+/*- Private methods ----------------------------------------------------------*/
+
+   private void checkLatency( PerformanceReport.Result result, String percentile, long valueMicros, List<String> regressions )
+   {
+      final String key = result.getKey() + "." + percentile + ".us";
+      final String latencyBaseline = baselines.getProperty( key );
+      if ( latencyBaseline == null )
+      {
+         return;
+      }
+
+      final double baseline = parse( key, latencyBaseline );
+      if ( valueMicros > baseline * tolerance + LATENCY_SLACK_MICROS )
+      {
+         regressions.add( String.format( "%s: %s latency %dus exceeds the baseline of %.0fus multiplied by the tolerance of %.1f, plus %dus",
+                                         result.getKey(), percentile, valueMicros, baseline, tolerance, LATENCY_SLACK_MICROS ) );
+      }
+   }
+
+   private static double parse( String key, String value )
+   {
+      try
+      {
+         return Double.parseDouble( value.trim() );
+      }
+      catch ( NumberFormatException ex )
+      {
+         throw new IllegalArgumentException( "The baseline '" + key + "' is not a number: " + value, ex );
+      }
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
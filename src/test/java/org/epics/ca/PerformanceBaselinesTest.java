@@ -0,0 +1,90 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+class PerformanceBaselinesTest
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @Test
+   void testCheck_withinTolerance()
+   {
+      final PerformanceBaselines baselines = new PerformanceBaselines( baselines( "get", 100, 200, 10_000 ), 2.0 );
+      assertThat( baselines.check( result( "get", 300, 500, 5_000 ) ), empty() );
+   }
+
+   @Test
+   void testCheck_latencyRegression()
+   {
+      final PerformanceBaselines baselines = new PerformanceBaselines( baselines( "get", 100, 200, 10_000 ), 2.0 );
+      assertThat( baselines.check( result( "get", 301, 200, 10_000 ) ), contains( startsWith( "get: p50 latency 301us" ) ) );
+      assertThat( baselines.check( result( "get", 100, 501, 10_000 ) ), contains( startsWith( "get: p99 latency 501us" ) ) );
+   }
+
+   @Test
+   void testCheck_throughputRegression()
+   {
+      final PerformanceBaselines baselines = new PerformanceBaselines( baselines( "get", 100, 200, 10_000 ), 2.0 );
+      assertThat( baselines.check( result( "get", 100, 200, 4_999 ) ), contains( startsWith( "get: throughput 4999/s" ) ) );
+   }
+
+   @Test
+   void testCheck_ignoresTestsWithoutBaselines()
+   {
+      final PerformanceBaselines baselines = new PerformanceBaselines( baselines( "get", 100, 200, 10_000 ), 2.0 );
+      assertThat( baselines.check( result( "put", 1_000_000, 1_000_000, 1 ) ), empty() );
+   }
+
+   @Test
+   void testCheck_rejectsInvalidBaseline()
+   {
+      final Properties properties = new Properties();
+      properties.setProperty( "get.p50.us", "fast" );
+      final PerformanceBaselines baselines = new PerformanceBaselines( properties, 2.0 );
+      assertThrows( IllegalArgumentException.class, () -> baselines.check( result( "get", 1, 1, 1 ) ) );
+   }
+
+   @Test
+   void testConstructor_rejectsToleranceBelowOne()
+   {
+      assertThrows( IllegalArgumentException.class, () -> new PerformanceBaselines( new Properties(), 0.5 ) );
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   private static Properties baselines( String key, long p50Micros, long p99Micros, long throughput )
+   {
+      final Properties properties = new Properties();
+      properties.setProperty( key + ".p50.us", String.valueOf( p50Micros ) );
+      properties.setProperty( key + ".p99.us", String.valueOf( p99Micros ) );
+      properties.setProperty( key + ".throughput", String.valueOf( throughput ) );
+      return properties;
+   }
+
+   private static PerformanceReport.Result result( String key, long p50Micros, long p99Micros, double throughput )
+   {
+      return new PerformanceReport.Result( key, 1000, p50Micros, p50Micros, p99Micros, p99Micros, p99Micros, throughput );
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
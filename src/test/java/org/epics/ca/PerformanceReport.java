@@ -0,0 +1,242 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.lang3.Validate;
+import org.epics.ca.impl.monitor.latency.MonitorLatencyHistogram;
+import org.epics.ca.util.logging.LibraryLogManager;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Collects the latency distributions and throughputs measured by a performance
+ * test suite and writes them out in forms suitable for tracking releases.
+ *
+ * Three files are written to the report directory (by default build/reports/performance,
+ * overridden by the system property CA_PERFORMANCE_REPORT_DIR):
+ * <ul>
+ *    <li>NAME.md - a markdown table in the style of INTEGRATION_TESTS.md;</li>
+ *    <li>NAME.csv - the same data in machine-readable form;</li>
+ *    <li>NAME-baselines.properties - the results in the format read by
+ *        {@link PerformanceBaselines}, ready to be promoted to the stored baselines.</li>
+ * </ul>
+ */
+@ThreadSafe
+public class PerformanceReport
+{
+
+/*- Public attributes --------------------------------------------------------*/
+
+   public static final String CA_PERFORMANCE_REPORT_DIR = "CA_PERFORMANCE_REPORT_DIR";
+   public static final String CA_PERFORMANCE_REPORT_DIR_DEFAULT = "build/reports/performance";
+
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final Logger logger = LibraryLogManager.getLogger( PerformanceReport.class );
+
+   private final String name;
+   private final List<Result> results = new ArrayList<>();
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Creates a new, empty report.
+    *
+    * @param name the name of the report, used to name its files.
+    */
+   public PerformanceReport( String name )
+   {
+      this.name = Validate.notBlank( name );
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   public synchronized void add( Result result )
+   {
+      results.add( Validate.notNull( result ) );
+   }
+
+   public synchronized List<Result> getResults()
+   {
+      return new ArrayList<>( results );
+   }
+
+   /**
+    * Writes the report files, replacing those of any previous run.
+    *
+    * @throws IOException if a file could not be written.
+    */
+   public synchronized void write() throws IOException
+   {
+      final File directory = new File( System.getProperty( CA_PERFORMANCE_REPORT_DIR, CA_PERFORMANCE_REPORT_DIR_DEFAULT ) );
+      if ( !directory.isDirectory() && !directory.mkdirs() )
+      {
+         throw new IOException( "Failed to create the report directory: " + directory );
+      }
+
+      final String date = new SimpleDateFormat( "yyyy-MM-dd HH:mm" ).format( new Date() );
+      try ( PrintWriter writer = new PrintWriter( new FileWriter( new File( directory, name + ".md" ) ) ) )
+      {
+         writer.println( "### " + name );
+         writer.println();
+         writer.println( " * Date: " + date );
+         writer.println( " * Java: " + System.getProperty( "java.vendor" ) + " " + System.getProperty( "java.version" ) );
+         writer.println( " * Platform: " + System.getProperty( "os.name" ) + " " + System.getProperty( "os.arch" ) +
+                         ", " + Runtime.getRuntime().availableProcessors() + " processors" );
+         writer.println();
+         writer.println( "| Test | Samples | Mean (us) | p50 (us) | p99 (us) | p99.9 (us) | Max (us) | Throughput (ops/s) |" );
+         writer.println( "|------|--------:|----------:|---------:|---------:|-----------:|---------:|-------------------:|" );
+         for ( Result result : results )
+         {
+            writer.println( String.format( "| %s | %d | %.1f | %d | %d | %d | %d | %.0f |",
+                                           result.getKey(), result.getCount(), result.getMeanMicros(), result.getP50Micros(),
+                                           result.getP99Micros(), result.getP999Micros(), result.getMaxMicros(), result.getThroughput() ) );
+         }
+      }
+
+      try ( PrintWriter writer = new PrintWriter( new FileWriter( new File( directory, name + ".csv" ) ) ) )
+      {
+         writer.println( "test,samples,mean_us,p50_us,p99_us,p999_us,max_us,throughput_ops_per_s" );
+         for ( Result result : results )
+         {
+            writer.println( String.format( "%s,%d,%.1f,%d,%d,%d,%d,%.0f",
+                                           result.getKey(), result.getCount(), result.getMeanMicros(), result.getP50Micros(),
+                                           result.getP99Micros(), result.getP999Micros(), result.getMaxMicros(), result.getThroughput() ) );
+         }
+      }
+
+      try ( PrintWriter writer = new PrintWriter( new FileWriter( new File( directory, name + "-baselines.properties" ) ) ) )
+      {
+         writer.println( "# Results of " + name + " on " + date + ", in the format of the stored baselines." );
+         for ( Result result : results )
+         {
+            writer.println( result.getKey() + ".p50.us = " + result.getP50Micros() );
+            writer.println( result.getKey() + ".p99.us = " + result.getP99Micros() );
+            writer.println( result.getKey() + ".throughput = " + Math.round( result.getThroughput() ) );
+         }
+      }
+
+      logger.info( "The performance report was written to: " + directory.getAbsolutePath() );
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+   /**
+    * The latency distribution and throughput of one test.
+    */
+   @Immutable
+   public static final class Result
+   {
+      private final String key;
+      private final long count;
+      private final double meanMicros;
+      private final long p50Micros;
+      private final long p99Micros;
+      private final long p999Micros;
+      private final long maxMicros;
+      private final double throughput;
+
+      /**
+       * Creates a result from a histogram of the latencies of the operations performed.
+       *
+       * @param key the name of the test, unique within the report and the baselines.
+       * @param histogram the latencies.
+       * @param elapsedNanos the time taken to perform all the operations.
+       * @return the result.
+       */
+      public static Result of( String key, MonitorLatencyHistogram histogram, long elapsedNanos )
+      {
+         Validate.isTrue( elapsedNanos > 0, "elapsedNanos must be positive" );
+         return new Result( key, histogram.getCount(), histogram.getMeanValue() / 1000.0,
+                            TimeUnit.NANOSECONDS.toMicros( histogram.getValueAtPercentile( 50.0 ) ),
+                            TimeUnit.NANOSECONDS.toMicros( histogram.getValueAtPercentile( 99.0 ) ),
+                            TimeUnit.NANOSECONDS.toMicros( histogram.getValueAtPercentile( 99.9 ) ),
+                            TimeUnit.NANOSECONDS.toMicros( histogram.getMaxValue() ),
+                            histogram.getCount() * (double) TimeUnit.SECONDS.toNanos( 1 ) / elapsedNanos );
+      }
+
+      public Result( String key, long count, double meanMicros, long p50Micros, long p99Micros, long p999Micros, long maxMicros, double throughput )
+      {
+         this.key = Validate.notBlank( key );
+         this.count = count;
+         this.meanMicros = meanMicros;
+         this.p50Micros = p50Micros;
+         this.p99Micros = p99Micros;
+         this.p999Micros = p999Micros;
+         this.maxMicros = maxMicros;
+         this.throughput = throughput;
+      }
+
+      public String getKey()
+      {
+         return key;
+      }
+
+      public long getCount()
+      {
+         return count;
+      }
+
+      public double getMeanMicros()
+      {
+         return meanMicros;
+      }
+
+      public long getP50Micros()
+      {
+         return p50Micros;
+      }
+
+      public long getP99Micros()
+      {
+         return p99Micros;
+      }
+
+      public long getP999Micros()
+      {
+         return p999Micros;
+      }
+
+      public long getMaxMicros()
+      {
+         return maxMicros;
+      }
+
+      /**
+       * Returns the number of operations completed per second.
+       *
+       * @return the result.
+       */
+      public double getThroughput()
+      {
+         return throughput;
+      }
+
+      @Override
+      public String toString()
+      {
+         return String.format( "%s: count=%d, mean=%.1fus, p50=%dus, p99=%dus, p99.9=%dus, max=%dus, throughput=%.0f/s",
+                               key, count, meanMicros, p50Micros, p99Micros, p999Micros, maxMicros, throughput );
+      }
+   }
+
+}
@@ -0,0 +1,95 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.comparison;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.epics.ca.Channel;
+import org.epics.ca.Context;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Runs the comparison workloads through this library.
+ */
+public class CaClientLibraryAdapter implements ClientLibraryAdapter
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private final Context context = new Context();
+   private final List<Channel<Double>> channels = new ArrayList<>();
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+
+   @Override
+   public String getName()
+   {
+      return "ca";
+   }
+
+   @Override
+   public void connect( List<String> channelNames, long timeout, TimeUnit unit ) throws Exception
+   {
+      final List<CompletableFuture<Channel<Double>>> connections = new ArrayList<>( channelNames.size() );
+      for ( String channelName : channelNames )
+      {
+         final Channel<Double> channel = context.createChannel( channelName, Double.class );
+         channels.add( channel );
+         connections.add( channel.connectAsync() );
+      }
+      CompletableFuture.allOf( connections.toArray( new CompletableFuture[ 0 ] ) ).get( timeout, unit );
+   }
+
+   @Override
+   public double get( int channel )
+   {
+      return channels.get( channel ).get();
+   }
+
+   @Override
+   public CompletableFuture<Double> getAsync( int channel )
+   {
+      return channels.get( channel ).getAsync();
+   }
+
+   @Override
+   public void putNoWait( int channel, double value )
+   {
+      channels.get( channel ).putNoWait( value );
+   }
+
+   @Override
+   public AutoCloseable monitor( int channel, Runnable listener )
+   {
+      return channels.get( channel ).addValueMonitor( value -> listener.run() );
+   }
+
+   @Override
+   public void flush()
+   {
+      // the requests are sent as they are made
+   }
+
+   @Override
+   public void close()
+   {
+      channels.forEach( Channel::close );
+      channels.clear();
+      context.close();
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
@@ -0,0 +1,91 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.comparison;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/*- Interface Declaration ----------------------------------------------------*/
+
+/**
+ * The operations of a CA client library used by the comparison benchmarks,
+ * reduced to the common subset so that the same workload can be run through
+ * each library.
+ *
+ * The channels are of type double and are addressed by their index in the list
+ * passed to {@link #connect(List, long, TimeUnit)}. Asynchronous requests may be
+ * buffered by the library until {@link #flush()} is called.
+ */
+public interface ClientLibraryAdapter extends AutoCloseable
+{
+
+   /**
+    * Returns the name of the library, as shown in the reports.
+    *
+    * @return the name.
+    */
+   String getName();
+
+   /**
+    * Creates the channels and waits until they are all connected.
+    *
+    * @param channelNames the names of the channels.
+    * @param timeout the maximum time to wait.
+    * @param unit the unit of the timeout.
+    * @throws Exception if the channels did not all connect in time.
+    */
+   void connect( List<String> channelNames, long timeout, TimeUnit unit ) throws Exception;
+
+   /**
+    * Reads the value of a channel, waiting for the response.
+    *
+    * @param channel the index of the channel.
+    * @return the value.
+    * @throws Exception if the read failed.
+    */
+   double get( int channel ) throws Exception;
+
+   /**
+    * Requests the value of a channel.
+    *
+    * @param channel the index of the channel.
+    * @return a future which completes with the value.
+    */
+   CompletableFuture<Double> getAsync( int channel );
+
+   /**
+    * Writes the value of a channel without requesting confirmation.
+    *
+    * @param channel the index of the channel.
+    * @param value the value.
+    * @throws Exception if the write could not be sent.
+    */
+   void putNoWait( int channel, double value ) throws Exception;
+
+   /**
+    * Subscribes to the value of a channel.
+    *
+    * @param channel the index of the channel.
+    * @param listener called with each value received.
+    * @return the subscription, which is cancelled when closed.
+    * @throws Exception if the subscription could not be made.
+    */
+   AutoCloseable monitor( int channel, Runnable listener ) throws Exception;
+
+   /**
+    * Sends any buffered requests.
+    *
+    * @throws Exception if the requests could not be sent.
+    */
+   void flush() throws Exception;
+
+   /**
+    * Destroys the channels and releases all the resources of the library.
+    */
+   @Override
+   void close();
+
+}
@@ -0,0 +1,162 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.comparison;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import gov.aps.jca.CAException;
+import gov.aps.jca.Channel;
+import gov.aps.jca.Context;
+import gov.aps.jca.JCALibrary;
+import gov.aps.jca.Monitor;
+import gov.aps.jca.dbr.DBRType;
+import gov.aps.jca.dbr.DBR_Double;
+import org.epics.ca.util.logging.LibraryLogManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Runs the comparison workloads through the EPICS-community Java CA library
+ * (jca), using its pure Java client implementation (CAJ).
+ */
+public class JcaClientLibraryAdapter implements ClientLibraryAdapter
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final Logger logger = LibraryLogManager.getLogger( JcaClientLibraryAdapter.class );
+   private static final double GET_TIMEOUT_IN_SECONDS = 5.0;
+
+   private final Context context;
+   private final List<Channel> channels = new ArrayList<>();
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Creates a new instance.
+    *
+    * @throws CAException if the jca context could not be created.
+    */
+   public JcaClientLibraryAdapter() throws CAException
+   {
+      context = JCALibrary.getInstance().createContext( JCALibrary.CHANNEL_ACCESS_JAVA );
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   @Override
+   public String getName()
+   {
+      return "jca";
+   }
+
+   @Override
+   public void connect( List<String> channelNames, long timeout, TimeUnit unit ) throws Exception
+   {
+      final CountDownLatch connected = new CountDownLatch( channelNames.size() );
+      for ( String channelName : channelNames )
+      {
+         final AtomicBoolean counted = new AtomicBoolean();
+         channels.add( context.createChannel( channelName, event -> {
+            if ( event.isConnected() && counted.compareAndSet( false, true ) )
+            {
+               connected.countDown();
+            }
+         } ) );
+      }
+      context.flushIO();
+
+      if ( ! connected.await( timeout, unit ) )
+      {
+         throw new TimeoutException( connected.getCount() + " channels did not connect in time." );
+      }
+   }
+
+   @Override
+   public double get( int channel ) throws Exception
+   {
+      final DBR_Double dbr = (DBR_Double) channels.get( channel ).get( DBRType.DOUBLE, 1 );
+      context.pendIO( GET_TIMEOUT_IN_SECONDS );
+      return dbr.getDoubleValue()[ 0 ];
+   }
+
+   @Override
+   public CompletableFuture<Double> getAsync( int channel )
+   {
+      final CompletableFuture<Double> future = new CompletableFuture<>();
+      try
+      {
+         channels.get( channel ).get( DBRType.DOUBLE, 1, event -> {
+            if ( event.getStatus().isSuccessful() )
+            {
+               future.complete( ( (DBR_Double) event.getDBR() ).getDoubleValue()[ 0 ] );
+            }
+            else
+            {
+               future.completeExceptionally( new CAException( "get failed: " + event.getStatus() ) );
+            }
+         } );
+      }
+      catch ( CAException | RuntimeException ex )
+      {
+         future.completeExceptionally( ex );
+      }
+      return future;
+   }
+
+   @Override
+   public void putNoWait( int channel, double value ) throws CAException
+   {
+      channels.get( channel ).put( value );
+   }
+
+   @Override
+   public AutoCloseable monitor( int channel, Runnable listener ) throws CAException
+   {
+      final Monitor monitor = channels.get( channel ).addMonitor( DBRType.DOUBLE, 1, Monitor.VALUE, event -> listener.run() );
+      context.flushIO();
+      return monitor::clear;
+   }
+
+   @Override
+   public void flush() throws CAException
+   {
+      context.flushIO();
+   }
+
+   @Override
+   public void close()
+   {
+      try
+      {
+         for ( Channel channel : channels )
+         {
+            channel.destroy();
+         }
+         channels.clear();
+         context.destroy();
+      }
+      catch ( CAException ex )
+      {
+         logger.log( Level.WARNING, "Failed to destroy the jca context.", ex );
+      }
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
@@ -0,0 +1,392 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.comparison;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.epics.ca.JvmResourceMonitor;
+import org.epics.ca.LoadGeneratorServer;
+import org.epics.ca.PerformanceReport;
+import org.epics.ca.impl.monitor.latency.MonitorLatencyHistogram;
+import org.epics.ca.impl.repeater.NetworkUtilities;
+import org.epics.ca.util.logging.LibraryLogManager;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Runs the same workloads through this library and through the EPICS-community
+ * Java CA library (jca) against the same LoadGeneratorServer, and reports the
+ * throughput, latency and memory of each side by side so that any performance
+ * gap shows up and can be tracked from release to release.
+ *
+ * The workloads are: connecting many channels, synchronous gets from a single
+ * channel, asynchronous gets from many channels, a storm of unconfirmed puts and
+ * the fan-in of monitor updates at several rates. The results are written to the
+ * performance report directory as LibraryComparisonTests.md and .csv.
+ *
+ * The tests are run by the comparisonTest task, for example:
+ * <pre>
+ * ./gradlew comparisonTest -DCA_COMPARISON_CHANNELS=10000
+ * </pre>
+ * The settings are the system properties CA_COMPARISON_CHANNELS, CA_COMPARISON_ITERATIONS,
+ * CA_COMPARISON_FANIN_CHANNELS and CA_COMPARISON_FANIN_DURATION (in seconds).
+ *
+ * The ThreadWatcher is not used since the threads of the jca context are not
+ * under the control of this library.
+ */
+@Tag( LibraryComparisonTests.COMPARISON_TAG )
+class LibraryComparisonTests
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   static final String COMPARISON_TAG = "comparison";
+
+   private static final Logger logger = LibraryLogManager.getLogger( LibraryComparisonTests.class );
+
+   private static final String CA_COMPARISON_CHANNELS = "CA_COMPARISON_CHANNELS";
+   private static final int CA_COMPARISON_CHANNELS_DEFAULT = 1000;
+   private static final String CA_COMPARISON_ITERATIONS = "CA_COMPARISON_ITERATIONS";
+   private static final int CA_COMPARISON_ITERATIONS_DEFAULT = 10_000;
+   private static final String CA_COMPARISON_FANIN_CHANNELS = "CA_COMPARISON_FANIN_CHANNELS";
+   private static final int CA_COMPARISON_FANIN_CHANNELS_DEFAULT = 100;
+   private static final String CA_COMPARISON_FANIN_DURATION = "CA_COMPARISON_FANIN_DURATION";
+   private static final long CA_COMPARISON_FANIN_DURATION_DEFAULT = 10;
+
+   private static final long TIMEOUT_IN_SECONDS = 60;
+   private static final String PV_PREFIX = "cmp:";
+   private static final List<String> LIBRARIES = Arrays.asList( "ca", "jca" );
+   private static final double[] FANIN_RATES = { 10, 100, 1000 };
+
+   // the results, by workload and metric, then by library
+   private static final Map<String, Map<String, Double>> results = new LinkedHashMap<>();
+
+   private final int channelCount = Integer.getInteger( CA_COMPARISON_CHANNELS, CA_COMPARISON_CHANNELS_DEFAULT );
+   private final int iterations = Integer.getInteger( CA_COMPARISON_ITERATIONS, CA_COMPARISON_ITERATIONS_DEFAULT );
+   private final int faninChannelCount = Integer.getInteger( CA_COMPARISON_FANIN_CHANNELS, CA_COMPARISON_FANIN_CHANNELS_DEFAULT );
+   private final long faninSeconds = Long.getLong( CA_COMPARISON_FANIN_DURATION, CA_COMPARISON_FANIN_DURATION_DEFAULT );
+
+   private File specificationFile;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @BeforeAll
+   static void beforeAll()
+   {
+      // This is a guard condition. There is no point in running the tests
+      // if the network stack is not appropriately configured for channel access.
+      assertThat( NetworkUtilities.verifyTargetPlatformNetworkStackIsChannelAccessCompatible(), is( true ) );
+
+      if ( NetworkUtilities.isVpnActive() )
+      {
+         fail( "This test is not supported when a VPN connection is active on the local network interface." );
+      }
+   }
+
+   @AfterAll
+   static void afterAll() throws IOException
+   {
+      if ( ! results.isEmpty() )
+      {
+         writeReport();
+      }
+   }
+
+   @AfterEach
+   void afterEach()
+   {
+      if ( specificationFile != null )
+      {
+         LoadGeneratorServer.shutdown();
+         if ( ! specificationFile.delete() )
+         {
+            logger.warning( "Failed to delete the load generator specification: " + specificationFile );
+         }
+         specificationFile = null;
+      }
+   }
+
+   @ParameterizedTest
+   @MethodSource( "getLibraries" )
+   void testConnect( String library ) throws Exception
+   {
+      startServer( channelCount, 0 );
+      final String workload = "Connect " + channelCount + " channels";
+
+      try ( JvmResourceMonitor resources = new JvmResourceMonitor() )
+      {
+         final JvmResourceMonitor.Sample before = resources.sampleRetained();
+         try ( ClientLibraryAdapter adapter = open( library ) )
+         {
+            final long start = System.nanoTime();
+            adapter.connect( getChannelNames( channelCount ), TIMEOUT_IN_SECONDS, TimeUnit.SECONDS );
+            record( workload, "time (ms)", library, TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) );
+
+            final JvmResourceMonitor.Sample after = resources.sampleRetained();
+            record( workload, "retained heap per channel (bytes)", library, (double) ( after.getHeapBytes() - before.getHeapBytes() ) / channelCount );
+         }
+      }
+   }
+
+   @ParameterizedTest
+   @MethodSource( "getLibraries" )
+   void testGet( String library ) throws Exception
+   {
+      startServer( 1, 0 );
+      final String workload = "Synchronous get, 1 channel";
+
+      try ( ClientLibraryAdapter adapter = open( library ) )
+      {
+         adapter.connect( getChannelNames( 1 ), TIMEOUT_IN_SECONDS, TimeUnit.SECONDS );
+         for ( int i = 0; i < iterations / 10; i++ )
+         {
+            adapter.get( 0 );
+         }
+
+         final MonitorLatencyHistogram histogram = new MonitorLatencyHistogram();
+         final long start = System.nanoTime();
+         for ( int i = 0; i < iterations; i++ )
+         {
+            final long requested = System.nanoTime();
+            adapter.get( 0 );
+            histogram.record( System.nanoTime() - requested );
+         }
+         final PerformanceReport.Result result = PerformanceReport.Result.of( workload, histogram, System.nanoTime() - start );
+         record( workload, "p50 latency (us)", library, result.getP50Micros() );
+         record( workload, "p99 latency (us)", library, result.getP99Micros() );
+         record( workload, "throughput (gets/s)", library, result.getThroughput() );
+      }
+   }
+
+   @ParameterizedTest
+   @MethodSource( "getLibraries" )
+   void testBulkGet( String library ) throws Exception
+   {
+      startServer( channelCount, 0 );
+      final String workload = "Asynchronous get, " + channelCount + " channels";
+
+      try ( ClientLibraryAdapter adapter = open( library ) )
+      {
+         adapter.connect( getChannelNames( channelCount ), TIMEOUT_IN_SECONDS, TimeUnit.SECONDS );
+         getAll( adapter, channelCount );
+
+         final int rounds = Math.max( 1, iterations / channelCount );
+         final MonitorLatencyHistogram histogram = new MonitorLatencyHistogram();
+         final long start = System.nanoTime();
+         for ( int round = 0; round < rounds; round++ )
+         {
+            final long requested = System.nanoTime();
+            getAll( adapter, channelCount );
+            histogram.record( System.nanoTime() - requested );
+         }
+         final long elapsed = System.nanoTime() - start;
+         record( workload, "p50 time to get all (us)", library, TimeUnit.NANOSECONDS.toMicros( histogram.getValueAtPercentile( 50.0 ) ) );
+         record( workload, "throughput (gets/s)", library, (double) rounds * channelCount * TimeUnit.SECONDS.toNanos( 1 ) / elapsed );
+      }
+   }
+
+   @ParameterizedTest
+   @MethodSource( "getLibraries" )
+   void testPutStorm( String library ) throws Exception
+   {
+      startServer( channelCount, 0 );
+      final String workload = "Unconfirmed puts, " + channelCount + " channels";
+
+      try ( ClientLibraryAdapter adapter = open( library ) )
+      {
+         adapter.connect( getChannelNames( channelCount ), TIMEOUT_IN_SECONDS, TimeUnit.SECONDS );
+
+         final long start = System.nanoTime();
+         for ( int i = 0; i < iterations; i++ )
+         {
+            adapter.putNoWait( i % channelCount, i );
+         }
+         adapter.flush();
+
+         // The server handles the requests on a circuit in order so once the
+         // value of the last put can be read back all the puts have been handled.
+         final int lastChannel = ( iterations - 1 ) % channelCount;
+         assertThat( adapter.get( lastChannel ), is( (double) ( iterations - 1 ) ) );
+         final long elapsed = System.nanoTime() - start;
+
+         record( workload, "time (ms)", library, TimeUnit.NANOSECONDS.toMillis( elapsed ) );
+         record( workload, "throughput (puts/s)", library, (double) iterations * TimeUnit.SECONDS.toNanos( 1 ) / elapsed );
+      }
+   }
+
+   @ParameterizedTest
+   @MethodSource( "getArgumentsForTestMonitorFanIn" )
+   void testMonitorFanIn( String library, double rate ) throws Exception
+   {
+      startServer( faninChannelCount, rate );
+      final String workload = String.format( "Monitor fan-in, %d channels at %.0fHz", faninChannelCount, rate );
+
+      try ( ClientLibraryAdapter adapter = open( library ) )
+      {
+         adapter.connect( getChannelNames( faninChannelCount ), TIMEOUT_IN_SECONDS, TimeUnit.SECONDS );
+
+         final LongAdder notifications = new LongAdder();
+         final List<AutoCloseable> monitors = new ArrayList<>();
+         for ( int i = 0; i < faninChannelCount; i++ )
+         {
+            monitors.add( adapter.monitor( i, notifications::increment ) );
+         }
+
+         // let the initial updates arrive and the update rate settle
+         Thread.sleep( 1000 );
+         notifications.reset();
+         final long start = System.nanoTime();
+         Thread.sleep( TimeUnit.SECONDS.toMillis( faninSeconds ) );
+         final double received = notifications.sum() * (double) TimeUnit.SECONDS.toNanos( 1 ) / ( System.nanoTime() - start );
+
+         for ( AutoCloseable monitor : monitors )
+         {
+            monitor.close();
+         }
+         record( workload, "offered (updates/s)", library, faninChannelCount * rate );
+         record( workload, "received (updates/s)", library, received );
+      }
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   private static Stream<String> getLibraries()
+   {
+      return LIBRARIES.stream();
+   }
+
+   private static Stream<Arguments> getArgumentsForTestMonitorFanIn()
+   {
+      return LIBRARIES.stream().flatMap( library -> Arrays.stream( FANIN_RATES ).mapToObj( rate -> Arguments.of( library, rate ) ) );
+   }
+
+   private static ClientLibraryAdapter open( String library ) throws Exception
+   {
+      return "jca".equals( library ) ? new JcaClientLibraryAdapter() : new CaClientLibraryAdapter();
+   }
+
+   private static List<String> getChannelNames( int count )
+   {
+      return IntStream.range( 0, count ).mapToObj( i -> PV_PREFIX + i ).collect( Collectors.toList() );
+   }
+
+   private static void getAll( ClientLibraryAdapter adapter, int count ) throws Exception
+   {
+      final List<CompletableFuture<Double>> futures = new ArrayList<>( count );
+      for ( int i = 0; i < count; i++ )
+      {
+         futures.add( adapter.getAsync( i ) );
+      }
+      adapter.flush();
+      CompletableFuture.allOf( futures.toArray( new CompletableFuture[ 0 ] ) ).get( TIMEOUT_IN_SECONDS, TimeUnit.SECONDS );
+   }
+
+   /**
+    * Starts the load generator server with a single group of scalar doubles.
+    *
+    * @param count the number of PVs.
+    * @param rate the update rate of each PV in Hz, zero for none.
+    */
+   private void startServer( int count, double rate ) throws IOException
+   {
+      final Properties specification = new Properties();
+      specification.setProperty( "groups", "cmp" );
+      specification.setProperty( "cmp.prefix", PV_PREFIX );
+      specification.setProperty( "cmp.count", String.valueOf( count ) );
+      specification.setProperty( "cmp.rate", String.valueOf( rate ) );
+
+      specificationFile = File.createTempFile( "LibraryComparisonTests", ".properties" );
+      specificationFile.deleteOnExit();
+      try ( OutputStream stream = new FileOutputStream( specificationFile ) )
+      {
+         specification.store( stream, "Written by LibraryComparisonTests" );
+      }
+      LoadGeneratorServer.start( specificationFile.getAbsolutePath() );
+   }
+
+   private static void record( String workload, String metric, String library, double value )
+   {
+      logger.info( String.format( "%s, %s: %s %.1f", workload, metric, library, value ) );
+      results.computeIfAbsent( workload + " | " + metric, key -> new LinkedHashMap<>() ).put( library, value );
+   }
+
+   private static void writeReport() throws IOException
+   {
+      final File directory = new File( System.getProperty( PerformanceReport.CA_PERFORMANCE_REPORT_DIR, PerformanceReport.CA_PERFORMANCE_REPORT_DIR_DEFAULT ) );
+      if ( !directory.isDirectory() && !directory.mkdirs() )
+      {
+         throw new IOException( "Failed to create the report directory: " + directory );
+      }
+
+      final String name = LibraryComparisonTests.class.getSimpleName();
+      try ( PrintWriter markdown = new PrintWriter( new FileWriter( new File( directory, name + ".md" ) ) );
+            PrintWriter csv = new PrintWriter( new FileWriter( new File( directory, name + ".csv" ) ) ) )
+      {
+         markdown.println( "### " + name );
+         markdown.println();
+         markdown.println( " * Java: " + System.getProperty( "java.vendor" ) + " " + System.getProperty( "java.version" ) );
+         markdown.println( " * Platform: " + System.getProperty( "os.name" ) + " " + System.getProperty( "os.arch" ) +
+                           ", " + Runtime.getRuntime().availableProcessors() + " processors" );
+         markdown.println();
+         markdown.println( "| Workload | Metric | ca | jca | ca / jca |" );
+         markdown.println( "|----------|--------|---:|----:|---------:|" );
+         csv.println( "workload,metric,ca,jca" );
+
+         for ( Map.Entry<String, Map<String, Double>> entry : results.entrySet() )
+         {
+            final Double ca = entry.getValue().get( "ca" );
+            final Double jca = entry.getValue().get( "jca" );
+            final String ratio = ( ca != null && jca != null && jca != 0 ) ? String.format( "%.2f", ca / jca ) : "";
+            markdown.println( String.format( "| %s | %s | %s | %s |", entry.getKey(), format( ca ), format( jca ), ratio ) );
+
+            final String[] workloadAndMetric = entry.getKey().split( " \\| " );
+            csv.println( String.format( "\"%s\",\"%s\",%s,%s", workloadAndMetric[ 0 ], workloadAndMetric[ 1 ], format( ca ), format( jca ) ) );
+         }
+      }
+      logger.info( "The library comparison report was written to: " + directory.getAbsolutePath() );
+   }
+
+   private static String format( Double value )
+   {
+      return ( value == null ) ? "" : String.format( "%.1f", value );
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
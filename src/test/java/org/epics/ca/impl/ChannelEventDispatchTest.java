@@ -0,0 +1,148 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.epics.ca.Channel;
+import org.epics.ca.Constants;
+import org.epics.ca.ThreadWatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.core.Is.is;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Verifies that the connection events of many channels are dispatched in
+ * parallel while the events of each channel stay in order.
+ */
+class ChannelEventDispatchTest
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final int CHANNELS = 500;
+
+   private ThreadWatcher threadWatcher;
+   private ContextImpl context;
+   private InMemoryCaServer server;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @BeforeEach
+   void beforeEach()
+   {
+      threadWatcher = ThreadWatcher.start();
+
+      final Properties properties = new Properties();
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_ADDR_LIST.toString(), "127.0.0.1" );
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_AUTO_ADDR_LIST.toString(), "NO" );
+      context = new ContextImpl( new ProtocolConfiguration( properties ) );
+      server = new InMemoryCaServer( context );
+   }
+
+   @AfterEach
+   void afterEach()
+   {
+      server.close();
+      context.close();
+      threadWatcher.verify();
+   }
+
+   @Test
+   void testConnectionEvents_orderedPerChannel_dispatchedInParallel() throws Exception
+   {
+      assumeTrue( LibraryConfiguration.getInstance().getEventDispatcherThreads() > 1, "The events are dispatched by a single thread." );
+
+      final Map<String, List<Boolean>> eventsByChannel = new ConcurrentHashMap<>();
+      final Set<Thread> dispatchThreads = ConcurrentHashMap.newKeySet();
+      final CountDownLatch connected = new CountDownLatch( CHANNELS );
+      final CountDownLatch disconnected = new CountDownLatch( CHANNELS );
+
+      for ( int i = 0; i < CHANNELS; i++ )
+      {
+         final String name = "test:pv" + i;
+         server.addProcessVariable( name, (double) i );
+         final List<Boolean> events = Collections.synchronizedList( new ArrayList<>() );
+         eventsByChannel.put( name, events );
+
+         final Channel<Double> channel = context.createChannel( name, Double.class, Constants.CHANNEL_PRIORITY_DEFAULT );
+         channel.addConnectionListener( ( ch, isConnected ) -> {
+            dispatchThreads.add( Thread.currentThread() );
+            events.add( isConnected );
+            // a slow listener, which must not hold up the other channels
+            sleep( 1 );
+            ( isConnected ? connected : disconnected ).countDown();
+         } );
+         channel.connectAsync();
+         server.connect( channel );
+      }
+
+      assertThat( connected.await( 10, TimeUnit.SECONDS ), is( true ) );
+      server.close();
+      assertThat( disconnected.await( 10, TimeUnit.SECONDS ), is( true ) );
+
+      for ( Map.Entry<String, List<Boolean>> entry : eventsByChannel.entrySet() )
+      {
+         assertThat( entry.getKey(), entry.getValue(), is( Arrays.asList( true, false ) ) );
+      }
+      assertThat( dispatchThreads.size(), greaterThan( 1 ) );
+
+      // the access rights events are counted too
+      final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( 5 );
+      while ( getMetric( "ca_channel_events_pending" ) > 0 && System.nanoTime() < deadline )
+      {
+         sleep( 10 );
+      }
+      assertThat( getMetric( "ca_channel_events_pending" ), is( 0L ) );
+      assertThat( getMetric( "ca_channel_events_dispatched_total" ), greaterThanOrEqualTo( 2L * CHANNELS ) );
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   private long getMetric( String name )
+   {
+      return context.getMetricsRegistry().getSnapshot().entrySet().stream()
+            .filter( entry -> entry.getKey().startsWith( name + "{" ) )
+            .mapToLong( entry -> entry.getValue().longValue() )
+            .sum();
+   }
+
+   private static void sleep( long millis )
+   {
+      try
+      {
+         Thread.sleep( millis );
+      }
+      catch ( InterruptedException ex )
+      {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
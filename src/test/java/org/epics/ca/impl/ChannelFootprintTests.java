@@ -0,0 +1,177 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.epics.ca.Channel;
+import org.epics.ca.Constants;
+import org.epics.ca.JvmResourceMonitor;
+import org.epics.ca.PerformanceReport;
+import org.epics.ca.ThreadWatcher;
+import org.epics.ca.util.logging.LibraryLogManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Measures the heap retained by each channel, first when it has just been
+ * created and then when it is connected, and verifies that both stay within
+ * budget.
+ *
+ * The channels are connected through the in-memory server so that no sockets
+ * are involved; the heap retained by the server's process variables is taken
+ * before the channels are created and is excluded. The number of channels is
+ * set by the system property CA_FOOTPRINT_CHANNELS (default 20000). The results
+ * are written to ChannelFootprintTests.md in the performance report directory.
+ *
+ * The budgets, in bytes per channel, are stored in ChannelFootprintTests-budgets.properties.
+ * They should be lowered whenever the footprint of a channel is reduced. The same
+ * file records the footprint before the per-channel structures were created on
+ * first use, which is reported next to the measured footprint.
+ */
+class ChannelFootprintTests
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final Logger logger = LibraryLogManager.getLogger( ChannelFootprintTests.class );
+
+   private static final int CHANNEL_COUNT = Integer.getInteger( "CA_FOOTPRINT_CHANNELS", 20_000 );
+   private static final Properties budgets = new Properties();
+
+   private ThreadWatcher threadWatcher;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @BeforeAll
+   static void beforeAll() throws IOException
+   {
+      try ( InputStream stream = ChannelFootprintTests.class.getResourceAsStream( ChannelFootprintTests.class.getSimpleName() + "-budgets.properties" ) )
+      {
+         assertThat( "the footprint budgets are missing", stream, notNullValue() );
+         budgets.load( stream );
+      }
+   }
+
+   @BeforeEach
+   void beforeEach()
+   {
+      threadWatcher = ThreadWatcher.start();
+   }
+
+   @AfterEach
+   void afterEach()
+   {
+      threadWatcher.verify();
+   }
+
+   @Test
+   void testBytesPerChannel_withinBudget() throws Exception
+   {
+      final Properties properties = new Properties();
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_ADDR_LIST.toString(), "127.0.0.1" );
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_AUTO_ADDR_LIST.toString(), "NO" );
+
+      try ( final ContextImpl context = new ContextImpl( new ProtocolConfiguration( properties ) );
+            final InMemoryCaServer server = new InMemoryCaServer( context );
+            final JvmResourceMonitor monitor = new JvmResourceMonitor() )
+      {
+         for ( int i = 0; i < CHANNEL_COUNT; i++ )
+         {
+            server.addProcessVariable( getName( i ), (double) i );
+         }
+
+         final List<Channel<Double>> channels = new ArrayList<>( CHANNEL_COUNT );
+         final long baseline = monitor.sampleRetained().getHeapBytes();
+
+         for ( int i = 0; i < CHANNEL_COUNT; i++ )
+         {
+            channels.add( context.createChannel( getName( i ), Double.class, Constants.CHANNEL_PRIORITY_DEFAULT ) );
+         }
+         final double createdBytes = (double) ( monitor.sampleRetained().getHeapBytes() - baseline ) / CHANNEL_COUNT;
+
+         final List<CompletableFuture<Channel<Double>>> connections = new ArrayList<>( CHANNEL_COUNT );
+         for ( Channel<Double> channel : channels )
+         {
+            connections.add( channel.connectAsync() );
+            server.connect( channel );
+         }
+         CompletableFuture.allOf( connections.toArray( new CompletableFuture[ 0 ] ) ).get( 60, TimeUnit.SECONDS );
+         connections.clear();
+         final double connectedBytes = (double) ( monitor.sampleRetained().getHeapBytes() - baseline ) / CHANNEL_COUNT;
+
+         writeReport( createdBytes, connectedBytes );
+         assertWithinBudget( "created", createdBytes );
+         assertWithinBudget( "connected", connectedBytes );
+      }
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   private static String getName( int index )
+   {
+      return "footprint:pv" + index;
+   }
+
+   private static void assertWithinBudget( String key, double bytesPerChannel )
+   {
+      final String budget = budgets.getProperty( key );
+      assertThat( String.format( "there is no footprint budget '%s' (measured %.0f bytes per channel)", key, bytesPerChannel ), budget, notNullValue() );
+      assertThat( String.format( "bytes retained per %s channel", key ), bytesPerChannel, lessThanOrEqualTo( Double.parseDouble( budget ) ) );
+   }
+
+   private static void writeReport( double createdBytes, double connectedBytes ) throws IOException
+   {
+      final File directory = new File( System.getProperty( PerformanceReport.CA_PERFORMANCE_REPORT_DIR, PerformanceReport.CA_PERFORMANCE_REPORT_DIR_DEFAULT ) );
+      if ( !directory.isDirectory() && !directory.mkdirs() )
+      {
+         throw new IOException( "Failed to create the report directory: " + directory );
+      }
+
+      final List<String> rows = new ArrayList<>();
+      rows.add( String.format( "| Created channel | %s bytes | %.0f bytes |", budgets.getProperty( "baseline.created", "?" ), createdBytes ) );
+      rows.add( String.format( "| Connected channel | %s bytes | %.0f bytes |", budgets.getProperty( "baseline.connected", "?" ), connectedBytes ) );
+
+      final String name = ChannelFootprintTests.class.getSimpleName();
+      try ( PrintWriter writer = new PrintWriter( new FileWriter( new File( directory, name + ".md" ) ) ) )
+      {
+         writer.println( "### " + name );
+         writer.println();
+         writer.println( " * Channels: " + CHANNEL_COUNT );
+         writer.println( " * Java: " + System.getProperty( "java.vendor" ) + " " + System.getProperty( "java.version" ) );
+         writer.println();
+         writer.println( "| Heap retained per | Before compaction | Result |" );
+         writer.println( "|-------------------|------------------:|-------:|" );
+         rows.forEach( writer::println );
+      }
+      rows.forEach( logger::info );
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
@@ -0,0 +1,260 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.epics.ca.AccessRights;
+import org.epics.ca.Channel;
+import org.epics.ca.CompletionException;
+import org.epics.ca.ConnectionState;
+import org.epics.ca.Constants;
+import org.epics.ca.Monitor;
+import org.epics.ca.Status;
+import org.epics.ca.ThreadWatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.core.Is.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Verifies the state published by a channel as it connects, loses its rights
+ * and disconnects.
+ */
+class ChannelImplTest
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private ThreadWatcher threadWatcher;
+   private ContextImpl context;
+   private InMemoryCaServer server;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @BeforeEach
+   void beforeEach()
+   {
+      threadWatcher = ThreadWatcher.start();
+
+      final Properties properties = new Properties();
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_ADDR_LIST.toString(), "127.0.0.1" );
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_AUTO_ADDR_LIST.toString(), "NO" );
+      context = new ContextImpl( new ProtocolConfiguration( properties ) );
+
+      server = new InMemoryCaServer( context );
+      server.addProcessVariable( "test:double", 1.5 );
+   }
+
+   @AfterEach
+   void afterEach()
+   {
+      server.close();
+      context.close();
+      threadWatcher.verify();
+   }
+
+   @Test
+   void testConnect_publishesTransportAndServerAttributes() throws Exception
+   {
+      final ChannelImpl<Double> channel = createChannel();
+      assertThat( channel.getConnectionState(), is( ConnectionState.NEVER_CONNECTED ) );
+      assertThat( channel.getTransport(), nullValue() );
+      assertThrows( IllegalStateException.class, channel::getAsync );
+
+      connect( channel );
+      assertThat( channel.getConnectionState(), is( ConnectionState.CONNECTED ) );
+      assertThat( channel.getAccessRights(), is( AccessRights.READ_WRITE ) );
+      assertThat( channel.getTransport(), is( server.getTransport() ) );
+      assertThat( channel.getSID(), not( is( 0xFFFFFFFF ) ) );
+      assertThat( channel.getNativeElementCount(), is( 1 ) );
+      assertThat( channel.getAsync().get( 5, TimeUnit.SECONDS ), is( 1.5 ) );
+   }
+
+   @Test
+   void testAccessRights_checkedOnFastPath() throws Exception
+   {
+      server.setAccessRights( 1 );
+      final ChannelImpl<Double> channel = connect( createChannel() );
+      assertThat( channel.getAccessRights(), is( AccessRights.READ ) );
+      assertThat( channel.getAsync().get( 5, TimeUnit.SECONDS ), is( 1.5 ) );
+
+      final IllegalStateException ex = assertThrows( IllegalStateException.class, () -> channel.putNoWait( 2.0 ) );
+      assertThat( ex.getMessage(), is( "No write rights." ) );
+   }
+
+   @Test
+   void testDisconnect_releasesTransport() throws Exception
+   {
+      final ChannelImpl<Double> channel = connect( createChannel() );
+      assertThat( channel.getTransport(), notNullValue() );
+
+      server.close();
+      assertThat( channel.getConnectionState(), is( ConnectionState.DISCONNECTED ) );
+      assertThat( channel.getTransport(), nullValue() );
+      assertThrows( IllegalStateException.class, channel::getAsync );
+
+      channel.close();
+      assertThat( channel.getConnectionState(), is( ConnectionState.CLOSED ) );
+   }
+
+   @Test
+   void testReconnect_batchesSubscriptionRequests() throws Exception
+   {
+      final int channelCount = 50;
+      final int monitorsPerChannel = 2;
+      final List<ChannelImpl<Double>> channels = new ArrayList<>();
+      for ( int i = 0; i < channelCount; i++ )
+      {
+         server.addProcessVariable( "test:pv" + i, (double) i );
+         final ChannelImpl<Double> channel = connect( createChannel( "test:pv" + i ) );
+         for ( int m = 0; m < monitorsPerChannel; m++ )
+         {
+            channel.addValueMonitor( value -> {}, Monitor.VALUE_MASK );
+         }
+         channels.add( channel );
+      }
+      assertThat( server.getTransport().awaitIdle( 5, TimeUnit.SECONDS ), is( true ) );
+
+      final long flushes = server.getTransport().getFlushCount();
+      final long createChannelRequests = server.getRequestCount( 18 );
+      final long eventAddRequests = server.getRequestCount( 1 );
+
+      // the circuit is lost, then the server answers the searches of all the channels at once
+      channels.forEach( ChannelImpl::transportClosed );
+      server.connect( channels );
+      assertThat( server.getTransport().awaitIdle( 5, TimeUnit.SECONDS ), is( true ) );
+
+      for ( ChannelImpl<Double> channel : channels )
+      {
+         assertThat( channel.getConnectionState(), is( ConnectionState.CONNECTED ) );
+      }
+      assertThat( server.getRequestCount( 18 ) - createChannelRequests, is( (long) channelCount ) );
+      assertThat( server.getRequestCount( 1 ) - eventAddRequests, is( (long) channelCount * monitorsPerChannel ) );
+      // each search response prompts a create channel request of its own, whose response
+      // resubscribes all the monitors of its channel in one flush
+      assertThat( server.getTransport().getFlushCount() - flushes, is( 2L * channelCount ) );
+   }
+
+   @Test
+   void testGetAsync_unansweredRequestExpires() throws Exception
+   {
+      final ChannelImpl<Double> channel = connect( createChannel() );
+      server.setRequestHandler( 15, ( transport, header, payload ) -> {} );
+
+      final CompletableFuture<Double> future = channel.getAsync( 200, TimeUnit.MILLISECONDS );
+      assertThat( future.isDone(), is( false ) );
+      assertExpired( future );
+      assertThat( context.getRequestExpiryWheel().getExpiredCount(), is( 1L ) );
+   }
+
+   @Test
+   void testPutAsync_unansweredRequestExpires() throws Exception
+   {
+      final ChannelImpl<Double> channel = connect( createChannel() );
+      server.setRequestHandler( 19, ( transport, header, payload ) -> {} );
+
+      assertExpired( channel.putAsync( 2.0, 200, TimeUnit.MILLISECONDS ) );
+      assertThat( context.getRequestExpiryWheel().getExpiredCount(), is( 1L ) );
+   }
+
+   @Test
+   void testGetAsync_answeredRequestLeavesExpiryWheel() throws Exception
+   {
+      final ChannelImpl<Double> channel = connect( createChannel() );
+      assertThat( channel.getAsync( 10, TimeUnit.SECONDS ).get( 5, TimeUnit.SECONDS ), is( 1.5 ) );
+      assertThat( channel.putAsync( 2.0, 10, TimeUnit.SECONDS ).get( 5, TimeUnit.SECONDS ), is( Status.NORMAL ) );
+      assertThat( context.getRequestExpiryWheel().size(), is( 0 ) );
+      assertThat( context.getRequestExpiryWheel().getExpiredCount(), is( 0L ) );
+   }
+
+   @Test
+   void testCloseChannels_clearChannelMessagesFlushedOnce() throws Exception
+   {
+      final List<ChannelImpl<Double>> channels = new ArrayList<>();
+      for ( int i = 0; i < 20; i++ )
+      {
+         channels.add( connect( createChannel() ) );
+      }
+      assertThat( server.getTransport().awaitIdle( 5, TimeUnit.SECONDS ), is( true ) );
+      final long flushes = server.getTransport().getFlushCount();
+
+      context.closeChannels( channels );
+      assertThat( server.getTransport().awaitIdle( 5, TimeUnit.SECONDS ), is( true ) );
+      assertThat( server.getRequestCount( 12 ), is( 20L ) );
+      assertThat( server.getTransport().getFlushCount() - flushes, is( 1L ) );
+      channels.forEach( channel -> assertThat( channel.getConnectionState(), is( ConnectionState.CLOSED ) ) );
+   }
+
+   @Test
+   void testContextClose_channelsNotClearedOnServer() throws Exception
+   {
+      final List<ChannelImpl<Double>> channels = new ArrayList<>();
+      for ( int i = 0; i < 20; i++ )
+      {
+         channels.add( connect( createChannel() ) );
+      }
+
+      context.close();
+      assertThat( server.getTransport().awaitIdle( 5, TimeUnit.SECONDS ), is( true ) );
+      assertThat( server.getRequestCount( 12 ), is( 0L ) );
+      channels.forEach( channel -> assertThat( channel.getConnectionState(), is( ConnectionState.CLOSED ) ) );
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   private ChannelImpl<Double> createChannel()
+   {
+      return createChannel( "test:double" );
+   }
+
+   private ChannelImpl<Double> createChannel( String name )
+   {
+      return (ChannelImpl<Double>) context.createChannel( name, Double.class, Constants.CHANNEL_PRIORITY_DEFAULT );
+   }
+
+   private ChannelImpl<Double> connect( ChannelImpl<Double> channel ) throws Exception
+   {
+      final CompletableFuture<Channel<Double>> connected = channel.connectAsync();
+      server.connect( channel );
+      connected.get( 5, TimeUnit.SECONDS );
+      return channel;
+   }
+
+   private void assertExpired( CompletableFuture<?> future ) throws Exception
+   {
+      final ExecutionException ex = assertThrows( ExecutionException.class, () -> future.get( 5, TimeUnit.SECONDS ) );
+      assertThat( ex.getCause(), instanceOf( CompletionException.class ) );
+      assertThat( ( (CompletionException) ex.getCause() ).getStatus(), is( Status.TIMEOUT ) );
+
+      // the IOID has been released
+      assertThat( context.getMetricsRegistry().getSnapshot().entrySet().stream()
+                        .filter( entry -> entry.getKey().startsWith( "ca_pending_ioids{" ) )
+                        .mapToLong( entry -> entry.getValue().longValue() )
+                        .sum(), is( 0L ) );
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
@@ -0,0 +1,138 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.epics.ca.Channel;
+import org.epics.ca.Constants;
+import org.epics.ca.ThreadWatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Verifies that echo requests are sent only over idle circuits, that their
+ * round-trip times are recorded and that a circuit whose server does not reply
+ * is marked unresponsive until data is received on it again.
+ */
+class CircuitHealthMonitorTest
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final String CONNECTION_TIMEOUT = "0.5";
+
+   private ThreadWatcher threadWatcher;
+   private ContextImpl context;
+   private InMemoryCaServer server;
+   private ChannelImpl<Double> channel;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @BeforeEach
+   void beforeEach() throws Exception
+   {
+      threadWatcher = ThreadWatcher.start();
+
+      final Properties properties = new Properties();
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_ADDR_LIST.toString(), "127.0.0.1" );
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_AUTO_ADDR_LIST.toString(), "NO" );
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_CONN_TMO.toString(), CONNECTION_TIMEOUT );
+      context = new ContextImpl( new ProtocolConfiguration( properties ) );
+
+      server = new InMemoryCaServer( context );
+      server.addProcessVariable( "test:pv", 1.0 );
+
+      channel = (ChannelImpl<Double>) context.createChannel( "test:pv", Double.class, Constants.CHANNEL_PRIORITY_DEFAULT );
+      final CompletableFuture<Channel<Double>> connected = channel.connectAsync();
+      server.connect( channel );
+      connected.get( 5, TimeUnit.SECONDS );
+   }
+
+   @AfterEach
+   void afterEach()
+   {
+      server.close();
+      context.close();
+      threadWatcher.verify();
+   }
+
+   @Test
+   void testIdleCircuit_echoSentAndRoundTripRecorded() throws Exception
+   {
+      final CircuitHealth health = server.getTransport().getHealth();
+      assertThat( await( () -> health.getEchoRoundTripTime().getCount() > 0 ), is( true ) );
+      assertThat( server.getRequestCount( 23 ) > 0, is( true ) );
+      assertThat( health.isUnresponsive(), is( false ) );
+   }
+
+   @Test
+   void testBusyCircuit_noEchoSent() throws Exception
+   {
+      final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( 2 );
+      while ( System.nanoTime() - deadline < 0 )
+      {
+         assertThat( channel.getAsync().get( 1, TimeUnit.SECONDS ), is( 1.0 ) );
+         Thread.sleep( 50 );
+      }
+      assertThat( server.getRequestCount( 23 ), is( 0L ) );
+   }
+
+   @Test
+   void testEchoNotAnswered_circuitUnresponsiveUntilDataReceived() throws Exception
+   {
+      server.setRequestHandler( 23, ( transport, header, payload ) -> {} );
+
+      final CircuitHealth health = server.getTransport().getHealth();
+      assertThat( await( health::isUnresponsive ), is( true ) );
+      assertThat( await( () -> getMetric( "ca_circuits_unresponsive" ) == 1 ), is( true ) );
+
+      // the server still answers other requests
+      assertThat( channel.getAsync().get( 1, TimeUnit.SECONDS ), is( 1.0 ) );
+      assertThat( health.isUnresponsive(), is( false ) );
+      assertThat( await( () -> getMetric( "ca_circuits_unresponsive" ) == 0 ), is( true ) );
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   private long getMetric( String name )
+   {
+      return context.getMetricsRegistry().getSnapshot().entrySet().stream()
+            .filter( entry -> entry.getKey().startsWith( name + "{" ) )
+            .mapToLong( entry -> entry.getValue().longValue() )
+            .sum();
+   }
+
+   private static boolean await( BooleanSupplier condition ) throws InterruptedException
+   {
+      final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( 5 );
+      while ( !condition.getAsBoolean() )
+      {
+         if ( System.nanoTime() - deadline > 0 )
+         {
+            return false;
+         }
+         Thread.sleep( 10 );
+      }
+      return true;
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
@@ -0,0 +1,166 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.epics.ca.Channel;
+import org.epics.ca.ConnectionState;
+import org.epics.ca.Constants;
+import org.epics.ca.ThreadWatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.anyOf;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.core.Is.is;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Verifies that several circuits are opened to a server when configured, with
+ * the array channels on a circuit of their own.
+ */
+class CircuitsPerServerTest
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final int CIRCUITS = 3;
+   private static final int SCALAR_CHANNELS = 20;
+   private static final int WAVEFORM_LENGTH = 250_000;
+
+   private ThreadWatcher threadWatcher;
+   private ContextImpl context;
+   private final List<InMemoryCaServer> circuits = new ArrayList<>();
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @BeforeEach
+   void beforeEach()
+   {
+      threadWatcher = ThreadWatcher.start();
+
+      final Properties properties = new Properties();
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_ADDR_LIST.toString(), "127.0.0.1" );
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_AUTO_ADDR_LIST.toString(), "NO" );
+      System.setProperty( LibraryConfiguration.PropertyNames.CA_CIRCUITS_PER_SERVER.toString(), String.valueOf( CIRCUITS ) );
+      try
+      {
+         context = new ContextImpl( new ProtocolConfiguration( properties ) );
+      }
+      finally
+      {
+         System.clearProperty( LibraryConfiguration.PropertyNames.CA_CIRCUITS_PER_SERVER.toString() );
+      }
+
+      // the same server, reached over each of the circuits
+      for ( int i = 0; i < CIRCUITS; i++ )
+      {
+         final InMemoryCaServer circuit = new InMemoryCaServer( context, InMemoryCaServer.DEFAULT_ADDRESS, Constants.CHANNEL_PRIORITY_DEFAULT, i );
+         for ( int j = 0; j < SCALAR_CHANNELS; j++ )
+         {
+            circuit.addProcessVariable( "test:scalar" + j, (double) j );
+         }
+         circuit.addProcessVariable( "test:waveform", new double[ WAVEFORM_LENGTH ] );
+         circuits.add( circuit );
+      }
+   }
+
+   @AfterEach
+   void afterEach()
+   {
+      circuits.forEach( InMemoryCaServer::close );
+      context.close();
+      threadWatcher.verify();
+   }
+
+   @Test
+   void testConnect_arrayChannelsOnLastCircuit() throws Exception
+   {
+      final ChannelImpl<double[]> waveform = connect( createChannel( "test:waveform", double[].class ) );
+      assertThat( waveform.getTransport(), sameInstance( circuits.get( CIRCUITS - 1 ).getTransport() ) );
+
+      final Set<CircuitTransport> scalarCircuits = new HashSet<>();
+      for ( int i = 0; i < SCALAR_CHANNELS; i++ )
+      {
+         final ChannelImpl<Double> scalar = connect( createChannel( "test:scalar" + i, Double.class ) );
+         assertThat( scalar.getTransport(), anyOf( sameInstance( circuits.get( 0 ).getTransport() ), sameInstance( circuits.get( 1 ).getTransport() ) ) );
+         scalarCircuits.add( scalar.getTransport() );
+      }
+      assertThat( scalarCircuits.size(), is( CIRCUITS - 1 ) );
+      assertThat( context.getTransportRegistry().numberOfActiveTransports(), is( CIRCUITS ) );
+   }
+
+   @Test
+   void testGet_scalarNotDelayedBehindLargeArray() throws Exception
+   {
+      final ChannelImpl<double[]> waveform = connect( createChannel( "test:waveform", double[].class ) );
+      final ChannelImpl<Double> scalar = connect( createChannel( "test:scalar0", Double.class ) );
+
+      // the waveform takes two seconds to transfer
+      circuits.get( CIRCUITS - 1 ).getTransport().setBandwidth( WAVEFORM_LENGTH * 8 / 2 );
+      final CompletableFuture<double[]> waveformValue = waveform.getAsync();
+
+      assertThat( scalar.getAsync().get( 1, TimeUnit.SECONDS ), is( 0.0 ) );
+      assertThat( waveformValue.isDone(), is( false ) );
+      assertThat( waveformValue.get( 10, TimeUnit.SECONDS ).length, is( WAVEFORM_LENGTH ) );
+   }
+
+   @Test
+   void testContextClose_channelsOfAllCircuitsClosed() throws Exception
+   {
+      // enough channels for the circuits to be closed in parallel
+      final List<ChannelImpl<Double>> channels = new ArrayList<>();
+      for ( int i = 0; i < 1200; i++ )
+      {
+         channels.add( createChannel( "test:scalar" + ( i % SCALAR_CHANNELS ), Double.class ) );
+      }
+      final List<CompletableFuture<Channel<Double>>> connected = new ArrayList<>();
+      channels.forEach( channel -> connected.add( channel.connectAsync() ) );
+      circuits.get( 0 ).connect( channels );
+      for ( CompletableFuture<Channel<Double>> future : connected )
+      {
+         future.get( 5, TimeUnit.SECONDS );
+      }
+
+      context.close();
+      channels.forEach( channel -> assertThat( channel.getConnectionState(), is( ConnectionState.CLOSED ) ) );
+      channels.forEach( channel -> assertThat( channel.getTransport(), nullValue() ) );
+      circuits.forEach( circuit -> assertThat( circuit.getRequestCount( 12 ), is( 0L ) ) );
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   private <T> ChannelImpl<T> createChannel( String name, Class<T> type )
+   {
+      return (ChannelImpl<T>) context.createChannel( name, type, Constants.CHANNEL_PRIORITY_DEFAULT );
+   }
+
+   private <T> ChannelImpl<T> connect( ChannelImpl<T> channel ) throws Exception
+   {
+      final CompletableFuture<Channel<T>> connected = channel.connectAsync();
+      circuits.get( 0 ).connect( channel );
+      connected.get( 5, TimeUnit.SECONDS );
+      return channel;
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
@@ -0,0 +1,799 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.lang3.Validate;
+import org.epics.ca.Channel;
+import org.epics.ca.Constants;
+import org.epics.ca.Status;
+import org.epics.ca.util.logging.LibraryLogManager;
+
+import java.lang.reflect.Array;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * A scripted, in-process CA server which serves a set of process variables to
+ * the channels of a context through an {@link InMemoryTransport}.
+ *
+ * The server answers the requests needed to connect channels and to get, put
+ * and monitor their values: create channel, read notify, write, write notify,
+ * event add/cancel, clear channel and echo. Values are served as the plain DBR
+ * types and as the DBR_STS and DBR_TIME types; the DBR_GR and DBR_CTRL types are
+ * refused with {@link Status#BADTYPE}. The default behaviour for any command may
+ * be replaced by a script with {@link #setRequestHandler(int, InMemoryTransport.RequestHandler)},
+ * for example to drop or delay responses, or to answer with an error.
+ *
+ * Channels do not find the server by searching; the search response is injected
+ * by {@link #connect(Channel)} after the channel has started to connect.
+ *
+ * Example:
+ * <pre>
+ * final ContextImpl context = new ContextImpl( new ProtocolConfiguration( properties ) );
+ * final InMemoryCaServer server = new InMemoryCaServer( context );
+ * server.addProcessVariable( "test:double", 1.0 );
+ *
+ * final Channel&lt;Double&gt; channel = context.createChannel( "test:double", Double.class, Constants.CHANNEL_PRIORITY_DEFAULT );
+ * final CompletableFuture&lt;Channel&lt;Double&gt;&gt; connected = channel.connectAsync();
+ * server.connect( channel );
+ * connected.get();
+ * </pre>
+ */
+@ThreadSafe
+public class InMemoryCaServer implements InMemoryTransport.RequestHandler, AutoCloseable
+{
+
+/*- Public attributes --------------------------------------------------------*/
+
+   /**
+    * The address of the server: a documentation address (RFC 5737) which no
+    * real server will answer from.
+    */
+   public static final InetSocketAddress DEFAULT_ADDRESS = createDefaultAddress();
+
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final Logger logger = LibraryLogManager.getLogger( InMemoryCaServer.class );
+
+   private static final int ECA_NORMAL = Status.NORMAL.getStatusCode();
+   private static final int ECA_BADTYPE = Status.BADTYPE.getStatusCode();
+   private static final int ACCESS_RIGHTS_READ_WRITE = 3;
+   private static final long EPICS_EPOCH_SECONDS = 631152000L;
+
+   // indexed by the DBR type code of the value, DBR_STRING to DBR_DOUBLE
+   private static final int[] ELEMENT_SIZE = { Constants.MAX_STRING_SIZE, 2, 4, 2, 1, 4, 8 };
+   private static final int[] STS_PADDING = { 0, 0, 0, 0, 1, 0, 4 };
+   private static final int[] TIME_PADDING = { 0, 2, 0, 2, 3, 0, 4 };
+   private static final int DBR_STS_STRING = 7;
+   private static final int DBR_TIME_STRING = 14;
+   private static final int DBR_GR_STRING = 21;
+
+   private final InMemoryTransport transport;
+   private final Map<String, ProcessVariable> processVariables = new ConcurrentHashMap<>();
+   private final Map<Integer, ServerChannel> channels = new ConcurrentHashMap<>();
+   private final AtomicInteger nextSid = new AtomicInteger( 1 );
+   private final Map<Integer, InMemoryTransport.RequestHandler> scriptedHandlers = new ConcurrentHashMap<>();
+   private final AtomicLongArray requestCounts = new AtomicLongArray( 28 );
+   private volatile int accessRights = ACCESS_RIGHTS_READ_WRITE;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Creates a server at the default address for the channels of the default priority.
+    *
+    * @param context the context.
+    */
+   public InMemoryCaServer( ContextImpl context )
+   {
+      this( context, DEFAULT_ADDRESS, Constants.CHANNEL_PRIORITY_DEFAULT );
+   }
+
+   /**
+    * Creates a server.
+    *
+    * @param context the context.
+    * @param address the address of the server.
+    * @param priority the priority of the channels which the server will serve.
+    */
+   public InMemoryCaServer( ContextImpl context, InetSocketAddress address, int priority )
+   {
+      this( context, address, priority, 0 );
+   }
+
+   /**
+    * Creates a server reached over one of several circuits of the same priority.
+    *
+    * @param context the context.
+    * @param address the address of the server.
+    * @param priority the priority of the channels which the server will serve.
+    * @param circuitIndex the index of the circuit among the circuits of the same priority to the server.
+    */
+   public InMemoryCaServer( ContextImpl context, InetSocketAddress address, int priority, int circuitIndex )
+   {
+      transport = new InMemoryTransport( context, address, Constants.CA_MINOR_PROTOCOL_REVISION, priority, circuitIndex, this, ResponseHandlers::handleResponse );
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * Returns the transport, for example to configure its latency and bandwidth.
+    *
+    * @return the transport.
+    */
+   public InMemoryTransport getTransport()
+   {
+      return transport;
+   }
+
+   /**
+    * Adds a process variable. The native type and element count of the process
+    * variable are those of the initial value.
+    *
+    * @param name the name.
+    * @param initialValue the value: a Double, Float, Integer, Short, Byte or String,
+    *                     or an array of the corresponding primitive type or of String.
+    */
+   public void addProcessVariable( String name, Object initialValue )
+   {
+      Validate.notNull( name );
+      Validate.notNull( initialValue );
+      final TypeSupports.TypeSupport<?> typeSupport = TypeSupports.getTypeSupportForType( initialValue.getClass() );
+      Validate.isTrue( typeSupport != null, "unsupported value type: " + initialValue.getClass() );
+
+      final ProcessVariable previous = processVariables.putIfAbsent( name, new ProcessVariable( (short) typeSupport.getDataType(), initialValue ) );
+      Validate.isTrue( previous == null, "duplicate process variable: " + name );
+   }
+
+   /**
+    * Sets the value of a process variable and posts it to its monitors.
+    *
+    * @param name the name.
+    * @param value the value, which is converted to the native type.
+    */
+   public void post( String name, Object value )
+   {
+      final ProcessVariable processVariable = getProcessVariable( name );
+      processVariable.value = toNative( value, processVariable );
+      postMonitors( processVariable );
+   }
+
+   /**
+    * Returns the frames which {@link #post(String, Object)} would send to the
+    * monitors of a process variable for its current value, without sending them.
+    * This allows tests to replay the same update into the client's response
+    * handlers without the cost of encoding it each time.
+    *
+    * @param name the name.
+    * @return the frames, between the buffer's position and limit; empty if there are no monitors.
+    */
+   public ByteBuffer createMonitorUpdates( String name )
+   {
+      final ProcessVariable processVariable = getProcessVariable( name );
+      final List<ByteBuffer> messages = new ArrayList<>();
+      for ( Subscription subscription : processVariable.subscriptions )
+      {
+         messages.add( createValueMessage( (short) 1, subscription.dataType, subscription.dataCount, subscription.ioid, processVariable.value ) );
+      }
+
+      final ByteBuffer frames = ByteBuffer.allocate( messages.stream().mapToInt( ByteBuffer::remaining ).sum() );
+      messages.forEach( frames::put );
+      frames.flip();
+      return frames;
+   }
+
+   /**
+    * Returns the value of a process variable.
+    *
+    * @param name the name.
+    * @return the value, of the native type.
+    */
+   public Object getValue( String name )
+   {
+      return getProcessVariable( name ).value;
+   }
+
+   /**
+    * Injects the search response which directs a channel to this server. The
+    * channel must have started to connect.
+    *
+    * @param channel the channel.
+    */
+   public void connect( Channel<?> channel )
+   {
+      transport.inject( createSearchResponse( channel ) );
+   }
+
+   /**
+    * Injects the search responses which direct the channels to this server in a
+    * single delivery, as a server answers the searches it receives in one datagram.
+    * The channels must have started to connect.
+    *
+    * @param channels the channels.
+    */
+   public void connect( List<? extends Channel<?>> channels )
+   {
+      final List<ByteBuffer> responses = new ArrayList<>( channels.size() );
+      int size = 0;
+      for ( Channel<?> channel : channels )
+      {
+         final ByteBuffer response = createSearchResponse( channel );
+         responses.add( response );
+         size += response.remaining();
+      }
+
+      final ByteBuffer frames = ByteBuffer.allocate( size );
+      responses.forEach( frames::put );
+      frames.flip();
+      transport.inject( frames );
+   }
+
+   /**
+    * Replaces the default handling of a command.
+    *
+    * @param command the CA command.
+    * @param handler the script, or null to restore the default handling.
+    */
+   public void setRequestHandler( int command, InMemoryTransport.RequestHandler handler )
+   {
+      if ( handler == null )
+      {
+         scriptedHandlers.remove( command );
+      }
+      else
+      {
+         scriptedHandlers.put( command, handler );
+      }
+   }
+
+   /**
+    * Sets the access rights granted to the channels created after this call.
+    *
+    * @param accessRights the CA access rights: bit 0 for read, bit 1 for write.
+    */
+   public void setAccessRights( int accessRights )
+   {
+      this.accessRights = accessRights;
+   }
+
+   /**
+    * Returns the number of requests received for a command.
+    *
+    * @param command the CA command.
+    * @return the count.
+    */
+   public long getRequestCount( int command )
+   {
+      return requestCounts.get( command );
+   }
+
+   /**
+    * Sends a message to the client.
+    *
+    * @param command the CA command.
+    * @param dataType the CA data type.
+    * @param dataCount the CA element count.
+    * @param parameter1 CA parameter 1.
+    * @param parameter2 CA parameter 2.
+    * @param payload the payload, or null for none; it is padded to a multiple of 8 bytes.
+    */
+   public void send( short command, short dataType, int dataCount, int parameter1, int parameter2, ByteBuffer payload )
+   {
+      transport.inject( createMessage( command, dataType, dataCount, parameter1, parameter2, payload ) );
+   }
+
+   @Override
+   public void handleRequest( InMemoryTransport transport, Header header, ByteBuffer payloadBuffer )
+   {
+      if ( header.command >= 0 && header.command < requestCounts.length() )
+      {
+         requestCounts.incrementAndGet( header.command );
+      }
+
+      final InMemoryTransport.RequestHandler script = scriptedHandlers.get( (int) header.command );
+      if ( script != null )
+      {
+         script.handleRequest( transport, header, payloadBuffer );
+         return;
+      }
+
+      switch ( header.command )
+      {
+         case 0:  /* version */
+         case 8:  /* events off */
+         case 9:  /* events on */
+         case 20: /* client name */
+         case 21: /* host name */
+            break;
+
+         case 1:
+            eventAdd( header );
+            break;
+
+         case 2:
+            eventCancel( header );
+            break;
+
+         case 4:
+            write( header, payloadBuffer );
+            break;
+
+         case 12:
+            clearChannel( header );
+            break;
+
+         case 15:
+            readNotify( header );
+            break;
+
+         case 18:
+            createChannel( header, payloadBuffer );
+            break;
+
+         case 19:
+            writeNotify( header, payloadBuffer );
+            break;
+
+         case 23:
+            send( (short) 23, (short) 0, 0, 0, 0, null );
+            break;
+
+         default:
+            logger.log( Level.WARNING, "Unsupported request (command = " + header.command + ") received by in-memory server." );
+            break;
+      }
+   }
+
+   @Override
+   public void close()
+   {
+      transport.close();
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+/*- Private methods ----------------------------------------------------------*/
+
+   private static InetSocketAddress createDefaultAddress()
+   {
+      try
+      {
+         return new InetSocketAddress( InetAddress.getByAddress( new byte[] { (byte) 192, 0, 2, 1 } ), 5064 );
+      }
+      catch ( UnknownHostException ex )
+      {
+         throw new IllegalStateException( ex );
+      }
+   }
+
+   private ByteBuffer createSearchResponse( Channel<?> channel )
+   {
+      Validate.isTrue( channel instanceof ChannelImpl, "channel not created by a ContextImpl" );
+      getProcessVariable( channel.getName() );
+
+      final ByteBuffer payload = ByteBuffer.allocate( 8 );
+      payload.putShort( transport.getMinorRevision() );
+      payload.flip();
+
+      // the address INADDR_BROADCAST tells the client to use the address the response came from
+      final int port = transport.getRemoteAddress().getPort();
+      return createMessage( (short) 6, (short) port, 0, 0xFFFFFFFF, ((ChannelImpl<?>) channel).getCID(), payload );
+   }
+
+   private ProcessVariable getProcessVariable( String name )
+   {
+      final ProcessVariable processVariable = processVariables.get( name );
+      Validate.isTrue( processVariable != null, "unknown process variable: " + name );
+      return processVariable;
+   }
+
+   private void createChannel( Header header, ByteBuffer payloadBuffer )
+   {
+      final int cid = header.parameter1;
+      final ProcessVariable processVariable = processVariables.get( readString( payloadBuffer, payloadBuffer.remaining() ) );
+      if ( processVariable == null )
+      {
+         // create channel failed
+         send( (short) 26, (short) 0, 0, cid, 0, null );
+         return;
+      }
+
+      final int sid = nextSid.getAndIncrement();
+      channels.put( sid, new ServerChannel( processVariable ) );
+
+      send( (short) 22, (short) 0, 0, cid, accessRights, null );
+      send( (short) 18, processVariable.nativeType, Array.getLength( toArray( processVariable.value ) ), cid, sid, null );
+   }
+
+   private void clearChannel( Header header )
+   {
+      final ServerChannel channel = channels.remove( header.parameter1 );
+      if ( channel != null )
+      {
+         channel.processVariable.subscriptions.removeIf( subscription -> subscription.channel == channel );
+      }
+      send( (short) 12, (short) 0, 0, header.parameter1, header.parameter2, null );
+   }
+
+   private void readNotify( Header header )
+   {
+      final ServerChannel channel = channels.get( header.parameter1 );
+      if ( channel != null )
+      {
+         sendValue( (short) 15, header.dataType, header.dataCount, header.parameter2, channel.processVariable.value );
+      }
+   }
+
+   private void write( Header header, ByteBuffer payloadBuffer )
+   {
+      final ServerChannel channel = channels.get( header.parameter1 );
+      if ( channel != null && header.dataType == 6 && channel.processVariable.value instanceof double[] )
+      {
+         // fast path for the waveforms used by the benchmarks
+         final double[] value = new double[ header.dataCount ];
+         payloadBuffer.asDoubleBuffer().get( value );
+         channel.processVariable.value = value;
+         postMonitors( channel.processVariable );
+      }
+      else if ( channel != null )
+      {
+         channel.processVariable.value = toNative( decode( payloadBuffer, header.dataType, header.dataCount ), channel.processVariable );
+         postMonitors( channel.processVariable );
+      }
+   }
+
+   private void writeNotify( Header header, ByteBuffer payloadBuffer )
+   {
+      write( header, payloadBuffer );
+      send( (short) 19, header.dataType, header.dataCount, ECA_NORMAL, header.parameter2, null );
+   }
+
+   private void eventAdd( Header header )
+   {
+      final ServerChannel channel = channels.get( header.parameter1 );
+      if ( channel != null )
+      {
+         final Subscription subscription = new Subscription( channel, header.dataType, header.dataCount, header.parameter2 );
+         channel.processVariable.subscriptions.add( subscription );
+         sendValue( (short) 1, subscription.dataType, subscription.dataCount, subscription.ioid, channel.processVariable.value );
+      }
+   }
+
+   private void eventCancel( Header header )
+   {
+      final ServerChannel channel = channels.get( header.parameter1 );
+      if ( channel != null )
+      {
+         channel.processVariable.subscriptions.removeIf( subscription -> subscription.ioid == header.parameter2 );
+      }
+      send( (short) 1, header.dataType, header.dataCount, ECA_NORMAL, header.parameter2, null );
+   }
+
+   private void postMonitors( ProcessVariable processVariable )
+   {
+      final Object value = processVariable.value;
+      for ( Subscription subscription : processVariable.subscriptions )
+      {
+         sendValue( (short) 1, subscription.dataType, subscription.dataCount, subscription.ioid, value );
+      }
+   }
+
+   private void sendValue( short command, short dataType, int dataCount, int ioid, Object value )
+   {
+      transport.inject( createValueMessage( command, dataType, dataCount, ioid, value ) );
+   }
+
+   private static ByteBuffer createValueMessage( short command, short dataType, int dataCount, int ioid, Object value )
+   {
+      if ( dataType < 0 || dataType >= DBR_GR_STRING )
+      {
+         return createMessage( command, dataType, dataCount, ECA_BADTYPE, ioid, null );
+      }
+
+      final Object array = toArray( value );
+      final int count = ( dataCount == 0 ) ? Array.getLength( array ) : dataCount;
+      final int valueType = dataType % DBR_STS_STRING;
+
+      final int prefixSize;
+      if ( dataType >= DBR_TIME_STRING )
+      {
+         prefixSize = 12 + TIME_PADDING[ valueType ];
+      }
+      else if ( dataType >= DBR_STS_STRING )
+      {
+         prefixSize = 4 + STS_PADDING[ valueType ];
+      }
+      else
+      {
+         prefixSize = 0;
+      }
+
+      final int valueSize = ( valueType == 0 && count == 1 ) ? String.valueOf( Array.get( array, 0 ) ).length() + 1 : ELEMENT_SIZE[ valueType ] * count;
+      final ByteBuffer payload = ByteBuffer.allocate( prefixSize + valueSize );
+      if ( dataType >= DBR_STS_STRING )
+      {
+         // alarm status and severity
+         payload.putShort( (short) 0 );
+         payload.putShort( (short) 0 );
+      }
+      if ( dataType >= DBR_TIME_STRING )
+      {
+         final long now = System.currentTimeMillis();
+         payload.putInt( (int) ( now / 1000 - EPICS_EPOCH_SECONDS ) );
+         payload.putInt( (int) ( now % 1000 ) * 1_000_000 );
+      }
+      payload.position( prefixSize );
+      encode( payload, array, valueType, count );
+      payload.flip();
+
+      return createMessage( command, dataType, count, ECA_NORMAL, ioid, payload );
+   }
+
+   private static ByteBuffer createMessage( short command, short dataType, int dataCount, int parameter1, int parameter2, ByteBuffer payload )
+   {
+      final int payloadSize = ( payload == null ) ? 0 : Messages.calculateAlignedSize( 8, payload.remaining() );
+      final boolean extended = payloadSize >= 0xFFFF || dataCount >= 0xFFFF;
+      final ByteBuffer message = ByteBuffer.allocate( ( extended ? Constants.CA_EXTENDED_MESSAGE_HEADER_SIZE : Constants.CA_MESSAGE_HEADER_SIZE ) + payloadSize );
+
+      message.putShort( command );
+      if ( extended )
+      {
+         message.putShort( (short) 0xFFFF );
+         message.putShort( dataType );
+         message.putShort( (short) 0 );
+         message.putInt( parameter1 );
+         message.putInt( parameter2 );
+         message.putInt( payloadSize );
+         message.putInt( dataCount );
+      }
+      else
+      {
+         message.putShort( (short) payloadSize );
+         message.putShort( dataType );
+         message.putShort( (short) dataCount );
+         message.putInt( parameter1 );
+         message.putInt( parameter2 );
+      }
+
+      if ( payload != null )
+      {
+         message.put( payload );
+      }
+      message.position( message.capacity() );
+      message.flip();
+      return message;
+   }
+
+   private static void encode( ByteBuffer buffer, Object array, int valueType, int count )
+   {
+      final int length = Array.getLength( array );
+
+      // fast path for the waveforms used by the benchmarks
+      if ( valueType == 6 && array instanceof double[] && count <= length )
+      {
+         buffer.asDoubleBuffer().put( (double[]) array, 0, count );
+         buffer.position( buffer.position() + 8 * count );
+         return;
+      }
+
+      for ( int i = 0; i < count; i++ )
+      {
+         // requests for more than the native element count are padded with zeros
+         final Object element = convert( ( i < length ) ? Array.get( array, i ) : 0, valueType );
+         switch ( valueType )
+         {
+            case 0:
+               final byte[] bytes = ((String) element).getBytes();
+               if ( count == 1 )
+               {
+                  buffer.put( bytes ).put( (byte) 0 );
+               }
+               else
+               {
+                  final int start = buffer.position();
+                  buffer.put( bytes, 0, Math.min( bytes.length, Constants.MAX_STRING_SIZE - 1 ) );
+                  buffer.position( start + Constants.MAX_STRING_SIZE );
+               }
+               break;
+
+            case 1:
+            case 3:
+               buffer.putShort( (Short) element );
+               break;
+
+            case 2:
+               buffer.putFloat( (Float) element );
+               break;
+
+            case 4:
+               buffer.put( (Byte) element );
+               break;
+
+            case 5:
+               buffer.putInt( (Integer) element );
+               break;
+
+            default:
+               buffer.putDouble( (Double) element );
+               break;
+         }
+      }
+   }
+
+   private static Object[] decode( ByteBuffer buffer, short dataType, int count )
+   {
+      final Object[] elements = new Object[ count ];
+      for ( int i = 0; i < count; i++ )
+      {
+         switch ( dataType )
+         {
+            case 0:
+               final int start = buffer.position();
+               final int size = ( count == 1 ) ? buffer.remaining() : Constants.MAX_STRING_SIZE;
+               elements[ i ] = readString( buffer, size );
+               buffer.position( start + size );
+               break;
+
+            case 1:
+            case 3:
+               elements[ i ] = buffer.getShort();
+               break;
+
+            case 2:
+               elements[ i ] = buffer.getFloat();
+               break;
+
+            case 4:
+               elements[ i ] = buffer.get();
+               break;
+
+            case 5:
+               elements[ i ] = buffer.getInt();
+               break;
+
+            case 6:
+               elements[ i ] = buffer.getDouble();
+               break;
+
+            default:
+               throw new IllegalArgumentException( "unsupported data type for put: " + dataType );
+         }
+      }
+      return elements;
+   }
+
+   private static String readString( ByteBuffer buffer, int maximumSize )
+   {
+      final int start = buffer.position();
+      int end = start;
+      while ( end < start + maximumSize && buffer.get( end ) != 0 )
+      {
+         end++;
+      }
+      final byte[] bytes = new byte[ end - start ];
+      buffer.get( bytes );
+      return new String( bytes );
+   }
+
+   private static Object toArray( Object value )
+   {
+      return value.getClass().isArray() ? value : new Object[] { value };
+   }
+
+   private static Object toNative( Object value, ProcessVariable processVariable )
+   {
+      if ( value.getClass() == processVariable.value.getClass() )
+      {
+         // copy arrays, which the caller may go on to modify
+         return value.getClass().isArray() ? copyArray( value ) : value;
+      }
+
+      final Object source = toArray( value );
+      if ( !processVariable.value.getClass().isArray() )
+      {
+         return convert( Array.get( source, 0 ), processVariable.nativeType );
+      }
+
+      final int length = Array.getLength( source );
+      final Object array = Array.newInstance( processVariable.value.getClass().getComponentType(), length );
+      for ( int i = 0; i < length; i++ )
+      {
+         Array.set( array, i, convert( Array.get( source, i ), processVariable.nativeType ) );
+      }
+      return array;
+   }
+
+   private static Object copyArray( Object array )
+   {
+      final int length = Array.getLength( array );
+      final Object copy = Array.newInstance( array.getClass().getComponentType(), length );
+      System.arraycopy( array, 0, copy, 0, length );
+      return copy;
+   }
+
+   private static Object convert( Object element, int valueType )
+   {
+      if ( valueType == 0 )
+      {
+         return String.valueOf( element );
+      }
+
+      final Number number = ( element instanceof Number ) ? (Number) element : Double.valueOf( element.toString() );
+      switch ( valueType )
+      {
+         case 1:
+         case 3:
+            return number.shortValue();
+
+         case 2:
+            return number.floatValue();
+
+         case 4:
+            return number.byteValue();
+
+         case 5:
+            return number.intValue();
+
+         default:
+            return number.doubleValue();
+      }
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+   private static final class ProcessVariable
+   {
+      private final short nativeType;
+      private volatile Object value;
+      private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+      private ProcessVariable( short nativeType, Object value )
+      {
+         this.nativeType = nativeType;
+         this.value = value;
+      }
+   }
+
+   private static final class ServerChannel
+   {
+      private final ProcessVariable processVariable;
+
+      private ServerChannel( ProcessVariable processVariable )
+      {
+         this.processVariable = processVariable;
+      }
+   }
+
+   private static final class Subscription
+   {
+      private final ServerChannel channel;
+      private final short dataType;
+      private final int dataCount;
+      private final int ioid;
+
+      private Subscription( ServerChannel channel, short dataType, int dataCount, int ioid )
+      {
+         this.channel = channel;
+         this.dataType = dataType;
+         this.dataCount = dataCount;
+         this.ioid = ioid;
+      }
+   }
+
+}
@@ -0,0 +1,682 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.lang3.Validate;
+import org.epics.ca.Constants;
+import org.epics.ca.impl.monitor.latency.MonitorLatencyHistogram;
+import org.epics.ca.util.logging.LibraryLogManager;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * A virtual circuit which exchanges CA frames with an in-process request handler
+ * instead of a socket.
+ *
+ * The transport registers itself in the context's transport registry under the
+ * given server address, so every channel whose search response names that address
+ * is connected through it. Frames flushed by the client are passed to the request
+ * handler; frames injected by the request handler are delivered to the client's
+ * response handlers. Both directions are carried by a single "link" thread, in the
+ * same way as a single reactor thread serves a TCP circuit, and can optionally be
+ * shaped with a one-way latency and a bandwidth limit. As over TCP, the client
+ * flushes once after processing each delivery, and the replies of the request
+ * handler to a delivery are sent together, once it has handled all the requests.
+ *
+ * Unlike a TCP circuit, the transport stays open and registered when the last
+ * channel releases it; it is closed by calling {@link #close()}.
+ */
+@ThreadSafe
+public class InMemoryTransport implements CircuitTransport, AutoCloseable
+{
+
+/*- Public attributes --------------------------------------------------------*/
+
+   /**
+    * Interface defining the handler of the frames sent by the client.
+    */
+   public interface RequestHandler
+   {
+
+      /**
+       * Handle request.
+       *
+       * @param transport     the transport on which the request was sent.
+       * @param header        CA message header.
+       * @param payloadBuffer payload buffer, positioned at the start of the payload.
+       */
+      void handleRequest( InMemoryTransport transport, Header header, ByteBuffer payloadBuffer );
+
+   }
+
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final Logger logger = LibraryLogManager.getLogger( InMemoryTransport.class );
+
+   private static final int INITIAL_SEND_BUFFER_SIZE = 64000;
+
+   private final ContextImpl context;
+   private final InetSocketAddress remoteAddress;
+   private final short minorRevision;
+   private final int priority;
+   private final int circuitKey;
+   private final RequestHandler requestHandler;
+   private final ResponseHandlers.ResponseHandler responseHandler;
+
+   private final ScheduledExecutorService linkExecutor;
+   private final Link uplink = new Link();
+   private final Link downlink = new Link();
+   private volatile long latencyNanos;
+   private volatile long bytesPerSecond;
+
+   private final ReentrantLock sendBufferLock = new ReentrantLock();
+   private ByteBuffer sendBuffer = ByteBuffer.allocate( INITIAL_SEND_BUFFER_SIZE );
+   private int lastSendBufferPosition;
+
+   private final Set<TransportClient> owners = new HashSet<>();
+   private final AtomicBoolean closed = new AtomicBoolean();
+
+   private volatile long receiveTimestamp;
+   private final CircuitHealth health;
+   private final AtomicLong framesSent = new AtomicLong();
+   private final AtomicLong bytesSent = new AtomicLong();
+   private final AtomicLong framesReceived = new AtomicLong();
+   private final AtomicLong bytesReceived = new AtomicLong();
+
+   private volatile boolean captureEnabled;
+   private final List<ByteBuffer> capturedFrames = new ArrayList<>();
+
+   // set while the link thread delivers frames to the server, which replies into the pending buffer
+   private volatile Thread serverDeliveryThread;
+   private ByteBuffer pendingReplies;
+
+   // set while the link thread processes a run of create channel responses, as a TCP circuit does
+   private boolean createChannelResponseRun;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+
+   /**
+    * Creates a transport which delivers the server's frames to the standard
+    * response handlers, and registers it in the context's transport registry.
+    *
+    * @param context the context whose channels will use the transport.
+    * @param remoteAddress the address of the simulated server.
+    * @param priority the priority of the channels which will use the transport.
+    * @param requestHandler the handler of the frames sent by the client.
+    */
+   public InMemoryTransport( ContextImpl context, InetSocketAddress remoteAddress, int priority, RequestHandler requestHandler )
+   {
+      this( context, remoteAddress, Constants.CA_MINOR_PROTOCOL_REVISION, priority, requestHandler, ResponseHandlers::handleResponse );
+   }
+
+   /**
+    * Creates a transport and registers it in the context's transport registry.
+    *
+    * @param context the context whose channels will use the transport.
+    * @param remoteAddress the address of the simulated server.
+    * @param minorRevision the protocol minor revision of the simulated server.
+    * @param priority the priority of the channels which will use the transport.
+    * @param requestHandler the handler of the frames sent by the client.
+    * @param responseHandler the handler of the frames sent by the server.
+    */
+   public InMemoryTransport( ContextImpl context, InetSocketAddress remoteAddress, short minorRevision, int priority,
+                             RequestHandler requestHandler, ResponseHandlers.ResponseHandler responseHandler )
+   {
+      this( context, remoteAddress, minorRevision, priority, 0, requestHandler, responseHandler );
+   }
+
+   /**
+    * Creates a transport simulating one of several circuits of the same priority to
+    * the server, and registers it in the context's transport registry.
+    *
+    * @param context the context whose channels will use the transport.
+    * @param remoteAddress the address of the simulated server.
+    * @param minorRevision the protocol minor revision of the simulated server.
+    * @param priority the priority of the channels which will use the transport.
+    * @param circuitIndex the index of the circuit among the circuits of the same priority to the server.
+    * @param requestHandler the handler of the frames sent by the client.
+    * @param responseHandler the handler of the frames sent by the server.
+    */
+   public InMemoryTransport( ContextImpl context, InetSocketAddress remoteAddress, short minorRevision, int priority, int circuitIndex,
+                             RequestHandler requestHandler, ResponseHandlers.ResponseHandler responseHandler )
+   {
+      this.context = Validate.notNull( context );
+      this.remoteAddress = Validate.notNull( remoteAddress );
+      this.minorRevision = minorRevision;
+      this.priority = priority;
+      this.circuitKey = TransportRegistry.getCircuitKey( priority, circuitIndex );
+      this.requestHandler = Validate.notNull( requestHandler );
+      this.responseHandler = Validate.notNull( responseHandler );
+
+      final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor( 1, runnable -> {
+         final Thread thread = new Thread( runnable, "InMemoryTransport-" + remoteAddress );
+         thread.setDaemon( true );
+         return thread;
+      } );
+      executor.setExecuteExistingDelayedTasksAfterShutdownPolicy( false );
+      linkExecutor = executor;
+      health = new CircuitHealth( remoteAddress, minorRevision, this::sendEcho, new MonitorLatencyHistogram() );
+
+      context.getTransportRegistry().put( remoteAddress, circuitKey, this );
+   }
+
+/*- Public methods -----------------------------------------------------------*/
+
+   /**
+    * Sets the one-way latency added to every frame, in both directions. Frames
+    * are never reordered: a frame is not delivered before the frames which were
+    * sent before it in the same direction.
+    *
+    * @param latency the latency, zero for none.
+    * @param unit the unit of the latency.
+    */
+   public void setLatency( long latency, TimeUnit unit )
+   {
+      Validate.isTrue( latency >= 0, "latency must not be negative" );
+      latencyNanos = unit.toNanos( latency );
+   }
+
+   /**
+    * Sets the bandwidth of the link, in both directions. Each frame occupies the
+    * link for the time taken to transmit it; later frames queue behind it.
+    *
+    * @param bytesPerSecond the bandwidth, zero for unlimited.
+    */
+   public void setBandwidth( long bytesPerSecond )
+   {
+      Validate.isTrue( bytesPerSecond >= 0, "bandwidth must not be negative" );
+      this.bytesPerSecond = bytesPerSecond;
+   }
+
+   /**
+    * Enables or disables the capture of the frames sent by the client.
+    *
+    * @param captureEnabled whether to capture.
+    */
+   public void setCaptureEnabled( boolean captureEnabled )
+   {
+      this.captureEnabled = captureEnabled;
+   }
+
+   /**
+    * Returns and clears the frames sent by the client since capture was enabled,
+    * one buffer per CA message, each including its header.
+    *
+    * @return the frames, in the order in which they were sent.
+    */
+   public List<ByteBuffer> drainCapturedFrames()
+   {
+      synchronized ( capturedFrames )
+      {
+         final List<ByteBuffer> frames = new ArrayList<>( capturedFrames );
+         capturedFrames.clear();
+         return frames;
+      }
+   }
+
+   /**
+    * Sends frames to the client. The buffer is copied, so it may be reused by the
+    * caller.
+    *
+    * @param frames one or more complete CA messages, between the buffer's position and limit.
+    */
+   public void inject( ByteBuffer frames )
+   {
+      if ( closed.get() )
+      {
+         return;
+      }
+
+      if ( Thread.currentThread() == serverDeliveryThread )
+      {
+         if ( pendingReplies == null )
+         {
+            pendingReplies = ByteBuffer.allocate( Math.max( INITIAL_SEND_BUFFER_SIZE, frames.remaining() ) );
+         }
+         else if ( pendingReplies.remaining() < frames.remaining() )
+         {
+            final ByteBuffer largerBuffer = ByteBuffer.allocate( Math.max( 2 * pendingReplies.capacity(), pendingReplies.position() + frames.remaining() ) );
+            pendingReplies.flip();
+            largerBuffer.put( pendingReplies );
+            pendingReplies = largerBuffer;
+         }
+         pendingReplies.put( frames.duplicate() );
+         return;
+      }
+
+      final ByteBuffer copy = ByteBuffer.allocate( frames.remaining() );
+      copy.put( frames.duplicate() ).flip();
+      downlink.transmit( copy, this::deliverToClient );
+   }
+
+   /**
+    * Waits until the link is idle, that is until every frame sent by the client
+    * or injected by the server has been delivered, including the frames sent in
+    * reaction to them. Must not be called from the request handler.
+    *
+    * @param timeout the maximum time to wait.
+    * @param unit the unit of the timeout.
+    * @return whether the link became idle in time.
+    */
+   public boolean awaitIdle( long timeout, TimeUnit unit )
+   {
+      final long deadline = System.nanoTime() + unit.toNanos( timeout );
+      try
+      {
+         // frames sent in reaction to a delivery are transmitted before the delivery completes
+         while ( !( uplink.isIdle() && downlink.isIdle() && uplink.isIdle() ) )
+         {
+            if ( System.nanoTime() > deadline )
+            {
+               return false;
+            }
+            Thread.sleep( 1 );
+         }
+         return true;
+      }
+      catch ( InterruptedException ex )
+      {
+         Thread.currentThread().interrupt();
+         return false;
+      }
+   }
+
+   public long getFramesSent()
+   {
+      return framesSent.get();
+   }
+
+   /**
+    * Returns the number of times the client has flushed frames to the server.
+    *
+    * @return the count.
+    */
+   public long getFlushCount()
+   {
+      return uplink.transmitted.get();
+   }
+
+   public long getBytesSent()
+   {
+      return bytesSent.get();
+   }
+
+   public long getFramesReceived()
+   {
+      return framesReceived.get();
+   }
+
+   public long getBytesReceived()
+   {
+      return bytesReceived.get();
+   }
+
+   public boolean isClosed()
+   {
+      return closed.get();
+   }
+
+   /**
+    * Closes the transport, as if the server had closed the connection: the
+    * transport is removed from the registry and its channels are disconnected.
+    */
+   @Override
+   public void close()
+   {
+      if ( closed.getAndSet( true ) )
+      {
+         return;
+      }
+
+      context.getTransportRegistry().remove( remoteAddress, circuitKey );
+
+      final TransportClient[] clients;
+      synchronized ( owners )
+      {
+         clients = owners.toArray( new TransportClient[ 0 ] );
+         owners.clear();
+      }
+      for ( TransportClient client : clients )
+      {
+         try
+         {
+            client.transportClosed();
+         }
+         catch ( Throwable th )
+         {
+            logger.log( Level.SEVERE, "Unexpected exception caught while calling TransportClient.transportClosed().", th );
+         }
+      }
+
+      linkExecutor.shutdownNow();
+      try
+      {
+         if ( !linkExecutor.awaitTermination( 1, TimeUnit.SECONDS ) )
+         {
+            logger.warning( "The link thread of the in-memory transport to " + remoteAddress + " did not terminate." );
+         }
+      }
+      catch ( InterruptedException ex )
+      {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+/*- CircuitTransport ---------------------------------------------------------*/
+
+   @Override
+   public boolean acquire( TransportClient client )
+   {
+      synchronized ( owners )
+      {
+         if ( closed.get() )
+         {
+            return false;
+         }
+         owners.add( client );
+      }
+      return true;
+   }
+
+   @Override
+   public void release( TransportClient client )
+   {
+      synchronized ( owners )
+      {
+         owners.remove( client );
+      }
+   }
+
+   @Override
+   public InetSocketAddress getRemoteAddress()
+   {
+      return remoteAddress;
+   }
+
+   @Override
+   public ContextImpl getContext()
+   {
+      return context;
+   }
+
+   @Override
+   public short getMinorRevision()
+   {
+      return minorRevision;
+   }
+
+   @Override
+   public long getReceiveTimestamp()
+   {
+      return receiveTimestamp;
+   }
+
+   @Override
+   public int getPriority()
+   {
+      return priority;
+   }
+
+   @Override
+   public CircuitHealth getHealth()
+   {
+      return health;
+   }
+
+   @Override
+   public ByteBuffer acquireSendBuffer( int requiredSize )
+   {
+      if ( closed.get() )
+      {
+         throw new RuntimeException( "transport closed" );
+      }
+
+      sendBufferLock.lock();
+      if ( sendBuffer.remaining() < requiredSize )
+      {
+         final ByteBuffer largerBuffer = ByteBuffer.allocate( Math.max( 2 * sendBuffer.capacity(), sendBuffer.position() + requiredSize ) );
+         sendBuffer.flip();
+         largerBuffer.put( sendBuffer );
+         sendBuffer = largerBuffer;
+      }
+      lastSendBufferPosition = sendBuffer.position();
+      return sendBuffer;
+   }
+
+   @Override
+   public void releaseSendBuffer( boolean ignore, boolean flush )
+   {
+      try
+      {
+         if ( ignore )
+         {
+            sendBuffer.position( lastSendBufferPosition );
+         }
+         else if ( flush )
+         {
+            flush();
+         }
+      }
+      finally
+      {
+         sendBufferLock.unlock();
+      }
+   }
+
+   @Override
+   public void flush()
+   {
+      final ByteBuffer frames;
+      sendBufferLock.lock();
+      try
+      {
+         if ( sendBuffer.position() == 0 )
+         {
+            return;
+         }
+         sendBuffer.flip();
+         frames = ByteBuffer.allocate( sendBuffer.remaining() );
+         frames.put( sendBuffer ).flip();
+         sendBuffer.clear();
+      }
+      finally
+      {
+         sendBufferLock.unlock();
+      }
+
+      if ( !closed.get() )
+      {
+         uplink.transmit( frames, this::deliverToServer );
+      }
+   }
+
+/*- Package-level methods ----------------------------------------------------*/
+/*- Private methods ----------------------------------------------------------*/
+
+   private void deliverToServer( ByteBuffer frames )
+   {
+      serverDeliveryThread = Thread.currentThread();
+      try
+      {
+         handleRequests( frames );
+      }
+      finally
+      {
+         serverDeliveryThread = null;
+         if ( pendingReplies != null )
+         {
+            pendingReplies.flip();
+            inject( pendingReplies );
+            pendingReplies = null;
+         }
+      }
+   }
+
+   private void handleRequests( ByteBuffer frames )
+   {
+      final Header header = new Header();
+      while ( frames.remaining() >= Constants.CA_MESSAGE_HEADER_SIZE )
+      {
+         final int frameStart = frames.position();
+         header.read( frames );
+         final int payloadStart = frames.position();
+         final int frameEnd = payloadStart + header.payloadSize;
+
+         framesSent.incrementAndGet();
+         bytesSent.addAndGet( frameEnd - frameStart );
+
+         if ( captureEnabled )
+         {
+            final ByteBuffer frame = frames.duplicate();
+            frame.position( frameStart ).limit( frameEnd );
+            synchronized ( capturedFrames )
+            {
+               capturedFrames.add( ByteBuffer.allocate( frame.remaining() ).put( frame ) );
+            }
+         }
+
+         final ByteBuffer payload = frames.duplicate();
+         payload.limit( frameEnd );
+         try
+         {
+            requestHandler.handleRequest( this, header, payload );
+         }
+         catch ( Throwable th )
+         {
+            logger.log( Level.WARNING, "Unexpected exception caught while handling request (command = " + header.command + ").", th );
+         }
+         frames.position( frameEnd );
+      }
+   }
+
+   private boolean sendEcho()
+   {
+      if ( closed.get() )
+      {
+         return false;
+      }
+      Messages.generateEchoMessage( this, acquireSendBuffer( Constants.CA_MESSAGE_HEADER_SIZE ) );
+      releaseSendBuffer( false, true );
+      return true;
+   }
+
+   private void deliverToClient( ByteBuffer frames )
+   {
+      receiveTimestamp = System.nanoTime();
+      health.dataReceived( receiveTimestamp );
+
+      try
+      {
+         handleResponses( frames );
+      }
+      finally
+      {
+         createChannelResponseRun = FlushBatch.followResponses( createChannelResponseRun, -1 );
+      }
+   }
+
+   private void handleResponses( ByteBuffer frames )
+   {
+      final Header header = new Header();
+      while ( frames.remaining() >= Constants.CA_MESSAGE_HEADER_SIZE )
+      {
+         final int frameStart = frames.position();
+         header.read( frames );
+         final int frameEnd = frames.position() + header.payloadSize;
+
+         framesReceived.incrementAndGet();
+         bytesReceived.addAndGet( frameEnd - frameStart );
+
+         final ByteBuffer payload = frames.duplicate();
+         payload.limit( frameEnd );
+         createChannelResponseRun = FlushBatch.followResponses( createChannelResponseRun, header.command );
+         try
+         {
+            responseHandler.handleResponse( remoteAddress, this, header, payload );
+         }
+         catch ( Throwable th )
+         {
+            logger.log( Level.WARNING, "Unexpected exception caught while handling response (command = " + header.command + ").", th );
+         }
+         frames.position( frameEnd );
+      }
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+   /**
+    * One direction of the link. Frames are delivered in the order in which they
+    * are transmitted, after the configured latency and after the frames ahead of
+    * them have been clocked out at the configured bandwidth.
+    */
+   private final class Link
+   {
+      private boolean shaped;
+      private long busyUntil;
+      private long lastDeliveryTime;
+      private final AtomicLong transmitted = new AtomicLong();
+      private final AtomicLong delivered = new AtomicLong();
+
+      void transmit( ByteBuffer frames, Consumer<ByteBuffer> delivery )
+      {
+         final Runnable task = () -> {
+            try
+            {
+               delivery.accept( frames );
+            }
+            finally
+            {
+               delivered.incrementAndGet();
+            }
+         };
+
+         final long latency = latencyNanos;
+         final long bandwidth = bytesPerSecond;
+         synchronized ( this )
+         {
+            transmitted.incrementAndGet();
+
+            // once frames have been scheduled, later frames must not overtake them
+            shaped |= ( latency != 0 ) || ( bandwidth != 0 );
+            if ( !shaped )
+            {
+               linkExecutor.execute( task );
+               return;
+            }
+
+            final long now = System.nanoTime();
+            final long start = Math.max( now, busyUntil );
+            busyUntil = ( bandwidth == 0 ) ? start : start + frames.remaining() * TimeUnit.SECONDS.toNanos( 1 ) / bandwidth;
+            lastDeliveryTime = Math.max( busyUntil + latency, lastDeliveryTime );
+            linkExecutor.schedule( task, lastDeliveryTime - now, TimeUnit.NANOSECONDS );
+         }
+      }
+
+      boolean isIdle()
+      {
+         return delivered.get() == transmitted.get();
+      }
+   }
+
+}
@@ -0,0 +1,203 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.epics.ca.Channel;
+import org.epics.ca.ConnectionState;
+import org.epics.ca.Constants;
+import org.epics.ca.Monitor;
+import org.epics.ca.Status;
+import org.epics.ca.ThreadWatcher;
+import org.epics.ca.data.Timestamped;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+class InMemoryTransportTest
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private ThreadWatcher threadWatcher;
+   private ContextImpl context;
+   private InMemoryCaServer server;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @BeforeEach
+   void beforeEach()
+   {
+      threadWatcher = ThreadWatcher.start();
+
+      // keep the searches, which no server will answer, off the network
+      final Properties properties = new Properties();
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_ADDR_LIST.toString(), "127.0.0.1" );
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_AUTO_ADDR_LIST.toString(), "NO" );
+      context = new ContextImpl( new ProtocolConfiguration( properties ) );
+
+      server = new InMemoryCaServer( context );
+      server.addProcessVariable( "test:double", 1.5 );
+      server.addProcessVariable( "test:int", 42 );
+      server.addProcessVariable( "test:string", "hello" );
+      server.addProcessVariable( "test:waveform", new double[] { 1.0, 2.0, 3.0 } );
+   }
+
+   @AfterEach
+   void afterEach()
+   {
+      server.close();
+      context.close();
+      threadWatcher.verify();
+   }
+
+   @Test
+   void testGet_plainTypes() throws Exception
+   {
+      assertThat( connect( "test:double", Double.class ).get(), is( 1.5 ) );
+      assertThat( connect( "test:string", String.class ).get(), is( "hello" ) );
+      assertThat( connect( "test:waveform", double[].class ).get(), is( new double[] { 1.0, 2.0, 3.0 } ) );
+
+      // the server converts the native type to the requested one
+      assertThat( connect( "test:int", Double.class ).get(), is( 42.0 ) );
+   }
+
+   @Test
+   void testGet_timestamped() throws Exception
+   {
+      final Channel<Double> channel = connect( "test:double", Double.class );
+      final Timestamped<Double> timestamped = channel.get( Timestamped.class );
+      assertThat( timestamped.getValue(), is( 1.5 ) );
+      assertThat( (double) timestamped.getSeconds(), closeTo( System.currentTimeMillis() / 1000.0, 10.0 ) );
+   }
+
+   @Test
+   void testPut_updatesServerAndMonitors() throws Exception
+   {
+      final Channel<Integer> channel = connect( "test:int", Integer.class );
+      final BlockingQueue<Integer> values = new LinkedBlockingQueue<>();
+      final Monitor<Integer> monitor = channel.addValueMonitor( values::add );
+      assertThat( values.poll( 5, TimeUnit.SECONDS ), is( 42 ) );
+
+      assertThat( channel.putAsync( 7 ).get( 5, TimeUnit.SECONDS ), is( Status.NORMAL ) );
+      assertThat( server.getValue( "test:int" ), is( 7 ) );
+      assertThat( values.poll( 5, TimeUnit.SECONDS ), is( 7 ) );
+
+      server.post( "test:int", 8 );
+      assertThat( values.poll( 5, TimeUnit.SECONDS ), is( 8 ) );
+
+      monitor.close();
+      assertThat( server.getTransport().awaitIdle( 5, TimeUnit.SECONDS ), is( true ) );
+      assertThat( server.getRequestCount( 2 ), is( 1L ) );
+   }
+
+   @Test
+   void testCapture_recordsFramesSentByClient() throws Exception
+   {
+      server.getTransport().setCaptureEnabled( true );
+      connect( "test:double", Double.class ).get();
+
+      final List<Short> commands = server.getTransport().drainCapturedFrames().stream()
+            .map( frame -> frame.getShort( 0 ) )
+            .collect( Collectors.toList() );
+
+      // create channel and read notify
+      assertThat( commands, contains( (short) 18, (short) 15 ) );
+      assertThat( server.getTransport().drainCapturedFrames(), empty() );
+   }
+
+   @Test
+   void testScriptedHandler_replacesDefaultHandling() throws Exception
+   {
+      final Channel<Double> channel = connect( "test:double", Double.class );
+      server.setRequestHandler( 15, ( transport, header, payload ) -> {} );
+
+      final CompletableFuture<Double> future = channel.getAsync();
+      assertThat( server.getTransport().awaitIdle( 5, TimeUnit.SECONDS ), is( true ) );
+      assertThat( future.isDone(), is( false ) );
+
+      server.setRequestHandler( 15, null );
+      assertThat( channel.getAsync().get( 5, TimeUnit.SECONDS ), is( 1.5 ) );
+   }
+
+   @Test
+   void testLatency_delaysRoundTrip() throws Exception
+   {
+      final Channel<Double> channel = connect( "test:double", Double.class );
+      server.getTransport().setLatency( 50, TimeUnit.MILLISECONDS );
+
+      final long start = System.nanoTime();
+      assertThat( channel.getAsync().get( 5, TimeUnit.SECONDS ), is( 1.5 ) );
+      assertThat( TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ), greaterThanOrEqualTo( 100L ) );
+   }
+
+   @Test
+   void testBandwidth_delaysLargeTransfer() throws Exception
+   {
+      server.post( "test:waveform", new double[ 10_000 ] );
+      final Channel<double[]> channel = connect( "test:waveform", double[].class );
+      server.getTransport().setBandwidth( 400_000 );
+
+      // 80000 bytes at 400000 bytes/s
+      final long start = System.nanoTime();
+      assertThat( channel.getAsync().get( 5, TimeUnit.SECONDS ).length, is( 10_000 ) );
+      assertThat( TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ), greaterThanOrEqualTo( 200L ) );
+   }
+
+   @Test
+   void testClose_disconnectsChannels() throws Exception
+   {
+      final Channel<Double> channel = connect( "test:double", Double.class );
+      server.close();
+      assertThat( channel.getConnectionState(), is( ConnectionState.DISCONNECTED ) );
+      assertThat( context.getTransportRegistry().numberOfActiveTransports(), is( 0 ) );
+   }
+
+   @Test
+   void testInject_deliversFramesToResponseHandlers() throws Exception
+   {
+      connect( "test:double", Double.class );
+      final long echoes = context.getMessageCounters()[ 23 ].sum();
+
+      final ByteBuffer frames = ByteBuffer.allocate( 2 * Constants.CA_MESSAGE_HEADER_SIZE );
+      frames.putShort( 0, (short) 23 );
+      frames.putShort( Constants.CA_MESSAGE_HEADER_SIZE, (short) 23 );
+      server.getTransport().inject( frames );
+
+      assertThat( server.getTransport().awaitIdle( 5, TimeUnit.SECONDS ), is( true ) );
+      assertThat( context.getMessageCounters()[ 23 ].sum(), is( echoes + 2 ) );
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   private <T> Channel<T> connect( String name, Class<T> type ) throws Exception
+   {
+      final Channel<T> channel = context.createChannel( name, type, Constants.CHANNEL_PRIORITY_DEFAULT );
+      final CompletableFuture<Channel<T>> connected = channel.connectAsync();
+      server.connect( channel );
+      return connected.get( 5, TimeUnit.SECONDS );
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
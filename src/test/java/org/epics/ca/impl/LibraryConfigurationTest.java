@@ -41,8 +41,20 @@ class LibraryConfigurationTest
       assertThat( ! instance.isRepeaterEnabled(), is( LibraryConfiguration.CA_REPEATER_DISABLE_DEFAULT ) );
       assertThat( instance.isRepeaterOutputCaptureEnabled(), is( LibraryConfiguration.CA_REPEATER_OUTPUT_CAPTURE_DEFAULT ) );
       assertThat( instance.getLibraryLogLevel(), is( LibraryConfiguration.CA_LIBRARY_LOG_LEVEL_DEFAULT) );
+      assertThat( instance.isTraceEnabled(), is( LibraryConfiguration.CA_LIBRARY_TRACE_ENABLE_DEFAULT ) );
+      assertThat( instance.getTraceEventsPerThread(), is( LibraryConfiguration.CA_LIBRARY_TRACE_EVENTS_PER_THREAD_DEFAULT ) );
       assertThat( instance.getRepeaterLogLevel(), is( LibraryConfiguration.CA_REPEATER_LOG_LEVEL_DEFAULT ) );
       assertThat( instance.getMonitorNotifierImplementation(), is( LibraryConfiguration.CA_MONITOR_NOTIFIER_IMPL_DEFAULT ) );
+      assertThat( instance.getEventDispatcherThreads(), is( LibraryConfiguration.CA_EVENT_DISPATCHER_THREADS_DEFAULT ) );
+      assertThat( instance.getKnownServerReconnectTimeout(), is( LibraryConfiguration.CA_KNOWN_SERVER_RECONNECT_TIMEOUT_DEFAULT ) );
+      assertThat( instance.getCircuitsPerServer(), is( LibraryConfiguration.CA_CIRCUITS_PER_SERVER_DEFAULT ) );
+      assertThat( instance.getRequestTimeout(), is( LibraryConfiguration.CA_REQUEST_TIMEOUT_DEFAULT ) );
+      assertThat( instance.isMetricsJmxEnabled(), is( LibraryConfiguration.CA_METRICS_JMX_ENABLE_DEFAULT ) );
+      assertThat( instance.getMetricsPrometheusPort(), is( LibraryConfiguration.CA_METRICS_PROMETHEUS_PORT_DEFAULT ) );
+      assertThat( instance.isMetricsPvTrafficEnabled(), is( LibraryConfiguration.CA_METRICS_PV_TRAFFIC_ENABLE_DEFAULT ) );
+      assertThat( instance.getCaptureFile(), is( LibraryConfiguration.CA_CAPTURE_FILE_DEFAULT ) );
+      assertThat( instance.getCaptureFileSize(), is( LibraryConfiguration.CA_CAPTURE_FILE_SIZE_DEFAULT ) );
+      assertThat( instance.getCaptureFileCount(), is( LibraryConfiguration.CA_CAPTURE_FILE_COUNT_DEFAULT ) );
    }
 
    @Test
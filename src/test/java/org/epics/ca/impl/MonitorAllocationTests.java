@@ -0,0 +1,341 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.epics.ca.Channel;
+import org.epics.ca.Constants;
+import org.epics.ca.Monitor;
+import org.epics.ca.ThreadWatcher;
+import org.epics.ca.data.Alarm;
+import org.epics.ca.data.Metadata;
+import org.epics.ca.data.Timestamped;
+import org.epics.ca.impl.monitor.MonitorNotificationServiceFactoryCreator;
+import org.epics.ca.util.logging.LibraryLogManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.core.Is.is;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Verifies that the number of bytes allocated on the heap to deliver each monitor
+ * update stays within budget, for each DBR type and monitor notification engine.
+ *
+ * The same encoded update is replayed directly into the response handlers from
+ * the test thread, which therefore plays the part of the transport's reactor
+ * thread; the bytes allocated by the other threads are those of the notification
+ * engine. The allocations are counted by the per-thread counters of the HotSpot
+ * ThreadMXBean after a warm-up long enough for the hot path to be compiled. The
+ * lowest of several rounds of updates is kept, so that the late compilation of
+ * a method in one round is not taken for an allocation of the monitor path.
+ * Each update is only delivered once the threads of the notification engine
+ * have parked again, since an engine which is still busy with the previous
+ * update allocates more, or less, to hand over the next one.
+ *
+ * The budgets, in bytes per update, are stored in MonitorAllocationTests-budgets.properties.
+ * They should be lowered whenever an allocation is removed from the monitor path,
+ * so that the improvement cannot be lost unnoticed.
+ */
+class MonitorAllocationTests
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final Logger logger = LibraryLogManager.getLogger( MonitorAllocationTests.class );
+
+   private static final String MONITOR_NOTIFIER_IMPL_PROPERTY = LibraryConfiguration.PropertyNames.CA_MONITOR_NOTIFIER_IMPL.toString();
+   private static final String PV_NAME = "alloc:pv";
+   private static final int WARMUP_UPDATES = 20_000;
+   private static final int MEASURED_ROUNDS = 5;
+   private static final int MEASURED_UPDATES = 10_000;
+
+   private static final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+   private static final Properties budgets = new Properties();
+
+   private ThreadWatcher threadWatcher;
+   private String previousMonitorNotifierImpl;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @BeforeAll
+   static void beforeAll() throws IOException
+   {
+      assumeTrue( threadMXBean.isThreadAllocatedMemorySupported(), "The JVM does not count the bytes allocated by each thread." );
+      threadMXBean.setThreadAllocatedMemoryEnabled( true );
+
+      try ( InputStream stream = MonitorAllocationTests.class.getResourceAsStream( MonitorAllocationTests.class.getSimpleName() + "-budgets.properties" ) )
+      {
+         assertThat( "the allocation budgets are missing", stream, notNullValue() );
+         budgets.load( stream );
+      }
+   }
+
+   @BeforeEach
+   void beforeEach()
+   {
+      threadWatcher = ThreadWatcher.start();
+      previousMonitorNotifierImpl = System.getProperty( MONITOR_NOTIFIER_IMPL_PROPERTY );
+   }
+
+   @AfterEach
+   void afterEach()
+   {
+      // the monitor notifier implementation is read from the system properties
+      if ( previousMonitorNotifierImpl == null )
+      {
+         System.clearProperty( MONITOR_NOTIFIER_IMPL_PROPERTY );
+      }
+      else
+      {
+         System.setProperty( MONITOR_NOTIFIER_IMPL_PROPERTY, previousMonitorNotifierImpl );
+      }
+      threadWatcher.verify();
+   }
+
+   @ParameterizedTest
+   @MethodSource( "getArgumentsForTestMonitorUpdate_allocationWithinBudget" )
+   <T> void testMonitorUpdate_allocationWithinBudget( String serviceImpl, String typeName, Class<T> type, Object value, Class<? extends Metadata> metadataType ) throws Exception
+   {
+      System.setProperty( MONITOR_NOTIFIER_IMPL_PROPERTY, serviceImpl );
+
+      final Properties properties = new Properties();
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_ADDR_LIST.toString(), "127.0.0.1" );
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_AUTO_ADDR_LIST.toString(), "NO" );
+
+      try ( final ContextImpl context = new ContextImpl( new ProtocolConfiguration( properties ) );
+            final InMemoryCaServer server = new InMemoryCaServer( context ) )
+      {
+         server.addProcessVariable( PV_NAME, value );
+         final Channel<T> channel = context.createChannel( PV_NAME, type, Constants.CHANNEL_PRIORITY_DEFAULT );
+         final CompletableFuture<Channel<T>> connected = channel.connectAsync();
+         server.connect( channel );
+         connected.get( 5, TimeUnit.SECONDS );
+
+         final AtomicLong notifications = new AtomicLong();
+         final Monitor<?> monitor = ( metadataType == null ) ? channel.addValueMonitor( notification -> notifications.incrementAndGet() )
+                                                             : channel.addMonitor( metadataType, notification -> notifications.incrementAndGet() );
+         awaitNotifications( notifications, 1 );
+         assertThat( server.getTransport().awaitIdle( 5, TimeUnit.SECONDS ), is( true ) );
+
+         final ByteBuffer frames = server.createMonitorUpdates( PV_NAME );
+         replay( server.getTransport(), frames, notifications, new IdleThread[ 0 ], WARMUP_UPDATES );
+
+         // the pools of some engines only start all their threads during the warm-up
+         Thread.sleep( 100 );
+         final IdleThread[] idleThreads = getIdleThreadsOtherThanCurrent();
+
+         // a compilation which completes during a round only inflates that round,
+         // whereas an allocation of the monitor path shows up in every round
+         double reactorBytesPerUpdate = Double.MAX_VALUE;
+         double notifierBytesPerUpdate = Double.MAX_VALUE;
+         double bytesPerUpdate = Double.MAX_VALUE;
+         final long threadId = Thread.currentThread().getId();
+         for ( int round = 0; round < MEASURED_ROUNDS; round++ )
+         {
+            final Map<Long,Long> othersBefore = getAllocatedBytesOfOtherThreads( threadId );
+            final long reactorBefore = threadMXBean.getThreadAllocatedBytes( threadId );
+            replay( server.getTransport(), frames, notifications, idleThreads, MEASURED_UPDATES );
+            final long reactorBytes = threadMXBean.getThreadAllocatedBytes( threadId ) - reactorBefore;
+            final Map<Long,Long> othersAfter = getAllocatedBytesOfOtherThreads( threadId );
+
+            long notifierBytes = 0;
+            for ( Map.Entry<Long,Long> entry : othersAfter.entrySet() )
+            {
+               notifierBytes += entry.getValue() - othersBefore.getOrDefault( entry.getKey(), 0L );
+            }
+
+            final double roundBytesPerUpdate = (double) ( reactorBytes + notifierBytes ) / MEASURED_UPDATES;
+            if ( roundBytesPerUpdate < bytesPerUpdate )
+            {
+               reactorBytesPerUpdate = (double) reactorBytes / MEASURED_UPDATES;
+               notifierBytesPerUpdate = (double) notifierBytes / MEASURED_UPDATES;
+               bytesPerUpdate = roundBytesPerUpdate;
+            }
+         }
+         monitor.close();
+
+         logger.info( String.format( "%s, %s: %.1f bytes per update (reactor %.1f, notifier %.1f).", serviceImpl, typeName, bytesPerUpdate, reactorBytesPerUpdate, notifierBytesPerUpdate ) );
+
+         final String key = getServiceName( serviceImpl ) + "." + typeName;
+         final String budget = budgets.getProperty( key );
+         assertThat( String.format( "there is no allocation budget '%s' (measured %.1f bytes per update)", key, bytesPerUpdate ), budget, notNullValue() );
+         assertThat( String.format( "bytes allocated per update for '%s'", key ), bytesPerUpdate, lessThanOrEqualTo( Double.parseDouble( budget ) ) );
+      }
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   private static Stream<Arguments> getArgumentsForTestMonitorUpdate_allocationWithinBudget()
+   {
+      final Arguments[] types = {
+         Arguments.of( "Double", Double.class, 1.0, null ),
+         Arguments.of( "Float", Float.class, 1.0f, null ),
+         Arguments.of( "Integer", Integer.class, 1, null ),
+         Arguments.of( "Short", Short.class, (short) 1, null ),
+         Arguments.of( "Byte", Byte.class, (byte) 1, null ),
+         Arguments.of( "String", String.class, "value", null ),
+         Arguments.of( "DoubleArray", double[].class, new double[ 1024 ], null ),
+         Arguments.of( "IntArray", int[].class, new int[ 1024 ], null ),
+         Arguments.of( "AlarmDouble", Double.class, 1.0, Alarm.class ),
+         Arguments.of( "TimestampedDouble", Double.class, 1.0, Timestamped.class ),
+      };
+
+      return MonitorNotificationServiceFactoryCreator.getAllServiceImplementations().stream()
+            .flatMap( serviceImpl -> Stream.of( types ).map( type -> {
+               final Object[] args = type.get();
+               return Arguments.of( serviceImpl, args[ 0 ], args[ 1 ], args[ 2 ], args[ 3 ] );
+            } ) );
+   }
+
+   /**
+    * Delivers the same frames repeatedly to the response handlers, waiting after
+    * each delivery for the consumer to be notified so that no update is lost or
+    * coalesced, and for the given threads to be idle again. Neither the replay
+    * nor the waits allocate.
+    */
+   private static void replay( InMemoryTransport transport, ByteBuffer frames, AtomicLong notifications, IdleThread[] idleThreads, int updates ) throws InterruptedException
+   {
+      final Header header = new Header();
+      final ByteBuffer payload = frames.duplicate();
+      for ( int i = 0; i < updates; i++ )
+      {
+         final long expected = notifications.get() + 1;
+         frames.rewind();
+         header.read( frames );
+         payload.limit( frames.position() + header.payloadSize );
+         payload.position( frames.position() );
+         ResponseHandlers.handleResponse( transport.getRemoteAddress(), transport, header, payload );
+         awaitNotifications( notifications, expected );
+         awaitIdle( idleThreads );
+      }
+   }
+
+   private static void awaitNotifications( AtomicLong notifications, long expected ) throws InterruptedException
+   {
+      final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( 5 );
+      while ( notifications.get() < expected )
+      {
+         if ( System.nanoTime() > deadline )
+         {
+            throw new InterruptedException( "Timed out waiting for notification " + expected );
+         }
+         Thread.yield();
+      }
+   }
+
+   /**
+    * Waits for each of the given threads to be parked where it was parked while
+    * the monitor was idle, giving up on a thread which stays elsewhere, since the
+    * wait only serves to make the measurements repeatable.
+    */
+   private static void awaitIdle( IdleThread[] threads )
+   {
+      for ( IdleThread idleThread : threads )
+      {
+         final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( 100 );
+         while ( ! idleThread.isIdle() && System.nanoTime() < deadline )
+         {
+            Thread.yield();
+         }
+      }
+   }
+
+   /**
+    * Returns the threads, other than the current one, which are parked while the
+    * monitor is idle. Among them are the threads of the notification engine.
+    */
+   private static IdleThread[] getIdleThreadsOtherThanCurrent()
+   {
+      return Thread.getAllStackTraces().keySet().stream()
+            .filter( thread -> thread != Thread.currentThread() && IdleThread.isParked( thread ) )
+            .map( IdleThread::new )
+            .toArray( IdleThread[]::new );
+   }
+
+   private static Map<Long,Long> getAllocatedBytesOfOtherThreads( long excludedThreadId )
+   {
+      final long[] threadIds = threadMXBean.getAllThreadIds();
+      final long[] allocatedBytes = threadMXBean.getThreadAllocatedBytes( threadIds );
+      final Map<Long,Long> result = new HashMap<>();
+      for ( int i = 0; i < threadIds.length; i++ )
+      {
+         if ( threadIds[ i ] != excludedThreadId && allocatedBytes[ i ] >= 0 )
+         {
+            result.put( threadIds[ i ], allocatedBytes[ i ] );
+         }
+      }
+      return result;
+   }
+
+   /**
+    * Returns the name of a notification engine without its configuration, for example
+    * BlockingQueueMultipleWorkerMonitorNotificationServiceImpl for
+    * BlockingQueueMultipleWorkerMonitorNotificationServiceImpl,16.
+    */
+   private static String getServiceName( String serviceImpl )
+   {
+      final int comma = serviceImpl.indexOf( ',' );
+      return ( comma < 0 ) ? serviceImpl : serviceImpl.substring( 0, comma );
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+   /**
+    * A thread together with the object on which it is parked while the monitor is
+    * idle; a worker which is parked on a lock, rather than on its queue of tasks,
+    * is not yet idle.
+    */
+   private static final class IdleThread
+   {
+      private final Thread thread;
+      private final Object blocker;
+
+      IdleThread( Thread thread )
+      {
+         this.thread = thread;
+         this.blocker = LockSupport.getBlocker( thread );
+      }
+
+      static boolean isParked( Thread thread )
+      {
+         final Thread.State state = thread.getState();
+         return ( state == Thread.State.WAITING ) || ( state == Thread.State.TIMED_WAITING );
+      }
+
+      boolean isIdle()
+      {
+         return ( isParked( thread ) && ( LockSupport.getBlocker( thread ) == blocker ) ) || ( thread.getState() == Thread.State.TERMINATED );
+      }
+   }
+
+}
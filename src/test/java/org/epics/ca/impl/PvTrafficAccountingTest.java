@@ -0,0 +1,186 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.epics.ca.Channel;
+import org.epics.ca.Constants;
+import org.epics.ca.ThreadWatcher;
+import org.epics.ca.impl.metrics.TrafficCounters;
+import org.epics.ca.impl.metrics.TrafficReport;
+import org.epics.ca.impl.requests.MonitorRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.core.Is.is;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Verifies that the channels and subscriptions count the traffic they receive
+ * when PV traffic accounting is enabled, that the PVs are ranked by update rate
+ * and by byte rate, and that nothing is counted when it is disabled.
+ */
+class PvTrafficAccountingTest
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final int WAVEFORM_LENGTH = 10_000;
+
+   private ThreadWatcher threadWatcher;
+   private ContextImpl context;
+   private InMemoryCaServer server;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @AfterEach
+   void afterEach()
+   {
+      server.close();
+      context.close();
+      threadWatcher.verify();
+   }
+
+   @Test
+   void testMonitorAndGet_trafficCounted() throws Exception
+   {
+      start( true );
+      final ChannelImpl<Double> channel = connect( "test:scalar", Double.class );
+      final MonitorRequest<Double> monitor = (MonitorRequest<Double>) channel.addValueMonitor( value -> {} );
+
+      // the initial update, then three posts
+      final TrafficCounters monitorCounters = monitor.getTrafficCounters();
+      assertThat( await( () -> monitorCounters.getUpdateCount() == 1 ), is( true ) );
+      for ( int i = 1; i <= 3; i++ )
+      {
+         server.post( "test:scalar", (double) i );
+      }
+      assertThat( await( () -> monitorCounters.getUpdateCount() == 4 ), is( true ) );
+      assertThat( monitorCounters.getByteCount(), is( 4L * ( Constants.CA_MESSAGE_HEADER_SIZE + 8 ) ) );
+      assertThat( monitorCounters.getLastUpdateMillis(), greaterThan( 0L ) );
+
+      assertThat( channel.getAsync().get( 5, TimeUnit.SECONDS ), is( 3.0 ) );
+      final TrafficCounters channelCounters = channel.getTrafficCounters();
+      assertThat( channelCounters.getUpdateCount(), is( 5L ) );
+      assertThat( channelCounters.getByteCount(), is( 5L * ( Constants.CA_MESSAGE_HEADER_SIZE + 8 ) ) );
+      assertThat( channelCounters.getOverrunCount(), is( 0L ) );
+   }
+
+   @Test
+   void testReport_rankedByUpdateRateAndByteRate() throws Exception
+   {
+      start( true );
+      final ChannelImpl<Double> scalar = connect( "test:scalar", Double.class );
+      final ChannelImpl<double[]> waveform = connect( "test:waveform", double[].class );
+      scalar.addValueMonitor( value -> {} );
+      waveform.addValueMonitor( value -> {} );
+      assertThat( await( () -> scalar.getTrafficCounters().getUpdateCount() == 1 && waveform.getTrafficCounters().getUpdateCount() == 1 ), is( true ) );
+
+      context.getPvTrafficAccounting().run();
+      for ( int i = 0; i < 20; i++ )
+      {
+         server.post( "test:scalar", (double) i );
+      }
+      server.post( "test:waveform", new double[ WAVEFORM_LENGTH ] );
+      assertThat( await( () -> scalar.getTrafficCounters().getUpdateCount() == 21 && waveform.getTrafficCounters().getUpdateCount() == 2 ), is( true ) );
+      Thread.sleep( 10 );
+      context.getPvTrafficAccounting().run();
+
+      final TrafficReport report = context.getPvTrafficReport( 1 );
+      assertThat( report.isEnabled(), is( true ) );
+      assertThat( report.getTopByUpdateRate().size(), is( 1 ) );
+      assertThat( report.getTopByUpdateRate().get( 0 ).getName(), is( "test:scalar" ) );
+      assertThat( report.getTopByByteRate().size(), is( 1 ) );
+      assertThat( report.getTopByByteRate().get( 0 ).getName(), is( "test:waveform" ) );
+      assertThat( context.getPvTrafficReport( 10 ).getTopByUpdateRate().size(), is( 2 ) );
+
+      assertThat( getMetric( "ca_pv_top_updates_per_second", "rank=\"1\",pv=\"test:scalar\"" ), greaterThan( 0L ) );
+      assertThat( getMetric( "ca_pv_top_bytes_per_second", "rank=\"1\",pv=\"test:waveform\"" ), greaterThan( 0L ) );
+   }
+
+   @Test
+   void testDisabled_nothingCounted() throws Exception
+   {
+      start( false );
+      final ChannelImpl<Double> channel = connect( "test:scalar", Double.class );
+      final MonitorRequest<Double> monitor = (MonitorRequest<Double>) channel.addValueMonitor( value -> {} );
+
+      assertThat( channel.getAsync().get( 5, TimeUnit.SECONDS ), is( 0.0 ) );
+      assertThat( channel.getTrafficCounters(), nullValue() );
+      assertThat( monitor.getTrafficCounters(), nullValue() );
+      assertThat( context.getPvTrafficReport( 10 ), is( TrafficReport.DISABLED ) );
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   private void start( boolean enabled )
+   {
+      threadWatcher = ThreadWatcher.start();
+
+      final Properties properties = new Properties();
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_ADDR_LIST.toString(), "127.0.0.1" );
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_AUTO_ADDR_LIST.toString(), "NO" );
+      System.setProperty( LibraryConfiguration.PropertyNames.CA_METRICS_PV_TRAFFIC_ENABLE.toString(), String.valueOf( enabled ) );
+      try
+      {
+         context = new ContextImpl( new ProtocolConfiguration( properties ) );
+      }
+      finally
+      {
+         System.clearProperty( LibraryConfiguration.PropertyNames.CA_METRICS_PV_TRAFFIC_ENABLE.toString() );
+      }
+
+      server = new InMemoryCaServer( context );
+      server.addProcessVariable( "test:scalar", 0.0 );
+      server.addProcessVariable( "test:waveform", new double[ WAVEFORM_LENGTH ] );
+   }
+
+   private <T> ChannelImpl<T> connect( String name, Class<T> type ) throws Exception
+   {
+      final ChannelImpl<T> channel = (ChannelImpl<T>) context.createChannel( name, type, Constants.CHANNEL_PRIORITY_DEFAULT );
+      final CompletableFuture<Channel<T>> connected = channel.connectAsync();
+      server.connect( channel );
+      connected.get( 5, TimeUnit.SECONDS );
+      return channel;
+   }
+
+   private long getMetric( String name, String labels )
+   {
+      return context.getMetricsRegistry().getSnapshot().entrySet().stream()
+            .filter( entry -> entry.getKey().startsWith( name + "{" ) && entry.getKey().contains( labels ) )
+            .mapToLong( entry -> entry.getValue().longValue() )
+            .sum();
+   }
+
+   private static boolean await( BooleanSupplier condition ) throws InterruptedException
+   {
+      final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( 5 );
+      while ( !condition.getAsBoolean() )
+      {
+         if ( System.nanoTime() - deadline > 0 )
+         {
+            return false;
+         }
+         Thread.sleep( 10 );
+      }
+      return true;
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
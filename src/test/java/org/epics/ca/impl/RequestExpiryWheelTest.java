@@ -0,0 +1,138 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.core.Is.is;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Verifies that the requests added to the expiry wheel expire at their deadline,
+ * also beyond one turn of the wheel and when added while the wheel advances,
+ * unless they are removed first.
+ */
+class RequestExpiryWheelTest
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos( 10 );
+
+   private final long start = System.nanoTime();
+   private final RequestExpiryWheel wheel = new RequestExpiryWheel( 10, TimeUnit.MILLISECONDS, 8, start );
+   private final List<String> expired = new ArrayList<>();
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @Test
+   void testAdvance_expiresAtDeadline()
+   {
+      wheel.add( () -> expired.add( "a" ), 30, TimeUnit.MILLISECONDS, start );
+      wheel.add( () -> expired.add( "b" ), 50, TimeUnit.MILLISECONDS, start );
+
+      wheel.advance( start + 2 * TICK_NANOS );
+      assertThat( expired, empty() );
+      wheel.advance( start + 4 * TICK_NANOS );
+      assertThat( expired, contains( "a" ) );
+      wheel.advance( start + 6 * TICK_NANOS );
+      assertThat( expired, contains( "a", "b" ) );
+      assertThat( wheel.size(), is( 0 ) );
+      assertThat( wheel.getExpiredCount(), is( 2L ) );
+   }
+
+   @Test
+   void testAdvance_deadlineBeyondOneTurn()
+   {
+      // the wheel turns every 80 ms
+      wheel.add( () -> expired.add( "a" ), 200, TimeUnit.MILLISECONDS, start );
+
+      for ( int tick = 1; tick < 20; tick++ )
+      {
+         wheel.advance( start + tick * TICK_NANOS );
+      }
+      assertThat( expired, empty() );
+      wheel.advance( start + 21 * TICK_NANOS );
+      assertThat( expired, contains( "a" ) );
+   }
+
+   @Test
+   void testAdvance_afterStallExpiresEverything()
+   {
+      wheel.add( () -> expired.add( "a" ), 30, TimeUnit.MILLISECONDS, start );
+      wheel.add( () -> expired.add( "b" ), 150, TimeUnit.MILLISECONDS, start );
+
+      wheel.advance( start + 100 * TICK_NANOS );
+      assertThat( expired, containsInAnyOrder( "a", "b" ) );
+   }
+
+   @Test
+   void testRemove_preventsExpiry()
+   {
+      final RequestExpiryWheel.Timeout handle = wheel.add( () -> expired.add( "a" ), 30, TimeUnit.MILLISECONDS, start );
+      assertThat( wheel.size(), is( 1 ) );
+
+      wheel.remove( handle );
+      assertThat( wheel.size(), is( 0 ) );
+      wheel.advance( start + 10 * TICK_NANOS );
+      assertThat( expired, empty() );
+   }
+
+   @Test
+   void testAddWhileAdvancing_everyRequestExpires() throws Exception
+   {
+      final RequestExpiryWheel concurrentWheel = new RequestExpiryWheel( 10, TimeUnit.MILLISECONDS, 8, start );
+      final AtomicLong clock = new AtomicLong( start );
+      final LongAdder expiredRequests = new LongAdder();
+
+      // the requests are due in the next tick, which the timer may be expiring meanwhile
+      final int adderCount = 3;
+      final int requestsPerAdder = 200_000;
+      final ExecutorService adders = Executors.newFixedThreadPool( adderCount );
+      for ( int i = 0; i < adderCount; i++ )
+      {
+         adders.execute( () -> {
+            for ( int request = 0; request < requestsPerAdder; request++ )
+            {
+               concurrentWheel.add( expiredRequests::increment, 1, TimeUnit.NANOSECONDS, clock.get() );
+            }
+         } );
+      }
+      adders.shutdown();
+      for ( long tick = 1; !adders.isTerminated(); tick++ )
+      {
+         clock.set( start + tick * TICK_NANOS );
+         concurrentWheel.advance( clock.get() );
+      }
+
+      final long added = (long) adderCount * requestsPerAdder;
+      concurrentWheel.advance( clock.get() + 2 * TICK_NANOS );
+      assertThat( concurrentWheel.size(), is( 0 ) );
+      assertThat( expiredRequests.sum(), is( added ) );
+      assertThat( concurrentWheel.getExpiredCount(), is( added ) );
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
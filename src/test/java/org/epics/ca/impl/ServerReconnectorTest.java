@@ -0,0 +1,206 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.epics.ca.Channel;
+import org.epics.ca.ConnectionState;
+import org.epics.ca.Constants;
+import org.epics.ca.Monitor;
+import org.epics.ca.ThreadWatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.core.Is.is;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Verifies that the channels of a lost circuit are re-created directly on their
+ * server when it comes back, and searched for when it does not.
+ */
+class ServerReconnectorTest
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final int CHANNEL_COUNT = 10;
+
+   private ThreadWatcher threadWatcher;
+   private ContextImpl context;
+   private final List<InMemoryCaServer> servers = new ArrayList<>();
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @BeforeEach
+   void beforeEach()
+   {
+      threadWatcher = ThreadWatcher.start();
+   }
+
+   @AfterEach
+   void afterEach()
+   {
+      servers.forEach( InMemoryCaServer::close );
+      context.close();
+      threadWatcher.verify();
+   }
+
+   @Test
+   void testServerRestart_channelsRecreatedWithoutSearch() throws Exception
+   {
+      context = createContext( 30 );
+      final InMemoryCaServer server = createServer( InMemoryCaServer.DEFAULT_ADDRESS, true );
+      final List<ChannelImpl<Double>> channels = connectChannels( server );
+      final ChannelImpl<Double> removed = connect( server, createChannel( "test:removed" ) );
+      channels.forEach( channel -> channel.addValueMonitor( value -> {}, Monitor.VALUE_MASK ) );
+
+      // the server restarts without one of its process variables
+      server.close();
+      assertThat( removed.getConnectionState(), is( ConnectionState.DISCONNECTED ) );
+      assertThat( context.getChannelSearchManager().registeredChannelCount(), is( 0 ) );
+
+      final InMemoryCaServer restarted = createServer( InMemoryCaServer.DEFAULT_ADDRESS, false );
+      context.beaconAnomalyNotify( InMemoryCaServer.DEFAULT_ADDRESS );
+
+      assertThat( await( () -> channels.stream().allMatch( channel -> channel.getConnectionState() == ConnectionState.CONNECTED ) ), is( true ) );
+      assertThat( await( () -> context.getChannelSearchManager().registeredChannelCount() == 1 ), is( true ) );
+      assertThat( restarted.getRequestCount( 18 ), is( (long) CHANNEL_COUNT + 1 ) );
+      assertThat( restarted.getRequestCount( 1 ), is( (long) CHANNEL_COUNT ) );
+      // one flush for the create requests of the circuit, one for the subscriptions which their responses resend
+      assertThat( restarted.getTransport().getFlushCount(), is( 2L ) );
+      assertThat( removed.getConnectionState(), is( ConnectionState.DISCONNECTED ) );
+      assertThat( removed.getTransport(), nullValue() );
+   }
+
+   @Test
+   void testServerNotBack_channelsSearchedAfterTimeout() throws Exception
+   {
+      context = createContext( 0.5f );
+      final InMemoryCaServer server = createServer( getUnusedLoopbackAddress(), true );
+      connectChannels( server );
+
+      server.close();
+      assertThat( context.getChannelSearchManager().registeredChannelCount(), is( 0 ) );
+      assertThat( await( () -> context.getChannelSearchManager().registeredChannelCount() == CHANNEL_COUNT ), is( true ) );
+   }
+
+   @Test
+   void testReconnectDisabled_channelsSearchedAtOnce() throws Exception
+   {
+      context = createContext( 0 );
+      final InMemoryCaServer server = createServer( InMemoryCaServer.DEFAULT_ADDRESS, true );
+      connectChannels( server );
+
+      server.close();
+      assertThat( context.getChannelSearchManager().registeredChannelCount(), is( CHANNEL_COUNT ) );
+   }
+
+   @Test
+   void testClosedChannel_notSearchedAgain() throws Exception
+   {
+      context = createContext( 0 );
+      final InMemoryCaServer server = createServer( InMemoryCaServer.DEFAULT_ADDRESS, false );
+      final ChannelImpl<Double> channel = connect( server, createChannel( "test:pv0" ) );
+      channel.close();
+
+      // as when the reconnector gives up on the server, or the server refuses the
+      // channel, just after the channel was closed
+      channel.initiateSearch();
+      channel.createChannelFailed();
+      assertThat( context.getChannelSearchManager().registeredChannelCount(), is( 0 ) );
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   private static ContextImpl createContext( float knownServerReconnectTimeout )
+   {
+      final Properties properties = new Properties();
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_ADDR_LIST.toString(), "127.0.0.1" );
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_AUTO_ADDR_LIST.toString(), "NO" );
+      return new ContextImpl( new ProtocolConfiguration( properties ), knownServerReconnectTimeout );
+   }
+
+   private InMemoryCaServer createServer( InetSocketAddress address, boolean withRemoved )
+   {
+      final InMemoryCaServer server = new InMemoryCaServer( context, address, Constants.CHANNEL_PRIORITY_DEFAULT );
+      for ( int i = 0; i < CHANNEL_COUNT; i++ )
+      {
+         server.addProcessVariable( "test:pv" + i, (double) i );
+      }
+      if ( withRemoved )
+      {
+         server.addProcessVariable( "test:removed", 0.0 );
+      }
+      servers.add( server );
+      return server;
+   }
+
+   private List<ChannelImpl<Double>> connectChannels( InMemoryCaServer server ) throws Exception
+   {
+      final List<ChannelImpl<Double>> channels = new ArrayList<>();
+      for ( int i = 0; i < CHANNEL_COUNT; i++ )
+      {
+         channels.add( connect( server, createChannel( "test:pv" + i ) ) );
+      }
+      return channels;
+   }
+
+   private ChannelImpl<Double> createChannel( String name )
+   {
+      return (ChannelImpl<Double>) context.createChannel( name, Double.class, Constants.CHANNEL_PRIORITY_DEFAULT );
+   }
+
+   private static ChannelImpl<Double> connect( InMemoryCaServer server, ChannelImpl<Double> channel ) throws Exception
+   {
+      final CompletableFuture<Channel<Double>> connected = channel.connectAsync();
+      server.connect( channel );
+      connected.get( 5, TimeUnit.SECONDS );
+      return channel;
+   }
+
+   private static InetSocketAddress getUnusedLoopbackAddress() throws Exception
+   {
+      // nothing listens on the port once the socket is closed, so connections are refused
+      try ( ServerSocket socket = new ServerSocket( 0, 1, InetAddress.getLoopbackAddress() ) )
+      {
+         return new InetSocketAddress( InetAddress.getLoopbackAddress(), socket.getLocalPort() );
+      }
+   }
+
+   private static boolean await( BooleanSupplier condition ) throws InterruptedException
+   {
+      final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( 5 );
+      while ( !condition.getAsBoolean() )
+      {
+         if ( System.nanoTime() - deadline > 0 )
+         {
+            return false;
+         }
+         Thread.sleep( 10 );
+      }
+      return true;
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
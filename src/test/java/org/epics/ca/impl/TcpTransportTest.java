@@ -5,7 +5,14 @@ package org.epics.ca.impl;
 /*- Imported packages --------------------------------------------------------*/
 
 import org.apache.commons.lang3.time.StopWatch;
+import org.epics.ca.Constants;
+import org.epics.ca.Monitor;
+import org.epics.ca.Status;
+import org.epics.ca.impl.metrics.MetricsRegistry;
+import org.epics.ca.impl.metrics.TrafficCounters;
+import org.epics.ca.impl.monitor.MonitorNotificationService;
 import org.epics.ca.impl.reactor.Reactor;
+import org.epics.ca.impl.requests.MonitorRequest;
 import org.epics.ca.util.logging.LibraryLogManager;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -17,6 +24,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
@@ -24,15 +32,13 @@ import java.nio.ByteBuffer;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
@@ -85,22 +91,14 @@ class TcpTransportTest
       // So we create a real one here. For the purpose of the test the difference is irrelevant.
       final InetSocketAddress socketAddress = new InetSocketAddress(1234 );
 
-      @SuppressWarnings( "rawtypes" )
-      final ScheduledFuture scheduledFuture = Mockito.mock( ScheduledFuture.class );
-
-      final ScheduledExecutorService scheduledExecutorService = Mockito.mock ( ScheduledExecutorService.class );
       final TransportRegistry transportRegistry = Mockito.mock( TransportRegistry.class );
       final Socket socket = Mockito.mock( Socket.class );
 
       // Now provide the mocking behavioural support to allow the TCPTransport constructor to get invoked.
       Mockito.when( channel.socket() ).thenReturn( socket );
       Mockito.when( socket.getRemoteSocketAddress() ).thenReturn( socketAddress );
-      Mockito.when( context.getScheduledExecutor() ).thenReturn( scheduledExecutorService );
-
-      //noinspection unchecked
-      Mockito.when( scheduledExecutorService.scheduleWithFixedDelay( any(), ArgumentMatchers.anyLong(), ArgumentMatchers.anyLong(), any() ) )
-            .thenReturn( scheduledFuture );
       Mockito.when( context.getTransportRegistry() ).thenReturn( transportRegistry );
+      Mockito.when( context.getMetricsRegistry() ).thenReturn( new MetricsRegistry() );
 
       // Ok, we now have everything in place to construct our TCPTransport that we will test/
       // Go and build the test object.
@@ -534,6 +532,104 @@ class TcpTransportTest
       verifyNoMoreInteractions (handler);
    }
 
+   @Test
+   @SuppressWarnings( "unchecked" )
+   void testMonitorUpdatesInOneRead_trafficCountedPerMessage() throws IOException
+   {
+      // Three CA_PROTO_EVENT_ADD responses with a DBR_DOUBLE payload, all supplied by a single read
+      final int updates = 3;
+      final int ioid = 7;
+      final ByteBuffer bufSocketRead1 = ByteBuffer.allocate (updates * 24);
+      for ( int update = 0; update < updates; update++ )
+      {
+         bufSocketRead1.putShort ((short) 0x0001)   // CA_PROTO_EVENT_ADD
+            .putShort ((short) 0x0008)              // DBR_DOUBLE has a payload size of 8 bytes
+            .putShort ((short) 0x0006)              // DBR_DOUBLE ID
+            .putShort ((short) 0x0001)
+            .putInt (Status.NORMAL.getStatusCode ())
+            .putInt (ioid)
+            .putDouble (update);
+      }
+      bufSocketRead1.flip ();
+
+      Mockito.when (channel.read (ArgumentMatchers.<ByteBuffer> any ())).thenAnswer (i -> {
+         final ByteBuffer suppliedBuf = i.getArgument (0);
+         suppliedBuf.put (bufSocketRead1);
+         return updates * 24;
+      }).thenAnswer (i -> 0);
+
+      // Subscribe through a transport of its own, then deliver the responses through the real handlers.
+      final ChannelImpl<Double> caChannel = Mockito.mock (ChannelImpl.class);
+      final CircuitTransport subscribingTransport = Mockito.mock (CircuitTransport.class);
+      final MonitorNotificationService<Double> notificationService = Mockito.mock (MonitorNotificationService.class);
+      Mockito.when (caChannel.getName ()).thenReturn ("test:pv");
+      Mockito.when (caChannel.getTrafficCounters ()).thenReturn (new TrafficCounters ("test:pv"));
+      Mockito.when (caChannel.getTransport ()).thenReturn (subscribingTransport);
+      Mockito.when (subscribingTransport.getContext ()).thenReturn (context);
+      Mockito.when (subscribingTransport.acquireSendBuffer (ArgumentMatchers.anyInt ())).thenReturn (ByteBuffer.allocate (32));
+      Mockito.when (context.registerResponseRequest (ArgumentMatchers.any ())).thenReturn (ioid);
+      Mockito.when (context.getMessageCounters ()).thenReturn (ResponseHandlers.createMessageCounters (new MetricsRegistry ()));
+      Mockito.when (notificationService.publish (ArgumentMatchers.any (), ArgumentMatchers.any (), ArgumentMatchers.anyInt (), ArgumentMatchers.anyLong ())).thenReturn (true);
+      final MonitorRequest<Double> monitor = new MonitorRequest<> (caChannel, subscribingTransport, (TypeSupports.TypeSupport<Double>) TypeSupports.getTypeSupportForType (Double.class),
+                                                                   Monitor.VALUE_MASK, notificationService, value -> {});
+      Mockito.when (context.getResponseRequest (ioid)).thenReturn (monitor);
+      Mockito.doAnswer (i -> {
+         ResponseHandlers.handleResponse (i.getArgument (0), i.getArgument (1), i.getArgument (2), i.getArgument (3));
+         return null;
+      }).when (handler).handleResponse (ArgumentMatchers.any (), ArgumentMatchers.any (), ArgumentMatchers.any (), ArgumentMatchers.any ());
+
+      final SelectionKey selectionKey = Mockito.mock (SelectionKey.class);
+      Mockito.when (selectionKey.isValid ()).thenReturn (true);
+      Mockito.when (selectionKey.readyOps ()).thenReturn (1);
+      transport.handleEvent (selectionKey);
+
+      // Each update is counted as the size of its own message, not of the data left in the read.
+      assertEquals (updates, monitor.getTrafficCounters ().getUpdateCount ());
+      assertEquals (updates * (Constants.CA_MESSAGE_HEADER_SIZE + 8), monitor.getTrafficCounters ().getByteCount ());
+      assertEquals (updates * (Constants.CA_MESSAGE_HEADER_SIZE + 8), caChannel.getTrafficCounters ().getByteCount ());
+   }
+
+   @Test
+   void testFlowControl_eventsOffSentWhenReceiveBufferStaysFull() throws IOException
+   {
+      // Each read fills the whole receive buffer with headers of zero payload,
+      // until the socket has been read often enough to enable flow control.
+      final int fullReads = 6;
+      final AtomicInteger reads = new AtomicInteger ();
+      Mockito.when (channel.read (ArgumentMatchers.<ByteBuffer> any ())).thenAnswer (i -> {
+         if ( reads.getAndIncrement () >= fullReads )
+         {
+            return 0;
+         }
+         final ByteBuffer suppliedBuf = i.getArgument (0);
+         final int bytesRead = suppliedBuf.remaining ();
+         suppliedBuf.put (new byte[ bytesRead ]);
+         return bytesRead;
+      });
+
+      // Capture whatever the transport writes to the socket.
+      final ByteArrayOutputStream written = new ByteArrayOutputStream ();
+      Mockito.when (channel.write (ArgumentMatchers.<ByteBuffer> any ())).thenAnswer (i -> {
+         final ByteBuffer suppliedBuf = i.getArgument (0);
+         final byte[] bytes = new byte[ suppliedBuf.remaining () ];
+         suppliedBuf.get (bytes);
+         written.write (bytes);
+         return bytes.length;
+      });
+
+      final SelectionKey selectionKey = Mockito.mock (SelectionKey.class);
+      Mockito.when (selectionKey.isValid ()).thenReturn (true);
+      Mockito.when (selectionKey.readyOps ()).thenReturn (1);
+      transport.handleEvent (selectionKey);
+
+      // The events were turned off while the buffer stayed full, and on again
+      // once the socket had been drained.
+      final ByteBuffer sent = ByteBuffer.wrap (written.toByteArray ());
+      assertEquals (32, sent.remaining ());
+      assertEquals (8, sent.getShort (0));
+      assertEquals (9, sent.getShort (16));
+   }
+
    @MethodSource( "getArgumentsForCaLatencyTest" )
    @ParameterizedTest
    void testCaReadLatency( int maximumExecutionTimeInMicroseconds) throws IOException
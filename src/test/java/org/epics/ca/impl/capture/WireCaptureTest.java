@@ -0,0 +1,160 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.capture;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.epics.ca.ThreadWatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Verifies that the captured frames are written as well-formed pcap records,
+ * with the direction, endpoints and TCP sequence numbers which Wireshark needs
+ * to dissect them, and that the capture files are rotated.
+ */
+class WireCaptureTest
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final InetSocketAddress LOCAL = new InetSocketAddress( "127.0.0.1", 40000 );
+   private static final InetSocketAddress SERVER = new InetSocketAddress( "127.0.0.2", 5064 );
+
+   @TempDir
+   Path directory;
+
+   private ThreadWatcher threadWatcher;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @BeforeEach
+   void beforeEach()
+   {
+      threadWatcher = ThreadWatcher.start();
+   }
+
+   @AfterEach
+   void afterEach()
+   {
+      threadWatcher.verify();
+   }
+
+   @Test
+   void testCapture_framesWrittenAsPcapRecords() throws IOException
+   {
+      final WireCapture capture = new WireCapture( directory.resolve( "ca.pcap" ).toString(), "1", 1024 * 1024, 2 );
+      try ( Socket socket = new Socket() )
+      {
+         final WireCapture.TcpFlow flow = capture.createTcpFlow( socket );
+         capture.captureDatagram( true, LOCAL, SERVER, frame( "search" ), 0, 6 );
+         flow.captureSent( frame( "xxcreate" ), 2, 6 );
+         flow.captureSent( frame( "event" ), 0, 5 );
+         flow.captureReceived( frame( "reply" ), 0, 5 );
+      }
+      capture.close();
+      assertThat( capture.getCapturedCount(), is( 4L ) );
+      assertThat( capture.getDroppedCount(), is( 0L ) );
+
+      final ByteBuffer file = read( capture.getFile( 0 ) );
+      assertThat( file.order( ByteOrder.LITTLE_ENDIAN ).getInt(), is( 0xa1b2c3d4 ) );
+      assertThat( file.getInt( 20 ), is( WireCapture.LINKTYPE_RAW ) );
+      file.position( 24 );
+
+      // the UDP datagram, from the local address to the server
+      ByteBuffer packet = nextPacket( file );
+      assertThat( packet.get( 9 ), is( (byte) 17 ) );
+      assertThat( packet.getInt( 12 ), is( 0x7F000001 ) );
+      assertThat( packet.getInt( 16 ), is( 0x7F000002 ) );
+      assertThat( packet.getShort( 22 ) & 0xFFFF, is( 5064 ) );
+      assertThat( payload( packet, 28 ), is( "search" ) );
+
+      // the TCP segments carry the bytes of each direction in sequence
+      packet = nextPacket( file );
+      assertThat( packet.get( 9 ), is( (byte) 6 ) );
+      assertThat( packet.getInt( 24 ), is( 1 ) );
+      assertThat( payload( packet, 40 ), is( "create" ) );
+      packet = nextPacket( file );
+      assertThat( packet.getInt( 24 ), is( 7 ) );
+      assertThat( payload( packet, 40 ), is( "event" ) );
+      packet = nextPacket( file );
+      assertThat( packet.getInt( 24 ), is( 1 ) );
+      assertThat( packet.getInt( 28 ), is( 12 ) );
+      assertThat( payload( packet, 40 ), is( "reply" ) );
+      assertThat( file.hasRemaining(), is( false ) );
+   }
+
+   @Test
+   void testCapture_filesRotated() throws Exception
+   {
+      final WireCapture capture = new WireCapture( directory.resolve( "ca.pcap" ).toString(), "1", 100, 2 );
+      for ( int i = 0; i < 3; i++ )
+      {
+         capture.captureDatagram( false, LOCAL, SERVER, frame( "response" + i ), 0, 9 );
+         // the next frame is written by the next write, to the next file
+         Thread.sleep( 300 );
+      }
+      capture.close();
+
+      // the third file of the set of two overwrote the first
+      assertThat( payload( nextPacket( (ByteBuffer) read( capture.getFile( 0 ) ).position( 24 ) ), 28 ), is( "response2" ) );
+      assertThat( payload( nextPacket( (ByteBuffer) read( capture.getFile( 1 ) ).position( 24 ) ), 28 ), is( "response1" ) );
+      assertThat( Files.exists( capture.getFile( 2 ) ), is( false ) );
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   private static ByteBuffer frame( String content )
+   {
+      return ByteBuffer.wrap( content.getBytes( StandardCharsets.US_ASCII ) );
+   }
+
+   private static ByteBuffer read( Path path ) throws IOException
+   {
+      return ByteBuffer.wrap( Files.readAllBytes( path ) ).order( ByteOrder.LITTLE_ENDIAN );
+   }
+
+   private static ByteBuffer nextPacket( ByteBuffer file )
+   {
+      file.position( file.position() + 8 );
+      final int length = file.getInt();
+      assertThat( file.getInt(), is( length ) );
+
+      final ByteBuffer packet = file.slice().order( ByteOrder.BIG_ENDIAN );
+      packet.limit( length );
+      assertThat( packet.getShort( 2 ) & 0xFFFF, is( length ) );
+      file.position( file.position() + length );
+      return packet;
+   }
+
+   private static String payload( ByteBuffer packet, int offset )
+   {
+      final byte[] bytes = new byte[ packet.limit() - offset ];
+      ( (ByteBuffer) packet.duplicate().position( offset ) ).get( bytes );
+      return new String( bytes, StandardCharsets.US_ASCII );
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
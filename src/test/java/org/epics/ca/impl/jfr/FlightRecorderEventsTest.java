@@ -0,0 +1,194 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.jfr;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.epics.ca.Channel;
+import org.epics.ca.Constants;
+import org.epics.ca.Monitor;
+import org.epics.ca.Status;
+import org.epics.ca.ThreadWatcher;
+import org.epics.ca.impl.ContextImpl;
+import org.epics.ca.impl.InMemoryCaServer;
+import org.epics.ca.impl.ProtocolConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.core.Is.is;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+/**
+ * Verifies that the operations of a channel emit their events to a flight
+ * recording, with their attributes, and that no event is created when none
+ * is being recorded.
+ */
+class FlightRecorderEventsTest
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final String[] EVENT_NAMES = { "org.epics.ca.Connect", "org.epics.ca.Search", "org.epics.ca.Get", "org.epics.ca.Put", "org.epics.ca.MonitorDelivery" };
+
+   @TempDir
+   Path directory;
+
+   private ThreadWatcher threadWatcher;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @BeforeAll
+   static void beforeAll()
+   {
+      // the recorder starts threads of its own, which run until the JVM exits
+      try ( Recording recording = new Recording() )
+      {
+         recording.start();
+      }
+   }
+
+   @BeforeEach
+   void beforeEach()
+   {
+      threadWatcher = ThreadWatcher.start();
+   }
+
+   @AfterEach
+   void afterEach()
+   {
+      threadWatcher.verify();
+   }
+
+   @Test
+   void testEvents_notCreatedWhenNotRecorded()
+   {
+      assertThat( FlightRecorderEvents.INSTANCE.isAvailable(), is( true ) );
+      assertThat( FlightRecorderEvents.INSTANCE.beginGet(), nullValue() );
+      FlightRecorderEvents.INSTANCE.endGet( null, "test:scalar", 1, Status.NORMAL );
+   }
+
+   @Test
+   void testMonitorDelivery_allocatesNothingWhenNotRecorded()
+   {
+      final long[] sum = new long[ 1 ];
+      final Consumer<? super Long> consumer = FlightRecorderEvents.INSTANCE.monitorDeliveryConsumer( (Long value) -> sum[ 0 ] += value, "test:scalar", "test" );
+      final Long value = 1L;
+      final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+      final long threadId = Thread.currentThread().getId();
+
+      // Warm up, so that the measurement excludes the loading of classes.
+      for ( int i = 0; i < 10_000; i++ )
+      {
+         consumer.accept( value );
+      }
+      final long allocatedBefore = threadMXBean.getThreadAllocatedBytes( threadId );
+      for ( int i = 0; i < 10_000; i++ )
+      {
+         consumer.accept( value );
+      }
+      final long allocated = threadMXBean.getThreadAllocatedBytes( threadId ) - allocatedBefore;
+
+      // Allow for the odd allocation by the JVM itself, but not for one per delivery.
+      assertThat( allocated, lessThan( 10_000L ) );
+      assertThat( sum[ 0 ], is( 20_000L ) );
+   }
+
+   @Test
+   void testEvents_channelOperationsRecorded() throws Exception
+   {
+      final Path file = directory.resolve( "ca.jfr" );
+      try ( Recording recording = new Recording() )
+      {
+         for ( String name : EVENT_NAMES )
+         {
+            recording.enable( name ).withoutThreshold();
+         }
+         recording.start();
+         runChannelOperations();
+         recording.stop();
+         recording.dump( file );
+      }
+
+      final List<RecordedEvent> events = RecordingFile.readAllEvents( file );
+      final RecordedEvent connect = single( events, "org.epics.ca.Connect" );
+      assertThat( connect.getString( "channel" ), is( "test:scalar" ) );
+      assertThat( connect.getString( "server" ), is( InMemoryCaServer.DEFAULT_ADDRESS.getAddress().getHostAddress() + ":" + InMemoryCaServer.DEFAULT_ADDRESS.getPort() ) );
+
+      final RecordedEvent search = single( events, "org.epics.ca.Search" );
+      assertThat( search.getString( "channel" ), is( "test:scalar" ) );
+
+      final RecordedEvent get = single( events, "org.epics.ca.Get" );
+      assertThat( get.getString( "channel" ), is( "test:scalar" ) );
+      assertThat( get.getInt( "elementCount" ), is( 1 ) );
+      assertThat( get.getString( "status" ), is( Status.NORMAL.toString() ) );
+
+      final RecordedEvent put = single( events, "org.epics.ca.Put" );
+      assertThat( put.getString( "channel" ), is( "test:scalar" ) );
+      assertThat( put.getString( "status" ), is( Status.NORMAL.toString() ) );
+
+      final RecordedEvent delivery = single( events, "org.epics.ca.MonitorDelivery" );
+      assertThat( delivery.getString( "channel" ), is( "test:scalar" ) );
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   private static void runChannelOperations() throws Exception
+   {
+      final Properties properties = new Properties();
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_ADDR_LIST.toString(), "127.0.0.1" );
+      properties.setProperty( ProtocolConfiguration.PropertyNames.EPICS_CA_AUTO_ADDR_LIST.toString(), "NO" );
+      try ( ContextImpl context = new ContextImpl( new ProtocolConfiguration( properties ) );
+            InMemoryCaServer server = new InMemoryCaServer( context ) )
+      {
+         server.addProcessVariable( "test:scalar", 0.0 );
+         final Channel<Double> channel = context.createChannel( "test:scalar", Double.class, Constants.CHANNEL_PRIORITY_DEFAULT );
+         final CompletableFuture<Channel<Double>> connected = channel.connectAsync();
+         server.connect( channel );
+         connected.get( 5, TimeUnit.SECONDS );
+
+         assertThat( channel.getAsync().get( 5, TimeUnit.SECONDS ), is( 0.0 ) );
+         assertThat( channel.putAsync( 1.0 ).get( 5, TimeUnit.SECONDS ), is( Status.NORMAL ) );
+
+         final CountDownLatch delivered = new CountDownLatch( 1 );
+         try ( Monitor<Double> ignored = channel.addValueMonitor( value -> delivered.countDown() ) )
+         {
+            assertThat( delivered.await( 5, TimeUnit.SECONDS ), is( true ) );
+         }
+      }
+   }
+
+   private static RecordedEvent single( List<RecordedEvent> events, String name )
+   {
+      final List<RecordedEvent> matching = events.stream().filter( event -> event.getEventType().getName().equals( name ) ).collect( Collectors.toList() );
+      assertThat( name, matching.size(), is( 1 ) );
+      return matching.get( 0 );
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
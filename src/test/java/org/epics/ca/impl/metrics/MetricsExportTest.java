@@ -0,0 +1,146 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.metrics;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.epics.ca.ThreadWatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+class MetricsExportTest
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private ThreadWatcher threadWatcher;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @BeforeEach
+   void beforeEach()
+   {
+      threadWatcher = ThreadWatcher.start();
+   }
+
+   @AfterEach
+   void afterEach()
+   {
+      threadWatcher.verify();
+   }
+
+   @Test
+   void testEndpointServesAllRegistriesUntilTheLastIsRemoved() throws IOException
+   {
+      final int port = findFreePort();
+      final MetricsRegistry registry1 = new MetricsRegistry( "context", "1" );
+      final MetricsRegistry registry2 = new MetricsRegistry( "context", "2" );
+      registry1.counter( "ca_test_total", "help" ).add( 11 );
+      registry2.counter( "ca_test_total", "help" ).add( 22 );
+
+      PrometheusHttpExporter.addRegistry( port, registry1 );
+      PrometheusHttpExporter.addRegistry( port, registry2 );
+      try
+      {
+         final String body = httpGet( port );
+         assertThat( body, startsWith( "HTTP/1.1 200 OK\n" ) );
+         assertThat( body, containsString( "Content-type: " + PrometheusHttpExporter.CONTENT_TYPE + "\n" ) );
+         assertThat( body, containsString( "ca_test_total{context=\"1\"} 11\n" ) );
+         assertThat( body, containsString( "ca_test_total{context=\"2\"} 22\n" ) );
+
+         PrometheusHttpExporter.removeRegistry( port, registry1 );
+         final String bodyAfterRemoval = httpGet( port );
+         assertThat( bodyAfterRemoval, not( containsString( "context=\"1\"" ) ) );
+         assertThat( bodyAfterRemoval, containsString( "ca_test_total{context=\"2\"} 22\n" ) );
+      }
+      finally
+      {
+         PrometheusHttpExporter.removeRegistry( port, registry1 );
+         PrometheusHttpExporter.removeRegistry( port, registry2 );
+      }
+
+      assertThrows( IOException.class, () -> httpGet( port ) );
+   }
+
+   @Test
+   void testMBeanExposesMetricsAsAttributes() throws Exception
+   {
+      final MetricsRegistry registry = new MetricsRegistry( "context", "mbeantest" );
+      registry.counter( "ca_test_total", "help" ).add( 5 );
+
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      final ObjectName objectName;
+      try ( MetricsMBean mbean = new MetricsMBean( registry, "mbeantest" ) )
+      {
+         objectName = mbean.getObjectName();
+         assertEquals( new ObjectName( "org.epics.ca:type=Context,name=mbeantest" ), objectName );
+         assertTrue( server.isRegistered( objectName ) );
+         assertEquals( 5L, server.getAttribute( objectName, "ca_test_total{context=\"mbeantest\"}" ) );
+         assertEquals( 1, server.getMBeanInfo( objectName ).getAttributes().length );
+      }
+      assertFalse( server.isRegistered( objectName ) );
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   private static int findFreePort() throws IOException
+   {
+      try ( ServerSocket socket = new ServerSocket( 0 ) )
+      {
+         return socket.getLocalPort();
+      }
+   }
+
+   /**
+    * Performs an HTTP/1.0 GET of the metrics path. A plain socket is used rather than
+    * HttpURLConnection, whose keep-alive timer thread would outlive the test.
+    */
+   private static String httpGet( int port ) throws IOException
+   {
+      try ( Socket socket = new Socket( InetAddress.getLoopbackAddress(), port ) )
+      {
+         socket.setSoTimeout( 1000 );
+         final OutputStream os = socket.getOutputStream();
+         os.write( ( "GET " + PrometheusHttpExporter.PATH + " HTTP/1.0\r\n\r\n" ).getBytes( StandardCharsets.US_ASCII ) );
+         os.flush();
+
+         final StringBuilder sb = new StringBuilder();
+         try ( BufferedReader reader = new BufferedReader( new InputStreamReader( socket.getInputStream(), StandardCharsets.UTF_8 ) ) )
+         {
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+               sb.append( line ).append( '\n' );
+            }
+         }
+         return sb.toString();
+      }
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
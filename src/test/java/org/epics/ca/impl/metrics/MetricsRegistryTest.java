@@ -0,0 +1,130 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.metrics;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.epics.ca.impl.monitor.latency.MonitorLatencyHistogram;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+class MetricsRegistryTest
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @Test
+   void testCounterIsSharedBetweenRegistrationsWithSameKey()
+   {
+      final MetricsRegistry registry = new MetricsRegistry();
+      final LongAdder first = registry.counter( "ca_test_total", "help", "circuit", "a" );
+      final LongAdder second = registry.counter( "ca_test_total", "help", "circuit", "a" );
+      final LongAdder other = registry.counter( "ca_test_total", "help", "circuit", "b" );
+      assertSame( first, second );
+      assertNotSame( first, other );
+   }
+
+   @Test
+   void testConflictingRegistrationIsRejected()
+   {
+      final MetricsRegistry registry = new MetricsRegistry();
+      registry.counter( "ca_test", "help" );
+      assertThrows( IllegalStateException.class, () -> registry.histogram( "ca_test", "help" ) );
+   }
+
+   @Test
+   void testInvalidNamesAndLabelsAreRejected()
+   {
+      final MetricsRegistry registry = new MetricsRegistry();
+      assertThrows( IllegalArgumentException.class, () -> registry.counter( "ca-test", "help" ) );
+      assertThrows( IllegalArgumentException.class, () -> registry.counter( "ca_test", "help", "circuit" ) );
+      assertThrows( IllegalArgumentException.class, () -> registry.counter( "ca_test", "help", "1circuit", "a" ) );
+      assertThrows( NullPointerException.class, () -> registry.counter( "ca_test", "help", "circuit", null ) );
+   }
+
+   @Test
+   void testSnapshot()
+   {
+      final MetricsRegistry registry = new MetricsRegistry( "context", "1" );
+      registry.counter( "ca_bytes_total", "help", "circuit", "a" ).add( 42 );
+      registry.gauge( "ca_pending", "help", () -> 7 );
+      final MonitorLatencyHistogram histogram = registry.histogram( "ca_wait_seconds", "help" );
+      histogram.record( 2_000_000_000L );
+
+      final Map<String, Number> snapshot = registry.getSnapshot();
+      assertEquals( 42L, snapshot.get( "ca_bytes_total{context=\"1\",circuit=\"a\"}" ) );
+      assertEquals( 7L, snapshot.get( "ca_pending{context=\"1\"}" ) );
+      assertEquals( 1L, snapshot.get( "ca_wait_seconds_count{context=\"1\"}" ) );
+      assertEquals( 2.0, snapshot.get( "ca_wait_seconds_max{context=\"1\"}" ).doubleValue(), 0.2 );
+      assertThat( snapshot.keySet(), hasItems( "ca_wait_seconds_p50{context=\"1\"}", "ca_wait_seconds_p999{context=\"1\"}" ) );
+   }
+
+   @Test
+   void testRemoveByLabels()
+   {
+      final MetricsRegistry registry = new MetricsRegistry( "context", "1" );
+      registry.counter( "ca_bytes_total", "help", "circuit", "a", "priority", "0" );
+      registry.counter( "ca_messages_total", "help", "circuit", "a", "priority", "0" );
+      registry.counter( "ca_bytes_total", "help", "circuit", "a", "priority", "1" );
+      registry.counter( "ca_bytes_total", "help", "circuit", "b", "priority", "0" );
+
+      assertEquals( 2, registry.remove( "circuit", "a", "priority", "0" ) );
+      assertThat( registry.getSnapshot().keySet(), containsInAnyOrder( "ca_bytes_total{context=\"1\",circuit=\"a\",priority=\"1\"}",
+                                                                       "ca_bytes_total{context=\"1\",circuit=\"b\",priority=\"0\"}" ) );
+   }
+
+   @Test
+   void testPrometheusTextFormat()
+   {
+      final MetricsRegistry registry = new MetricsRegistry( "context", "1" );
+      registry.counter( "ca_bytes_total", "Bytes received.", "circuit", "10.0.0.1:5064" ).add( 3 );
+      registry.gauge( "ca_pending", "Pending \"requests\".", () -> 5 );
+      registry.histogram( "ca_wait_seconds", "Wait time." ).record( 1_000 );
+
+      final String text = registry.toPrometheusText();
+      assertThat( text, containsString( "# HELP ca_bytes_total Bytes received.\n# TYPE ca_bytes_total counter\nca_bytes_total{context=\"1\",circuit=\"10.0.0.1:5064\"} 3\n" ) );
+      assertThat( text, containsString( "# TYPE ca_pending gauge\nca_pending{context=\"1\"} 5\n" ) );
+      assertThat( text, containsString( "# TYPE ca_wait_seconds summary\n" ) );
+      assertThat( text, containsString( "ca_wait_seconds{context=\"1\",quantile=\"0.5\"} 1.0E-6\n" ) );
+      assertThat( text, containsString( "ca_wait_seconds{context=\"1\",quantile=\"0.999\"} " ) );
+      assertThat( text, containsString( "ca_wait_seconds_count{context=\"1\"} 1\n" ) );
+   }
+
+   @Test
+   void testPrometheusTextMergesFamiliesAcrossRegistries()
+   {
+      final MetricsRegistry registry1 = new MetricsRegistry( "context", "1" );
+      final MetricsRegistry registry2 = new MetricsRegistry( "context", "2" );
+      registry1.counter( "ca_bytes_total", "help" ).add( 1 );
+      registry2.counter( "ca_bytes_total", "help" ).add( 2 );
+
+      final String text = MetricsRegistry.toPrometheusText( Arrays.asList( registry1, registry2 ) );
+      assertEquals( "# HELP ca_bytes_total help\n# TYPE ca_bytes_total counter\n" +
+                    "ca_bytes_total{context=\"1\"} 1\nca_bytes_total{context=\"2\"} 2\n", text );
+   }
+
+   @Test
+   void testLabelValuesAreEscaped()
+   {
+      assertEquals( "a\\\\b\\\"c\\nd", MetricsRegistry.escapeLabelValue( "a\\b\"c\nd" ) );
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
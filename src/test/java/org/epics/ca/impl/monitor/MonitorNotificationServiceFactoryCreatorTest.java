@@ -175,7 +175,12 @@ class MonitorNotificationServiceFactoryCreatorTest
                         Arguments.of( "BlockingQueueSingleWorkerMonitorNotificationServiceImpl,15,79",  true, 79 ),
                         Arguments.of( "BlockingQueueMultipleWorkerMonitorNotificationServiceImpl,,1",  false, 1 ),
                         Arguments.of( "BlockingQueueMultipleWorkerMonitorNotificationServiceImpl,,42",  true, 42 ),
-                        Arguments.of( "BlockingQueueMultipleWorkerMonitorNotificationServiceImpl,15,19",  true, 19 ) );
+                        Arguments.of( "BlockingQueueMultipleWorkerMonitorNotificationServiceImpl,15,19",  true, 19 ),
+                        Arguments.of( "FairShareMonitorNotificationServiceImpl",  true, Integer.MAX_VALUE ),
+                        Arguments.of( "FairShareMonitorNotificationServiceImpl,,1",  false, 1 ),
+                        Arguments.of( "FairShareMonitorNotificationServiceImpl,15,33",  true, 33 ),
+                        Arguments.of( "InlineMonitorNotificationServiceImpl",  false, 1 ),
+                        Arguments.of( "InlineMonitorNotificationServiceImpl,,500",  false, 1 ) );
    }
    
    private static Stream<Arguments> getArgumentsForTestMonitorNotificationServiceImpl_NumberOfServiceThreadsArgumentProcessing()
@@ -188,13 +193,19 @@ class MonitorNotificationServiceFactoryCreatorTest
                         Arguments.of( "BlockingQueueMultipleWorkerMonitorNotificationServiceImpl", MonitorNotificationServiceFactoryCreator.NUMBER_OF_SERVICE_THREADS_DEFAULT ),
                         Arguments.of( "BlockingQueueMultipleWorkerMonitorNotificationServiceImpl,10", 10 ),
                         Arguments.of( "BlockingQueueMultipleWorkerMonitorNotificationServiceImpl,10,YYY", 10 ),
-                        Arguments.of( "BlockingQueueMultipleWorkerMonitorNotificationServiceImpl,XXX", MonitorNotificationServiceFactoryCreator.NUMBER_OF_SERVICE_THREADS_DEFAULT ) );
+                        Arguments.of( "BlockingQueueMultipleWorkerMonitorNotificationServiceImpl,XXX", MonitorNotificationServiceFactoryCreator.NUMBER_OF_SERVICE_THREADS_DEFAULT ),
+                        Arguments.of( "FairShareMonitorNotificationServiceImpl", MonitorNotificationServiceFactoryCreator.NUMBER_OF_SERVICE_THREADS_DEFAULT ),
+                        Arguments.of( "FairShareMonitorNotificationServiceImpl,7", 7 ),
+                        Arguments.of( "FairShareMonitorNotificationServiceImpl,XXX", MonitorNotificationServiceFactoryCreator.NUMBER_OF_SERVICE_THREADS_DEFAULT ),
+                        Arguments.of( "InlineMonitorNotificationServiceImpl", 1 ),
+                        Arguments.of( "InlineMonitorNotificationServiceImpl,66", 1 ) );
    }
    
    private static Stream<Arguments> getArgumentsForTestServiceImplBufferingBehaviour()
    {
       return Stream.of( Arguments.of( MonitorNotificationServiceFactoryCreator.HUMAN_CONSUMER_IMPL, false ),
-                        Arguments.of( MonitorNotificationServiceFactoryCreator.MACHINE_CONSUMER_IMPL, true ) ) ;
+                        Arguments.of( MonitorNotificationServiceFactoryCreator.MACHINE_CONSUMER_IMPL, true ),
+                        Arguments.of( MonitorNotificationServiceFactoryCreator.LOW_LATENCY_CONSUMER_IMPL, false ) ) ;
    }
 
 /*- Nested Classes -----------------------------------------------------------*/
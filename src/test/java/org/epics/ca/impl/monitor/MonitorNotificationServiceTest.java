@@ -395,7 +395,8 @@ public class MonitorNotificationServiceTest
    @ParameterizedTest
    @ValueSource( strings={ "BlockingQueueSingleWorkerMonitorNotificationServiceImpl,1,2",
                            "BlockingQueueMultipleWorkerMonitorNotificationServiceImpl,4,2",
-                           "StripedExecutorServiceMonitorNotificationServiceImpl" } )
+                           "StripedExecutorServiceMonitorNotificationServiceImpl",
+                           "FairShareMonitorNotificationServiceImpl,4,2" } )
    void testBufferOverrunConsumerLastValueAlwaysGetsSent( String serviceImpl  )
    {
       logger.info( String.format( "Starting test with service implementation '%s'", serviceImpl ) );
@@ -447,7 +448,9 @@ public class MonitorNotificationServiceTest
 
       final List<String> allServiceImpls = Arrays.asList( "BlockingQueueSingleWorkerMonitorNotificationServiceImpl",
                                                           "BlockingQueueMultipleWorkerMonitorNotificationServiceImpl",
-                                                          "StripedExecutorServiceMonitorNotificationServiceImpl" );
+                                                          "StripedExecutorServiceMonitorNotificationServiceImpl",
+                                                          "FairShareMonitorNotificationServiceImpl",
+                                                          "InlineMonitorNotificationServiceImpl" );
 
       // Note: the final value should be of a Type where equals gives an unequivocal answer (floating point values
       // would not be a good choice !)
@@ -467,7 +470,9 @@ public class MonitorNotificationServiceTest
    {
       final List<String> allServiceImpls = Arrays.asList( "BlockingQueueSingleWorkerMonitorNotificationServiceImpl",
                                                           "BlockingQueueMultipleWorkerMonitorNotificationServiceImpl",
-                                                          "StripedExecutorServiceMonitorNotificationServiceImpl" );
+                                                          "StripedExecutorServiceMonitorNotificationServiceImpl",
+                                                          "FairShareMonitorNotificationServiceImpl",
+                                                          "InlineMonitorNotificationServiceImpl" );
 
       final String aStr = "This is really quite a long string that goes on and on for several tens of characters";
       final Integer[] arry = new Integer[ 1000 ];
@@ -496,7 +501,9 @@ public class MonitorNotificationServiceTest
       // do not support this.
       return Stream.of( Arguments.of( "BlockingQueueSingleWorkerMonitorNotificationServiceImpl",   false ),
                         Arguments.of( "BlockingQueueMultipleWorkerMonitorNotificationServiceImpl", false ),
-                        Arguments.of( "StripedExecutorServiceMonitorNotificationServiceImpl",      false ) );
+                        Arguments.of( "StripedExecutorServiceMonitorNotificationServiceImpl",      false ),
+                        Arguments.of( "FairShareMonitorNotificationServiceImpl",                   false ),
+                        Arguments.of( "InlineMonitorNotificationServiceImpl",                      false ) );
    }
 
    /**
@@ -508,7 +515,9 @@ public class MonitorNotificationServiceTest
       // Perform tests on all service implementations
       return Stream.of( Arguments.of( "BlockingQueueSingleWorkerMonitorNotificationServiceImpl",   100_000L, true, true  ),
                         Arguments.of( "BlockingQueueMultipleWorkerMonitorNotificationServiceImpl", 100_000L, true, true  ),
-                        Arguments.of( "StripedExecutorServiceMonitorNotificationServiceImpl",      100_000L, true, true  ) );
+                        Arguments.of( "StripedExecutorServiceMonitorNotificationServiceImpl",      100_000L, true, true  ),
+                        Arguments.of( "FairShareMonitorNotificationServiceImpl",                   100_000L, true, true  ),
+                        Arguments.of( "InlineMonitorNotificationServiceImpl",                      100_000L, true, true  ) );
    }
    
    /**
@@ -521,13 +530,15 @@ public class MonitorNotificationServiceTest
       // Perform tests on all service implementations
       // The slow consumer will take 500ms to process incoming notifications.
       // On Windows systems time resolution may only be as good as 20ms.
-      // The BlockingQueueSingleWorkerMonitorNotificationServiceImpl is expected to block subsequent notifications
-      // to the other consumers. All other service implementations should notify the other consumers almost
+      // The BlockingQueueSingleWorkerMonitorNotificationServiceImpl and InlineMonitorNotificationServiceImpl are
+      // expected to block subsequent notifications to the other consumers. All other service implementations should notify the other consumers almost
       // immediately. However, since the timing on ANY test may be perturbed by the JVM GC activities the notification
       // expectation windows are set very generously.
       return Stream.of( Arguments.of( "BlockingQueueSingleWorkerMonitorNotificationServiceImpl",   500, 400, 800, 400, 800 ),
                         Arguments.of( "BlockingQueueMultipleWorkerMonitorNotificationServiceImpl", 500, 400, 800,  0,  200 ),
-                        Arguments.of( "StripedExecutorServiceMonitorNotificationServiceImpl",      500, 400, 800,  0,  200 ) );
+                        Arguments.of( "StripedExecutorServiceMonitorNotificationServiceImpl",      500, 400, 800,  0,  200 ),
+                        Arguments.of( "FairShareMonitorNotificationServiceImpl",                   500, 400, 800,  0,  200 ),
+                        Arguments.of( "InlineMonitorNotificationServiceImpl",                      500, 400, 800, 400, 800 ) );
    }
 
 /*- Nested Classes -----------------------------------------------------------*/
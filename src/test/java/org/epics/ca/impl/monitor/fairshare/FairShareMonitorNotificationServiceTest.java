@@ -0,0 +1,223 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.monitor.fairshare;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.epics.ca.MonitorQos;
+import org.epics.ca.ThreadWatcher;
+import org.epics.ca.impl.monitor.MonitorNotificationService;
+import org.epics.ca.util.logging.LibraryLogManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+class FairShareMonitorNotificationServiceTest
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private static final Logger logger = LibraryLogManager.getLogger( FairShareMonitorNotificationServiceTest.class );
+
+   private ThreadWatcher threadWatcher;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @BeforeEach
+   void beforeEach()
+   {
+      threadWatcher = ThreadWatcher.start();
+   }
+
+   @AfterEach
+   void afterEach()
+   {
+      threadWatcher.verify();
+   }
+
+   @Test
+   void testQosMetrics()
+   {
+      try ( FairShareMonitorNotificationServiceFactory factory = new FairShareMonitorNotificationServiceFactory( 3, 5 ) )
+      {
+         assertTrue( factory.getQosMetricIsQosHintAware() );
+         assertTrue( factory.getQosMetricIsBuffered() );
+         assertFalse( factory.getQosMetricIsNullPublishable() );
+         assertEquals( 5, factory.getQosMetricBufferSizePerConsumer() );
+         assertEquals( 3, factory.getQosMetricNumberOfNotificationThreadsPerConsumer() );
+      }
+   }
+
+   @Test
+   void testServiceCount()
+   {
+      try ( FairShareMonitorNotificationServiceFactory factory = new FairShareMonitorNotificationServiceFactory( 1, 1 ) )
+      {
+         factory.getServiceForConsumer( v -> {} );
+         factory.getServiceForConsumer( v -> {}, new MonitorQos( MonitorQos.PriorityClass.HIGH ) );
+         assertEquals( 2, factory.getServiceCount() );
+      }
+   }
+
+   @Test
+   void testNullQosHintsAreRejected()
+   {
+      try ( FairShareMonitorNotificationServiceFactory factory = new FairShareMonitorNotificationServiceFactory( 1, 1 ) )
+      {
+         assertThrows( NullPointerException.class, () -> factory.getServiceForConsumer( v -> {}, null ) );
+      }
+   }
+
+   @Test
+   void testHighPriorityConsumerIsNotDelayedByBackloggedLowPriorityConsumers()
+   {
+      assertTimeoutPreemptively( Duration.ofSeconds( 10 ), () ->
+      {
+         try ( FairShareMonitorNotificationServiceFactory factory = new FairShareMonitorNotificationServiceFactory( 1, 1000 ) )
+         {
+            // Flood the single notification thread with work from several slow LOW priority consumers.
+            final MonitorQos lowQos = new MonitorQos( MonitorQos.PriorityClass.LOW );
+            for ( int i = 0; i < 5; i++ )
+            {
+               final MonitorNotificationService<Long> lowService = factory.getServiceForConsumer( busyWaitConsumer( 1 ), lowQos );
+               for ( long j = 0; j < 1000; j++ )
+               {
+                  lowService.publish( j );
+               }
+            }
+
+            // The backlog of the LOW consumers is around 5 seconds. A HIGH priority consumer should be
+            // served once the value currently in progress has been delivered.
+            final CountDownLatch latch = new CountDownLatch( 1 );
+            final MonitorNotificationService<Long> highService = factory.getServiceForConsumer( v -> latch.countDown(), new MonitorQos( MonitorQos.PriorityClass.HIGH ) );
+            final long startTime = System.nanoTime();
+            highService.publish( 1L );
+            assertTrue( latch.await( 1, TimeUnit.SECONDS ), "HIGH priority consumer was not served in time." );
+            final long elapsedTimeInMillis = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - startTime );
+            logger.info( String.format( "HIGH priority consumer was served after %d ms.", elapsedTimeInMillis ) );
+         }
+      } );
+   }
+
+   @Test
+   void testConsumersInSameClassShareBandwidthAccordingToWeight()
+   {
+      assertTimeoutPreemptively( Duration.ofSeconds( 10 ), () ->
+      {
+         final AtomicLong lightCount = new AtomicLong();
+         final AtomicLong heavyCount = new AtomicLong();
+
+         try ( FairShareMonitorNotificationServiceFactory factory = new FairShareMonitorNotificationServiceFactory( 1, Integer.MAX_VALUE ) )
+         {
+            final Consumer<Long> lightConsumer = busyWaitConsumer( 1 ).andThen( v -> lightCount.incrementAndGet() );
+            final Consumer<Long> heavyConsumer = busyWaitConsumer( 1 ).andThen( v -> heavyCount.incrementAndGet() );
+            final MonitorNotificationService<Long> lightService = factory.getServiceForConsumer( lightConsumer, new MonitorQos( MonitorQos.PriorityClass.NORMAL, 1 ) );
+            final MonitorNotificationService<Long> heavyService = factory.getServiceForConsumer( heavyConsumer, new MonitorQos( MonitorQos.PriorityClass.NORMAL, 4 ) );
+
+            // Keep both consumers permanently backlogged, then observe how the single thread is shared.
+            for ( long i = 0; i < 5_000; i++ )
+            {
+               lightService.publish( i );
+               heavyService.publish( i );
+            }
+            Thread.sleep( 1_000 );
+         }
+
+         final double ratio = (double) heavyCount.get() / Math.max( 1, lightCount.get() );
+         logger.info( String.format( "Light consumer notifications: %d; heavy consumer notifications: %d; ratio: %.2f", lightCount.get(), heavyCount.get(), ratio ) );
+         assertThat( ratio, is( both( greaterThan( 2.5 ) ).and( lessThan( 6.0 ) ) ) );
+      } );
+   }
+
+   @Test
+   @SuppressWarnings( "unchecked" )
+   void testConsumerInLargeDeficitIsCreditedInOneStep()
+   {
+      assertTimeoutPreemptively( Duration.ofSeconds( 10 ), () ->
+      {
+         try ( FairShareMonitorNotificationServiceFactory factory = new FairShareMonitorNotificationServiceFactory( 1, 1 ) )
+         {
+            // A deficit which would take 10^12 rounds to repay one quantum at a time.
+            final CountDownLatch latch = new CountDownLatch( 1 );
+            final FairShareMonitorNotificationService<Long> service = (FairShareMonitorNotificationService<Long>) factory.<Long>getServiceForConsumer( v -> latch.countDown(), MonitorQos.DEFAULT );
+            service.addCredit( -1_000_000_000_000L * FairShareScheduler.QUANTUM_PER_UNIT_WEIGHT_IN_NANOS );
+            service.publish( 1L );
+            assertTrue( latch.await( 1, TimeUnit.SECONDS ), "The consumer in deficit was not served in time." );
+         }
+      } );
+   }
+
+   @Test
+   @SuppressWarnings( "unchecked" )
+   void testConsumersInSameClassInLargeDeficitAreCreditedInOneStep()
+   {
+      assertTimeoutPreemptively( Duration.ofSeconds( 10 ), () ->
+      {
+         try ( FairShareMonitorNotificationServiceFactory factory = new FairShareMonitorNotificationServiceFactory( 1, 1 ) )
+         {
+            // Hold the single notification thread so that both slow consumers are waiting in the same list.
+            final CountDownLatch blocking = new CountDownLatch( 1 );
+            final CountDownLatch release = new CountDownLatch( 1 );
+            final MonitorNotificationService<Long> blocker = factory.getServiceForConsumer( v -> {
+               blocking.countDown();
+               try
+               {
+                  release.await();
+               }
+               catch ( InterruptedException ex )
+               {
+                  Thread.currentThread().interrupt();
+               }
+            }, new MonitorQos( MonitorQos.PriorityClass.HIGH ) );
+            blocker.publish( 1L );
+            assertTrue( blocking.await( 1, TimeUnit.SECONDS ) );
+
+            // Two consumers whose overruns would take 10^12 and 2 * 10^12 rounds to repay one quantum at a time.
+            final CountDownLatch latch = new CountDownLatch( 2 );
+            final FairShareMonitorNotificationService<Long> slowService = (FairShareMonitorNotificationService<Long>) factory.<Long>getServiceForConsumer( v -> latch.countDown(), MonitorQos.DEFAULT );
+            final FairShareMonitorNotificationService<Long> slowerService = (FairShareMonitorNotificationService<Long>) factory.<Long>getServiceForConsumer( v -> latch.countDown(), MonitorQos.DEFAULT );
+            slowService.addCredit( -1_000_000_000_000L * FairShareScheduler.QUANTUM_PER_UNIT_WEIGHT_IN_NANOS );
+            slowerService.addCredit( -2_000_000_000_000L * FairShareScheduler.QUANTUM_PER_UNIT_WEIGHT_IN_NANOS );
+            slowerService.publish( 1L );
+            slowService.publish( 1L );
+
+            release.countDown();
+            assertTrue( latch.await( 1, TimeUnit.SECONDS ), "The consumers in deficit were not served in time." );
+         }
+      } );
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   private static Consumer<Long> busyWaitConsumer( long millis )
+   {
+      return v -> {
+         final long endTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( millis );
+         while ( System.nanoTime() < endTime )
+         {
+            Thread.yield();
+         }
+      };
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
@@ -0,0 +1,166 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.monitor.inline;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.epics.ca.ThreadWatcher;
+import org.epics.ca.impl.monitor.MonitorNotificationService;
+import org.epics.ca.util.logging.LibraryLogManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+class InlineMonitorNotificationServiceTest
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private ThreadWatcher threadWatcher;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @BeforeEach
+   void beforeEach()
+   {
+      threadWatcher = ThreadWatcher.start();
+   }
+
+   @AfterEach
+   void afterEach()
+   {
+      threadWatcher.verify();
+   }
+
+   @Test
+   void testConsumerIsCalledOnPublishingThread()
+   {
+      try ( InlineMonitorNotificationServiceFactory factory = new InlineMonitorNotificationServiceFactory( 0 ) )
+      {
+         final AtomicReference<Thread> notificationThread = new AtomicReference<>();
+         final MonitorNotificationService<Long> service = factory.getServiceForConsumer( v -> notificationThread.set( Thread.currentThread() ) );
+         assertTrue( service.publish( 1L ) );
+         assertSame( Thread.currentThread(), notificationThread.get() );
+      }
+   }
+
+   @Test
+   void testBudgetOverrunsAreCounted()
+   {
+      try ( InlineMonitorNotificationServiceFactory factory = new InlineMonitorNotificationServiceFactory( 1_000 ) )
+      {
+         final MonitorNotificationService<Long> fastService = factory.getServiceForConsumer( v -> {} );
+         final MonitorNotificationService<Long> slowService = factory.getServiceForConsumer( v -> sleep( 5 ) );
+         for ( long i = 0; i < 3; i++ )
+         {
+            fastService.publish( i );
+            slowService.publish( i );
+         }
+         assertEquals( 3, factory.getBudgetOverrunCount() );
+      }
+   }
+
+   @Test
+   void testBudgetOverrunsAreNotCountedWhenBudgetDisabled()
+   {
+      try ( InlineMonitorNotificationServiceFactory factory = new InlineMonitorNotificationServiceFactory( 0 ) )
+      {
+         final MonitorNotificationService<Long> slowService = factory.getServiceForConsumer( v -> sleep( 5 ) );
+         slowService.publish( 1L );
+         assertEquals( 0, factory.getBudgetOverrunCount() );
+      }
+   }
+
+   @Test
+   void testClosedServicesAreNoLongerManaged()
+   {
+      try ( InlineMonitorNotificationServiceFactory factory = new InlineMonitorNotificationServiceFactory( 1_000 ) )
+      {
+         final MonitorNotificationService<Long> fastService = factory.getServiceForConsumer( v -> {} );
+         final MonitorNotificationService<Long> slowService = factory.getServiceForConsumer( v -> sleep( 5 ) );
+         fastService.publish( 1L );
+         slowService.publish( 1L );
+         assertEquals( 2, factory.getServiceCount() );
+         assertEquals( 1, factory.getBudgetOverrunCount() );
+
+         slowService.close();
+         assertEquals( 1, factory.getServiceCount() );
+         assertEquals( 0, factory.getBudgetOverrunCount() );
+
+         // Closing a service more than once has no further effect.
+         slowService.close();
+         assertEquals( 1, factory.getServiceCount() );
+      }
+   }
+
+   @Test
+   void testWatchdogReportsBlockedConsumerBeforeItReturns()
+   {
+      final Logger serviceLogger = LibraryLogManager.getLogger( InlineMonitorNotificationService.class );
+      final AtomicReference<String> watchdogMessage = new AtomicReference<>();
+      final Handler handler = new Handler()
+      {
+         @Override
+         public void publish( LogRecord record )
+         {
+            if ( ( record.getLevel() == Level.WARNING ) && record.getMessage().contains( "has been blocking thread" ) )
+            {
+               watchdogMessage.compareAndSet( null, record.getMessage() );
+            }
+         }
+         @Override
+         public void flush() {}
+         @Override
+         public void close() {}
+      };
+
+      serviceLogger.addHandler( handler );
+      try ( InlineMonitorNotificationServiceFactory factory = new InlineMonitorNotificationServiceFactory( 1_000 ) )
+      {
+         final long blockingTimeInMillis = 3 * InlineMonitorNotificationServiceFactory.WATCHDOG_CHECK_INTERVAL_IN_MILLIS;
+         final MonitorNotificationService<Long> service = factory.getServiceForConsumer( v -> {
+            sleep( blockingTimeInMillis );
+            assertNotNull( watchdogMessage.get(), "The watchdog did not report the blocked consumer." );
+         } );
+         service.publish( 1L );
+         assertNotNull( watchdogMessage.get() );
+         assertTrue( watchdogMessage.get().contains( Thread.currentThread().getName() ) );
+      }
+      finally
+      {
+         serviceLogger.removeHandler( handler );
+      }
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   private static void sleep( long millis )
+   {
+      try
+      {
+         Thread.sleep( millis );
+      }
+      catch ( InterruptedException ex )
+      {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
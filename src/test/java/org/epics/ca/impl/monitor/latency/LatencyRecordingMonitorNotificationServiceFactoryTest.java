@@ -0,0 +1,153 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.monitor.latency;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.epics.ca.ThreadWatcher;
+import org.epics.ca.data.Timestamped;
+import org.epics.ca.impl.monitor.MonitorNotificationService;
+import org.epics.ca.impl.monitor.MonitorNotificationServiceFactory;
+import org.epics.ca.impl.monitor.MonitorNotificationServiceFactoryCreator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.epics.ca.impl.monitor.latency.MonitorLatencyStatistics.Stage.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+class LatencyRecordingMonitorNotificationServiceFactoryTest
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private ThreadWatcher threadWatcher;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @BeforeEach
+   void beforeEach()
+   {
+      threadWatcher = ThreadWatcher.start();
+   }
+
+   @AfterEach
+   void afterEach()
+   {
+      threadWatcher.verify();
+   }
+
+   @Test
+   void testLatencyIsNotRecordedByDefault()
+   {
+      try ( MonitorNotificationServiceFactory factory = MonitorNotificationServiceFactoryCreator.create( "BlockingQueueSingleWorkerMonitorNotificationServiceImpl" ) )
+      {
+         assertFalse( factory.getQosMetricIsLatencyRecorded() );
+         assertFalse( factory.getLatencyStatistics().isEnabled() );
+         assertFalse( factory.getServiceForConsumer( v -> {} ).getLatencyStatistics().isEnabled() );
+      }
+   }
+
+   @ParameterizedTest
+   @MethodSource( "getMonitorNotificationServiceImplementations" )
+   void testLatencyIsRecordedForEachStage( String serviceImpl ) throws InterruptedException
+   {
+      final int notifications = 100;
+      try ( MonitorNotificationServiceFactory factory = new LatencyRecordingMonitorNotificationServiceFactory( MonitorNotificationServiceFactoryCreator.create( serviceImpl ), false ) )
+      {
+         assertTrue( factory.getQosMetricIsLatencyRecorded() );
+
+         final CountDownLatch latch = new CountDownLatch( notifications );
+         final MonitorNotificationService<Long> service = factory.getServiceForConsumer( v -> {
+            busyWait( 100 );
+            latch.countDown();
+         } );
+         for ( long i = 0; i < notifications; i++ )
+         {
+            service.publish( i );
+         }
+         assertTrue( latch.await( 10, TimeUnit.SECONDS ) );
+
+         // Allow the recording at the end of the final call to complete.
+         Thread.sleep( 100 );
+
+         final MonitorLatencyStatistics serviceStatistics = service.getLatencyStatistics();
+         assertTrue( serviceStatistics.isEnabled() );
+         assertEquals( notifications, serviceStatistics.getHistogram( RECEIVE_TO_PUBLISH ).getCount() );
+         assertEquals( notifications, serviceStatistics.getHistogram( PUBLISH_TO_CONSUMER_START ).getCount() );
+         assertEquals( notifications, serviceStatistics.getHistogram( CONSUMER_START_TO_END ).getCount() );
+         assertEquals( notifications, serviceStatistics.getHistogram( RECEIVE_TO_CONSUMER_END ).getCount() );
+         assertEquals( 0, serviceStatistics.getHistogram( IOC_TIMESTAMP_TO_PUBLISH ).getCount() );
+         assertThat( serviceStatistics.getHistogram( CONSUMER_START_TO_END ).getValueAtPercentile( 50.0 ), greaterThanOrEqualTo( TimeUnit.MICROSECONDS.toNanos( 100 ) ) );
+
+         // The factory statistics should accumulate the statistics of all services.
+         factory.getServiceForConsumer( v -> {} ).publish( 1L );
+         Thread.sleep( 100 );
+         assertEquals( notifications + 1, factory.getLatencyStatistics().getHistogram( RECEIVE_TO_CONSUMER_END ).getCount() );
+      }
+   }
+
+   @Test
+   void testIocTimestampLatencyIsRecordedForTimestampedValues() throws InterruptedException
+   {
+      try ( MonitorNotificationServiceFactory factory = new LatencyRecordingMonitorNotificationServiceFactory( MonitorNotificationServiceFactoryCreator.create( "InlineMonitorNotificationServiceImpl" ), true ) )
+      {
+         final MonitorNotificationService<Timestamped<Double>> service = factory.getServiceForConsumer( v -> {} );
+         final Timestamped<Double> value = new Timestamped<>();
+         final long valueAgeInMillis = 2_000;
+         final long iocTimeInMillis = System.currentTimeMillis() - valueAgeInMillis;
+         value.setSeconds( iocTimeInMillis / 1000 );
+         value.setNanos( (int) TimeUnit.MILLISECONDS.toNanos( iocTimeInMillis % 1000 ) );
+         service.publish( value );
+
+         final MonitorLatencyHistogram histogram = service.getLatencyStatistics().getHistogram( IOC_TIMESTAMP_TO_PUBLISH );
+         assertEquals( 1, histogram.getCount() );
+         assertThat( TimeUnit.NANOSECONDS.toMillis( histogram.getMaxValue() ), is( both( greaterThanOrEqualTo( valueAgeInMillis ) ).and( lessThan( valueAgeInMillis + 1000 ) ) ) );
+      }
+   }
+
+   @Test
+   void testNullPublicationBehaviourFollowsUnderlyingEngine()
+   {
+      try ( MonitorNotificationServiceFactory factory = new LatencyRecordingMonitorNotificationServiceFactory( MonitorNotificationServiceFactoryCreator.create( "InlineMonitorNotificationServiceImpl" ), false ) )
+      {
+         assertFalse( factory.getQosMetricIsNullPublishable() );
+         final MonitorNotificationService<Long> service = factory.getServiceForConsumer( v -> {} );
+         assertThrows( NullPointerException.class, () -> service.publish( null ) );
+      }
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+
+   private static List<String> getMonitorNotificationServiceImplementations()
+   {
+      return MonitorNotificationServiceFactoryCreator.getAllServiceImplementations();
+   }
+
+   private static void busyWait( long micros )
+   {
+      final long endTime = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos( micros );
+      while ( System.nanoTime() < endTime )
+      {
+         Thread.yield();
+      }
+   }
+
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
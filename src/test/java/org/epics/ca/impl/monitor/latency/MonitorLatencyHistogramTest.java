@@ -0,0 +1,108 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.impl.monitor.latency;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+class MonitorLatencyHistogramTest
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @Test
+   void testEmptyHistogram()
+   {
+      final MonitorLatencyHistogram histogram = new MonitorLatencyHistogram();
+      assertEquals( 0, histogram.getCount() );
+      assertEquals( 0, histogram.getMaxValue() );
+      assertEquals( 0.0, histogram.getMeanValue() );
+      assertEquals( 0, histogram.getValueAtPercentile( 99.0 ) );
+   }
+
+   @ParameterizedTest
+   @ValueSource( longs = { 0, 1, 31, 32, 33, 63, 64, 65, 1000, 123_456, 999_999_999L, MonitorLatencyHistogram.HIGHEST_TRACKABLE_VALUE_IN_NANOS } )
+   void testBucketRoundTripIsWithinPrecision( long value )
+   {
+      final int index = MonitorLatencyHistogram.bucketIndexOf( value );
+      final long highestEquivalentValue = MonitorLatencyHistogram.highestEquivalentValueOf( index );
+      assertThat( highestEquivalentValue, greaterThanOrEqualTo( value ) );
+      assertThat( (double) ( highestEquivalentValue - value ), lessThanOrEqualTo( value / 16.0 ) );
+   }
+
+   @Test
+   void testBucketIndicesAreContiguous()
+   {
+      int previousIndex = 0;
+      for ( long value = 0; value < 100_000; value++ )
+      {
+         final int index = MonitorLatencyHistogram.bucketIndexOf( value );
+         assertThat( index - previousIndex, either( is( 0 ) ).or( is( 1 ) ) );
+         previousIndex = index;
+      }
+   }
+
+   @Test
+   void testPercentiles()
+   {
+      final MonitorLatencyHistogram histogram = new MonitorLatencyHistogram();
+      for ( long i = 1; i <= 10_000; i++ )
+      {
+         histogram.record( i * 1000 );
+      }
+      assertEquals( 10_000, histogram.getCount() );
+      assertEquals( 10_000_000, histogram.getMaxValue() );
+      assertEquals( 5_000_500.0, histogram.getMeanValue(), 0.1 );
+      assertThat( (double) histogram.getValueAtPercentile( 50.0 ), closeTo( 5_000_000, 5_000_000 / 16.0 ) );
+      assertThat( (double) histogram.getValueAtPercentile( 99.0 ), closeTo( 9_900_000, 9_900_000 / 16.0 ) );
+      assertEquals( 10_000_000, histogram.getValueAtPercentile( 100.0 ) );
+   }
+
+   @Test
+   void testOutOfRangeValuesAreClamped()
+   {
+      final MonitorLatencyHistogram histogram = new MonitorLatencyHistogram();
+      histogram.record( -5 );
+      histogram.record( Long.MAX_VALUE );
+      assertEquals( 2, histogram.getCount() );
+      assertEquals( 0, histogram.getValueAtPercentile( 50.0 ) );
+      assertEquals( MonitorLatencyHistogram.HIGHEST_TRACKABLE_VALUE_IN_NANOS, histogram.getMaxValue() );
+   }
+
+   @Test
+   void testReset()
+   {
+      final MonitorLatencyHistogram histogram = new MonitorLatencyHistogram();
+      histogram.record( 42 );
+      histogram.reset();
+      assertEquals( 0, histogram.getCount() );
+      assertEquals( 0, histogram.getMaxValue() );
+      assertEquals( 0, histogram.getValueAtPercentile( 50.0 ) );
+   }
+
+   @Test
+   void testIllegalPercentile()
+   {
+      final MonitorLatencyHistogram histogram = new MonitorLatencyHistogram();
+      assertThrows( IllegalArgumentException.class, () -> histogram.getValueAtPercentile( 100.1 ) );
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
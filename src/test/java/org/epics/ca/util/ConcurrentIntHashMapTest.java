@@ -0,0 +1,194 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.util;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.core.Is.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+class ConcurrentIntHashMapTest
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @Test
+   void testPutGetRemove()
+   {
+      final ConcurrentIntHashMap<String> map = new ConcurrentIntHashMap<>();
+      assertThat( map.isEmpty(), is( true ) );
+      assertThat( map.put( 7, "a" ), nullValue() );
+      assertThat( map.put( -7, "b" ), nullValue() );
+      assertThat( map.put( 7, "c" ), is( "a" ) );
+      assertThat( map.size(), is( 2 ) );
+      assertThat( map.get( 7 ), is( "c" ) );
+      assertThat( map.get( -7 ), is( "b" ) );
+      assertThat( map.get( 8 ), nullValue() );
+
+      assertThat( map.remove( 7 ), is( "c" ) );
+      assertThat( map.remove( 7 ), nullValue() );
+      assertThat( map.get( 7 ), nullValue() );
+      assertThat( map.containsKey( 7 ), is( false ) );
+      assertThat( map.size(), is( 1 ) );
+
+      assertThat( map.put( 7, "d" ), nullValue() );
+      assertThat( map.get( 7 ), is( "d" ) );
+      assertThat( map.size(), is( 2 ) );
+   }
+
+   @Test
+   void testPut_nullValue_throwsNullPointerException()
+   {
+      final ConcurrentIntHashMap<String> map = new ConcurrentIntHashMap<>();
+      assertThrows( NullPointerException.class, () -> map.put( 1, null ) );
+   }
+
+   @Test
+   void testReserve_keyInUseWithoutValue()
+   {
+      final ConcurrentIntHashMap<String> map = new ConcurrentIntHashMap<>();
+      final int key = map.reserve();
+      assertThat( map.containsKey( key ), is( true ) );
+      assertThat( map.get( key ), nullValue() );
+      assertThat( map.size(), is( 1 ) );
+      assertThat( map.values(), is( empty() ) );
+
+      assertThat( map.put( key, "a" ), nullValue() );
+      assertThat( map.get( key ), is( "a" ) );
+      assertThat( map.size(), is( 1 ) );
+   }
+
+   @Test
+   void testAdd_allocatesUnusedKeys()
+   {
+      final ConcurrentIntHashMap<String> map = new ConcurrentIntHashMap<>();
+      map.put( 2, "taken" );
+      map.put( 3, "taken" );
+
+      assertThat( map.add( "a" ), is( 1 ) );
+      assertThat( map.add( "b" ), is( 4 ) );
+      map.remove( 1 );
+      assertThat( "keys are not reused straight away", map.add( "c" ), is( 5 ) );
+      assertThat( map.values(), containsInAnyOrder( "taken", "taken", "b", "c" ) );
+   }
+
+   @Test
+   void testGrowthAndChurn()
+   {
+      final ConcurrentIntHashMap<Integer> map = new ConcurrentIntHashMap<>();
+      for ( int i = 0; i < 100_000; i++ )
+      {
+         assertThat( map.add( i ), is( i + 1 ) );
+      }
+      // remove every other entry, leaving tombstones, then add as many again
+      for ( int i = 1; i <= 100_000; i += 2 )
+      {
+         assertThat( map.remove( i ), is( i - 1 ) );
+      }
+      for ( int i = 0; i < 50_000; i++ )
+      {
+         map.add( -i );
+      }
+      assertThat( map.size(), is( 100_000 ) );
+      for ( int i = 1; i <= 100_000; i++ )
+      {
+         assertThat( map.get( i ), is( ( i % 2 == 0 ) ? Integer.valueOf( i - 1 ) : null ) );
+      }
+      assertThat( map.get( 150_000 ), is( -49_999 ) );
+   }
+
+   @Test
+   void testRemoveAll()
+   {
+      final ConcurrentIntHashMap<String> map = new ConcurrentIntHashMap<>();
+      map.add( "a" );
+      map.add( "b" );
+      map.reserve();
+      assertThat( map.removeAll(), containsInAnyOrder( "a", "b" ) );
+      assertThat( map.isEmpty(), is( true ) );
+      assertThat( map.get( 1 ), nullValue() );
+      assertThat( map.add( "c" ), is( 4 ) );
+   }
+
+   @Test
+   void testGet_duringConcurrentWrites_alwaysFindsStableEntries() throws Exception
+   {
+      final ConcurrentIntHashMap<Integer> map = new ConcurrentIntHashMap<>();
+      final int stableEntries = 1_000;
+      for ( int i = 0; i < stableEntries; i++ )
+      {
+         map.add( i );
+      }
+
+      final AtomicBoolean stop = new AtomicBoolean();
+      final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+      try
+      {
+         // the writer grows and shrinks the map repeatedly, which rebuilds the table
+         final Future<?> writer = executor.submit( () -> {
+            final Set<Integer> added = new HashSet<>();
+            for ( int round = 0; round < 50; round++ )
+            {
+               for ( int i = 0; i < 10_000; i++ )
+               {
+                  added.add( map.add( -1 ) );
+               }
+               added.forEach( map::remove );
+               added.clear();
+            }
+            stop.set( true );
+         } );
+
+         final Future<?>[] readers = new Future<?>[ 3 ];
+         for ( int r = 0; r < readers.length; r++ )
+         {
+            readers[ r ] = executor.submit( () -> {
+               while ( ! stop.get() )
+               {
+                  for ( int key = 1; key <= stableEntries; key++ )
+                  {
+                     assertThat( map.get( key ), is( key - 1 ) );
+                  }
+               }
+            } );
+         }
+
+         writer.get( 60, TimeUnit.SECONDS );
+         for ( Future<?> reader : readers )
+         {
+            reader.get( 60, TimeUnit.SECONDS );
+         }
+         assertThat( map.size(), is( stableEntries ) );
+      }
+      finally
+      {
+         executor.shutdownNow();
+      }
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+}
@@ -0,0 +1,120 @@
+/*- Package Declaration ------------------------------------------------------*/
+
+package org.epics.ca.util.logging;
+
+/*- Imported packages --------------------------------------------------------*/
+
+import org.epics.ca.ThreadWatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/*- Interface Declaration ----------------------------------------------------*/
+/*- Class Declaration --------------------------------------------------------*/
+
+class TraceRecorderTest
+{
+
+/*- Public attributes --------------------------------------------------------*/
+/*- Private attributes -------------------------------------------------------*/
+
+   private ThreadWatcher threadWatcher;
+
+/*- Main ---------------------------------------------------------------------*/
+/*- Constructor --------------------------------------------------------------*/
+/*- Public methods -----------------------------------------------------------*/
+/*- Package-level methods ----------------------------------------------------*/
+
+   @BeforeEach
+   void beforeEach()
+   {
+      threadWatcher = ThreadWatcher.start();
+      LibraryLogManager.clearTrace();
+   }
+
+   @AfterEach
+   void afterEach()
+   {
+      LibraryLogManager.setTraceEnabled( false );
+      LibraryLogManager.clearTrace();
+      threadWatcher.verify();
+   }
+
+   @Test
+   void testRecord_whenDisabled_recordsNothing()
+   {
+      LibraryLogManager.setTraceEnabled( false );
+      TraceRecorder.record( TraceRecorder.Event.TCP_READ, 123, 456 );
+      assertThat( LibraryLogManager.dumpTrace(), not( containsString( "TCP_READ" ) ) );
+   }
+
+   @Test
+   void testRecord_whenEnabled_eventsAreDumped()
+   {
+      LibraryLogManager.setTraceEnabled( true );
+      assertThat( LibraryLogManager.isTraceEnabled(), is( true ) );
+
+      TraceRecorder.record( TraceRecorder.Event.TCP_READ, 123, 456 );
+      TraceRecorder.record( TraceRecorder.Event.UDP_RECEIVE, 789, 0 );
+
+      final String dump = LibraryLogManager.dumpTrace();
+      assertThat( dump, containsString( "Thread '" + Thread.currentThread().getName() + "': 2 events" ) );
+      assertThat( dump, containsString( "TCP_READ bytesRead=123 bufferPosition=456" ) );
+      assertThat( dump, containsString( "UDP_RECEIVE bytes=789\n" ) );
+      assertThat( dump.indexOf( "TCP_READ" ), lessThan( dump.indexOf( "UDP_RECEIVE" ) ) );
+   }
+
+   @Test
+   void testRecord_ringWraps_newestEventsAreRetained()
+   {
+      LibraryLogManager.setTraceEnabled( true );
+      final int capacity = TraceRecorder.getEventsPerThread();
+      for ( int i = 0; i < capacity + 10; i++ )
+      {
+         TraceRecorder.record( TraceRecorder.Event.TCP_MESSAGE, i, 0 );
+      }
+
+      final String dump = LibraryLogManager.dumpTrace();
+      assertThat( dump, containsString( ": " + capacity + " events" ) );
+      assertThat( dump, not( containsString( "command=9 " ) ) );
+      assertThat( dump, containsString( "command=10 " ) );
+      assertThat( dump, containsString( "command=" + ( capacity + 9 ) + " " ) );
+   }
+
+   @Test
+   void testDump_includesOtherThreads() throws InterruptedException
+   {
+      LibraryLogManager.setTraceEnabled( true );
+      final AtomicReference<String> dump = new AtomicReference<>();
+      final Thread thread = new Thread( () -> {
+         TraceRecorder.record( TraceRecorder.Event.MONITOR_NOTIFY, 42, 0 );
+         dump.set( LibraryLogManager.dumpTrace() );
+      }, "trace-test-thread" );
+      thread.start();
+      thread.join();
+
+      assertThat( dump.get(), containsString( "Thread 'trace-test-thread': 1 events" ) );
+      assertThat( dump.get(), containsString( "MONITOR_NOTIFY queueSize=42" ) );
+
+      // The ring of the terminated thread is forgotten.
+      assertThat( LibraryLogManager.dumpTrace(), not( containsString( "trace-test-thread" ) ) );
+   }
+
+   @Test
+   void testClear()
+   {
+      LibraryLogManager.setTraceEnabled( true );
+      TraceRecorder.record( TraceRecorder.Event.TCP_SEND, 1, 1 );
+      LibraryLogManager.clearTrace();
+      assertThat( LibraryLogManager.dumpTrace(), not( containsString( "TCP_SEND" ) ) );
+   }
+
+/*- Private methods ----------------------------------------------------------*/
+/*- Nested Classes -----------------------------------------------------------*/
+
+}